@@ -0,0 +1,101 @@
+package org.openstructures.sequence.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstructures.sequence.InMemorySequence;
+import org.openstructures.sequence.SequenceLink;
+import org.openstructures.sequence.avltree.Aggregate;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sum over a rolling window of {@code window} keys of {@link InMemorySequence} holding {@code size} keys, taken from
+ * the aggregate the sequence maintains against a scan of the window. The slide benchmarks append a key after the
+ * latest one and delete the oldest one, with and without the aggregate, which shows what maintaining it costs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class AggregateBenchmark {
+
+    private static final Aggregate<Long, Long> SUM = Aggregate.summingLong(Long::longValue);
+
+    @Param({"1000000"})
+    private int size;
+
+    @Param({"100", "10000"})
+    private int window;
+
+    private InMemorySequence<Long, Long> plain;
+    private InMemorySequence<Long, Long> aggregated;
+    private Long[] froms;
+    private int next;
+    private long oldest;
+    private SequenceLink<Long> plainLatest;
+    private SequenceLink<Long> aggregatedLatest;
+
+    @Setup
+    public void setUp() {
+        Long[] keys = KeyDistribution.SEQUENTIAL.keys(size);
+        plain = InMemorySequence.fromSorted(Arrays.asList(keys), Long::compare);
+        aggregated = new InMemorySequence<>(Long::compare, SUM);
+        aggregated.insertAll(Arrays.asList(keys));
+        froms = KeyDistribution.RANDOM.keys(size);
+        oldest = 0;
+        plainLatest = plain.get(KeyDistribution.key(size - 1));
+        aggregatedLatest = aggregated.get(KeyDistribution.key(size - 1));
+    }
+
+    private long nextFrom() {
+        long from = froms[next];
+        next = next + 1 < size ? next + 1 : 0;
+        return from;
+    }
+
+    @Benchmark
+    public long aggregate() {
+        long from = nextFrom();
+        return aggregated.aggregate(SUM, from, from + 2L * window);
+    }
+
+    @Benchmark
+    public long scan() {
+        long from = nextFrom();
+        long sum = 0;
+        Iterator<Long> keys = plain.range(from, true, from + 2L * window, false);
+        while (keys.hasNext()) {
+            sum += keys.next();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public SequenceLink<Long> slide() {
+        plainLatest = plain.insertNear(plainLatest, plainLatest.getValue() + 2);
+        plain.delete(oldest);
+        oldest += 2;
+        return plainLatest;
+    }
+
+    @Benchmark
+    public SequenceLink<Long> slideAggregated() {
+        aggregatedLatest = aggregated.insertNear(aggregatedLatest, aggregatedLatest.getValue() + 2);
+        aggregated.delete(oldest);
+        oldest += 2;
+        return aggregatedLatest;
+    }
+}
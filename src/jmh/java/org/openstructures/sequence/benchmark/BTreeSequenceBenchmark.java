@@ -0,0 +1,128 @@
+package org.openstructures.sequence.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstructures.sequence.BTreeSequence;
+import org.openstructures.sequence.SequenceLink;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single operations of {@link BTreeSequence} holding {@code size} keys, the same as {@link SequenceBenchmark} runs
+ * against the AVL tree of {@link org.openstructures.sequence.InMemorySequence}, so the two can be compared line by
+ * line.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class BTreeSequenceBenchmark {
+
+    private static final int NEIGHBOURS_TO_WALK = 16;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    private int size;
+
+    @Param({"SEQUENTIAL", "RANDOM", "ADVERSARIAL"})
+    private KeyDistribution distribution;
+
+    @Param({"16", "64", "256"})
+    private int nodeCapacity;
+
+    private BTreeSequence<Long, Long> sequence;
+    private Long[] keys;
+    private Long[] absentKeys;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        keys = distribution.keys(size);
+        absentKeys = new Long[size];
+        for (int i = 0; i < size; i++) {
+            absentKeys[i] = keys[i] + 1;
+        }
+        sequence = new BTreeSequence<>(Long::compare, nodeCapacity);
+        for (Long key : keys) {
+            sequence.insert(key);
+        }
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 < size ? index + 1 : 0;
+        return index;
+    }
+
+    /**
+     * Inserts an absent key and deletes it again, which keeps the size of the sequence stable.
+     */
+    @Benchmark
+    public SequenceLink<Long> insertAndDelete() {
+        Long key = absentKeys[nextIndex()];
+        SequenceLink<Long> link = sequence.insert(key);
+        sequence.delete(key);
+        return link;
+    }
+
+    /**
+     * Deletes a present key and inserts it back, which keeps the size of the sequence stable.
+     */
+    @Benchmark
+    public SequenceLink<Long> deleteAndInsert() {
+        Long key = keys[nextIndex()];
+        sequence.delete(key);
+        return sequence.insert(key);
+    }
+
+    @Benchmark
+    public SequenceLink<Long> get() {
+        return sequence.get(keys[nextIndex()]);
+    }
+
+    @Benchmark
+    public Long greaterThan() {
+        return sequence.greaterThan(absentKeys[nextIndex()]);
+    }
+
+    @Benchmark
+    public Long lessThan() {
+        return sequence.lessThan(absentKeys[nextIndex()]);
+    }
+
+    @Benchmark
+    public Long equalTo() {
+        return sequence.equalTo(keys[nextIndex()]);
+    }
+
+    @Benchmark
+    public Long range() {
+        long from = keys[nextIndex()];
+        Iterator<Long> range = sequence.range(from, true, from + 2 * NEIGHBOURS_TO_WALK, false);
+        Long last = null;
+        while (range.hasNext()) {
+            last = range.next();
+        }
+        return last;
+    }
+
+    @Benchmark
+    public Long walkNeighbours() {
+        SequenceLink<Long> link = sequence.get(keys[nextIndex()]);
+        for (int i = 0; i < NEIGHBOURS_TO_WALK && link.getRight() != null; i++) {
+            link = link.getRight();
+        }
+        return link.getValue();
+    }
+}
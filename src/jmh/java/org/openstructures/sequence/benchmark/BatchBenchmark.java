@@ -0,0 +1,85 @@
+package org.openstructures.sequence.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstructures.sequence.InMemorySequence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserting and deleting batches of {@code batchSize} random absent keys into a sequence of {@code size} keys, with
+ * {@link InMemorySequence#insertAll} and {@link InMemorySequence#deleteAll} against one key at a time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class BatchBenchmark {
+
+    private static final int BATCHES = 16;
+
+    @Param({"100000", "1000000"})
+    private int size;
+
+    @Param({"100", "1000", "10000", "100000"})
+    private int batchSize;
+
+    private InMemorySequence<Long, Long> sequence;
+    private List<List<Long>> batches;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Long[] keys = KeyDistribution.RANDOM.keys(size);
+        sequence = new InMemorySequence<>(Long::compare);
+        for (Long key : keys) {
+            sequence.insert(key);
+        }
+        batches = new ArrayList<>();
+        for (int batch = 0; batch < BATCHES; batch++) {
+            List<Long> absentKeys = new ArrayList<>();
+            for (int i = 0; i < batchSize; i++) {
+                absentKeys.add(keys[(batch * batchSize + i) % size] + 1);
+            }
+            batches.add(absentKeys);
+        }
+    }
+
+    private List<Long> nextBatch() {
+        next = next + 1 < BATCHES ? next + 1 : 0;
+        return batches.get(next);
+    }
+
+    @Benchmark
+    public InMemorySequence<Long, Long> insertAllAndDeleteAll() {
+        List<Long> batch = nextBatch();
+        sequence.insertAll(batch);
+        sequence.deleteAll(batch);
+        return sequence;
+    }
+
+    @Benchmark
+    public InMemorySequence<Long, Long> insertAndDeleteOneByOne() {
+        List<Long> batch = nextBatch();
+        for (Long key : batch) {
+            sequence.insert(key);
+        }
+        for (Long key : batch) {
+            sequence.delete(key);
+        }
+        return sequence;
+    }
+}
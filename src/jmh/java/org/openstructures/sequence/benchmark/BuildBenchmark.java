@@ -0,0 +1,55 @@
+package org.openstructures.sequence.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstructures.sequence.InMemorySequence;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a sequence of {@code size} sorted keys with {@link InMemorySequence#fromSorted} against inserting them
+ * one by one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class BuildBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    private int size;
+
+    private List<Long> keys;
+
+    @Setup
+    public void setUp() {
+        keys = Arrays.asList(KeyDistribution.SEQUENTIAL.keys(size));
+    }
+
+    @Benchmark
+    public InMemorySequence<Long, Long> fromSorted() {
+        return InMemorySequence.fromSorted(keys, Long::compare);
+    }
+
+    @Benchmark
+    public InMemorySequence<Long, Long> insertOneByOne() {
+        InMemorySequence<Long, Long> sequence = new InMemorySequence<>(Long::compare);
+        for (Long key : keys) {
+            sequence.insert(key);
+        }
+        return sequence;
+    }
+}
@@ -0,0 +1,95 @@
+package org.openstructures.sequence.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstructures.sequence.InMemorySequence;
+import org.openstructures.sequence.SequenceLink;
+import org.openstructures.sequence.avltree.AVLNode;
+import org.openstructures.sequence.avltree.AVLTree;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserts and deletes at a steady size, with nodes allocated for every insert or recycled. Run it with
+ * {@code -prof gc}: {@code gc.alloc.rate.norm} shows the bytes allocated per operation, which is zero once nodes are
+ * recycled. Keys are boxed up front, so their allocation isn't part of the operations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class ChurnBenchmark {
+
+    private static final int MAX_IDLE = 1024;
+
+    @Param({"100000"})
+    private int size;
+
+    @Param({"RANDOM"})
+    private KeyDistribution distribution;
+
+    @Param({"ALLOCATING", "POOLED"})
+    private Allocation allocation;
+
+    private InMemorySequence<Long, Long> sequence;
+    private AVLTree<Long> tree;
+    private Long[] absentKeys;
+    private int next;
+
+    public enum Allocation {
+        ALLOCATING, POOLED
+    }
+
+    @Setup
+    public void setUp() {
+        Long[] keys = distribution.keys(size);
+        absentKeys = new Long[size];
+        for (int i = 0; i < size; i++) {
+            absentKeys[i] = keys[i] + 1;
+        }
+        if (allocation == Allocation.POOLED) {
+            sequence = InMemorySequence.pooled(Long::compare, MAX_IDLE);
+            tree = AVLTree.pooled(Long::compare, MAX_IDLE);
+        } else {
+            sequence = new InMemorySequence<>(Long::compare);
+            tree = new AVLTree<>(Long::compare);
+        }
+        for (Long key : keys) {
+            sequence.insert(key);
+            tree.insert(key);
+        }
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 < size ? index + 1 : 0;
+        return index;
+    }
+
+    @Benchmark
+    public SequenceLink<Long> sequenceInsertAndDelete() {
+        Long key = absentKeys[nextIndex()];
+        SequenceLink<Long> link = sequence.insert(key);
+        sequence.delete(key);
+        return link;
+    }
+
+    @Benchmark
+    public AVLNode<Long> treeInsertAndDelete() {
+        Long key = absentKeys[nextIndex()];
+        AVLNode<Long> node = tree.insert(key);
+        tree.delete(key);
+        return node;
+    }
+}
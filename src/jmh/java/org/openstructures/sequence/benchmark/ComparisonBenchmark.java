@@ -0,0 +1,117 @@
+package org.openstructures.sequence.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstructures.sequence.InMemorySequence;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups of {@link InMemorySequence} with a comparator that counts its calls. Besides the lookups per microsecond,
+ * JMH reports the comparisons per microsecond as the secondary {@code comparisons} result, so dividing the latter by
+ * the former gives the comparisons per lookup, about the height of the tree.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class ComparisonBenchmark {
+
+    @Param({"1000", "100000", "10000000"})
+    private int size;
+
+    private InMemorySequence<Long, Long> sequence;
+    private Long[] keys;
+    private Long[] absentKeys;
+    private long comparisons;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        keys = KeyDistribution.RANDOM.keys(size);
+        absentKeys = new Long[size];
+        for (int i = 0; i < size; i++) {
+            absentKeys[i] = keys[i] + 1;
+        }
+        sequence = new InMemorySequence<>((left, right) -> {
+            comparisons++;
+            return Long.compare(left, right);
+        });
+        for (Long key : keys) {
+            sequence.insert(key);
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Comparisons {
+
+        public long comparisons;
+
+        private long atStart;
+
+        @Setup(Level.Iteration)
+        public void reset(ComparisonBenchmark benchmark) {
+            comparisons = 0;
+            atStart = benchmark.comparisons;
+        }
+
+        private void update(ComparisonBenchmark benchmark) {
+            comparisons = benchmark.comparisons - atStart;
+        }
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 < size ? index + 1 : 0;
+        return index;
+    }
+
+    @Benchmark
+    public Long equalTo(Comparisons counter) {
+        Long key = sequence.equalTo(keys[nextIndex()]);
+        counter.update(this);
+        return key;
+    }
+
+    @Benchmark
+    public Long greaterThan(Comparisons counter) {
+        Long key = sequence.greaterThan(absentKeys[nextIndex()]);
+        counter.update(this);
+        return key;
+    }
+
+    @Benchmark
+    public Long lessThan(Comparisons counter) {
+        Long key = sequence.lessThan(absentKeys[nextIndex()]);
+        counter.update(this);
+        return key;
+    }
+
+    @Benchmark
+    public Long floor(Comparisons counter) {
+        Long key = sequence.floor(absentKeys[nextIndex()]);
+        counter.update(this);
+        return key;
+    }
+
+    @Benchmark
+    public Long ceiling(Comparisons counter) {
+        Long key = sequence.ceiling(absentKeys[nextIndex()]);
+        counter.update(this);
+        return key;
+    }
+}
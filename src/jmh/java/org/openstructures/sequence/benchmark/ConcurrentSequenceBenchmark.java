@@ -0,0 +1,219 @@
+package org.openstructures.sequence.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openstructures.sequence.ConcurrentSequence;
+import org.openstructures.sequence.InMemorySequence;
+import org.openstructures.sequence.Sequence;
+import org.openstructures.sequence.SequenceLink;
+import org.openstructures.sequence.ShardedSequence;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link ConcurrentSequence} and {@link ShardedSequence} against {@link InMemorySequence} behind a
+ * single lock, with all the available cores reading or writing. Use {@code -t} to compare other thread counts, or run
+ * {@link #main(String[])} for a table of how write throughput scales with the number of threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+@Threads(Threads.MAX)
+public class ConcurrentSequenceBenchmark {
+
+    public enum Implementation {
+        CONCURRENT {
+            @Override
+            Sequence<Long, Long> newSequence() {
+                return new ConcurrentSequence<>(Long::compare);
+            }
+        },
+        SHARDED {
+            @Override
+            Sequence<Long, Long> newSequence() {
+                return new ShardedSequence<>(Long::compare);
+            }
+        },
+        LOCKED {
+            @Override
+            Sequence<Long, Long> newSequence() {
+                return new LockedSequence(new InMemorySequence<>(Long::compare));
+            }
+        };
+
+        abstract Sequence<Long, Long> newSequence();
+    }
+
+    @State(Scope.Benchmark)
+    public static class SharedSequence {
+
+        @Param({"100000", "1000000"})
+        private int size;
+
+        @Param({"CONCURRENT", "SHARDED", "LOCKED"})
+        private Implementation implementation;
+
+        private Sequence<Long, Long> sequence;
+        private Long[] keys;
+
+        @Setup
+        public void setUp() {
+            keys = KeyDistribution.RANDOM.keys(size);
+            sequence = implementation.newSequence();
+            for (Long key : keys) {
+                sequence.insert(key);
+            }
+        }
+    }
+
+    /**
+     * Every thread writes its own absent keys, so writers never insert the same key.
+     */
+    @State(Scope.Thread)
+    public static class ThreadKeys {
+
+        private Long[] keys;
+        private Long[] absentKeys;
+        private int next;
+
+        @Setup
+        public void setUp(SharedSequence shared, ThreadParams threadParams) {
+            keys = shared.keys;
+            int threads = threadParams.getThreadCount();
+            int count = Math.max(1, keys.length / threads);
+            absentKeys = new Long[count];
+            for (int i = 0; i < count; i++) {
+                absentKeys[i] = keys[(i * threads + threadParams.getThreadIndex()) % keys.length] + 1;
+            }
+            next = threadParams.getThreadIndex();
+        }
+
+        private Long nextKey() {
+            next = next + 1 < keys.length ? next + 1 : 0;
+            return keys[next];
+        }
+
+        private Long nextAbsentKey() {
+            next = next + 1 < absentKeys.length ? next + 1 : 0;
+            return absentKeys[next];
+        }
+    }
+
+    @Benchmark
+    public Long read(SharedSequence shared, ThreadKeys threadKeys) {
+        SequenceLink<Long> link = shared.sequence.get(threadKeys.nextKey());
+        return link != null ? shared.sequence.greaterThan(link.getValue()) : null;
+    }
+
+    @Benchmark
+    public SequenceLink<Long> write(SharedSequence shared, ThreadKeys threadKeys) {
+        Long key = threadKeys.nextAbsentKey();
+        SequenceLink<Long> link = shared.sequence.insert(key);
+        shared.sequence.delete(key);
+        return link;
+    }
+
+    /**
+     * Runs {@link #write} with 1, 2, 4... threads, up to the number of cores but at least up to 4, and prints the
+     * throughput of every implementation relative to a single thread. Threads beyond the number of cores show the cost
+     * of contention rather than scaling.
+     */
+    public static void main(String[] args) throws RunnerException {
+        int maxThreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        Map<String, Double> singleThreaded = new HashMap<>();
+        List<String> rows = new ArrayList<>();
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            Collection<RunResult> results = new Runner(new OptionsBuilder()
+                    .include(ConcurrentSequenceBenchmark.class.getName() + ".write$")
+                    .param("size", "1000000")
+                    .threads(threads)
+                    .build()).run();
+            for (RunResult result : results) {
+                String implementation = result.getParams().getParam("implementation");
+                double score = result.getPrimaryResult().getScore();
+                singleThreaded.putIfAbsent(implementation, score);
+                rows.add(String.format("%-12s %7d %10.3f %8.2fx", implementation, threads, score,
+                        score / singleThreaded.get(implementation)));
+            }
+        }
+        System.out.printf("%n%d cores%n%-12s %7s %10s %9s%n", Runtime.getRuntime().availableProcessors(),
+                "sequence", "threads", "ops/us", "speedup");
+        rows.forEach(System.out::println);
+    }
+
+    /**
+     * The baseline: a sequence guarded by one lock.
+     */
+    private static class LockedSequence implements Sequence<Long, Long> {
+
+        private final Sequence<Long, Long> sequence;
+
+        private LockedSequence(Sequence<Long, Long> sequence) {
+            this.sequence = sequence;
+        }
+
+        @Override
+        public synchronized SequenceLink<Long> insert(Long key) {
+            return sequence.insert(key);
+        }
+
+        @Override
+        public synchronized void delete(Long key) {
+            sequence.delete(key);
+        }
+
+        @Override
+        public synchronized SequenceLink<Long> get(Long key) {
+            return sequence.get(key);
+        }
+
+        @Override
+        public synchronized Long greaterThan(Long comparable) {
+            return sequence.greaterThan(comparable);
+        }
+
+        @Override
+        public synchronized Long lessThan(Long comparable) {
+            return sequence.lessThan(comparable);
+        }
+
+        @Override
+        public synchronized Long equalTo(Long comparable) {
+            return sequence.equalTo(comparable);
+        }
+
+        @Override
+        public synchronized int size() {
+            return sequence.size();
+        }
+
+        // traversal isn't measured, so the spliterator isn't guarded
+        @Override
+        public Spliterator<Long> spliterator() {
+            return sequence.spliterator();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.openstructures.sequence.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstructures.sequence.InMemorySequence;
+import org.openstructures.sequence.SequenceLink;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finger operations of {@link InMemorySequence} holding {@code size} keys against the same operations searching from
+ * the root. Hints are picked at random, the key inserted or looked up is {@code distance} keys away from the hint.
+ * The append benchmarks keep a sliding window of a time series: every operation appends a key after the latest one
+ * and deletes the oldest one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class FingerBenchmark {
+
+    @Param({"100000", "1000000"})
+    private int size;
+
+    @Param({"1", "64", "4096"})
+    private int distance;
+
+    private InMemorySequence<Long, Long> sequence;
+    private SequenceLink<Long>[] hints;
+    private Long[] targets;
+    private long oldest;
+    private SequenceLink<Long> latest;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        sequence = InMemorySequence.fromSorted(Arrays.asList(KeyDistribution.SEQUENTIAL.keys(size)), Long::compare);
+        Long[] keys = KeyDistribution.RANDOM.keys(size);
+        hints = newLinks(size);
+        targets = new Long[size];
+        for (int i = 0; i < size; i++) {
+            hints[i] = sequence.get(keys[i]);
+            // odd keys are absent, the target is the one right after the key distance keys away from the hint
+            targets[i] = (keys[i] + 2L * (distance - 1)) % (2L * size) + 1;
+        }
+        oldest = 0;
+        latest = sequence.get(KeyDistribution.key(size - 1));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> SequenceLink<T>[] newLinks(int length) {
+        return new SequenceLink[length];
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 < size ? index + 1 : 0;
+        return index;
+    }
+
+    @Benchmark
+    public SequenceLink<Long> insert() {
+        Long key = targets[nextIndex()];
+        SequenceLink<Long> link = sequence.insert(key);
+        sequence.delete(key);
+        return link;
+    }
+
+    @Benchmark
+    public SequenceLink<Long> insertNear() {
+        int index = nextIndex();
+        Long key = targets[index];
+        SequenceLink<Long> link = sequence.insertNear(hints[index], key);
+        sequence.delete(key);
+        return link;
+    }
+
+    @Benchmark
+    public Long greaterThan() {
+        return sequence.greaterThan(targets[nextIndex()]);
+    }
+
+    @Benchmark
+    public Long greaterThanNear() {
+        int index = nextIndex();
+        return sequence.greaterThan(hints[index], targets[index]);
+    }
+
+    @Benchmark
+    public SequenceLink<Long> append() {
+        latest = sequence.insert(latest.getValue() + 2);
+        sequence.delete(oldest);
+        oldest += 2;
+        return latest;
+    }
+
+    @Benchmark
+    public SequenceLink<Long> appendNear() {
+        latest = sequence.insertNear(latest, latest.getValue() + 2);
+        sequence.delete(oldest);
+        oldest += 2;
+        return latest;
+    }
+}
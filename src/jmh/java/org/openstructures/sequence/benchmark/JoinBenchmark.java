@@ -0,0 +1,122 @@
+package org.openstructures.sequence.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstructures.sequence.InMemorySequence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Joins the two parts of a sequence holding {@code size} keys, split at a key of the key distribution, against a
+ * copying join that re-indexes every key of both parts the way joins did before the tree join.
+ * <p>
+ * A join consumes its parts and takes far too little time for a setup before every invocation to be measured
+ * reliably. Instead, {@value #PAIRS} copies of the sequence are split before every iteration, and a single shot joins
+ * all of them, so the setup never runs while the clock does. Single shots don't join often enough for the joins to
+ * be compiled, so they are compiled beforehand by splitting and joining a small sequence over and over. The copying
+ * join leaves its parts intact, so it is measured on the parts of the first copy as usual.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class JoinBenchmark {
+
+    private static final int PAIRS = 16;
+    private static final int WARM_UP_SIZE = 1024;
+    private static final int WARM_UP_ROUNDS = 20_000;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    private int size;
+
+    @Param({"SEQUENTIAL", "RANDOM", "ADVERSARIAL"})
+    private KeyDistribution distribution;
+
+    private final List<InMemorySequence<Long, Long>> sequences = new ArrayList<>(); // null while split
+    private final List<InMemorySequence.Split<Long, Long>> splits = new ArrayList<>();
+    private Long[] keys;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        keys = distribution.keys(size);
+        for (int i = 0; i < PAIRS; i++) {
+            InMemorySequence<Long, Long> sequence = new InMemorySequence<>(Long::compare);
+            for (Long key : keys) {
+                sequence.insert(key);
+            }
+            sequences.add(sequence);
+            splits.add(null);
+        }
+        warmUpJoins();
+    }
+
+    private void warmUpJoins() {
+        Long[] warmUpKeys = distribution.keys(WARM_UP_SIZE);
+        InMemorySequence<Long, Long> sequence = new InMemorySequence<>(Long::compare);
+        for (Long key : warmUpKeys) {
+            sequence.insert(key);
+        }
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            InMemorySequence.Split<Long, Long> split = sequence.split(warmUpKeys[i % WARM_UP_SIZE]);
+            sequence = InMemorySequence.join(split.getLeft(), split.getRight());
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void splitSequences() {
+        for (int i = 0; i < PAIRS; i++) {
+            splits.set(i, sequences.get(i).split(keys[next]));
+            sequences.set(i, null);
+            next = next + 1 < size ? next + 1 : 0;
+        }
+    }
+
+    // joins the parts the copying join left intact, so every iteration starts from whole sequences
+    @TearDown(Level.Iteration)
+    public void joinSplitSequences() {
+        for (int i = 0; i < PAIRS; i++) {
+            if (sequences.get(i) == null) {
+                InMemorySequence.Split<Long, Long> split = splits.get(i);
+                sequences.set(i, InMemorySequence.join(split.getLeft(), split.getRight()));
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OperationsPerInvocation(PAIRS)
+    @Warmup(iterations = 50)
+    @Measurement(iterations = 50)
+    public void join() {
+        for (int i = 0; i < PAIRS; i++) {
+            InMemorySequence.Split<Long, Long> split = splits.get(i);
+            sequences.set(i, InMemorySequence.join(split.getLeft(), split.getRight()));
+        }
+    }
+
+    @Benchmark
+    public InMemorySequence<Long, Long> copyJoin() {
+        InMemorySequence.Split<Long, Long> split = splits.get(0);
+        List<Long> joined = new ArrayList<>(size);
+        split.getLeft().spliterator().forEachRemaining(joined::add);
+        split.getRight().spliterator().forEachRemaining(joined::add);
+        return InMemorySequence.fromSorted(joined, Long::compare);
+    }
+}
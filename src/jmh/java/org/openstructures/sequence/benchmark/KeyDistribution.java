@@ -0,0 +1,61 @@
+package org.openstructures.sequence.benchmark;
+
+import java.util.Random;
+
+/**
+ * Order in which benchmarks insert and look up keys. All distributions produce the same keys, 0, 2, 4, ...,
+ * so odd numbers are never part of a sequence and can be used as absent keys.
+ */
+public enum KeyDistribution {
+
+    SEQUENTIAL {
+        @Override
+        Long[] keys(int size) {
+            Long[] keys = new Long[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = key(i);
+            }
+            return keys;
+        }
+    },
+
+    RANDOM {
+        @Override
+        Long[] keys(int size) {
+            Long[] keys = SEQUENTIAL.keys(size);
+            Random random = new Random(SEED);
+            for (int i = size - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                Long key = keys[i];
+                keys[i] = keys[j];
+                keys[j] = key;
+            }
+            return keys;
+        }
+    },
+
+    /**
+     * Zig-zags from both ends towards the middle, so every insert lands between the two latest ones and
+     * re-balancing mostly takes double rotations.
+     */
+    ADVERSARIAL {
+        @Override
+        Long[] keys(int size) {
+            Long[] keys = new Long[size];
+            int low = 0;
+            int high = size - 1;
+            for (int i = 0; i < size; i++) {
+                keys[i] = key(i % 2 == 0 ? low++ : high--);
+            }
+            return keys;
+        }
+    };
+
+    private static final long SEED = 42;
+
+    abstract Long[] keys(int size);
+
+    static Long key(int index) {
+        return 2L * index;
+    }
+}
@@ -0,0 +1,96 @@
+package org.openstructures.sequence.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstructures.sequence.InMemorySequence;
+import org.openstructures.sequence.MappedSequence;
+import org.openstructures.sequence.SequenceLink;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Reopening a {@link MappedSequence} of {@code size} keys against rebuilding an {@link InMemorySequence} of the same
+ * keys, and the cost of a committed insert and delete, which is dominated by appending to the log.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+// mappings of reopened files are only released once their buffers are collected, which a small heap does often enough
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class MappedSequenceBenchmark {
+
+    @Param({"100000", "1000000"})
+    private int size;
+
+    private Path directory;
+    private Path file;
+    private Long[] keys;
+    private MappedSequence sequence;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("mapped-sequence");
+        file = directory.resolve("sequence");
+        keys = KeyDistribution.RANDOM.keys(size);
+        try (MappedSequence created = MappedSequence.open(file, false)) {
+            for (Long key : keys) {
+                created.insert(key);
+            }
+        }
+        sequence = MappedSequence.open(file, false);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        sequence.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public int reopen() throws IOException {
+        try (MappedSequence reopened = MappedSequence.open(file, false)) {
+            return reopened.size();
+        }
+    }
+
+    @Benchmark
+    public int rebuildInMemory() {
+        InMemorySequence<Long, Long> rebuilt = new InMemorySequence<>(Long::compare);
+        for (Long key : keys) {
+            rebuilt.insert(key);
+        }
+        return rebuilt.size();
+    }
+
+    /**
+     * Inserts an absent key and deletes it again, two commits to the log without forcing it.
+     */
+    @Benchmark
+    public SequenceLink<Long> insertAndDelete() {
+        Long key = keys[next] + 1;
+        next = next + 1 < size ? next + 1 : 0;
+        SequenceLink<Long> link = sequence.insert(key);
+        sequence.delete(key);
+        return link;
+    }
+}
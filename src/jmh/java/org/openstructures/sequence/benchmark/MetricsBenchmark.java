@@ -0,0 +1,97 @@
+package org.openstructures.sequence.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstructures.sequence.InMemorySequence;
+import org.openstructures.sequence.InstrumentedSequence;
+import org.openstructures.sequence.Sequence;
+import org.openstructures.sequence.SequenceLink;
+import org.openstructures.sequence.SequenceStatistics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of collecting {@link SequenceStatistics}: the same operations of a plain {@link InMemorySequence} and of
+ * one whose operations, comparisons and re-balancing are recorded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class MetricsBenchmark {
+
+    @Param({"100000"})
+    private int size;
+
+    @Param({"RANDOM"})
+    private KeyDistribution distribution;
+
+    @Param({"PLAIN", "INSTRUMENTED"})
+    private Implementation implementation;
+
+    private Sequence<Long, Long> sequence;
+    private Long[] keys;
+    private Long[] absentKeys;
+    private int next;
+
+    public enum Implementation {
+        PLAIN {
+            @Override
+            Sequence<Long, Long> create() {
+                return new InMemorySequence<>(Long::compare);
+            }
+        },
+        INSTRUMENTED {
+            @Override
+            Sequence<Long, Long> create() {
+                SequenceStatistics statistics = new SequenceStatistics();
+                return new InstrumentedSequence<>(new InMemorySequence<>(Long::compare, statistics), statistics);
+            }
+        };
+
+        abstract Sequence<Long, Long> create();
+    }
+
+    @Setup
+    public void setUp() {
+        keys = distribution.keys(size);
+        absentKeys = new Long[size];
+        for (int i = 0; i < size; i++) {
+            absentKeys[i] = keys[i] + 1;
+        }
+        sequence = implementation.create();
+        for (Long key : keys) {
+            sequence.insert(key);
+        }
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 < size ? index + 1 : 0;
+        return index;
+    }
+
+    @Benchmark
+    public SequenceLink<Long> insertAndDelete() {
+        Long key = absentKeys[nextIndex()];
+        SequenceLink<Long> link = sequence.insert(key);
+        sequence.delete(key);
+        return link;
+    }
+
+    @Benchmark
+    public SequenceLink<Long> get() {
+        return sequence.get(keys[nextIndex()]);
+    }
+}
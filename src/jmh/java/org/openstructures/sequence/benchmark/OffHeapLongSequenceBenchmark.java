@@ -0,0 +1,89 @@
+package org.openstructures.sequence.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstructures.sequence.LongSequenceLink;
+import org.openstructures.sequence.OffHeapLongSequence;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single operations of {@link OffHeapLongSequence} holding {@code size} keys, to be compared with
+ * {@link LongSequenceBenchmark}. Running it with {@code -prof gc} shows the difference the off-heap nodes make to
+ * the garbage collector, the heap holds the links only.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class OffHeapLongSequenceBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    private int size;
+
+    @Param({"SEQUENTIAL", "RANDOM", "ADVERSARIAL"})
+    private KeyDistribution distribution;
+
+    private OffHeapLongSequence sequence;
+    private long[] keys;
+    private long[] absentKeys;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Long[] boxedKeys = distribution.keys(size);
+        keys = new long[size];
+        absentKeys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = boxedKeys[i];
+            absentKeys[i] = boxedKeys[i] + 1;
+        }
+        sequence = new OffHeapLongSequence();
+        for (long key : keys) {
+            sequence.insert(key);
+        }
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 < size ? index + 1 : 0;
+        return index;
+    }
+
+    /**
+     * Inserts an absent key and deletes it again, which keeps the size of the sequence stable.
+     */
+    @Benchmark
+    public LongSequenceLink insertAndDelete() {
+        long key = absentKeys[nextIndex()];
+        LongSequenceLink link = sequence.insert(key);
+        sequence.delete(key);
+        return link;
+    }
+
+    @Benchmark
+    public LongSequenceLink get() {
+        return sequence.get(keys[nextIndex()]);
+    }
+
+    @Benchmark
+    public long greaterThan() {
+        return sequence.greaterThan(absentKeys[nextIndex()]);
+    }
+
+    @Benchmark
+    public long lessThan() {
+        return sequence.lessThan(absentKeys[nextIndex()]);
+    }
+}
@@ -0,0 +1,128 @@
+package org.openstructures.sequence.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstructures.sequence.InMemorySequence;
+import org.openstructures.sequence.KeySerializers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Writing and restoring snapshots of an {@link InMemorySequence} of {@code size} keys, in memory and through a file
+ * channel. The {@code megabytes} counter reports the throughput in MB/s of snapshot bytes. Dense keys are 2 apart and
+ * take a byte each, sparse keys are random longs and take about 8 bytes each.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class SnapshotBenchmark {
+
+    @Param({"100000", "1000000"})
+    private int size;
+
+    @Param({"DENSE", "SPARSE"})
+    private String keys;
+
+    private InMemorySequence<Long, Long> sequence;
+    private byte[] snapshot;
+    private ByteArrayOutputStream out;
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        Long[] sortedKeys = keys.equals("DENSE") ? KeyDistribution.SEQUENTIAL.keys(size) : sparseKeys(size);
+        sequence = InMemorySequence.fromSorted(Arrays.asList(sortedKeys), Long::compare);
+        out = new ByteArrayOutputStream();
+        sequence.writeSnapshot(out, KeySerializers.longs());
+        snapshot = out.toByteArray();
+        file = Files.createTempFile("sequence", ".snapshot");
+        Files.write(file, snapshot);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Megabytes {
+
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+        }
+
+        private void add(byte[] snapshot) {
+            megabytes += snapshot.length / 1e6;
+        }
+    }
+
+    @Benchmark
+    public int writeToMemory(Megabytes counter) throws IOException {
+        out.reset();
+        sequence.writeSnapshot(out, KeySerializers.longs());
+        counter.add(snapshot);
+        return out.size();
+    }
+
+    @Benchmark
+    public int readFromMemory(Megabytes counter) throws IOException {
+        InMemorySequence<Long, Long> restored = InMemorySequence.readSnapshot(new ByteArrayInputStream(snapshot),
+                KeySerializers.longs(), Long::compare);
+        counter.add(snapshot);
+        return restored.size();
+    }
+
+    @Benchmark
+    public long writeToFile(Megabytes counter) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, WRITE, TRUNCATE_EXISTING)) {
+            sequence.writeSnapshot(channel, KeySerializers.longs());
+            counter.add(snapshot);
+            return channel.size();
+        }
+    }
+
+    @Benchmark
+    public int readFromFile(Megabytes counter) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            InMemorySequence<Long, Long> restored = InMemorySequence.readSnapshot(channel, KeySerializers.longs(),
+                    Long::compare);
+            counter.add(snapshot);
+            return restored.size();
+        }
+    }
+
+    private static Long[] sparseKeys(int size) {
+        return new Random(42).longs(size).sorted().distinct().boxed().toArray(Long[]::new);
+    }
+}
@@ -0,0 +1,63 @@
+package org.openstructures.sequence.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstructures.sequence.InMemorySequence;
+import org.openstructures.sequence.SequenceLink;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Summing up all keys of a sequence by following the links, with a sequential stream and with a parallel stream
+ * whose spliterator splits at subtree roots.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class StreamBenchmark {
+
+    @Param({"100000", "1000000", "10000000"})
+    private int size;
+
+    private InMemorySequence<Long, Long> sequence;
+    private Long first;
+
+    @Setup
+    public void setUp() {
+        Long[] keys = KeyDistribution.SEQUENTIAL.keys(size);
+        sequence = InMemorySequence.fromSorted(Arrays.asList(keys), Long::compare);
+        first = keys[0];
+    }
+
+    @Benchmark
+    public long followLinks() {
+        long sum = 0;
+        for (SequenceLink<Long> link = sequence.get(first); link != null; link = link.getRight()) {
+            sum += link.getValue();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long stream() {
+        return sequence.stream().mapToLong(Long::longValue).sum();
+    }
+
+    @Benchmark
+    public long parallelStream() {
+        return sequence.parallelStream().mapToLong(Long::longValue).sum();
+    }
+}
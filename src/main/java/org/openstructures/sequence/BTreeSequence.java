@@ -0,0 +1,196 @@
+package org.openstructures.sequence;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Spliterator;
+import org.openstructures.sequence.btree.BPlusTree;
+import org.openstructures.sequence.btree.BPlusTree.Leaf;
+
+/**
+ * Sequence backed by a {@link BPlusTree}, an alternative to {@link InMemorySequence} for large
+ * sequences whose lookups are bound by memory latency. A lookup visits a handful of wide nodes
+ * instead of a chain of binary nodes, and keys are found by binary searches over arrays. There is
+ * no key index, {@link #get(Object)} takes a descent of the tree too.
+ * <p>
+ * Keys move between leaves when leaves are split or merged, so links can't be nodes. A link
+ * remembers the leaf and the index its key was last found at, and its neighbours are next to it
+ * in the leaf or at the end of a sibling leaf. If the key has moved since, the link finds it again
+ * with a descent. A link of a deleted key has no neighbours.
+ */
+public class BTreeSequence<T extends C, C> implements Sequence<T, C> {
+
+  private final BPlusTree<T, C> tree;
+
+  public BTreeSequence(Comparator<C> comparator) {
+    this(comparator, BPlusTree.DEFAULT_NODE_CAPACITY);
+  }
+
+  /**
+   * Creates a sequence whose tree nodes hold up to {@code nodeCapacity} keys or children.
+   */
+  public BTreeSequence(Comparator<C> comparator, int nodeCapacity) {
+    this.tree = new BPlusTree<>(comparator, nodeCapacity);
+  }
+
+  @Override
+  public SequenceLink<T> insert(T key) {
+    checkNotNull(key, "can't added nulls");
+
+    tree.insert(key);
+    return new Link(key, null, 0);
+  }
+
+  @Override
+  public void delete(T key) {
+    checkNotNull(key);
+    tree.delete(key);
+  }
+
+  @Override
+  public SequenceLink<T> get(T key) {
+    checkNotNull(key);
+    Leaf<T> leaf = tree.leafOf(key);
+    int index = tree.indexOf(leaf, key);
+    return index >= 0 ? new Link(leaf.key(index), leaf, index) : null;
+  }
+
+  @Override
+  public T greaterThan(C comparable) {
+    checkNotNull(comparable);
+    return tree.higher(comparable);
+  }
+
+  @Override
+  public T lessThan(C comparable) {
+    checkNotNull(comparable);
+    return tree.lower(comparable);
+  }
+
+  @Override
+  public T equalTo(C comparable) {
+    checkNotNull(comparable);
+    return tree.find(comparable);
+  }
+
+  /**
+   * Returns the greatest key less than or equal to the comparable or null if there is none.
+   */
+  public T floor(C comparable) {
+    checkNotNull(comparable);
+    return tree.floor(comparable);
+  }
+
+  /**
+   * Returns the smallest key greater than or equal to the comparable or null if there is none.
+   */
+  public T ceiling(C comparable) {
+    checkNotNull(comparable);
+    return tree.ceiling(comparable);
+  }
+
+  @Override
+  public int size() {
+    return tree.size();
+  }
+
+  public boolean isEmpty() {
+    return tree.isEmpty();
+  }
+
+  /**
+   * Returns a lazy cursor over the keys between from and to in ascending order. The start is found
+   * by a descent of the tree, from then on the keys are read leaf by leaf. The sequence shouldn't
+   * be modified while the cursor is in use.
+   */
+  public Iterator<T> range(C from, boolean fromInclusive, C to, boolean toInclusive) {
+    return tree.range(from, fromInclusive, to, toInclusive);
+  }
+
+  /**
+   * Returns a spliterator over the keys in ascending order, which reads them leaf by leaf. The
+   * sequence shouldn't be modified while it is in use.
+   */
+  @Override
+  public Spliterator<T> spliterator() {
+    return tree.spliterator();
+  }
+
+  private class Link implements SequenceLink<T> {
+
+    private final T key;
+    private Leaf<T> leaf;
+    private int index;
+
+    private Link(T key, Leaf<T> leaf, int index) {
+      this.key = key;
+      this.leaf = leaf;
+      this.index = index;
+    }
+
+    @Override
+    public T getValue() {
+      return key;
+    }
+
+    @Override
+    public SequenceLink<T> getLeft() {
+      if (!locate()) {
+        return null;
+      }
+      if (index > 0) {
+        return new Link(leaf.key(index - 1), leaf, index - 1);
+      }
+      Leaf<T> previous = leaf.previous();
+      return previous != null
+          ? new Link(previous.key(previous.size() - 1), previous, previous.size() - 1) : null;
+    }
+
+    @Override
+    public SequenceLink<T> getRight() {
+      if (!locate()) {
+        return null;
+      }
+      if (index + 1 < leaf.size()) {
+        return new Link(leaf.key(index + 1), leaf, index + 1);
+      }
+      Leaf<T> next = leaf.next();
+      return next != null ? new Link(next.key(0), next, 0) : null;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof BTreeSequence.Link)) {
+        return false;
+      }
+      BTreeSequence<?, ?>.Link link = (BTreeSequence<?, ?>.Link) other;
+      return key.equals(link.key) && sequence() == link.sequence();
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(key);
+    }
+
+    private BTreeSequence<?, ?> sequence() {
+      return BTreeSequence.this;
+    }
+
+    // checks that the key is still where it was found last, or finds it again; returns false
+    // once the key has been deleted
+    private boolean locate() {
+      if (leaf != null && index < leaf.size() && leaf.key(index) == key) {
+        return true;
+      }
+      leaf = tree.leafOf(key);
+      index = tree.indexOf(leaf, key);
+      if (index < 0) {
+        leaf = null;
+        return false;
+      }
+      return true;
+    }
+  }
+}
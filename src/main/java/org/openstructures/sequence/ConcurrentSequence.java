@@ -0,0 +1,179 @@
+package org.openstructures.sequence;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Thread-safe sequence. It is backed by a concurrent skip list rather than an AVL tree, since
+ * rotations and parent pointers of the tree can't be updated without locking out readers. None of
+ * the operations block: lookups and link traversal are lock-free and writers to different parts of
+ * the sequence don't contend.
+ * <p>
+ * Links don't store their neighbours, they find them in the skip list in O(log n) when asked, so a
+ * link always leads to the neighbours that are part of the sequence at the moment. A link of a
+ * deleted key still leads to the neighbours its key would have.
+ */
+public class ConcurrentSequence<T extends C, C> implements Sequence<T, C> {
+
+  private final ConcurrentNavigableMap<C, ConcurrentLink<T, C>> links;
+  private final LongAdder size; // the skip list counts its entries in O(n)
+
+  public ConcurrentSequence(Comparator<C> comparator) {
+    checkNotNull(comparator);
+
+    this.links = new ConcurrentSkipListMap<>(comparator);
+    this.size = new LongAdder();
+  }
+
+  @Override
+  public SequenceLink<T> insert(T key) {
+    checkNotNull(key, "can't added nulls");
+
+    ConcurrentLink<T, C> link = new ConcurrentLink<>(key, links);
+    checkArgument(links.putIfAbsent(key, link) == null, "%s is already part of the sequence", key);
+    size.increment();
+    return link;
+  }
+
+  @Override
+  public void delete(T key) {
+    checkNotNull(key);
+    if (links.remove(key) != null) {
+      size.decrement();
+    }
+  }
+
+  @Override
+  public SequenceLink<T> get(T key) {
+    checkNotNull(key);
+    return links.get(key);
+  }
+
+  @Override
+  public T greaterThan(C comparable) {
+    checkNotNull(comparable);
+    return valueOf(links.higherEntry(comparable));
+  }
+
+  @Override
+  public T lessThan(C comparable) {
+    checkNotNull(comparable);
+    return valueOf(links.lowerEntry(comparable));
+  }
+
+  @Override
+  public T equalTo(C comparable) {
+    checkNotNull(comparable);
+    ConcurrentLink<T, C> link = links.get(comparable);
+    return link != null ? link.value : null;
+  }
+
+  /**
+   * Returns the number of keys without walking the skip list. While writes are in flight, the count
+   * may lag behind them.
+   */
+  @Override
+  public int size() {
+    return size.intValue();
+  }
+
+  public boolean isEmpty() {
+    return links.isEmpty();
+  }
+
+  /**
+   * Returns a weakly consistent spliterator over the keys in ascending order, which splits the way
+   * the skip list does. It reflects some or none of the writes made while it is in use and never
+   * throws because of them.
+   */
+  @Override
+  public Spliterator<T> spliterator() {
+    return new KeySpliterator<>(links.values().spliterator(), links.comparator());
+  }
+
+  private static <T extends C, C> T valueOf(Map.Entry<C, ConcurrentLink<T, C>> entry) {
+    return entry != null ? entry.getValue().value : null;
+  }
+
+  private static class KeySpliterator<T extends C, C> implements Spliterator<T> {
+
+    private final Spliterator<ConcurrentLink<T, C>> links;
+    private final Comparator<? super C> comparator;
+
+    private KeySpliterator(Spliterator<ConcurrentLink<T, C>> links,
+        Comparator<? super C> comparator) {
+      this.links = links;
+      this.comparator = comparator;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+      checkNotNull(action);
+      return links.tryAdvance(link -> action.accept(link.value));
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+      checkNotNull(action);
+      links.forEachRemaining(link -> action.accept(link.value));
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+      Spliterator<ConcurrentLink<T, C>> prefix = links.trySplit();
+      return prefix != null ? new KeySpliterator<>(prefix, comparator) : null;
+    }
+
+    @Override
+    public long estimateSize() {
+      return links.estimateSize();
+    }
+
+    // the links come in the order of their keys, which are unique
+    @Override
+    public int characteristics() {
+      return links.characteristics() | SORTED | DISTINCT;
+    }
+
+    @Override
+    public Comparator<? super T> getComparator() {
+      return comparator;
+    }
+  }
+
+  private static class ConcurrentLink<T extends C, C> implements SequenceLink<T> {
+
+    private final T value;
+    private final ConcurrentNavigableMap<C, ConcurrentLink<T, C>> links;
+
+    private ConcurrentLink(T value, ConcurrentNavigableMap<C, ConcurrentLink<T, C>> links) {
+      this.value = value;
+      this.links = links;
+    }
+
+    @Override
+    public T getValue() {
+      return value;
+    }
+
+    @Override
+    public SequenceLink<T> getLeft() {
+      Map.Entry<C, ConcurrentLink<T, C>> entry = links.lowerEntry(value);
+      return entry != null ? entry.getValue() : null;
+    }
+
+    @Override
+    public SequenceLink<T> getRight() {
+      Map.Entry<C, ConcurrentLink<T, C>> entry = links.higherEntry(value);
+      return entry != null ? entry.getValue() : null;
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package org.openstructures.sequence;
+
+import java.util.Comparator;
+
+/**
+ * Comparator that reports every call to the metrics. Two of them are equal if they report to the
+ * same metrics and wrap equal comparators, so sequences created with the same comparator and
+ * metrics can still be joined.
+ */
+final class CountingComparator<C> implements Comparator<C> {
+
+  private final Comparator<C> comparator;
+  private final SequenceMetrics metrics;
+
+  CountingComparator(Comparator<C> comparator, SequenceMetrics metrics) {
+    this.comparator = comparator;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public int compare(C left, C right) {
+    metrics.compared();
+    return comparator.compare(left, right);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (!(other instanceof CountingComparator)) {
+      return false;
+    }
+    CountingComparator<?> counting = (CountingComparator<?>) other;
+    return comparator.equals(counting.comparator) && metrics == counting.metrics;
+  }
+
+  @Override
+  public int hashCode() {
+    return comparator.hashCode();
+  }
+}
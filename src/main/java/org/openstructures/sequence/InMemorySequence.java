@@ -2,239 +2,912 @@ package org.openstructures.sequence;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
-import static com.google.common.collect.Maps.newHashMap;
-import static org.openstructures.sequence.avltree.TreeUtils.getLeftmost;
-import static org.openstructures.sequence.avltree.TreeUtils.getRightmost;
-import static org.openstructures.sequence.avltree.TreeUtils.isLeftChild;
-import static org.openstructures.sequence.avltree.TreeUtils.isRightChild;
-
-import org.openstructures.sequence.avltree.AVLNode;
-import org.openstructures.sequence.avltree.AVLTree;
-import java.util.Comparator;
-import java.util.Map;
 
+import com.google.common.collect.Lists;
+import org.openstructures.sequence.avltree.AbstractAVLNode;
+import org.openstructures.sequence.avltree.AbstractAVLTree;
+import org.openstructures.sequence.avltree.Aggregate;
+import org.openstructures.sequence.avltree.NodePool;
+import org.openstructures.sequence.avltree.TreeListener;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Sequence backed by an AVL tree whose nodes are the links of the sequence, so every key costs a
+ * single node and a slot or two of the key index.
+ * <p>
+ * The index answers {@link #get(Object)} in O(1). Joins and splits don't carry it over, which
+ * would take time linear in the keys of one side: their sequences start without an index and
+ * answer {@code get} by a search of the tree in O(log n). Once those searches have cost about an
+ * eighth of indexing all the keys, the next {@code get} builds the index. Until then, inserts and
+ * deletes don't touch it at all. Only {@code get} and the operations taking a link build the
+ * index, the other reads never change the sequence.
+ */
 public class InMemorySequence<T extends C, C> implements Sequence<T, C> {
 
-  private final AVLTree<T> avlTree;
-  private final Map<T, SequenceLinkImpl<T>> keysAndLinks = newHashMap();
+  private static final int SNAPSHOT_MAGIC = 0x5351_5331;
+  // a missing index is built once the searches standing in for it reach 1 / REBUILD_RATIO of keys
+  private static final int REBUILD_RATIO = 8;
+
+  private final LinkedTree<T, C> tree;
   private final Comparator<C> comparator;
+  private LinkIndex<T, SequenceNode<T>> index; // null after a join or split until it is built
+  private int searches; // the lookups answered by the tree since the index went missing
 
   public InMemorySequence(Comparator<C> comparator) {
     checkNotNull(comparator);
 
-    this.avlTree = new AVLTree<>(comparator);
+    this.tree = new LinkedTree<>(comparator);
+    this.index = new LinkIndex<>();
     this.comparator = comparator;
   }
 
-  private InMemorySequence(AVLTree<T> avlTree, Comparator<C> comparator) {
-    this.avlTree = avlTree;
+  /**
+   * Creates a sequence that keeps the aggregate of the keys of every subtree up to date, so the
+   * aggregate of any range of keys takes O(log n), see
+   * {@link #aggregate(Aggregate, Object, Object)}. Joined sequences have to maintain the same
+   * aggregate, and both parts of a split maintain it.
+   */
+  public InMemorySequence(Comparator<C> comparator, Aggregate<? super T, ?> aggregate) {
+    checkNotNull(comparator);
+    checkNotNull(aggregate);
+
+    this.tree = new LinkedTree<>(comparator, aggregate);
+    this.index = new LinkIndex<>();
     this.comparator = comparator;
   }
 
+  /**
+   * Creates a sequence that reports every comparison and the re-balancing of its tree to the
+   * metrics, as do the sequences split off it. Wrap it in an {@link InstrumentedSequence} with the
+   * same metrics to have its operations timed too. Sequences of the same comparator and metrics can
+   * be joined.
+   */
+  public InMemorySequence(Comparator<C> comparator, SequenceMetrics metrics) {
+    checkNotNull(comparator);
+    checkNotNull(metrics);
+
+    this.comparator = new CountingComparator<>(comparator, metrics);
+    this.tree = new LinkedTree<>(this.comparator);
+    this.tree.listen(metrics);
+    this.index = new LinkIndex<>();
+  }
+
+  /**
+   * Creates a sequence that recycles the nodes of deleted keys for new keys and allocates nodes in
+   * slabs, see {@link NodePool}. With the key index, which allocates nothing either unless it
+   * grows, inserts and deletes at a steady size allocate nothing at all. At most {@code maxIdle}
+   * deleted nodes are kept for reuse. Links are the nodes, so the link of a deleted key must not be
+   * used anymore: it is handed out again as the link of another key. Both parts of a split recycle
+   * nodes too.
+   */
+  public static <T extends C, C> InMemorySequence<T, C> pooled(Comparator<C> comparator,
+      int maxIdle) {
+    checkNotNull(comparator);
+
+    LinkedTree<T, C> tree = new LinkedTree<>(comparator,
+        new NodePool<T, SequenceNode<T>>(SequenceNode::new, maxIdle));
+    return new InMemorySequence<>(tree, new LinkIndex<>(), comparator);
+  }
+
+  private InMemorySequence(LinkedTree<T, C> tree, LinkIndex<T, SequenceNode<T>> index,
+      Comparator<C> comparator) {
+    this.tree = tree;
+    this.index = index;
+    this.comparator = comparator;
+  }
+
+  /**
+   * Creates a sequence from keys sorted in ascending order without duplicates in O(n). The tree is
+   * built perfectly balanced, and its nodes are linked and indexed in the same pass.
+   */
+  public static <T extends C, C> InMemorySequence<T, C> fromSorted(Iterable<? extends T> keys,
+      Comparator<C> comparator) {
+    checkNotNull(keys);
+    checkNotNull(comparator);
+
+    if (keys instanceof Collection) {
+      int size = ((Collection<? extends T>) keys).size();
+      LinkIndex<T, SequenceNode<T>> index = new LinkIndex<>(size);
+      LinkedTree<T, C> tree = new LinkedTree<>(comparator);
+      tree.build(keys.iterator(), size, node -> index.put(node));
+      return new InMemorySequence<>(tree, index, comparator);
+    } else {
+      return fromSorted(keys.iterator(), comparator);
+    }
+  }
+
+  /**
+   * Same as {@link #fromSorted(Iterable, Comparator)}. The keys are buffered first, since the shape
+   * of the tree depends on their number.
+   */
+  public static <T extends C, C> InMemorySequence<T, C> fromSorted(Iterator<? extends T> keys,
+      Comparator<C> comparator) {
+    checkNotNull(keys);
+
+    return fromSorted(Lists.newArrayList(keys), comparator);
+  }
+
+  /**
+   * Restores a sequence from a snapshot written by
+   * {@link #writeSnapshot(OutputStream, KeySerializer)} in O(n). Keys are read as the tree is
+   * built, so they are never buffered, and the tree is built perfectly balanced and linked the way
+   * {@link #fromSorted(Iterable, Comparator)} builds it, without a single insert. The stream is
+   * read through a buffer of its own, so it shouldn't hold anything but the snapshot, and it isn't
+   * closed. A malformed snapshot fails with an {@link IOException}.
+   */
+  public static <T extends C, C> InMemorySequence<T, C> readSnapshot(InputStream in,
+      KeySerializer<T> serializer, Comparator<C> comparator) throws IOException {
+    checkNotNull(in);
+    checkNotNull(serializer);
+    checkNotNull(comparator);
+
+    DataInputStream data = new DataInputStream(new SnapshotBuffers.Input(in));
+    if (data.readInt() != SNAPSHOT_MAGIC) {
+      throw new IOException("the stream doesn't hold a snapshot of a sequence");
+    }
+    int size = data.readInt();
+    if (size < 0) {
+      throw new IOException("the snapshot holds " + size + " keys");
+    }
+
+    LinkIndex<T, SequenceNode<T>> index = new LinkIndex<>(size);
+    LinkedTree<T, C> tree = new LinkedTree<>(comparator);
+    try {
+      tree.build(new SnapshotKeys<>(data, size, serializer, comparator), size,
+          node -> index.put(node));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    return new InMemorySequence<>(tree, index, comparator);
+  }
+
+  /**
+   * Same as {@link #readSnapshot(InputStream, KeySerializer, Comparator)}, reading from the
+   * channel, e.g. a {@link java.nio.channels.FileChannel}, which isn't closed.
+   */
+  public static <T extends C, C> InMemorySequence<T, C> readSnapshot(ReadableByteChannel channel,
+      KeySerializer<T> serializer, Comparator<C> comparator) throws IOException {
+    checkNotNull(channel);
+
+    return readSnapshot(Channels.newInputStream(channel), serializer, comparator);
+  }
+
+  /**
+   * Joins two sequences, all keys of the left have to be less than keys of the right, in
+   * O(log n). The joined sequence starts without a key index, see the class description. Both
+   * sequences are consumed and should not be used afterwards.
+   */
   public static <T extends C, C> InMemorySequence<T, C> join(InMemorySequence<T, C> left,
       InMemorySequence<T, C> right) {
     checkNotNull(left);
     checkNotNull(right);
     checkArgument(left.comparator.equals(right.comparator));
 
-    T leftRightmost = !left.isEmpty() ? getRightmost(left.avlTree.getRoot()).getValue() : null;
-    T rightLeftmost = !right.isEmpty() ? getLeftmost(right.avlTree.getRoot()).getValue() : null;
+    left.tree.join(right.tree);
 
-    AVLTree<T> tree = AVLTree.join(left.avlTree, right.avlTree);
+    return new InMemorySequence<>(left.tree, null, left.comparator);
+  }
 
-    InMemorySequence<T, C> newSequence = new InMemorySequence<>(tree, left.comparator);
-    newSequence.keysAndLinks.putAll(left.keysAndLinks);
-    newSequence.keysAndLinks.putAll(right.keysAndLinks);
-    if (leftRightmost != null && rightLeftmost != null) {
-      join(newSequence.keysAndLinks.get(leftRightmost),
-          newSequence.keysAndLinks.get(rightLeftmost));
-    }
+  /**
+   * Splits the sequence into the sequence of keys less than the pivot and the sequence of keys
+   * greater than or equal to the pivot in O(log n). Both parts start without a key index, see the
+   * class description. The links between the two parts are cut. This sequence is consumed and
+   * should not be used afterwards.
+   */
+  public Split<T, C> split(C pivot) {
+    checkNotNull(pivot);
+
+    LinkedTree<T, C> rightTree = tree.emptyCopy(comparator);
+    tree.split(key -> comparator.compare(key, pivot) < 0, rightTree);
 
-    return newSequence;
+    return new Split<>(new InMemorySequence<>(tree, null, comparator),
+        new InMemorySequence<>(rightTree, null, comparator));
   }
 
   @Override
   public SequenceLink<T> insert(T key) {
     checkNotNull(key, "can't added nulls");
-    checkArgument(!keysAndLinks.containsKey(key), "%s is already part of the sequence", key);
-
-    AVLNode<T> node = avlTree.insert(key);
-    SequenceLinkImpl<T> link = new SequenceLinkImpl<>(key);
-    AVLNode<T> nextLeftNode = getNextLeft(node);
-    if (nextLeftNode != null) {
-      SequenceLinkImpl<T> leftLink = keysAndLinks.get(nextLeftNode.getValue());
-      SequenceLinkImpl<T> leftRight = leftLink.right;
-      leftLink.right = link;
-      link.left = leftLink;
-      if (leftRight != null) {
-        link.right = leftRight;
-        leftRight.left = link;
-      }
-    } else {
-      AVLNode<T> nextRightNode = getNextRight(node);
-      if (nextRightNode != null) {
-        SequenceLinkImpl<T> nextRight = keysAndLinks.get(nextRightNode.getValue());
-        link.right = nextRight;
-        nextRight.left = link;
-      }
-    }
 
-    keysAndLinks.put(key, link);
-    return get(key);
+    SequenceNode<T> node = tree.insert(key);
+    indexed(node);
+    return node;
+  }
+
+  /**
+   * Inserts the key, looking for its place from the hint, a link of this sequence, rather than
+   * from the root of the tree. A key that goes right before or after the hint is placed after two
+   * comparisons, so appending after the latest key of a time series takes a constant number of
+   * them. A key further away is searched for from the lowest ancestor of the hint that covers it,
+   * which for keys close to the hint is usually close to the hint too. It pays off for hints that
+   * were touched recently: climbing from a hint that is no longer in the cache misses on every
+   * level, while the top levels a search from the root goes through stay in the cache.
+   */
+  public SequenceLink<T> insertNear(SequenceLink<T> hint, T key) {
+    checkNotNull(key, "can't added nulls");
+
+    SequenceNode<T> node = tree.insertNear(nodeOf(hint), key);
+    indexed(node);
+    return node;
   }
 
   @Override
   public void delete(T key) {
     checkNotNull(key);
-    if (keysAndLinks.containsKey(key)) {
-      avlTree.delete(key);
-      SequenceLinkImpl<T> link = keysAndLinks.get(key);
-      join(link.left, link.right);
-      keysAndLinks.remove(key);
+    SequenceNode<T> node = index != null ? index.remove(key) : search(key);
+    if (node != null) {
+      tree.delete(node);
+    }
+  }
+
+  /**
+   * Sorts the keys and inserts them at once. A batch of m keys that is large compared to the n keys
+   * of the sequence is merged with the linked keys and the tree is rebuilt in O(n + m), links
+   * included, instead of taking m separate inserts. Nothing is inserted if any of the keys is null,
+   * duplicated or already part of the sequence, where keys are the same if the comparator finds
+   * them equal, see {@link AbstractAVLTree#insertSorted(List, int, Consumer)}.
+   */
+  @Override
+  public void insertAll(Collection<? extends T> keys) {
+    checkNotNull(keys);
+
+    List<T> sortedKeys = new ArrayList<>(keys);
+    for (T key : sortedKeys) {
+      checkNotNull(key, "can't added nulls");
+      checkArgument(index == null || !index.containsKey(key), "%s is already part of the sequence",
+          key);
     }
+    sortedKeys.sort(comparator);
+    for (int i = 1; i < sortedKeys.size(); i++) {
+      checkArgument(comparator.compare(sortedKeys.get(i - 1), sortedKeys.get(i)) != 0,
+          "%s is duplicated", sortedKeys.get(i));
+    }
+
+    tree.insert(sortedKeys, tree.size(), this::indexed);
   }
 
+  /**
+   * Deletes the keys at once, rebuilding the tree from the remaining linked keys in O(n) when the
+   * batch is large compared to the sequence. Keys that aren't part of the sequence are skipped.
+   * Nothing is deleted if any of the keys is null.
+   */
+  @Override
+  public void deleteAll(Collection<? extends T> keys) {
+    checkNotNull(keys);
+
+    List<T> batch = new ArrayList<>(keys);
+    for (T key : batch) {
+      checkNotNull(key);
+    }
+    List<SequenceNode<T>> nodes = new ArrayList<>(batch.size());
+    for (T key : batch) {
+      SequenceNode<T> node = index != null ? index.remove(key) : search(key);
+      if (node != null) {
+        nodes.add(node);
+      }
+    }
+    nodes.sort((left, right) -> comparator.compare(left.getValue(), right.getValue()));
+    // a key repeated in the batch is found again by a search, while the index gives it up once
+    int distinct = 0;
+    for (int i = 0; i < nodes.size(); i++) {
+      if (distinct == 0 || nodes.get(distinct - 1) != nodes.get(i)) {
+        nodes.set(distinct++, nodes.get(i));
+      }
+    }
+    tree.delete(nodes.subList(0, distinct), tree.size());
+  }
+
+  /**
+   * Returns the link of the key from the key index in O(1), or from a search of the tree in
+   * O(log n) while the sequence has no index, see the class description.
+   */
   @Override
   public SequenceLink<T> get(T key) {
     checkNotNull(key);
-    return keysAndLinks.get(key);
+    return lookUp(key);
   }
 
   @Override
   public T greaterThan(C comparable) {
     checkNotNull(comparable);
-    if (isEmpty()) {
-      return null;
-    } else {
-      return greaterThan(comparable, avlTree.getRoot());
-    }
+    return valueOf(tree.higher(comparable));
   }
 
   @Override
   public T lessThan(C comparable) {
     checkNotNull(comparable);
-    if (isEmpty()) {
-      return null;
-    } else {
-      return lessThan(comparable, avlTree.getRoot());
-    }
+    return valueOf(tree.lower(comparable));
   }
 
   @Override
   public T equalTo(C comparable) {
     checkNotNull(comparable);
-    if (isEmpty()) {
-      return null;
-    } else {
-      return equalTo(comparable, avlTree.getRoot());
+    return valueOf(tree.find(comparable));
+  }
+
+  /**
+   * Same as {@link #equalTo(Object)}, searching from the hint, a link of this sequence, rather than
+   * from the root of the tree. The search climbs from the hint only as far as the lowest ancestor
+   * that covers the comparable, see {@link #insertNear(SequenceLink, Object)}.
+   */
+  public T equalTo(SequenceLink<T> hint, C comparable) {
+    checkNotNull(comparable);
+    return valueOf(tree.findNear(nodeOf(hint), comparable));
+  }
+
+  /**
+   * Same as {@link #greaterThan(Object)}, searching from the hint like
+   * {@link #equalTo(SequenceLink, Object)}.
+   */
+  public T greaterThan(SequenceLink<T> hint, C comparable) {
+    checkNotNull(comparable);
+    return valueOf(tree.higherNear(nodeOf(hint), comparable));
+  }
+
+  /**
+   * Same as {@link #lessThan(Object)}, searching from the hint like
+   * {@link #equalTo(SequenceLink, Object)}.
+   */
+  public T lessThan(SequenceLink<T> hint, C comparable) {
+    checkNotNull(comparable);
+    return valueOf(tree.lowerNear(nodeOf(hint), comparable));
+  }
+
+  /**
+   * Returns the greatest key less than or equal to the comparable or null if there is none.
+   */
+  public T floor(C comparable) {
+    checkNotNull(comparable);
+    return valueOf(tree.floor(comparable));
+  }
+
+  /**
+   * Returns the smallest key greater than or equal to the comparable or null if there is none.
+   */
+  public T ceiling(C comparable) {
+    checkNotNull(comparable);
+    return valueOf(tree.ceiling(comparable));
+  }
+
+  @Override
+  public int size() {
+    return tree.size();
+  }
+
+  /**
+   * Returns the number of keys less than the comparable in O(log n), counted with the subtree sizes
+   * kept in the tree.
+   */
+  public int rank(C comparable) {
+    checkNotNull(comparable);
+    return tree.rankOf(comparable, false);
+  }
+
+  /**
+   * Returns the key at the index in ascending order in O(log n). Throws
+   * {@link IndexOutOfBoundsException} unless the index is between 0 and the size of the sequence.
+   */
+  public T select(int index) {
+    return tree.select(index).getValue();
+  }
+
+  /**
+   * Returns a lazy cursor over the keys between from and to in ascending order. Both ends of the
+   * range are found by a descent of the tree in O(log n). From then on the cursor follows the links
+   * up to the last node of the range, which takes no comparisons and allocates nothing but the
+   * cursor. The sequence shouldn't be modified while the cursor is in use.
+   */
+  public Iterator<T> range(C from, boolean fromInclusive, C to, boolean toInclusive) {
+    checkNotNull(from);
+    checkNotNull(to);
+
+    SequenceNode<T> first = fromInclusive ? tree.ceiling(from) : tree.higher(from);
+    SequenceNode<T> last = toInclusive ? tree.floor(to) : tree.lower(to);
+    if (first == null || last == null
+        || comparator.compare(first.getValue(), last.getValue()) > 0) {
+      return Collections.emptyIterator();
     }
+    return new RangeCursor<>(first, last);
   }
 
-  private T equalTo(C comparable, AVLNode<T> node) {
-    if (node == null) {
-      return null;
-    } else if (comparator.compare(comparable, node.getValue()) == 0) {
-      return node.getValue();
-    } else if (comparator.compare(comparable, node.getValue()) < 0) {
-      return equalTo(comparable, node.getLeft());
-    } else {
-      return equalTo(comparable, node.getRight());
+  /**
+   * Returns the number of keys between from and to in O(log n), as the difference of the ranks of
+   * the two ends, without visiting the keys in between.
+   */
+  public int countRange(C from, boolean fromInclusive, C to, boolean toInclusive) {
+    checkNotNull(from);
+    checkNotNull(to);
+
+    int count = tree.rankOf(to, toInclusive) - tree.rankOf(from, !fromInclusive);
+    return Math.max(count, 0);
+  }
+
+  /**
+   * Returns a {@link NavigableSet} view of the keys, backed by the tree and the links rather than a
+   * copy. Sub-set views search the tree for their ends and count their keys in O(log n). Keys
+   * removed through the view are deleted from the sequence, but keys can't be added through it.
+   */
+  public NavigableSet<T> asNavigableSet() {
+    return new SequenceSetView<>(NodeRange.all(new Nodes()));
+  }
+
+  /**
+   * Returns a spliterator over the keys in ascending order that splits at the roots of subtrees,
+   * with exact sizes taken from the tree. The sequence shouldn't be modified while it is in use.
+   */
+  @Override
+  public Spliterator<T> spliterator() {
+    return tree.spliteratorOf(0, tree.size());
+  }
+
+  /**
+   * Writes a snapshot of the keys in ascending order, following the links, which
+   * {@link #readSnapshot(InputStream, KeySerializer, Comparator)} restores in O(n). Every key is
+   * written relative to the previous one, so serializers of {@link KeySerializers} write dense
+   * numeric keys in a byte or two. The stream is written through a buffer, flushed at the end, and
+   * isn't closed. The sequence shouldn't be modified while the snapshot is written.
+   */
+  public void writeSnapshot(OutputStream out, KeySerializer<? super T> serializer)
+      throws IOException {
+    checkNotNull(out);
+    checkNotNull(serializer);
+
+    DataOutputStream data = new DataOutputStream(new SnapshotBuffers.Output(out));
+    data.writeInt(SNAPSHOT_MAGIC);
+    data.writeInt(size());
+    T previous = null;
+    for (SequenceNode<T> node = tree.first(); node != null; node = node.getRight()) {
+      serializer.write(previous, node.getValue(), data);
+      previous = node.getValue();
     }
+    data.flush();
   }
 
-  private T lessThan(C comparable, AVLNode<T> node) {
-    if (comparator.compare(node.getValue(), comparable) < 0) {
-      if (node.getRight() != null) {
-        T result = lessThan(comparable, node.getRight());
-        if (result != null) {
-          return result;
-        }
+  /**
+   * Same as {@link #writeSnapshot(OutputStream, KeySerializer)}, writing to the channel, e.g. a
+   * {@link java.nio.channels.FileChannel}, which isn't closed.
+   */
+  public void writeSnapshot(WritableByteChannel channel, KeySerializer<? super T> serializer)
+      throws IOException {
+    checkNotNull(channel);
+
+    writeSnapshot(Channels.newOutputStream(channel), serializer);
+  }
+
+  // the node of a link handed out by this sequence, whose key hasn't been deleted since
+  private SequenceNode<T> nodeOf(SequenceLink<T> link) {
+    checkNotNull(link);
+    SequenceNode<T> node = lookUp(link.getValue());
+    checkArgument(node == link, "%s isn't a link of the sequence", link.getValue());
+    return node;
+  }
+
+  private SequenceNode<T> lookUp(T key) {
+    if (index == null && ++searches * REBUILD_RATIO >= tree.size()) {
+      LinkIndex<T, SequenceNode<T>> built = new LinkIndex<>(tree.size());
+      for (SequenceNode<T> node = tree.first(); node != null; node = node.getRight()) {
+        built.put(node);
       }
-      return node.getValue();
-    } else if (node.getLeft() != null) {
-      return lessThan(comparable, node.getLeft());
-    } else {
-      return null;
+      index = built;
+      searches = 0;
     }
+    return index != null ? index.get(key) : search(key);
   }
 
-  private T greaterThan(C comparable, AVLNode<T> node) {
-    if (comparator.compare(node.getValue(), comparable) > 0) {
-      if (node.getLeft() != null) {
-        T result = greaterThan(comparable, node.getLeft());
-        if (result != null) {
-          return result;
-        }
-      }
-      return node.getValue();
-    } else if (node.getRight() != null) {
-      return greaterThan(comparable, node.getRight());
-    } else {
-      return null;
+  // finds the node of the key the way the index would, whose keys are the equal ones
+  private SequenceNode<T> search(T key) {
+    SequenceNode<T> node = tree.find(key);
+    return node != null && key.equals(node.getValue()) ? node : null;
+  }
+
+  private void indexed(SequenceNode<T> node) {
+    if (index != null) {
+      index.put(node);
     }
   }
 
-  private static <T> void join(SequenceLinkImpl<T> left, SequenceLinkImpl<T> right) {
-    if (left != null) {
-      left.right = right;
+  private static <T> T valueOf(SequenceNode<T> node) {
+    return node != null ? node.getValue() : null;
+  }
+
+  /**
+   * Returns the aggregate of the keys greater than or equal to {@code from} and less than
+   * {@code to} in O(log n), e.g. the sum over a window of a rolling metric, without visiting the
+   * keys. The aggregate has to be the one the sequence was created with.
+   */
+  public <A> A aggregate(Aggregate<? super T, A> aggregate, C from, C to) {
+    return tree.aggregateOf(aggregate, from, to);
+  }
+
+  // passes the matching keys before the end in ascending order, skipping the subtrees whose
+  // aggregates don't match, see AbstractAVLTree#forEachMatchingNode
+  <A> void forEachMatching(Aggregate<? super T, A> aggregate, Predicate<? super A> matches,
+      Predicate<? super T> beforeEnd, Consumer<? super T> action) {
+    tree.forEachMatching(aggregate, matches, beforeEnd, node -> action.accept(node.getValue()));
+  }
+
+  public boolean isEmpty() {
+    return tree.isEmpty();
+  }
+
+  /**
+   * Returns the height of the tree, -1 if the sequence is empty. An AVL tree of n keys is at most
+   * about 1.44 log2(n) high.
+   */
+  public int height() {
+    return tree.height();
+  }
+
+  public static class Split<T extends C, C> {
+
+    private final InMemorySequence<T, C> left;
+    private final InMemorySequence<T, C> right;
+
+    private Split(InMemorySequence<T, C> left, InMemorySequence<T, C> right) {
+      this.left = left;
+      this.right = right;
+    }
+
+    /**
+     * Returns the sequence of keys less than the pivot.
+     */
+    public InMemorySequence<T, C> getLeft() {
+      return left;
     }
-    if (right != null) {
-      right.left = left;
+
+    /**
+     * Returns the sequence of keys greater than or equal to the pivot.
+     */
+    public InMemorySequence<T, C> getRight() {
+      return right;
     }
   }
 
-  private static <T> AVLNode<T> getNextLeft(AVLNode<T> node) {
-    if (node.getLeft() != null) {
-      return getRightmost(node.getLeft());
-    } else if (node.getParent() != null) {
-      if (node.equals(node.getParent().getRight())) {
-        return node.getParent();
-      } else if (isRightChild(node.getParent())) {
-        return node.getParent().getParent();
-      }
+  /**
+   * Node of the tree and link of the sequence at the same time. Its left and right are the
+   * neighbours in the sequence, not the children in the tree.
+   */
+  private static class SequenceNode<T> extends AbstractAVLNode<T, SequenceNode<T>> implements
+      SequenceLink<T> {
+
+    private SequenceNode(T value) {
+      super(value);
+    }
+
+    private SequenceNode() {
+    }
+
+    @Override
+    public SequenceNode<T> getLeft() {
+      return previous();
+    }
+
+    @Override
+    public SequenceNode<T> getRight() {
+      return next();
     }
-    return null;
   }
 
-  private static <T> AVLNode<T> getNextRight(AVLNode<T> node) {
-    if (node.getRight() != null) {
-      return getLeftmost(node.getLeft());
-    } else if (node.getParent() != null) {
-      if (node.equals(node.getParent().getLeft())) {
-        return node.getParent();
-      } else if (isLeftChild(node.getParent())) {
-        return node.getParent().getParent();
+  private static class RangeCursor<T> implements Iterator<T> {
+
+    private final SequenceNode<T> last;
+    private SequenceNode<T> next;
+
+    private RangeCursor(SequenceNode<T> first, SequenceNode<T> last) {
+      this.next = first;
+      this.last = last;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public T next() {
+      if (next == null) {
+        throw new NoSuchElementException();
       }
+      SequenceNode<T> node = next;
+      next = node != last ? node.getRight() : null;
+      return node.getValue();
     }
-    return null;
   }
 
-  public boolean isEmpty() {
-    return avlTree.isEmpty();
+  /**
+   * Keys read from a snapshot one at a time while the tree is built. Read failures are rethrown
+   * unchecked, since the builder takes an iterator, and keys out of order are rejected rather than
+   * built into a broken tree.
+   */
+  private static class SnapshotKeys<T extends C, C> implements Iterator<T> {
+
+    private final DataInputStream data;
+    private final KeySerializer<T> serializer;
+    private final Comparator<C> comparator;
+    private int remaining;
+    private T previous;
+
+    private SnapshotKeys(DataInputStream data, int size, KeySerializer<T> serializer,
+        Comparator<C> comparator) {
+      this.data = data;
+      this.remaining = size;
+      this.serializer = serializer;
+      this.comparator = comparator;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return remaining > 0;
+    }
+
+    @Override
+    public T next() {
+      if (remaining == 0) {
+        throw new NoSuchElementException();
+      }
+      try {
+        T key = serializer.read(previous, data);
+        if (key == null) {
+          throw new IOException("the snapshot holds a null key");
+        }
+        if (previous != null && comparator.compare(previous, key) >= 0) {
+          throw new IOException("the snapshot holds " + previous + " followed by " + key);
+        }
+        remaining--;
+        previous = key;
+        return key;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
   }
 
-  private static class SequenceLinkImpl<T> implements SequenceLink<T> {
+  private class Nodes implements SequenceNodes<T, C, SequenceNode<T>> {
 
-    private final T value;
-    private SequenceLinkImpl<T> left, right;
+    @Override
+    public Comparator<? super C> comparator() {
+      return comparator;
+    }
 
-    private SequenceLinkImpl(T value) {
-      this.value = value;
+    @Override
+    public T keyOf(SequenceNode<T> node) {
+      return node.getValue();
     }
 
     @Override
-    public T getValue() {
-      return value;
+    public SequenceNode<T> next(SequenceNode<T> node) {
+      return node.getRight();
     }
 
     @Override
-    public SequenceLink<T> getLeft() {
-      return left;
+    public SequenceNode<T> previous(SequenceNode<T> node) {
+      return node.getLeft();
     }
 
     @Override
-    public SequenceLink<T> getRight() {
-      return right;
+    public SequenceNode<T> first() {
+      return tree.first();
+    }
+
+    @Override
+    public SequenceNode<T> last() {
+      return tree.last();
+    }
+
+    @Override
+    public SequenceNode<T> find(C key) {
+      return tree.find(key);
+    }
+
+    @Override
+    public SequenceNode<T> ceiling(C key) {
+      return tree.ceiling(key);
+    }
+
+    @Override
+    public SequenceNode<T> higher(C key) {
+      return tree.higher(key);
+    }
+
+    @Override
+    public SequenceNode<T> floor(C key) {
+      return tree.floor(key);
+    }
+
+    @Override
+    public SequenceNode<T> lower(C key) {
+      return tree.lower(key);
+    }
+
+    @Override
+    public int rank(C key, boolean inclusive) {
+      return tree.rankOf(key, inclusive);
+    }
+
+    @Override
+    public int size() {
+      return tree.size();
+    }
+
+    @Override
+    public Spliterator<T> spliterator(int fromIndex, int toIndex) {
+      return tree.spliteratorOf(fromIndex, toIndex);
+    }
+
+    @Override
+    public SequenceNode<T> insert(T key) {
+      SequenceNode<T> node = tree.insert(key);
+      indexed(node);
+      return node;
+    }
+
+    @Override
+    public void delete(SequenceNode<T> node) {
+      if (index != null) {
+        index.remove(node.getValue());
+      }
+      tree.delete(node);
+    }
+  }
+
+  private static class LinkedTree<T extends C, C> extends
+      AbstractAVLTree<T, C, SequenceNode<T>> {
+
+    private final NodePool<T, SequenceNode<T>> pool; // null unless nodes are recycled
+
+    private LinkedTree(Comparator<C> comparator) {
+      super(comparator);
+      this.pool = null;
+    }
+
+    private LinkedTree(Comparator<C> comparator, Aggregate<? super T, ?> aggregate) {
+      super(comparator, aggregate);
+      this.pool = null;
+    }
+
+    private LinkedTree(Comparator<C> comparator, NodePool<T, SequenceNode<T>> pool) {
+      super(comparator);
+      this.pool = pool;
+    }
+
+    // an empty tree that maintains the same aggregate, if any, and recycles nodes if this one does
+    private LinkedTree<T, C> emptyCopy(Comparator<C> comparator) {
+      if (pool != null) {
+        return new LinkedTree<>(comparator, pool.emptyCopy());
+      }
+      return aggregate != null ? new LinkedTree<>(comparator, aggregate)
+          : new LinkedTree<>(comparator);
+    }
+
+    private void listen(TreeListener listener) {
+      setListener(listener);
+    }
+
+    private <A> A aggregateOf(Aggregate<? super T, A> aggregate, C from, C to) {
+      return aggregate(aggregate, from, to);
+    }
+
+    private <A> void forEachMatching(Aggregate<? super T, A> aggregate,
+        Predicate<? super A> matches, Predicate<? super T> beforeEnd,
+        Consumer<? super SequenceNode<T>> consumer) {
+      forEachMatchingNode(aggregate, matches, beforeEnd, consumer);
+    }
+
+    @Override
+    protected SequenceNode<T> newNode(T value) {
+      return pool != null ? pool.take(value) : new SequenceNode<>(value);
+    }
+
+    private SequenceNode<T> insert(T key) {
+      return insertNode(key);
+    }
+
+    private void delete(SequenceNode<T> node) {
+      deleteNode(node);
+      if (pool != null) {
+        pool.give(node);
+      }
+    }
+
+    private void insert(List<T> sortedKeys, int size,
+        Consumer<? super SequenceNode<T>> nodeConsumer) {
+      insertSorted(sortedKeys, size, nodeConsumer);
+    }
+
+    private void delete(List<SequenceNode<T>> sortedNodes, int size) {
+      deleteSorted(sortedNodes, size);
+      if (pool != null) {
+        for (SequenceNode<T> node : sortedNodes) {
+          pool.give(node);
+        }
+      }
+    }
+
+    private int rankOf(C key, boolean inclusive) {
+      return rank(key, inclusive);
+    }
+
+    private SequenceNode<T> select(int index) {
+      return selectNode(index);
+    }
+
+    private Spliterator<T> spliteratorOf(int fromIndex, int toIndex) {
+      return spliterator(fromIndex, toIndex);
+    }
+
+    private SequenceNode<T> insertNear(SequenceNode<T> hint, T key) {
+      return insertNodeNear(hint, key);
+    }
+
+    private SequenceNode<T> findNear(SequenceNode<T> hint, C key) {
+      return findNodeNear(hint, key);
+    }
+
+    private SequenceNode<T> higherNear(SequenceNode<T> hint, C key) {
+      return higherNodeNear(hint, key);
+    }
+
+    private SequenceNode<T> lowerNear(SequenceNode<T> hint, C key) {
+      return lowerNodeNear(hint, key);
+    }
+
+    private SequenceNode<T> find(C key) {
+      return findNode(key);
+    }
+
+    private SequenceNode<T> higher(C key) {
+      return higherNode(key);
+    }
+
+    private SequenceNode<T> lower(C key) {
+      return lowerNode(key);
+    }
+
+    private SequenceNode<T> ceiling(C key) {
+      return ceilingNode(key);
+    }
+
+    private SequenceNode<T> floor(C key) {
+      return floorNode(key);
+    }
+
+    private SequenceNode<T> first() {
+      return firstNode();
+    }
+
+    private SequenceNode<T> last() {
+      return lastNode();
+    }
+
+    private void join(LinkedTree<T, C> right) {
+      joinWith(right);
+    }
+
+    private void split(Predicate<? super T> belongsToLeft, LinkedTree<T, C> right) {
+      splitInto(belongsToLeft, right);
+    }
+
+    private void build(Iterator<? extends T> keys, int size,
+        Consumer<? super SequenceNode<T>> nodeConsumer) {
+      buildFromSorted(keys, size, nodeConsumer);
     }
   }
 }
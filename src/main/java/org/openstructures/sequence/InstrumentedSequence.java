@@ -0,0 +1,117 @@
+package org.openstructures.sequence;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collection;
+import java.util.Spliterator;
+import org.openstructures.sequence.SequenceMetrics.Operation;
+
+/**
+ * Sequence that reports every operation of the sequence it wraps, with its latency, to the metrics.
+ * It costs two reads of {@link System#nanoTime()} per operation. Sequences that aren't wrapped pay
+ * nothing, and an {@link InMemorySequence} created with the same metrics reports its comparisons
+ * and re-balancing as well. Traversal isn't timed.
+ */
+public class InstrumentedSequence<T extends C, C> implements Sequence<T, C> {
+
+  private final Sequence<T, C> sequence;
+  private final SequenceMetrics metrics;
+
+  public InstrumentedSequence(Sequence<T, C> sequence, SequenceMetrics metrics) {
+    checkNotNull(sequence);
+    checkNotNull(metrics);
+
+    this.sequence = sequence;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public SequenceLink<T> insert(T key) {
+    long start = System.nanoTime();
+    try {
+      return sequence.insert(key);
+    } finally {
+      metrics.operation(Operation.INSERT, System.nanoTime() - start);
+    }
+  }
+
+  @Override
+  public void delete(T key) {
+    long start = System.nanoTime();
+    try {
+      sequence.delete(key);
+    } finally {
+      metrics.operation(Operation.DELETE, System.nanoTime() - start);
+    }
+  }
+
+  @Override
+  public void insertAll(Collection<? extends T> keys) {
+    long start = System.nanoTime();
+    try {
+      sequence.insertAll(keys);
+    } finally {
+      metrics.operation(Operation.INSERT_ALL, System.nanoTime() - start);
+    }
+  }
+
+  @Override
+  public void deleteAll(Collection<? extends T> keys) {
+    long start = System.nanoTime();
+    try {
+      sequence.deleteAll(keys);
+    } finally {
+      metrics.operation(Operation.DELETE_ALL, System.nanoTime() - start);
+    }
+  }
+
+  @Override
+  public SequenceLink<T> get(T key) {
+    long start = System.nanoTime();
+    try {
+      return sequence.get(key);
+    } finally {
+      metrics.operation(Operation.GET, System.nanoTime() - start);
+    }
+  }
+
+  @Override
+  public T greaterThan(C comparable) {
+    long start = System.nanoTime();
+    try {
+      return sequence.greaterThan(comparable);
+    } finally {
+      metrics.operation(Operation.GREATER_THAN, System.nanoTime() - start);
+    }
+  }
+
+  @Override
+  public T lessThan(C comparable) {
+    long start = System.nanoTime();
+    try {
+      return sequence.lessThan(comparable);
+    } finally {
+      metrics.operation(Operation.LESS_THAN, System.nanoTime() - start);
+    }
+  }
+
+  @Override
+  public T equalTo(C comparable) {
+    long start = System.nanoTime();
+    try {
+      return sequence.equalTo(comparable);
+    } finally {
+      metrics.operation(Operation.EQUAL_TO, System.nanoTime() - start);
+    }
+  }
+
+  @Override
+  public int size() {
+    return sequence.size();
+  }
+
+  @Override
+  public Spliterator<T> spliterator() {
+    return sequence.spliterator();
+  }
+}
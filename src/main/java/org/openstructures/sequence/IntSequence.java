@@ -0,0 +1,185 @@
+package org.openstructures.sequence;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import org.openstructures.sequence.avltree.ArrayAVLTree;
+
+/**
+ * Sequence of {@code int} keys. It works like {@link LongSequence}, with which it shares the
+ * searches, but keeps the keys in an {@code int} array, so a key costs half the memory. Keys are
+ * widened to {@code long} for comparisons only.
+ * <p>
+ * The no-key value, {@link Integer#MIN_VALUE} unless chosen otherwise, plays the part of null: it
+ * is returned when there is no key to return and it can't be inserted.
+ * <p>
+ * Links are small objects created on demand, by {@link #get(int)} and by every step to a neighbour.
+ * Walks that shouldn't allocate use a {@link #cursor()}.
+ */
+public class IntSequence {
+
+  private final IntArrayTree tree;
+  private final int noKey;
+
+  public IntSequence() {
+    this(Integer.MIN_VALUE);
+  }
+
+  public IntSequence(int noKey) {
+    this.tree = new IntArrayTree();
+    this.noKey = noKey;
+  }
+
+  public IntSequenceLink insert(int key) {
+    checkArgument(key != noKey, "%s is the no-key value and can't be inserted", key);
+
+    return new Link(tree, tree.insert(key), key);
+  }
+
+  public void delete(int key) {
+    int node = tree.find(key);
+    if (node != LongTree.NIL) {
+      tree.deleteNode(node);
+    }
+  }
+
+  /**
+   * Returns the link of the key or null if the key isn't part of the sequence.
+   */
+  public IntSequenceLink get(int key) {
+    int node = tree.find(key);
+    return node != LongTree.NIL ? new Link(tree, node, key) : null;
+  }
+
+  /**
+   * Returns a cursor that is off the sequence until it is moved to a key.
+   */
+  public IntSequenceCursor cursor() {
+    return new Cursor();
+  }
+
+  /**
+   * Returns the smallest key greater than the given one or the no-key value if there is none.
+   */
+  public int greaterThan(int key) {
+    return keyOf(tree.higher(key));
+  }
+
+  /**
+   * Returns the greatest key less than the given one or the no-key value if there is none.
+   */
+  public int lessThan(int key) {
+    return keyOf(tree.lower(key));
+  }
+
+  /**
+   * Returns the key if it is part of the sequence or the no-key value otherwise.
+   */
+  public int equalTo(int key) {
+    return keyOf(tree.find(key));
+  }
+
+  public int noKey() {
+    return noKey;
+  }
+
+  public int size() {
+    return tree.size();
+  }
+
+  public boolean isEmpty() {
+    return tree.isEmpty();
+  }
+
+  private int keyOf(int node) {
+    return node != LongTree.NIL ? (int) tree.key(node) : noKey;
+  }
+
+  private static IntSequenceLink linkOf(LongTree tree, int node) {
+    return node != LongTree.NIL ? new Link(tree, node, (int) tree.key(node)) : null;
+  }
+
+  private static class Link extends TreeLink implements IntSequenceLink {
+
+    private Link(LongTree tree, int node, int key) {
+      super(tree, node, key);
+    }
+
+    @Override
+    public int getValue() {
+      return (int) key;
+    }
+
+    @Override
+    public IntSequenceLink getLeft() {
+      return linkOf(tree, leftNode());
+    }
+
+    @Override
+    public IntSequenceLink getRight() {
+      return linkOf(tree, rightNode());
+    }
+  }
+
+  private class Cursor extends TreeCursor implements IntSequenceCursor {
+
+    private Cursor() {
+      super(IntSequence.this.tree);
+    }
+
+    @Override
+    public boolean moveTo(int key) {
+      return moveToKey(key);
+    }
+
+    @Override
+    public boolean moveLeft() {
+      return moveToLeft();
+    }
+
+    @Override
+    public boolean moveRight() {
+      return moveToRight();
+    }
+
+    @Override
+    public int getValue() {
+      return isOnKey() ? (int) key() : noKey;
+    }
+  }
+
+  private static class IntArrayTree extends ArrayAVLTree implements LongTree {
+
+    private int[] keys;
+
+    private IntArrayTree() {
+      keys = new int[capacity()];
+    }
+
+    @Override
+    protected void resize(int capacity) {
+      keys = Arrays.copyOf(keys, capacity);
+    }
+
+    @Override
+    public long key(int node) {
+      return keys[node];
+    }
+
+    // only keys of the int sequence are put, so they fit
+    @Override
+    public void putKey(int node, long key) {
+      keys[node] = (int) key;
+    }
+
+    @Override
+    public int insertNode(int parentNode, boolean asLeftChild) {
+      return super.insertNode(parentNode, asLeftChild);
+    }
+
+    @Override
+    public void deleteNode(int node) {
+      super.deleteNode(node);
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package org.openstructures.sequence;
+
+/**
+ * Position in an {@link IntSequence} that moves from a key to its neighbours in place. Unlike a
+ * walk over {@link IntSequenceLink}s, which creates a link per step, a walk with a cursor allocates
+ * nothing. A cursor that moved past either end, or whose key has been deleted, is off the sequence
+ * and doesn't move any more.
+ */
+public interface IntSequenceCursor {
+    /**
+     * Moves to the key and tells whether it is part of the sequence, the cursor is off the sequence
+     * if it isn't.
+     */
+    boolean moveTo(int key);
+
+    /**
+     * Moves to the closest smaller key and tells whether there is one.
+     */
+    boolean moveLeft();
+
+    /**
+     * Moves to the closest greater key and tells whether there is one.
+     */
+    boolean moveRight();
+
+    /**
+     * Returns the key the cursor is on or the no-key value if it is off the sequence.
+     */
+    int getValue();
+}
@@ -0,0 +1,14 @@
+package org.openstructures.sequence;
+
+/**
+ * {@link SequenceLink} of an {@link IntSequence}, which returns its key without boxing it.
+ * Neighbours are links created on demand, so a walk creates a link per step,
+ * an {@link IntSequenceCursor} doesn't.
+ */
+public interface IntSequenceLink {
+    int getValue();
+
+    IntSequenceLink getLeft();
+
+    IntSequenceLink getRight();
+}
@@ -0,0 +1,146 @@
+package org.openstructures.sequence;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Function;
+import org.openstructures.sequence.avltree.Aggregate;
+
+/**
+ * Sequence of intervals that finds the ones overlapping a point or a range without scanning the
+ * links. Intervals are ordered by their start points and then by their end points, so two intervals
+ * with the same end points are duplicates, and since intervals are indexed by a hash map as well,
+ * they have to be equal exactly when they have the same end points. Both end points belong to an
+ * interval, and the start point can't be greater than the end point.
+ * <p>
+ * It is an {@link InMemorySequence} whose tree maintains the interval with the greatest end point
+ * of every subtree. A search skips the subtrees that end before the query and stops at the first
+ * interval that starts after it, which visits O(log n) nodes per overlapping interval at worst and
+ * about O(log n + k) when the overlapping intervals are close together in the order of their start
+ * points.
+ *
+ * @param <T> type of the intervals
+ * @param <P> type of their end points
+ */
+public class IntervalSequence<T, P> implements Sequence<T, T> {
+
+  private final InMemorySequence<T, T> sequence;
+  private final Function<? super T, ? extends P> start;
+  private final Function<? super T, ? extends P> end;
+  private final Comparator<? super P> points;
+  private final Aggregate<T, T> latestEnding;
+
+  public IntervalSequence(Function<? super T, ? extends P> start,
+      Function<? super T, ? extends P> end, Comparator<? super P> points) {
+    checkNotNull(start);
+    checkNotNull(end);
+    checkNotNull(points);
+
+    Comparator<T> comparator = Comparator.<T, P>comparing(start, points)
+        .thenComparing(end, points);
+    this.latestEnding = Aggregate.maximum(Comparator.comparing(end, points));
+    this.sequence = new InMemorySequence<>(comparator, latestEnding);
+    this.start = start;
+    this.end = end;
+    this.points = points;
+  }
+
+  @Override
+  public SequenceLink<T> insert(T interval) {
+    checkInterval(interval);
+
+    return sequence.insert(interval);
+  }
+
+  /**
+   * Inserts the intervals in one go, see {@link InMemorySequence#insertAll(Collection)}.
+   */
+  @Override
+  public void insertAll(Collection<? extends T> intervals) {
+    checkNotNull(intervals);
+    for (T interval : intervals) {
+      checkInterval(interval);
+    }
+
+    sequence.insertAll(intervals);
+  }
+
+  @Override
+  public void delete(T interval) {
+    sequence.delete(interval);
+  }
+
+  @Override
+  public void deleteAll(Collection<? extends T> intervals) {
+    sequence.deleteAll(intervals);
+  }
+
+  @Override
+  public SequenceLink<T> get(T interval) {
+    return sequence.get(interval);
+  }
+
+  @Override
+  public T greaterThan(T comparable) {
+    return sequence.greaterThan(comparable);
+  }
+
+  @Override
+  public T lessThan(T comparable) {
+    return sequence.lessThan(comparable);
+  }
+
+  @Override
+  public T equalTo(T comparable) {
+    return sequence.equalTo(comparable);
+  }
+
+  /**
+   * Returns the intervals that hold the point, in ascending order.
+   */
+  public List<T> overlapping(P point) {
+    return overlapping(point, point);
+  }
+
+  /**
+   * Returns the intervals that share at least a point with the range from {@code from} to
+   * {@code to}, both inclusive, in ascending order.
+   */
+  public List<T> overlapping(P from, P to) {
+    checkNotNull(from);
+    checkNotNull(to);
+    checkArgument(points.compare(from, to) <= 0, "range from %s to %s is empty", from, to);
+
+    List<T> overlapping = new ArrayList<>();
+    sequence.forEachMatching(latestEnding,
+        interval -> interval != null && points.compare(end.apply(interval), from) >= 0,
+        interval -> points.compare(start.apply(interval), to) <= 0,
+        overlapping::add);
+    return overlapping;
+  }
+
+  @Override
+  public int size() {
+    return sequence.size();
+  }
+
+  public boolean isEmpty() {
+    return sequence.isEmpty();
+  }
+
+  @Override
+  public Spliterator<T> spliterator() {
+    return sequence.spliterator();
+  }
+
+  private void checkInterval(T interval) {
+    checkNotNull(interval, "can't add nulls");
+    checkArgument(points.compare(start.apply(interval), end.apply(interval)) <= 0,
+        "%s starts after it ends", interval);
+  }
+}
@@ -0,0 +1,23 @@
+package org.openstructures.sequence;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes the keys of a sequence to a snapshot and reads them back. Keys are written and read in
+ * ascending order, so a serializer can encode a key relative to the previous one, e.g. as a
+ * difference or a shared prefix. Ready-made serializers are provided by {@link KeySerializers}.
+ */
+public interface KeySerializer<T> {
+
+  /**
+   * Writes the key. The previous key is null for the first key of a snapshot.
+   */
+  void write(T previous, T key, DataOutput out) throws IOException;
+
+  /**
+   * Reads the key written after the previous one, which is null for the first key of a snapshot.
+   */
+  T read(T previous, DataInput in) throws IOException;
+}
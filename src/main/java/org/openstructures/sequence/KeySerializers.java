@@ -0,0 +1,142 @@
+package org.openstructures.sequence;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * {@link KeySerializer}s of common key types. Numbers are written as the difference from the
+ * previous key in a variable-length encoding, 7 bits per byte, so keys less than 128 apart take a
+ * byte however large they are. Strings are written as the length of the prefix they share with the
+ * previous key followed by the rest in UTF-8.
+ */
+public final class KeySerializers {
+
+  // strings are read in chunks of at most this many bytes at first, see readBytes
+  private static final int CHUNK_SIZE = 8192;
+
+  private static final KeySerializer<Long> LONGS = new KeySerializer<Long>() {
+    @Override
+    public void write(Long previous, Long key, DataOutput out) throws IOException {
+      writeDifference(previous, key, out);
+    }
+
+    @Override
+    public Long read(Long previous, DataInput in) throws IOException {
+      return readDifference(previous, in);
+    }
+  };
+
+  private static final KeySerializer<Integer> INTS = new KeySerializer<Integer>() {
+    @Override
+    public void write(Integer previous, Integer key, DataOutput out) throws IOException {
+      writeDifference(previous != null ? previous.longValue() : null, key, out);
+    }
+
+    @Override
+    public Integer read(Integer previous, DataInput in) throws IOException {
+      return (int) readDifference(previous != null ? previous.longValue() : null, in);
+    }
+  };
+
+  private static final KeySerializer<String> STRINGS = new KeySerializer<String>() {
+    @Override
+    public void write(String previous, String key, DataOutput out) throws IOException {
+      int shared = 0;
+      if (previous != null) {
+        int limit = Math.min(previous.length(), key.length());
+        while (shared < limit && previous.charAt(shared) == key.charAt(shared)) {
+          shared++;
+        }
+        // doesn't split a surrogate pair, the rest has to be valid UTF-16 on its own
+        if (shared > 0 && Character.isHighSurrogate(key.charAt(shared - 1))) {
+          shared--;
+        }
+      }
+      byte[] rest = key.substring(shared).getBytes(StandardCharsets.UTF_8);
+      writeUnsigned(shared, out);
+      writeUnsigned(rest.length, out);
+      out.write(rest);
+    }
+
+    @Override
+    public String read(String previous, DataInput in) throws IOException {
+      long shared = readUnsigned(in);
+      long length = readUnsigned(in);
+      if (shared < 0 || shared > (previous != null ? previous.length() : 0)
+          || length < 0 || length > Integer.MAX_VALUE) {
+        throw new IOException("malformed key");
+      }
+      byte[] rest = readBytes(in, (int) length);
+      String suffix = new String(rest, StandardCharsets.UTF_8);
+      return shared > 0 ? previous.substring(0, (int) shared) + suffix : suffix;
+    }
+  };
+
+  private KeySerializers() {
+  }
+
+  public static KeySerializer<Long> longs() {
+    return LONGS;
+  }
+
+  public static KeySerializer<Integer> ints() {
+    return INTS;
+  }
+
+  public static KeySerializer<String> strings() {
+    return STRINGS;
+  }
+
+  // keys ascend in their natural order, so the difference from the previous key is written
+  // unsigned, taken modulo 2^64 any order of keys round-trips but descending keys take the most
+  // bytes. The first key is zigzag-encoded, which keeps small negative keys short too
+  private static void writeDifference(Long previous, long key, DataOutput out) throws IOException {
+    if (previous == null) {
+      writeUnsigned((key << 1) ^ (key >> 63), out);
+    } else {
+      writeUnsigned(key - previous, out);
+    }
+  }
+
+  private static long readDifference(Long previous, DataInput in) throws IOException {
+    long value = readUnsigned(in);
+    return previous == null ? (value >>> 1) ^ -(value & 1) : previous + value;
+  }
+
+  private static void writeUnsigned(long value, DataOutput out) throws IOException {
+    long rest = value;
+    while ((rest & ~0x7FL) != 0) {
+      out.writeByte((int) (rest & 0x7F) | 0x80);
+      rest >>>= 7;
+    }
+    out.writeByte((int) rest);
+  }
+
+  // reads the bytes into a buffer that grows as they arrive, so a corrupt length makes the read
+  // fail once the input runs out, rather than allocate a buffer of that length up front
+  private static byte[] readBytes(DataInput in, int length) throws IOException {
+    byte[] bytes = new byte[Math.min(length, CHUNK_SIZE)];
+    in.readFully(bytes);
+    while (bytes.length < length) {
+      int read = bytes.length;
+      bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * read));
+      in.readFully(bytes, read, bytes.length - read);
+    }
+    return bytes;
+  }
+
+  private static long readUnsigned(DataInput in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < Long.SIZE; shift += 7) {
+      byte next = in.readByte();
+      value |= (long) (next & 0x7F) << shift;
+      if (next >= 0) {
+        return value;
+      }
+    }
+    throw new IOException("malformed variable-length number");
+  }
+}
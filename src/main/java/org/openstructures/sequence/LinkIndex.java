@@ -0,0 +1,153 @@
+package org.openstructures.sequence;
+
+/**
+ * Hash index of links by their keys. Links are kept in a single array with linear probing and the
+ * key of a link is the key it holds, so an entry costs an array slot or two rather than an entry
+ * object, and neither {@link #put(SequenceLink)} nor {@link #remove(Object)} allocates anything
+ * unless the array grows. Removals shift the following links back instead of leaving tombstones, so
+ * the index doesn't degrade under churn. Keys are compared by their {@code equals} method.
+ *
+ * @param <T> type of the keys
+ * @param <L> type of the links
+ */
+final class LinkIndex<T, L extends SequenceLink<T>> {
+
+  private static final int MIN_CAPACITY = 16;
+
+  private Object[] links;
+  private int shift; // 32 minus the number of bits of the capacity
+  private int size;
+
+  LinkIndex() {
+    this(0);
+  }
+
+  /**
+   * Creates an index that holds the expected number of links without growing.
+   */
+  LinkIndex(int expectedSize) {
+    allocate(capacityFor(expectedSize));
+  }
+
+  int size() {
+    return size;
+  }
+
+  L get(Object key) {
+    if (key == null) {
+      return null;
+    }
+    int mask = links.length - 1;
+    for (int slot = slotOf(key); ; slot = (slot + 1) & mask) {
+      L link = linkAt(slot);
+      if (link == null || key.equals(link.getValue())) {
+        return link;
+      }
+    }
+  }
+
+  boolean containsKey(Object key) {
+    return get(key) != null;
+  }
+
+  /**
+   * Indexes the link by its key, replacing the link of an equal key, if any.
+   */
+  void put(L link) {
+    if (2 * (size + 1) > links.length) {
+      grow();
+    }
+    T key = link.getValue();
+    int mask = links.length - 1;
+    for (int slot = slotOf(key); ; slot = (slot + 1) & mask) {
+      L present = linkAt(slot);
+      if (present == null) {
+        links[slot] = link;
+        size++;
+        return;
+      }
+      if (key.equals(present.getValue())) {
+        links[slot] = link;
+        return;
+      }
+    }
+  }
+
+  /**
+   * Removes the link of the key and returns it, or returns null if the key isn't indexed.
+   */
+  L remove(Object key) {
+    if (key == null) {
+      return null;
+    }
+    int mask = links.length - 1;
+    int slot = slotOf(key);
+    L removed;
+    while (true) {
+      removed = linkAt(slot);
+      if (removed == null) {
+        return null;
+      }
+      if (key.equals(removed.getValue())) {
+        break;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    // links probed past the removed one move back into the gap, unless it lies before their slot
+    int gap = slot;
+    for (int next = (slot + 1) & mask; ; next = (next + 1) & mask) {
+      L link = linkAt(next);
+      if (link == null) {
+        break;
+      }
+      if (((next - slotOf(link.getValue())) & mask) >= ((next - gap) & mask)) {
+        links[gap] = link;
+        gap = next;
+      }
+    }
+    links[gap] = null;
+    size--;
+    return removed;
+  }
+
+  // Fibonacci hashing spreads keys whose hash codes differ in the high bits only, like multiples
+  // of the capacity, over the whole array
+  private int slotOf(Object key) {
+    return (key.hashCode() * 0x9e37_79b9) >>> shift;
+  }
+
+  private L linkAt(int slot) {
+    return cast(links[slot]);
+  }
+
+  @SuppressWarnings("unchecked")
+  private L cast(Object link) {
+    return (L) link;
+  }
+
+  private void grow() {
+    Object[] old = links;
+    allocate(2 * old.length);
+    size = 0;
+    for (Object link : old) {
+      if (link != null) {
+        put(cast(link));
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    links = new Object[capacity];
+    shift = Integer.numberOfLeadingZeros(capacity) + 1;
+  }
+
+  // the least power of two that keeps the array at most half full
+  private static int capacityFor(int expectedSize) {
+    int capacity = MIN_CAPACITY;
+    while (capacity < 2 * (long) expectedSize) {
+      capacity *= 2;
+    }
+    return capacity;
+  }
+}
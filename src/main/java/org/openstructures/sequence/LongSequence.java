@@ -0,0 +1,190 @@
+package org.openstructures.sequence;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import org.openstructures.sequence.avltree.ArrayAVLTree;
+
+/**
+ * Sequence of {@code long} keys. Keys and links are kept in primitive arrays of an
+ * {@link ArrayAVLTree}, so a key costs a few array elements instead of a boxed key, a node and an
+ * index entry, and none of the operations box keys or go through a comparator. Keys are found by a
+ * search of the tree rather than a hash index.
+ * <p>
+ * The no-key value, {@link Long#MIN_VALUE} unless chosen otherwise, plays the part of null: it is
+ * returned when there is no key to return and it can't be inserted.
+ * <p>
+ * Links are small objects created on demand, by {@link #get(long)} and by every step to a
+ * neighbour. Walks that shouldn't allocate use a {@link #cursor()}.
+ */
+public class LongSequence {
+
+  private final LongTree tree;
+  private final long noKey;
+
+  public LongSequence() {
+    this(Long.MIN_VALUE);
+  }
+
+  public LongSequence(long noKey) {
+    this(new LongArrayTree(), noKey);
+  }
+
+  // for the sequences that keep the tree elsewhere
+  LongSequence(LongTree tree, long noKey) {
+    this.tree = tree;
+    this.noKey = noKey;
+  }
+
+  public LongSequenceLink insert(long key) {
+    checkArgument(key != noKey, "%s is the no-key value and can't be inserted", key);
+
+    return new Link(tree, tree.insert(key), key);
+  }
+
+  public void delete(long key) {
+    int node = tree.find(key);
+    if (node != LongTree.NIL) {
+      tree.deleteNode(node);
+    }
+  }
+
+  /**
+   * Returns the link of the key or null if the key isn't part of the sequence.
+   */
+  public LongSequenceLink get(long key) {
+    int node = tree.find(key);
+    return node != LongTree.NIL ? new Link(tree, node, key) : null;
+  }
+
+  /**
+   * Returns a cursor that is off the sequence until it is moved to a key.
+   */
+  public LongSequenceCursor cursor() {
+    return new Cursor();
+  }
+
+  /**
+   * Returns the smallest key greater than the given one or the no-key value if there is none.
+   */
+  public long greaterThan(long key) {
+    return keyOf(tree.higher(key));
+  }
+
+  /**
+   * Returns the greatest key less than the given one or the no-key value if there is none.
+   */
+  public long lessThan(long key) {
+    return keyOf(tree.lower(key));
+  }
+
+  /**
+   * Returns the key if it is part of the sequence or the no-key value otherwise.
+   */
+  public long equalTo(long key) {
+    return keyOf(tree.find(key));
+  }
+
+  public long noKey() {
+    return noKey;
+  }
+
+  public int size() {
+    return tree.size();
+  }
+
+  public boolean isEmpty() {
+    return tree.isEmpty();
+  }
+
+  private long keyOf(int node) {
+    return node != LongTree.NIL ? tree.key(node) : noKey;
+  }
+
+  private static LongSequenceLink linkOf(LongTree tree, int node) {
+    return node != LongTree.NIL ? new Link(tree, node, tree.key(node)) : null;
+  }
+
+  private static class Link extends TreeLink implements LongSequenceLink {
+
+    private Link(LongTree tree, int node, long key) {
+      super(tree, node, key);
+    }
+
+    @Override
+    public long getValue() {
+      return key;
+    }
+
+    @Override
+    public LongSequenceLink getLeft() {
+      return linkOf(tree, leftNode());
+    }
+
+    @Override
+    public LongSequenceLink getRight() {
+      return linkOf(tree, rightNode());
+    }
+  }
+
+  private class Cursor extends TreeCursor implements LongSequenceCursor {
+
+    private Cursor() {
+      super(LongSequence.this.tree);
+    }
+
+    @Override
+    public boolean moveTo(long key) {
+      return moveToKey(key);
+    }
+
+    @Override
+    public boolean moveLeft() {
+      return moveToLeft();
+    }
+
+    @Override
+    public boolean moveRight() {
+      return moveToRight();
+    }
+
+    @Override
+    public long getValue() {
+      return isOnKey() ? key() : noKey;
+    }
+  }
+
+  private static class LongArrayTree extends ArrayAVLTree implements LongTree {
+
+    private long[] keys;
+
+    private LongArrayTree() {
+      keys = new long[capacity()];
+    }
+
+    @Override
+    protected void resize(int capacity) {
+      keys = Arrays.copyOf(keys, capacity);
+    }
+
+    @Override
+    public long key(int node) {
+      return keys[node];
+    }
+
+    @Override
+    public void putKey(int node, long key) {
+      keys[node] = key;
+    }
+
+    @Override
+    public int insertNode(int parentNode, boolean asLeftChild) {
+      return super.insertNode(parentNode, asLeftChild);
+    }
+
+    @Override
+    public void deleteNode(int node) {
+      super.deleteNode(node);
+    }
+  }
+}
@@ -0,0 +1,14 @@
+package org.openstructures.sequence;
+
+/**
+ * {@link SequenceLink} of a {@link LongSequence}, which returns its key without boxing it.
+ * Neighbours are links created on demand, so a walk creates a link per step,
+ * a {@link LongSequenceCursor} doesn't.
+ */
+public interface LongSequenceLink {
+    long getValue();
+
+    LongSequenceLink getLeft();
+
+    LongSequenceLink getRight();
+}
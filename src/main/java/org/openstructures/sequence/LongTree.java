@@ -0,0 +1,107 @@
+package org.openstructures.sequence;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import org.openstructures.sequence.avltree.IndexedAVLTree;
+
+/**
+ * {@link IndexedAVLTree} of primitive keys, whichever storage keeps its nodes and keys. The
+ * searches are written here, once, against the navigation of the tree and {@link #key(int)}, so
+ * the primitive sequences differ in their storage only. Keys narrower than a {@code long} are
+ * widened, which keeps their order.
+ * <p>
+ * Implementations extend a subclass of {@link IndexedAVLTree}, which provides the navigation, and
+ * make its insert and delete public.
+ */
+interface LongTree {
+
+  int NIL = IndexedAVLTree.NIL;
+
+  int size();
+
+  boolean isEmpty();
+
+  int root();
+
+  int left(int node);
+
+  int right(int node);
+
+  int previous(int node);
+
+  int next(int node);
+
+  int firstNode();
+
+  boolean isInTree(int node);
+
+  int insertNode(int parentNode, boolean asLeftChild);
+
+  void deleteNode(int node);
+
+  long key(int node);
+
+  void putKey(int node, long key);
+
+  /**
+   * Tells whether the node is part of the tree and still holds the key, nodes being reused.
+   */
+  default boolean holds(int node, long key) {
+    return isInTree(node) && key(node) == key;
+  }
+
+  default int insert(long key) {
+    int parent = root();
+    boolean asLeftChild = false;
+    for (int node = parent; node != NIL; ) {
+      long nodeKey = key(node);
+      checkArgument(key != nodeKey, "%s is already part of the sequence", key);
+      parent = node;
+      asLeftChild = key < nodeKey;
+      node = asLeftChild ? left(node) : right(node);
+    }
+    int node = insertNode(parent, asLeftChild);
+    putKey(node, key);
+    return node;
+  }
+
+  default int find(long key) {
+    int node = root();
+    while (node != NIL) {
+      long nodeKey = key(node);
+      if (nodeKey == key) {
+        return node;
+      }
+      node = key < nodeKey ? left(node) : right(node);
+    }
+    return NIL;
+  }
+
+  default int higher(long key) {
+    int node = root();
+    int higher = NIL;
+    while (node != NIL) {
+      if (key(node) > key) {
+        higher = node;
+        node = left(node);
+      } else {
+        node = right(node);
+      }
+    }
+    return higher;
+  }
+
+  default int lower(long key) {
+    int node = root();
+    int lower = NIL;
+    while (node != NIL) {
+      if (key(node) < key) {
+        lower = node;
+        node = right(node);
+      } else {
+        node = left(node);
+      }
+    }
+    return lower;
+  }
+}
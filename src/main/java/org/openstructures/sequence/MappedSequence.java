@@ -0,0 +1,203 @@
+package org.openstructures.sequence;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import org.openstructures.sequence.avltree.MappedAVLTree;
+
+/**
+ * Sequence of {@code long} keys kept in a memory-mapped file. Nodes and links are records of a
+ * {@link MappedAVLTree}, so reopening the file maps it rather than rebuilding the sequence, in time
+ * that doesn't depend on the number of keys. The searches and links are the ones of
+ * {@link LongSequence}, only the keys are boxed.
+ * <p>
+ * Every insert and delete is committed to the log of the tree before it returns, so a sequence
+ * reopened after a crash holds exactly the keys whose inserts returned, and possibly the one being
+ * inserted. With {@code syncOnCommit} the log is forced to the disk on every commit, which makes
+ * the changes survive a power loss too, at the cost of a disk flush per change. The sequence isn't
+ * thread-safe.
+ */
+public class MappedSequence implements Sequence<Long, Long>, Closeable {
+
+  private final MappedLongTree tree;
+
+  private MappedSequence(MappedLongTree tree) {
+    this.tree = tree;
+  }
+
+  /**
+   * Opens the sequence kept in the file, or creates an empty one, forcing every change to the disk.
+   */
+  public static MappedSequence open(Path file) throws IOException {
+    return open(file, true);
+  }
+
+  public static MappedSequence open(Path file, boolean syncOnCommit) throws IOException {
+    checkNotNull(file);
+    return new MappedSequence(new MappedLongTree(file, syncOnCommit));
+  }
+
+  @Override
+  public SequenceLink<Long> insert(Long key) {
+    checkNotNull(key, "can't add nulls");
+
+    int node = tree.insert(key);
+    tree.commit();
+    return new Link(tree, node, key);
+  }
+
+  @Override
+  public void delete(Long key) {
+    checkNotNull(key);
+    int node = tree.find(key);
+    if (node != LongTree.NIL) {
+      tree.deleteNode(node);
+      tree.commit();
+    }
+  }
+
+  @Override
+  public SequenceLink<Long> get(Long key) {
+    checkNotNull(key);
+    int node = tree.find(key);
+    return node != LongTree.NIL ? new Link(tree, node, key) : null;
+  }
+
+  @Override
+  public Long greaterThan(Long comparable) {
+    checkNotNull(comparable);
+    return keyOf(tree.higher(comparable));
+  }
+
+  @Override
+  public Long lessThan(Long comparable) {
+    checkNotNull(comparable);
+    return keyOf(tree.lower(comparable));
+  }
+
+  @Override
+  public Long equalTo(Long comparable) {
+    checkNotNull(comparable);
+    return keyOf(tree.find(comparable));
+  }
+
+  @Override
+  public int size() {
+    return tree.size();
+  }
+
+  public boolean isEmpty() {
+    return tree.isEmpty();
+  }
+
+  /**
+   * Returns a spliterator over the keys in ascending order, which follows the links. The sequence
+   * shouldn't be modified while it is in use.
+   */
+  @Override
+  public Spliterator<Long> spliterator() {
+    return Spliterators.spliterator(new KeyIterator(), tree.size(),
+        Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL);
+  }
+
+  /**
+   * Writes the changes to the file and empties the log, which makes the next reopen faster. Changes
+   * are durable without it.
+   */
+  public void checkpoint() throws IOException {
+    tree.checkpoint();
+  }
+
+  @Override
+  public void close() throws IOException {
+    tree.close();
+  }
+
+  private Long keyOf(int node) {
+    return node != LongTree.NIL ? tree.key(node) : null;
+  }
+
+  private class KeyIterator implements Iterator<Long> {
+
+    private int next = tree.firstNode();
+
+    @Override
+    public boolean hasNext() {
+      return next != LongTree.NIL;
+    }
+
+    @Override
+    public Long next() {
+      if (next == LongTree.NIL) {
+        throw new NoSuchElementException();
+      }
+      long key = tree.key(next);
+      next = tree.next(next);
+      return key;
+    }
+  }
+
+  private static SequenceLink<Long> linkOf(LongTree tree, int node) {
+    return node != LongTree.NIL ? new Link(tree, node, tree.key(node)) : null;
+  }
+
+  private static class Link extends TreeLink implements SequenceLink<Long> {
+
+    private Link(LongTree tree, int node, long key) {
+      super(tree, node, key);
+    }
+
+    @Override
+    public Long getValue() {
+      return key;
+    }
+
+    @Override
+    public SequenceLink<Long> getLeft() {
+      return linkOf(tree, leftNode());
+    }
+
+    @Override
+    public SequenceLink<Long> getRight() {
+      return linkOf(tree, rightNode());
+    }
+  }
+
+  private static class MappedLongTree extends MappedAVLTree implements LongTree {
+
+    private MappedLongTree(Path file, boolean syncOnCommit) throws IOException {
+      super(file, Long.BYTES, syncOnCommit);
+    }
+
+    @Override
+    protected void commit() {
+      super.commit();
+    }
+
+    @Override
+    public long key(int node) {
+      return segment(node).getLong(keyOffset(node));
+    }
+
+    @Override
+    public void putKey(int node, long key) {
+      segment(node).putLong(keyOffset(node), key);
+    }
+
+    @Override
+    public int insertNode(int parentNode, boolean asLeftChild) {
+      return super.insertNode(parentNode, asLeftChild);
+    }
+
+    @Override
+    public void deleteNode(int node) {
+      super.deleteNode(node);
+    }
+  }
+}
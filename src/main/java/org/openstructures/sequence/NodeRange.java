@@ -0,0 +1,297 @@
+package org.openstructures.sequence;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * Range of the nodes of a sequence between two optional bounds, seen in ascending or descending
+ * order. This is what the set and map views and their sub-views share: the bounds are checked with
+ * a comparison or two and the ends of the range are found by a search of the tree, nothing is
+ * copied.
+ * <p>
+ * Bounds are kept in ascending order whatever the order of the range is. Methods without "absolute"
+ * in their description follow the order of the range.
+ */
+final class NodeRange<T extends C, C, N> {
+
+  private final SequenceNodes<T, C, N> nodes;
+  private final boolean descending;
+  private final boolean fromStart;
+  private final C low;
+  private final boolean lowInclusive;
+  private final boolean toEnd;
+  private final C high;
+  private final boolean highInclusive;
+
+  private NodeRange(SequenceNodes<T, C, N> nodes, boolean descending, boolean fromStart, C low,
+      boolean lowInclusive, boolean toEnd, C high, boolean highInclusive) {
+    this.nodes = nodes;
+    this.descending = descending;
+    this.fromStart = fromStart;
+    this.low = low;
+    this.lowInclusive = lowInclusive;
+    this.toEnd = toEnd;
+    this.high = high;
+    this.highInclusive = highInclusive;
+  }
+
+  /**
+   * Returns the range of all the nodes in ascending order.
+   */
+  static <T extends C, C, N> NodeRange<T, C, N> all(SequenceNodes<T, C, N> nodes) {
+    return new NodeRange<>(nodes, false, true, null, false, true, null, false);
+  }
+
+  SequenceNodes<T, C, N> nodes() {
+    return nodes;
+  }
+
+  Comparator<? super C> comparator() {
+    return descending ? Collections.reverseOrder(nodes.comparator()) : nodes.comparator();
+  }
+
+  boolean inRange(C key) {
+    return !tooLow(key) && !tooHigh(key);
+  }
+
+  N first() {
+    return descending ? absoluteLast() : absoluteFirst();
+  }
+
+  N last() {
+    return descending ? absoluteFirst() : absoluteLast();
+  }
+
+  N ceiling(C key) {
+    checkNotNull(key);
+    return descending ? absoluteFloor(key) : absoluteCeiling(key);
+  }
+
+  N higher(C key) {
+    checkNotNull(key);
+    return descending ? absoluteLower(key) : absoluteHigher(key);
+  }
+
+  N floor(C key) {
+    checkNotNull(key);
+    return descending ? absoluteCeiling(key) : absoluteFloor(key);
+  }
+
+  N lower(C key) {
+    checkNotNull(key);
+    return descending ? absoluteHigher(key) : absoluteLower(key);
+  }
+
+  N find(C key) {
+    checkNotNull(key);
+    return inRange(key) ? nodes.find(key) : null;
+  }
+
+  /**
+   * Counts the nodes in O(log n) as the difference of the ranks of the bounds.
+   */
+  int size() {
+    if (fromStart && toEnd) {
+      return nodes.size();
+    }
+    int below = fromStart ? 0 : nodes.rank(low, !lowInclusive);
+    int upTo = toEnd ? nodes.size() : nodes.rank(high, highInclusive);
+    return Math.max(upTo - below, 0);
+  }
+
+  boolean isEmpty() {
+    return first() == null;
+  }
+
+  /**
+   * Iterates over the nodes in the order of the range. Both ends are found when the iterator is
+   * created, from then on it follows the links. Removing the last returned node deletes it from the
+   * sequence.
+   */
+  Iterator<N> iterator() {
+    return new NodeIterator(first(), last());
+  }
+
+  /**
+   * Returns a spliterator over the keys that splits at subtree roots if the range is ascending. A
+   * descending range is traversed from an iterator, since the tree splits in ascending order only.
+   */
+  Spliterator<T> spliterator() {
+    int characteristics = Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT
+        | Spliterator.NONNULL;
+    if (descending) {
+      Iterator<N> iterator = iterator();
+      return new Spliterators.AbstractSpliterator<T>(size(), characteristics | Spliterator.SIZED) {
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+          if (!iterator.hasNext()) {
+            return false;
+          }
+          action.accept(nodes.keyOf(iterator.next()));
+          return true;
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+          return comparator();
+        }
+      };
+    }
+    int fromIndex = fromStart ? 0 : nodes.rank(low, !lowInclusive);
+    return nodes.spliterator(fromIndex, fromIndex + size());
+  }
+
+  NodeRange<T, C, N> descending() {
+    return new NodeRange<>(nodes, !descending, fromStart, low, lowInclusive, toEnd, high,
+        highInclusive);
+  }
+
+  NodeRange<T, C, N> subRange(C from, boolean fromInclusive, C to, boolean toInclusive) {
+    checkNotNull(from);
+    checkNotNull(to);
+    checkArgument(comparator().compare(from, to) <= 0, "%s is greater than %s", from, to);
+
+    return descending
+        ? absoluteSubRange(false, to, toInclusive, false, from, fromInclusive)
+        : absoluteSubRange(false, from, fromInclusive, false, to, toInclusive);
+  }
+
+  NodeRange<T, C, N> headRange(C to, boolean inclusive) {
+    checkNotNull(to);
+    return descending
+        ? absoluteSubRange(false, to, inclusive, toEnd, high, highInclusive)
+        : absoluteSubRange(fromStart, low, lowInclusive, false, to, inclusive);
+  }
+
+  NodeRange<T, C, N> tailRange(C from, boolean inclusive) {
+    checkNotNull(from);
+    return descending
+        ? absoluteSubRange(fromStart, low, lowInclusive, false, from, inclusive)
+        : absoluteSubRange(false, from, inclusive, toEnd, high, highInclusive);
+  }
+
+  // the bounds are absolute, a bound that isn't open has to lie within this range
+  private NodeRange<T, C, N> absoluteSubRange(boolean newFromStart, C newLow,
+      boolean newLowInclusive, boolean newToEnd, C newHigh, boolean newHighInclusive) {
+    if (!newFromStart) {
+      checkArgument(inRange(newLow, newLowInclusive), "%s is out of the range", newLow);
+    }
+    if (!newToEnd) {
+      checkArgument(inRange(newHigh, newHighInclusive), "%s is out of the range", newHigh);
+    }
+    return new NodeRange<>(nodes, descending, newFromStart, newLow, newLowInclusive, newToEnd,
+        newHigh, newHighInclusive);
+  }
+
+  // an exclusive bound of a sub-range can be equal to an exclusive bound of this range
+  private boolean inRange(C key, boolean inclusive) {
+    if (inclusive) {
+      return inRange(key);
+    }
+    return (fromStart || nodes.comparator().compare(key, low) >= 0)
+        && (toEnd || nodes.comparator().compare(key, high) <= 0);
+  }
+
+  private boolean tooLow(C key) {
+    if (fromStart) {
+      return false;
+    }
+    int comparison = nodes.comparator().compare(key, low);
+    return comparison < 0 || comparison == 0 && !lowInclusive;
+  }
+
+  private boolean tooHigh(C key) {
+    if (toEnd) {
+      return false;
+    }
+    int comparison = nodes.comparator().compare(key, high);
+    return comparison > 0 || comparison == 0 && !highInclusive;
+  }
+
+  private N absoluteFirst() {
+    N node = fromStart ? nodes.first() : lowInclusive ? nodes.ceiling(low) : nodes.higher(low);
+    return node != null && !tooHigh(nodes.keyOf(node)) ? node : null;
+  }
+
+  private N absoluteLast() {
+    N node = toEnd ? nodes.last() : highInclusive ? nodes.floor(high) : nodes.lower(high);
+    return node != null && !tooLow(nodes.keyOf(node)) ? node : null;
+  }
+
+  private N absoluteCeiling(C key) {
+    if (tooLow(key)) {
+      return absoluteFirst();
+    }
+    N node = nodes.ceiling(key);
+    return node != null && !tooHigh(nodes.keyOf(node)) ? node : null;
+  }
+
+  private N absoluteHigher(C key) {
+    if (tooLow(key)) {
+      return absoluteFirst();
+    }
+    N node = nodes.higher(key);
+    return node != null && !tooHigh(nodes.keyOf(node)) ? node : null;
+  }
+
+  private N absoluteFloor(C key) {
+    if (tooHigh(key)) {
+      return absoluteLast();
+    }
+    N node = nodes.floor(key);
+    return node != null && !tooLow(nodes.keyOf(node)) ? node : null;
+  }
+
+  private N absoluteLower(C key) {
+    if (tooHigh(key)) {
+      return absoluteLast();
+    }
+    N node = nodes.lower(key);
+    return node != null && !tooLow(nodes.keyOf(node)) ? node : null;
+  }
+
+  private class NodeIterator implements Iterator<N> {
+
+    private final N last;
+    private N next;
+    private N lastReturned;
+
+    private NodeIterator(N first, N last) {
+      this.next = first;
+      this.last = last;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public N next() {
+      if (next == null) {
+        throw new NoSuchElementException();
+      }
+      lastReturned = next;
+      // the neighbour is taken before the node can be removed
+      next = next != last ? descending ? nodes.previous(next) : nodes.next(next) : null;
+      return lastReturned;
+    }
+
+    @Override
+    public void remove() {
+      if (lastReturned == null) {
+        throw new IllegalStateException();
+      }
+      nodes.delete(lastReturned);
+      lastReturned = null;
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package org.openstructures.sequence;
+
+import org.openstructures.sequence.avltree.OffHeapAVLTree;
+
+/**
+ * Sequence of {@code long} keys kept off the heap. It is a {@link LongSequence} whose keys and
+ * links are records of an {@link OffHeapAVLTree}, so tens of millions of keys cost the heap a few
+ * buffers and add nothing for the garbage collector to trace or copy. Lookups read the records
+ * through the buffers, which makes them somewhat slower than the ones of {@link LongSequence}.
+ */
+public class OffHeapLongSequence extends LongSequence {
+
+  private final OffHeapLongTree tree;
+
+  public OffHeapLongSequence() {
+    this(Long.MIN_VALUE);
+  }
+
+  public OffHeapLongSequence(long noKey) {
+    this(new OffHeapLongTree(), noKey);
+  }
+
+  private OffHeapLongSequence(OffHeapLongTree tree, long noKey) {
+    super(tree, noKey);
+    this.tree = tree;
+  }
+
+  /**
+   * Returns the number of bytes of off-heap memory taken by the sequence.
+   */
+  public long reservedBytes() {
+    return tree.reservedBytes();
+  }
+
+  private static class OffHeapLongTree extends OffHeapAVLTree implements LongTree {
+
+    private OffHeapLongTree() {
+      super(Long.BYTES);
+    }
+
+    @Override
+    public long key(int node) {
+      return segment(node).getLong(keyOffset(node));
+    }
+
+    @Override
+    public void putKey(int node, long key) {
+      segment(node).putLong(keyOffset(node), key);
+    }
+
+    @Override
+    public int insertNode(int parentNode, boolean asLeftChild) {
+      return super.insertNode(parentNode, asLeftChild);
+    }
+
+    @Override
+    public void deleteNode(int node) {
+      super.deleteNode(node);
+    }
+  }
+}
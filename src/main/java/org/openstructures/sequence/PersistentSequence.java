@@ -0,0 +1,179 @@
+package org.openstructures.sequence;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.openstructures.sequence.avltree.PersistentAVLTree;
+
+/**
+ * Immutable version of a sequence, backed by a {@link PersistentAVLTree}. {@link #insert(Object)}
+ * and {@link #delete(Object)} return a new version that shares all but O(log n) nodes with this
+ * one, which stays as it is. A version is a point-in-time snapshot that can be read from any thread
+ * without locking, for as long as it is held on to. {@link VersionedSequence} keeps the latest
+ * version for writers.
+ * <p>
+ * Links belong to the version they were taken from and lead to the neighbours of their key in that
+ * version. Nodes are shared between versions, so they can't be linked to their neighbours; a link
+ * finds them in O(log n).
+ */
+public final class PersistentSequence<T extends C, C> {
+
+  private final PersistentAVLTree<T, C> tree;
+
+  private PersistentSequence(PersistentAVLTree<T, C> tree) {
+    this.tree = tree;
+  }
+
+  public static <T extends C, C> PersistentSequence<T, C> empty(Comparator<C> comparator) {
+    return new PersistentSequence<>(PersistentAVLTree.empty(comparator));
+  }
+
+  /**
+   * Creates a version from keys sorted in ascending order without duplicates in O(n).
+   */
+  public static <T extends C, C> PersistentSequence<T, C> fromSorted(Iterable<? extends T> keys,
+      Comparator<C> comparator) {
+    return new PersistentSequence<>(PersistentAVLTree.fromSorted(keys, comparator));
+  }
+
+  /**
+   * Returns the version with the key inserted. Throws {@link IllegalArgumentException} if the key
+   * is already part of this version.
+   */
+  public PersistentSequence<T, C> insert(T key) {
+    checkNotNull(key, "can't added nulls");
+    return new PersistentSequence<>(tree.insert(key));
+  }
+
+  /**
+   * Returns the version without the key, or this version if the key isn't part of it.
+   */
+  public PersistentSequence<T, C> delete(T key) {
+    checkNotNull(key);
+    PersistentAVLTree<T, C> newTree = tree.delete(key);
+    return newTree != tree ? new PersistentSequence<>(newTree) : this;
+  }
+
+  /**
+   * Returns the link of the key in this version or null if the key isn't part of it.
+   */
+  public SequenceLink<T> get(T key) {
+    checkNotNull(key);
+    T found = tree.find(key);
+    return found != null ? new Link(found) : null;
+  }
+
+  public T greaterThan(C comparable) {
+    checkNotNull(comparable);
+    return tree.higher(comparable);
+  }
+
+  public T lessThan(C comparable) {
+    checkNotNull(comparable);
+    return tree.lower(comparable);
+  }
+
+  public T equalTo(C comparable) {
+    checkNotNull(comparable);
+    return tree.find(comparable);
+  }
+
+  public T floor(C comparable) {
+    checkNotNull(comparable);
+    return tree.floor(comparable);
+  }
+
+  public T ceiling(C comparable) {
+    checkNotNull(comparable);
+    return tree.ceiling(comparable);
+  }
+
+  /**
+   * Returns the number of keys less than the comparable in O(log n).
+   */
+  public int rank(C comparable) {
+    checkNotNull(comparable);
+    return tree.rank(comparable, false);
+  }
+
+  /**
+   * Returns the key at the index in ascending order in O(log n).
+   */
+  public T select(int index) {
+    return tree.select(index);
+  }
+
+  public int size() {
+    return tree.size();
+  }
+
+  public boolean isEmpty() {
+    return tree.isEmpty();
+  }
+
+  /**
+   * Returns a spliterator over the keys in ascending order with exact sizes. Versions never
+   * change, so it reports {@link Spliterator#IMMUTABLE} too.
+   */
+  public Spliterator<T> spliterator() {
+    return tree.spliterator();
+  }
+
+  public Stream<T> stream() {
+    return StreamSupport.stream(spliterator(), false);
+  }
+
+  public Stream<T> parallelStream() {
+    return StreamSupport.stream(spliterator(), true);
+  }
+
+  private class Link implements SequenceLink<T> {
+
+    private final T value;
+
+    private Link(T value) {
+      this.value = value;
+    }
+
+    @Override
+    public T getValue() {
+      return value;
+    }
+
+    @Override
+    public SequenceLink<T> getLeft() {
+      return linkOf(tree.lower(value));
+    }
+
+    @Override
+    public SequenceLink<T> getRight() {
+      return linkOf(tree.higher(value));
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof PersistentSequence.Link)) {
+        return false;
+      }
+      PersistentSequence<?, ?>.Link link = (PersistentSequence<?, ?>.Link) other;
+      return value.equals(link.value) && version() == link.version();
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(value);
+    }
+
+    private PersistentSequence<?, ?> version() {
+      return PersistentSequence.this;
+    }
+
+    private SequenceLink<T> linkOf(T neighbour) {
+      return neighbour != null ? new Link(neighbour) : null;
+    }
+  }
+}
@@ -1,11 +1,36 @@
 package org.openstructures.sequence;
 
+import java.util.Collection;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 public interface Sequence<T extends C, C> {
 
   SequenceLink<T> insert(T key);
 
   void delete(T key);
 
+  /**
+   * Inserts all the keys. None of them can be part of the sequence already. By default the keys are
+   * inserted one by one.
+   */
+  default void insertAll(Collection<? extends T> keys) {
+    for (T key : keys) {
+      insert(key);
+    }
+  }
+
+  /**
+   * Deletes all the keys, skipping the ones that aren't part of the sequence. By default the keys
+   * are deleted one by one.
+   */
+  default void deleteAll(Collection<? extends T> keys) {
+    for (T key : keys) {
+      delete(key);
+    }
+  }
+
   SequenceLink<T> get(T key);
 
   /**
@@ -19,4 +44,29 @@ public interface Sequence<T extends C, C> {
   T lessThan(C comparable);
 
   T equalTo(C comparable);
+
+  /**
+   * Returns the number of keys.
+   */
+  int size();
+
+  /**
+   * Returns a spliterator over the keys in ascending order. It reports at least
+   * {@link Spliterator#SORTED}, {@link Spliterator#DISTINCT} and {@link Spliterator#ORDERED}.
+   */
+  Spliterator<T> spliterator();
+
+  /**
+   * Returns a sequential stream of the keys in ascending order.
+   */
+  default Stream<T> stream() {
+    return StreamSupport.stream(spliterator(), false);
+  }
+
+  /**
+   * Returns a parallel stream of the keys, split up by the spliterator of the sequence.
+   */
+  default Stream<T> parallelStream() {
+    return StreamSupport.stream(spliterator(), true);
+  }
 }
@@ -0,0 +1,491 @@
+package org.openstructures.sequence;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.Spliterator;
+import org.openstructures.sequence.avltree.AbstractAVLNode;
+import org.openstructures.sequence.avltree.AbstractAVLTree;
+
+/**
+ * Sequence whose keys carry values, usable wherever a {@link NavigableMap} is expected. Every key
+ * costs a single node, which is the node of the AVL tree, the link of the sequence and the holder
+ * of the value at the same time. Keys are looked up by a search of the tree in O(log n), there is
+ * no hash index.
+ * <p>
+ * Sub-maps, descending maps and key sets are views sharing the tree: they search it for their ends,
+ * count their keys in O(log n) from the ranks of their bounds and iterate by following the links.
+ * Keys can't be null, values can.
+ */
+public class SequenceMap<K extends C, C, V> extends AbstractMap<K, V>
+    implements NavigableMap<K, V> {
+
+  private final EntryTree<K, C, V> tree;
+  private final NodeRange<K, C, EntryNode<K, V>> range;
+
+  public SequenceMap(Comparator<C> comparator) {
+    checkNotNull(comparator);
+
+    this.tree = new EntryTree<>(comparator);
+    this.range = NodeRange.all(tree);
+  }
+
+  private SequenceMap(EntryTree<K, C, V> tree, NodeRange<K, C, EntryNode<K, V>> range) {
+    this.tree = tree;
+    this.range = range;
+  }
+
+  /**
+   * Returns the link of the key, which leads to the neighbouring keys of the whole map, or null if
+   * the key isn't part of this map.
+   */
+  public SequenceLink<K> getLink(K key) {
+    return range.find(key);
+  }
+
+  @Override
+  public int size() {
+    return range.size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return range.isEmpty();
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return find(key) != null;
+  }
+
+  @Override
+  public V get(Object key) {
+    EntryNode<K, V> node = find(key);
+    return node != null ? node.mapped : null;
+  }
+
+  @Override
+  public V put(K key, V value) {
+    checkNotNull(key, "can't put null keys");
+    checkArgument(range.inRange(key), "%s is out of the range of the map", key);
+
+    EntryNode<K, V> node = tree.find(key);
+    if (node != null) {
+      V previous = node.mapped;
+      node.mapped = value;
+      return previous;
+    }
+    tree.insert(key).mapped = value;
+    return null;
+  }
+
+  @Override
+  public V remove(Object key) {
+    EntryNode<K, V> node = find(key);
+    if (node == null) {
+      return null;
+    }
+    tree.delete(node);
+    return node.mapped;
+  }
+
+  @Override
+  public void clear() {
+    if (range.first() == tree.first() && range.last() == tree.last()) {
+      tree.clear();
+    } else {
+      super.clear();
+    }
+  }
+
+  @Override
+  public Set<Map.Entry<K, V>> entrySet() {
+    return new EntrySet();
+  }
+
+  @Override
+  public NavigableSet<K> keySet() {
+    return navigableKeySet();
+  }
+
+  @Override
+  public NavigableSet<K> navigableKeySet() {
+    return new SequenceSetView<>(range);
+  }
+
+  @Override
+  public NavigableSet<K> descendingKeySet() {
+    return new SequenceSetView<>(range.descending());
+  }
+
+  @Override
+  public NavigableMap<K, V> descendingMap() {
+    return new SequenceMap<>(tree, range.descending());
+  }
+
+  @Override
+  public Comparator<? super K> comparator() {
+    return range.comparator();
+  }
+
+  @Override
+  public K firstKey() {
+    return keyOrThrow(range.first());
+  }
+
+  @Override
+  public K lastKey() {
+    return keyOrThrow(range.last());
+  }
+
+  @Override
+  public Map.Entry<K, V> firstEntry() {
+    return exported(range.first());
+  }
+
+  @Override
+  public Map.Entry<K, V> lastEntry() {
+    return exported(range.last());
+  }
+
+  @Override
+  public Map.Entry<K, V> pollFirstEntry() {
+    return poll(range.first());
+  }
+
+  @Override
+  public Map.Entry<K, V> pollLastEntry() {
+    return poll(range.last());
+  }
+
+  @Override
+  public Map.Entry<K, V> lowerEntry(K key) {
+    return exported(range.lower(key));
+  }
+
+  @Override
+  public K lowerKey(K key) {
+    return keyOrNull(range.lower(key));
+  }
+
+  @Override
+  public Map.Entry<K, V> floorEntry(K key) {
+    return exported(range.floor(key));
+  }
+
+  @Override
+  public K floorKey(K key) {
+    return keyOrNull(range.floor(key));
+  }
+
+  @Override
+  public Map.Entry<K, V> ceilingEntry(K key) {
+    return exported(range.ceiling(key));
+  }
+
+  @Override
+  public K ceilingKey(K key) {
+    return keyOrNull(range.ceiling(key));
+  }
+
+  @Override
+  public Map.Entry<K, V> higherEntry(K key) {
+    return exported(range.higher(key));
+  }
+
+  @Override
+  public K higherKey(K key) {
+    return keyOrNull(range.higher(key));
+  }
+
+  @Override
+  public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey,
+      boolean toInclusive) {
+    return new SequenceMap<>(tree, range.subRange(fromKey, fromInclusive, toKey, toInclusive));
+  }
+
+  @Override
+  public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+    return new SequenceMap<>(tree, range.headRange(toKey, inclusive));
+  }
+
+  @Override
+  public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+    return new SequenceMap<>(tree, range.tailRange(fromKey, inclusive));
+  }
+
+  @Override
+  public SortedMap<K, V> subMap(K fromKey, K toKey) {
+    return subMap(fromKey, true, toKey, false);
+  }
+
+  @Override
+  public SortedMap<K, V> headMap(K toKey) {
+    return headMap(toKey, false);
+  }
+
+  @Override
+  public SortedMap<K, V> tailMap(K fromKey) {
+    return tailMap(fromKey, true);
+  }
+
+  @SuppressWarnings("unchecked")
+  private EntryNode<K, V> find(Object key) {
+    return key != null ? range.find((C) key) : null;
+  }
+
+  private static <K> K keyOrThrow(EntryNode<K, ?> node) {
+    if (node == null) {
+      throw new NoSuchElementException();
+    }
+    return node.getValue();
+  }
+
+  private static <K> K keyOrNull(EntryNode<K, ?> node) {
+    return node != null ? node.getValue() : null;
+  }
+
+  // entries returned by the navigation methods are snapshots, like the ones of TreeMap
+  private static <K, V> Map.Entry<K, V> exported(EntryNode<K, V> node) {
+    return node != null ? new SimpleImmutableEntry<>(node.getValue(), node.mapped) : null;
+  }
+
+  private Map.Entry<K, V> poll(EntryNode<K, V> node) {
+    if (node == null) {
+      return null;
+    }
+    Map.Entry<K, V> entry = exported(node);
+    tree.delete(node);
+    return entry;
+  }
+
+  private class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+      Iterator<EntryNode<K, V>> nodes = range.iterator();
+      return new Iterator<Map.Entry<K, V>>() {
+        @Override
+        public boolean hasNext() {
+          return nodes.hasNext();
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+          return new NodeEntry<>(nodes.next());
+        }
+
+        @Override
+        public void remove() {
+          nodes.remove();
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return range.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return range.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object object) {
+      return matchingNode(object) != null;
+    }
+
+    @Override
+    public boolean remove(Object object) {
+      EntryNode<K, V> node = matchingNode(object);
+      if (node == null) {
+        return false;
+      }
+      tree.delete(node);
+      return true;
+    }
+
+    private EntryNode<K, V> matchingNode(Object object) {
+      if (!(object instanceof Map.Entry)) {
+        return null;
+      }
+      Map.Entry<?, ?> entry = (Map.Entry<?, ?>) object;
+      EntryNode<K, V> node = find(entry.getKey());
+      return node != null && Objects.equals(node.mapped, entry.getValue()) ? node : null;
+    }
+  }
+
+  /**
+   * Entry that reads and writes the value of its node.
+   */
+  private static class NodeEntry<K, V> implements Map.Entry<K, V> {
+
+    private final EntryNode<K, V> node;
+
+    private NodeEntry(EntryNode<K, V> node) {
+      this.node = node;
+    }
+
+    @Override
+    public K getKey() {
+      return node.getValue();
+    }
+
+    @Override
+    public V getValue() {
+      return node.mapped;
+    }
+
+    @Override
+    public V setValue(V value) {
+      V previous = node.mapped;
+      node.mapped = value;
+      return previous;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+      if (!(object instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry<?, ?> entry = (Map.Entry<?, ?>) object;
+      return Objects.equals(getKey(), entry.getKey())
+          && Objects.equals(getValue(), entry.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(getKey()) ^ Objects.hashCode(getValue());
+    }
+
+    @Override
+    public String toString() {
+      return getKey() + "=" + getValue();
+    }
+  }
+
+  /**
+   * Node of the tree, link of the sequence and holder of the value. Its value in the tree is the
+   * key of the map.
+   */
+  static class EntryNode<K, V> extends AbstractAVLNode<K, EntryNode<K, V>> implements
+      SequenceLink<K> {
+
+    private V mapped;
+
+    private EntryNode(K key) {
+      super(key);
+    }
+
+    @Override
+    public EntryNode<K, V> getLeft() {
+      return previous();
+    }
+
+    @Override
+    public EntryNode<K, V> getRight() {
+      return next();
+    }
+  }
+
+  private static class EntryTree<K extends C, C, V> extends
+      AbstractAVLTree<K, C, EntryNode<K, V>> implements SequenceNodes<K, C, EntryNode<K, V>> {
+
+    private EntryTree(Comparator<C> comparator) {
+      super(comparator);
+    }
+
+    @Override
+    protected EntryNode<K, V> newNode(K key) {
+      return new EntryNode<>(key);
+    }
+
+    @Override
+    public Comparator<? super C> comparator() {
+      return comparator;
+    }
+
+    @Override
+    public K keyOf(EntryNode<K, V> node) {
+      return node.getValue();
+    }
+
+    @Override
+    public EntryNode<K, V> next(EntryNode<K, V> node) {
+      return node.getRight();
+    }
+
+    @Override
+    public EntryNode<K, V> previous(EntryNode<K, V> node) {
+      return node.getLeft();
+    }
+
+    @Override
+    public EntryNode<K, V> first() {
+      return firstNode();
+    }
+
+    @Override
+    public EntryNode<K, V> last() {
+      return lastNode();
+    }
+
+    @Override
+    public EntryNode<K, V> find(C key) {
+      return findNode(key);
+    }
+
+    @Override
+    public EntryNode<K, V> ceiling(C key) {
+      return ceilingNode(key);
+    }
+
+    @Override
+    public EntryNode<K, V> higher(C key) {
+      return higherNode(key);
+    }
+
+    @Override
+    public EntryNode<K, V> floor(C key) {
+      return floorNode(key);
+    }
+
+    @Override
+    public EntryNode<K, V> lower(C key) {
+      return lowerNode(key);
+    }
+
+    @Override
+    public int rank(C key, boolean inclusive) {
+      return super.rank(key, inclusive);
+    }
+
+    @Override
+    public Spliterator<K> spliterator(int fromIndex, int toIndex) {
+      return super.spliterator(fromIndex, toIndex);
+    }
+
+    @Override
+    public EntryNode<K, V> insert(K key) {
+      return insertNode(key);
+    }
+
+    @Override
+    public void delete(EntryNode<K, V> node) {
+      deleteNode(node);
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package org.openstructures.sequence;
+
+import org.openstructures.sequence.avltree.TreeListener;
+
+/**
+ * Listener of what a sequence does: the operations with their latencies, reported by
+ * {@link InstrumentedSequence}, and the comparisons and re-balancing of the tree of an
+ * {@link InMemorySequence} created with the metrics. Methods are called on the threads that use the
+ * sequence, so they should be quick and thread-safe, {@link SequenceStatistics} is an
+ * implementation that is both. Methods do nothing by default.
+ */
+public interface SequenceMetrics extends TreeListener {
+
+  SequenceMetrics NONE = new SequenceMetrics() {
+  };
+
+  enum Operation {
+    INSERT, DELETE, INSERT_ALL, DELETE_ALL, GET, GREATER_THAN, LESS_THAN, EQUAL_TO
+  }
+
+  /**
+   * Called after every operation, also one that threw, with the nanoseconds it took.
+   */
+  default void operation(Operation operation, long nanos) {
+  }
+
+  /**
+   * Called for every call of the comparator.
+   */
+  default void compared() {
+  }
+}
@@ -0,0 +1,57 @@
+package org.openstructures.sequence;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+
+/**
+ * Ascending access to the linked nodes of a sequence, which is all the set and map views need from
+ * the tree behind them. Searches take O(log n), moving to a neighbour takes O(1).
+ *
+ * @param <T> type of the keys
+ * @param <C> type the keys are compared as
+ * @param <N> type of the nodes
+ */
+interface SequenceNodes<T extends C, C, N> {
+
+  Comparator<? super C> comparator();
+
+  T keyOf(N node);
+
+  N next(N node);
+
+  N previous(N node);
+
+  N first();
+
+  N last();
+
+  N find(C key);
+
+  N ceiling(C key);
+
+  N higher(C key);
+
+  N floor(C key);
+
+  N lower(C key);
+
+  /**
+   * Returns the number of keys less than the key, or less than or equal to it if inclusive.
+   */
+  int rank(C key, boolean inclusive);
+
+  int size();
+
+  /**
+   * Returns a spliterator over the keys at the indexes from {@code fromIndex} inclusive to
+   * {@code toIndex} exclusive in ascending order.
+   */
+  Spliterator<T> spliterator(int fromIndex, int toIndex);
+
+  /**
+   * Inserts the key, which isn't part of the sequence yet, and returns its node.
+   */
+  N insert(T key);
+
+  void delete(N node);
+}
@@ -0,0 +1,183 @@
+package org.openstructures.sequence;
+
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import java.util.Spliterator;
+
+/**
+ * {@link NavigableSet} view of the keys of a sequence within a range. Lookups search the tree,
+ * {@link #size()} is counted from the ranks of the bounds in O(log n) and iteration follows the
+ * links, so the view holds no keys of its own. Keys can be removed through the view but not added,
+ * they have to be inserted into the sequence. The spliterator of an ascending view splits at the
+ * roots of subtrees.
+ */
+class SequenceSetView<T extends C, C, N> extends AbstractSet<T> implements NavigableSet<T> {
+
+  private final NodeRange<T, C, N> range;
+
+  SequenceSetView(NodeRange<T, C, N> range) {
+    this.range = range;
+  }
+
+  @Override
+  public int size() {
+    return range.size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return range.isEmpty();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public boolean contains(Object key) {
+    return key != null && range.find((C) key) != null;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public boolean remove(Object key) {
+    N node = key != null ? range.find((C) key) : null;
+    if (node == null) {
+      return false;
+    }
+    range.nodes().delete(node);
+    return true;
+  }
+
+  @Override
+  public Iterator<T> iterator() {
+    Iterator<N> nodes = range.iterator();
+    return new Iterator<T>() {
+      @Override
+      public boolean hasNext() {
+        return nodes.hasNext();
+      }
+
+      @Override
+      public T next() {
+        return range.nodes().keyOf(nodes.next());
+      }
+
+      @Override
+      public void remove() {
+        nodes.remove();
+      }
+    };
+  }
+
+  @Override
+  public Spliterator<T> spliterator() {
+    return range.spliterator();
+  }
+
+  @Override
+  public Iterator<T> descendingIterator() {
+    return descendingSet().iterator();
+  }
+
+  @Override
+  public NavigableSet<T> descendingSet() {
+    return new SequenceSetView<>(range.descending());
+  }
+
+  @Override
+  public Comparator<? super T> comparator() {
+    return range.comparator();
+  }
+
+  @Override
+  public T first() {
+    return keyOrThrow(range.first());
+  }
+
+  @Override
+  public T last() {
+    return keyOrThrow(range.last());
+  }
+
+  @Override
+  public T lower(T key) {
+    return keyOrNull(range.lower(key));
+  }
+
+  @Override
+  public T floor(T key) {
+    return keyOrNull(range.floor(key));
+  }
+
+  @Override
+  public T ceiling(T key) {
+    return keyOrNull(range.ceiling(key));
+  }
+
+  @Override
+  public T higher(T key) {
+    return keyOrNull(range.higher(key));
+  }
+
+  @Override
+  public T pollFirst() {
+    return poll(range.first());
+  }
+
+  @Override
+  public T pollLast() {
+    return poll(range.last());
+  }
+
+  @Override
+  public NavigableSet<T> subSet(T fromKey, boolean fromInclusive, T toKey, boolean toInclusive) {
+    return new SequenceSetView<>(range.subRange(fromKey, fromInclusive, toKey, toInclusive));
+  }
+
+  @Override
+  public NavigableSet<T> headSet(T toKey, boolean inclusive) {
+    return new SequenceSetView<>(range.headRange(toKey, inclusive));
+  }
+
+  @Override
+  public NavigableSet<T> tailSet(T fromKey, boolean inclusive) {
+    return new SequenceSetView<>(range.tailRange(fromKey, inclusive));
+  }
+
+  @Override
+  public SortedSet<T> subSet(T fromKey, T toKey) {
+    return subSet(fromKey, true, toKey, false);
+  }
+
+  @Override
+  public SortedSet<T> headSet(T toKey) {
+    return headSet(toKey, false);
+  }
+
+  @Override
+  public SortedSet<T> tailSet(T fromKey) {
+    return tailSet(fromKey, true);
+  }
+
+  private T keyOrThrow(N node) {
+    if (node == null) {
+      throw new NoSuchElementException();
+    }
+    return range.nodes().keyOf(node);
+  }
+
+  private T keyOrNull(N node) {
+    return node != null ? range.nodes().keyOf(node) : null;
+  }
+
+  private T poll(N node) {
+    if (node == null) {
+      return null;
+    }
+    T key = range.nodes().keyOf(node);
+    range.nodes().delete(node);
+    return key;
+  }
+}
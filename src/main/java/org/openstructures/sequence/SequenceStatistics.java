@@ -0,0 +1,115 @@
+package org.openstructures.sequence;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe {@link SequenceMetrics} that counts what is reported. Latencies go into histograms of
+ * power of two buckets per operation, bucket {@code i} counts the operations that took at least
+ * 2<sup>i - 1</sup> and less than 2<sup>i</sup> nanoseconds, so recording takes no allocation and
+ * a percentile is known within a factor of two.
+ */
+public class SequenceStatistics implements SequenceMetrics {
+
+  private static final int BUCKETS = Long.SIZE + 1;
+  private static final int MAX_DEPTH = 64;
+
+  private final AtomicLongArray[] latencies = new AtomicLongArray[Operation.values().length];
+  private final AtomicLongArray retraceDepths = new AtomicLongArray(MAX_DEPTH + 1);
+  private final LongAdder rotations = new LongAdder();
+  private final LongAdder comparisons = new LongAdder();
+
+  public SequenceStatistics() {
+    for (int i = 0; i < latencies.length; i++) {
+      latencies[i] = new AtomicLongArray(BUCKETS);
+    }
+  }
+
+  @Override
+  public void operation(Operation operation, long nanos) {
+    latencies[operation.ordinal()].incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(nanos));
+  }
+
+  @Override
+  public void compared() {
+    comparisons.increment();
+  }
+
+  @Override
+  public void rotated() {
+    rotations.increment();
+  }
+
+  @Override
+  public void retraced(int depth) {
+    retraceDepths.incrementAndGet(Math.min(depth, MAX_DEPTH));
+  }
+
+  /**
+   * Returns the number of times the operation was done.
+   */
+  public long count(Operation operation) {
+    long count = 0;
+    for (long bucket : latencyHistogram(operation)) {
+      count += bucket;
+    }
+    return count;
+  }
+
+  /**
+   * Returns the histogram of the latencies of the operation, see the buckets above.
+   */
+  public long[] latencyHistogram(Operation operation) {
+    checkNotNull(operation);
+    return toArray(latencies[operation.ordinal()]);
+  }
+
+  /**
+   * Returns the upper bound in nanoseconds of the bucket that holds the percentile of the latencies
+   * of the operation, e.g. 99 for the 99th percentile, or 0 if the operation wasn't done.
+   */
+  public long latencyPercentile(Operation operation, double percentile) {
+    checkArgument(percentile > 0 && percentile <= 100, "percentile %s isn't in (0, 100]",
+        percentile);
+
+    long[] histogram = latencyHistogram(operation);
+    long count = 0;
+    for (long bucket : histogram) {
+      count += bucket;
+    }
+    long rank = (long) Math.ceil(count * percentile / 100);
+    for (int i = 0; i < histogram.length; i++) {
+      rank -= histogram[i];
+      if (rank <= 0 && count > 0) {
+        return i < Long.SIZE - 1 ? 1L << i : Long.MAX_VALUE;
+      }
+    }
+    return 0;
+  }
+
+  public long rotations() {
+    return rotations.sum();
+  }
+
+  public long comparisons() {
+    return comparisons.sum();
+  }
+
+  /**
+   * Returns how many times re-balancing stopped at every depth, depths beyond 64 count as 64.
+   */
+  public long[] retraceDepthHistogram() {
+    return toArray(retraceDepths);
+  }
+
+  private static long[] toArray(AtomicLongArray array) {
+    long[] copy = new long[array.length()];
+    for (int i = 0; i < copy.length; i++) {
+      copy[i] = array.get(i);
+    }
+    return copy;
+  }
+}
@@ -0,0 +1,562 @@
+package org.openstructures.sequence;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Thread-safe sequence that partitions the keys by ranges into shards, each an
+ * {@link InMemorySequence} guarded by a read-write lock of its own, so writers to different ranges
+ * don't contend and readers don't wait for each other. Every operation locks the one shard its key
+ * belongs to, which is found by a binary search over the lower bounds of the shards: lookups for
+ * reading, inserts and deletes for writing.
+ * <p>
+ * Shards are split at their median key once they hold more than {@code maxShardSize} keys, or once
+ * they are hot: when writes often find the lock of the shard taken. Adjacent shards are merged
+ * back once they hold few keys together. A split or a merge holds the write locks of the shards it
+ * replaces for O(log n) plus a copy of the shard array: the trees are split or joined without
+ * touching their keys, and the new shards start without a key index, which shards never build,
+ * since they look keys up by searches of their trees. It is made by the writer that notices the
+ * need, after it has released the lock of its shard, so it never holds up the operations on other
+ * shards.
+ * <p>
+ * Links don't store their neighbours, like the links of {@link ConcurrentSequence} they look them
+ * up when asked, across shard boundaries if needed. A link of a deleted key still leads to the
+ * neighbours its key would have.
+ */
+public class ShardedSequence<T extends C, C> implements Sequence<T, C> {
+
+  public static final int DEFAULT_MAX_SHARD_SIZE = 1 << 16;
+
+  // a shard is hot if at least 1 / HOT_RATIO of the last SAMPLE writes waited for its lock
+  private static final int SAMPLE = 1024;
+  private static final int HOT_RATIO = 8;
+
+  private final Comparator<C> comparator;
+  private final int maxShardSize;
+  private final Object restructuring = new Object();
+  private volatile Shard<T, C>[] shards;
+
+  public ShardedSequence(Comparator<C> comparator) {
+    this(comparator, DEFAULT_MAX_SHARD_SIZE);
+  }
+
+  public ShardedSequence(Comparator<C> comparator, int maxShardSize) {
+    checkNotNull(comparator);
+    checkArgument(maxShardSize >= 64, "max shard size has to be at least 64, but it is %s",
+        maxShardSize);
+
+    this.comparator = comparator;
+    this.maxShardSize = maxShardSize;
+    Shard<T, C>[] initial = newShards(1);
+    initial[0] = new Shard<>(new InMemorySequence<>(comparator), null);
+    this.shards = initial;
+  }
+
+  @Override
+  public SequenceLink<T> insert(T key) {
+    checkNotNull(key, "can't added nulls");
+
+    Shard<T, C> shard = lockForWriting(key);
+    try {
+      shard.sequence.insert(key);
+      shard.written();
+    } finally {
+      shard.lock.writeLock().unlock();
+    }
+    restructure(shard);
+    return new Link(key);
+  }
+
+  /**
+   * Inserts the keys shard by shard, see {@link InMemorySequence#insertAll(Collection)}. The keys
+   * inserted into a shard become visible at once, but the shards are updated one after the other.
+   * If a key is already part of the sequence, none of the keys of its shard are inserted.
+   */
+  @Override
+  public void insertAll(Collection<? extends T> keys) {
+    checkNotNull(keys);
+
+    List<T> remaining = sorted(keys);
+    while (!remaining.isEmpty()) {
+      Shard<T, C> shard = lockForWriting(remaining.get(0));
+      int end;
+      try {
+        end = endOfShard(shard, remaining);
+        shard.sequence.insertAll(remaining.subList(0, end));
+        shard.written();
+      } finally {
+        shard.lock.writeLock().unlock();
+      }
+      restructure(shard);
+      remaining = remaining.subList(end, remaining.size());
+    }
+  }
+
+  @Override
+  public void delete(T key) {
+    checkNotNull(key);
+
+    Shard<T, C> shard = lockForWriting(key);
+    try {
+      shard.sequence.delete(key);
+      shard.written();
+    } finally {
+      shard.lock.writeLock().unlock();
+    }
+    restructure(shard);
+  }
+
+  @Override
+  public void deleteAll(Collection<? extends T> keys) {
+    checkNotNull(keys);
+
+    List<T> remaining = sorted(keys);
+    while (!remaining.isEmpty()) {
+      Shard<T, C> shard = lockForWriting(remaining.get(0));
+      int end;
+      try {
+        end = endOfShard(shard, remaining);
+        shard.sequence.deleteAll(remaining.subList(0, end));
+        shard.written();
+      } finally {
+        shard.lock.writeLock().unlock();
+      }
+      restructure(shard);
+      remaining = remaining.subList(end, remaining.size());
+    }
+  }
+
+  @Override
+  public SequenceLink<T> get(T key) {
+    checkNotNull(key);
+
+    T found = equalTo(key);
+    return found != null ? new Link(found) : null;
+  }
+
+  /**
+   * Returns the smallest key greater than the comparable, looking into the following shards if its
+   * own shard has none.
+   */
+  @Override
+  public T greaterThan(C comparable) {
+    checkNotNull(comparable);
+
+    C bound = comparable;
+    while (bound != null) {
+      Shard<T, C> shard = lockForReading(bound, true);
+      try {
+        T greater = shard.sequence.greaterThan(comparable);
+        if (greater != null) {
+          return greater;
+        }
+        bound = upperBound(shard);
+      } finally {
+        shard.lock.readLock().unlock();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the greatest key less than the comparable, looking into the preceding shards if its own
+   * shard has none.
+   */
+  @Override
+  public T lessThan(C comparable) {
+    checkNotNull(comparable);
+
+    C bound = comparable;
+    while (true) {
+      Shard<T, C> shard = lockForReading(bound, false);
+      try {
+        T less = shard.sequence.lessThan(comparable);
+        if (less != null || shard.lowerBound == null) {
+          return less;
+        }
+        bound = shard.lowerBound;
+      } finally {
+        shard.lock.readLock().unlock();
+      }
+    }
+  }
+
+  @Override
+  public T equalTo(C comparable) {
+    checkNotNull(comparable);
+
+    Shard<T, C> shard = lockForReading(comparable, true);
+    try {
+      return shard.sequence.equalTo(comparable);
+    } finally {
+      shard.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the number of keys, adding up the sizes of the shards one by one. While writes are in
+   * flight, it may count some of them and miss others.
+   */
+  @Override
+  public int size() {
+    int size = 0;
+    for (Shard<T, C> shard : shards) {
+      size += shard.size;
+    }
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * Returns the number of shards at the moment.
+   */
+  public int shardCount() {
+    return shards.length;
+  }
+
+  /**
+   * Returns a weakly consistent spliterator over the keys in ascending order. It copies the keys
+   * of one shard at a time while holding its read lock, so it reflects some or none of the writes
+   * made while it is in use and never throws because of them.
+   */
+  @Override
+  public Spliterator<T> spliterator() {
+    KeyIterator keys = new KeyIterator();
+    return new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+        Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL) {
+      @Override
+      public boolean tryAdvance(Consumer<? super T> action) {
+        checkNotNull(action);
+        if (!keys.hasNext()) {
+          return false;
+        }
+        action.accept(keys.next());
+        return true;
+      }
+
+      @Override
+      public Comparator<? super T> getComparator() {
+        return comparator;
+      }
+    };
+  }
+
+  // write-locks the live shard whose range holds the key, a null key stands for the first shard.
+  // A write that waits for the lock counts towards the shard being hot
+  private Shard<T, C> lockForWriting(C key) {
+    while (true) {
+      Shard<T, C> shard = shardOf(key, true);
+      Lock lock = shard.lock.writeLock();
+      if (!lock.tryLock()) {
+        lock.lock();
+        shard.contended++;
+      }
+      if (!shard.retired) {
+        return shard;
+      }
+      lock.unlock();
+    }
+  }
+
+  // read-locks the live shard whose lower bound is the greatest one less than the key, or less
+  // than or equal to it if inclusive, a null key stands for the first shard
+  private Shard<T, C> lockForReading(C key, boolean inclusive) {
+    while (true) {
+      Shard<T, C> shard = shardOf(key, inclusive);
+      Lock lock = shard.lock.readLock();
+      lock.lock();
+      if (!shard.retired) {
+        return shard;
+      }
+      lock.unlock();
+    }
+  }
+
+  // a shard found retired once locked has been replaced, so the caller searches again
+  private Shard<T, C> shardOf(C key, boolean inclusive) {
+    Shard<T, C>[] current = shards;
+    return current[key != null ? indexOf(current, key, inclusive) : 0];
+  }
+
+  // binary search for the last shard whose lower bound is less than the key, or equal to it if
+  // inclusive, the first shard has no lower bound
+  private int indexOf(Shard<T, C>[] shards, C key, boolean inclusive) {
+    int low = 1;
+    int high = shards.length - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int comparison = comparator.compare(shards[middle].lowerBound, key);
+      if (comparison < 0 || inclusive && comparison == 0) {
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return low - 1;
+  }
+
+  // returns the lower bound of the shard after the live one, or null if it is the last one. Shards
+  // are retired while locked, so a locked live shard is part of the current shards
+  private C upperBound(Shard<T, C> shard) {
+    Shard<T, C>[] current = shards;
+    int index = indexOf(current, shard);
+    return index + 1 < current.length ? current[index + 1].lowerBound : null;
+  }
+
+  private int indexOf(Shard<T, C>[] shards, Shard<T, C> shard) {
+    return shard.lowerBound != null ? indexOf(shards, shard.lowerBound, true) : 0;
+  }
+
+  private List<T> sorted(Collection<? extends T> keys) {
+    List<T> sorted = new ArrayList<>(keys);
+    for (T key : sorted) {
+      checkNotNull(key);
+    }
+    sorted.sort(comparator);
+    return sorted;
+  }
+
+  // returns the number of the leading sorted keys that belong to the locked shard
+  private int endOfShard(Shard<T, C> shard, List<T> sortedKeys) {
+    C upperBound = upperBound(shard);
+    int end = 1;
+    while (end < sortedKeys.size()
+        && (upperBound == null || comparator.compare(sortedKeys.get(end), upperBound) < 0)) {
+      end++;
+    }
+    return end;
+  }
+
+  /**
+   * Splits the shard if it is oversized or hot, or merges it with a neighbour if both are nearly
+   * empty. The needs are checked without locks first, so most writes return right away.
+   * Restructuring is serialized, and it locks the shards it replaces in ascending order, while no
+   * operation holds more than one shard lock at a time, so it can't deadlock with them.
+   */
+  private void restructure(Shard<T, C> shard) {
+    // the parts of a hot shard are too large to be merged back right away
+    boolean split = shard.size > maxShardSize || shard.hot && shard.size >= maxShardSize / 4;
+    boolean merge = !split && shard.size < maxShardSize / 16 && shards.length > 1;
+    if (!split && !merge) {
+      return;
+    }
+    synchronized (restructuring) {
+      if (shard.retired) {
+        return;
+      }
+      if (split) {
+        split(shard);
+      } else {
+        mergeWithNeighbour(shard);
+      }
+    }
+  }
+
+  private void split(Shard<T, C> shard) {
+    shard.lock.writeLock().lock();
+    try {
+      if (shard.size < 2) {
+        return;
+      }
+      T pivot = shard.sequence.select(shard.size / 2);
+      InMemorySequence.Split<T, C> parts = shard.sequence.split(pivot);
+      Shard<T, C> left = new Shard<>(parts.getLeft(), shard.lowerBound);
+      Shard<T, C> right = new Shard<>(parts.getRight(), pivot);
+      replace(shard, null, left, right);
+    } finally {
+      shard.lock.writeLock().unlock();
+    }
+    // a shard filled by a batch may take more than one split
+    Shard<T, C>[] current = shards;
+    for (Shard<T, C> part : current) {
+      if (part.size > maxShardSize) {
+        split(part);
+        return;
+      }
+    }
+  }
+
+  private void mergeWithNeighbour(Shard<T, C> shard) {
+    Shard<T, C>[] current = shards;
+    int index = indexOf(current, shard);
+    int leftIndex = index + 1 < current.length
+        && (index == 0 || current[index + 1].size <= current[index - 1].size) ? index : index - 1;
+    Shard<T, C> left = current[leftIndex];
+    Shard<T, C> right = current[leftIndex + 1];
+    if (left.size + right.size >= maxShardSize / 8) {
+      return;
+    }
+    left.lock.writeLock().lock();
+    right.lock.writeLock().lock();
+    try {
+      Shard<T, C> merged = new Shard<>(InMemorySequence.join(left.sequence, right.sequence),
+          left.lowerBound);
+      replace(left, right, merged, null);
+    } finally {
+      right.lock.writeLock().unlock();
+      left.lock.writeLock().unlock();
+    }
+  }
+
+  // publishes the shards in place of the locked ones, first and second may be null
+  private void replace(Shard<T, C> replaced, Shard<T, C> alsoReplaced, Shard<T, C> first,
+      Shard<T, C> second) {
+    List<Shard<T, C>> replacement = new ArrayList<>(shards.length + 1);
+    for (Shard<T, C> shard : shards) {
+      if (shard == replaced) {
+        replacement.add(first);
+        if (second != null) {
+          replacement.add(second);
+        }
+      } else if (shard != alsoReplaced) {
+        replacement.add(shard);
+      }
+    }
+    shards = replacement.toArray(newShards(0));
+    replaced.retired = true;
+    if (alsoReplaced != null) {
+      alsoReplaced.retired = true;
+    }
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static <T extends C, C> Shard<T, C>[] newShards(int length) {
+    return new Shard[length];
+  }
+
+  private static class Shard<T extends C, C> {
+
+    private final InMemorySequence<T, C> sequence;
+    private final C lowerBound; // null for the first shard
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean retired;
+    private volatile boolean hot;
+    private volatile int size;
+    private int operations; // writes, guarded by the write lock like contended
+    private int contended;
+
+    private Shard(InMemorySequence<T, C> sequence, C lowerBound) {
+      this.sequence = sequence;
+      this.lowerBound = lowerBound;
+      this.size = sequence.size();
+    }
+
+    // called after a write while holding the lock
+    private void written() {
+      size = sequence.size();
+      if (++operations == SAMPLE) {
+        hot = contended * HOT_RATIO >= SAMPLE;
+        operations = 0;
+        contended = 0;
+      }
+    }
+  }
+
+  private class KeyIterator implements Iterator<T> {
+
+    private Iterator<T> batch;
+    private T last;
+    private boolean exhausted;
+
+    @Override
+    public boolean hasNext() {
+      while (!exhausted && (batch == null || !batch.hasNext())) {
+        batch = nextBatch();
+      }
+      return !exhausted;
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      last = batch.next();
+      return last;
+    }
+
+    // copies the keys after the last one from its shard, or from the following shards if it has
+    // none
+    private Iterator<T> nextBatch() {
+      C bound = last;
+      do {
+        Shard<T, C> shard = lockForReading(bound, true);
+        try {
+          NavigableSet<T> keys = shard.sequence.asNavigableSet();
+          List<T> copy = new ArrayList<>(last == null ? keys : keys.tailSet(last, false));
+          if (!copy.isEmpty()) {
+            return copy.iterator();
+          }
+          bound = upperBound(shard);
+        } finally {
+          shard.lock.readLock().unlock();
+        }
+      } while (bound != null);
+      exhausted = true;
+      return null;
+    }
+  }
+
+  /**
+   * Link of a key, which looks up its neighbours in the sequence whenever asked.
+   */
+  private class Link implements SequenceLink<T> {
+
+    private final T value;
+
+    private Link(T value) {
+      this.value = value;
+    }
+
+    @Override
+    public T getValue() {
+      return value;
+    }
+
+    @Override
+    public SequenceLink<T> getLeft() {
+      T left = lessThan(value);
+      return left != null ? new Link(left) : null;
+    }
+
+    @Override
+    public SequenceLink<T> getRight() {
+      T right = greaterThan(value);
+      return right != null ? new Link(right) : null;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof ShardedSequence.Link)) {
+        return false;
+      }
+      ShardedSequence<?, ?>.Link link = (ShardedSequence<?, ?>.Link) other;
+      return value.equals(link.value) && sequence() == link.sequence();
+    }
+
+    @Override
+    public int hashCode() {
+      return value.hashCode();
+    }
+
+    private ShardedSequence<?, ?> sequence() {
+      return ShardedSequence.this;
+    }
+  }
+}
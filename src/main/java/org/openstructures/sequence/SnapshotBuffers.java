@@ -0,0 +1,115 @@
+package org.openstructures.sequence;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Buffers of the streams snapshots are written to and read from. Serializers write and read keys a
+ * byte at a time, which the buffered streams of the JDK do under a lock, so these buffers take
+ * none.
+ */
+final class SnapshotBuffers {
+
+  private static final int SIZE = 1 << 16;
+
+  private SnapshotBuffers() {
+  }
+
+  static final class Output extends OutputStream {
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[SIZE];
+    private int count;
+
+    Output(OutputStream out) {
+      this.out = out;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      if (count == buffer.length) {
+        drain();
+      }
+      buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      if (length > buffer.length - count) {
+        drain();
+        if (length > buffer.length) {
+          out.write(bytes, offset, length);
+          return;
+        }
+      }
+      System.arraycopy(bytes, offset, buffer, count, length);
+      count += length;
+    }
+
+    /**
+     * Writes the buffered bytes and flushes the stream, which isn't closed.
+     */
+    @Override
+    public void flush() throws IOException {
+      drain();
+      out.flush();
+    }
+
+    private void drain() throws IOException {
+      if (count > 0) {
+        out.write(buffer, 0, count);
+        count = 0;
+      }
+    }
+  }
+
+  /**
+   * Reads ahead of the bytes it returns, so the stream shouldn't hold anything after the snapshot.
+   */
+  static final class Input extends InputStream {
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[SIZE];
+    private int position;
+    private int limit;
+
+    Input(InputStream in) {
+      this.in = in;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (position == limit && !fill()) {
+        return -1;
+      }
+      return buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+      if (length == 0) {
+        return 0;
+      }
+      if (position == limit) {
+        if (length >= buffer.length) {
+          return in.read(bytes, offset, length);
+        }
+        if (!fill()) {
+          return -1;
+        }
+      }
+      int read = Math.min(length, limit - position);
+      System.arraycopy(buffer, position, bytes, offset, read);
+      position += read;
+      return read;
+    }
+
+    private boolean fill() throws IOException {
+      int read = in.read(buffer, 0, buffer.length);
+      position = 0;
+      limit = Math.max(read, 0);
+      return read > 0;
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package org.openstructures.sequence;
+
+/**
+ * Position on a node of a {@link LongTree} that moves to the neighbours in place, so a walk creates
+ * no object per step, unlike a walk over {@link TreeLink}s. Like a link, a cursor remembers the key
+ * of its node, and once the key is deleted the cursor is off the tree and doesn't move any more.
+ */
+abstract class TreeCursor {
+
+  final LongTree tree;
+  private int node = LongTree.NIL;
+  private long key;
+
+  TreeCursor(LongTree tree) {
+    this.tree = tree;
+  }
+
+  final boolean moveToKey(long key) {
+    return moveToNode(tree.find(key));
+  }
+
+  final boolean moveToLeft() {
+    return moveToNode(isOnKey() ? tree.previous(node) : LongTree.NIL);
+  }
+
+  final boolean moveToRight() {
+    return moveToNode(isOnKey() ? tree.next(node) : LongTree.NIL);
+  }
+
+  final boolean isOnKey() {
+    return tree.holds(node, key);
+  }
+
+  // only meaningful while the cursor is on a key
+  final long key() {
+    return key;
+  }
+
+  private boolean moveToNode(int node) {
+    this.node = node;
+    if (node == LongTree.NIL) {
+      return false;
+    }
+    key = tree.key(node);
+    return true;
+  }
+}
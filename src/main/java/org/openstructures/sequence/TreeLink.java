@@ -0,0 +1,46 @@
+package org.openstructures.sequence;
+
+/**
+ * Link to a node of a {@link LongTree} and the key the node held when the link was created. Nodes
+ * are reused, so a link checks that its node still holds its key, and a link of a deleted key has
+ * no neighbours. Subclasses return the key and the neighbours as the types of their sequence.
+ * <p>
+ * Links are created on demand, so every step to a neighbour creates one. Walks that shouldn't
+ * allocate use a {@link TreeCursor} instead.
+ */
+abstract class TreeLink {
+
+  final LongTree tree;
+  final int node;
+  final long key;
+
+  TreeLink(LongTree tree, int node, long key) {
+    this.tree = tree;
+    this.node = node;
+    this.key = key;
+  }
+
+  // the node of the closest smaller key, or NIL if there is none or the key has been deleted
+  final int leftNode() {
+    return tree.holds(node, key) ? tree.previous(node) : LongTree.NIL;
+  }
+
+  // the node of the closest greater key, or NIL if there is none or the key has been deleted
+  final int rightNode() {
+    return tree.holds(node, key) ? tree.next(node) : LongTree.NIL;
+  }
+
+  @Override
+  public final boolean equals(Object other) {
+    if (other == null || other.getClass() != getClass()) {
+      return false;
+    }
+    TreeLink link = (TreeLink) other;
+    return node == link.node && key == link.key && tree == link.tree;
+  }
+
+  @Override
+  public final int hashCode() {
+    return 31 * node + Long.hashCode(key);
+  }
+}
@@ -0,0 +1,139 @@
+package org.openstructures.sequence;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Thread-safe sequence that keeps its keys in immutable {@link PersistentSequence} versions. A
+ * change derives a new version from the latest one, copying O(log n) nodes, and publishes it with
+ * a compare-and-set, retrying if another writer got there first. Readers never block and never
+ * see a change half done: every read works on the version that is latest when it starts.
+ * <p>
+ * {@link #snapshot()} returns the latest version in O(1). It doesn't change however the sequence
+ * is changed afterwards, which gives a reader a consistent view of the keys for as long as it
+ * holds on to it. Links are taken from the latest version and lead to the neighbours in that
+ * version.
+ */
+public class VersionedSequence<T extends C, C> implements Sequence<T, C> {
+
+  private final AtomicReference<PersistentSequence<T, C>> latest;
+
+  public VersionedSequence(Comparator<C> comparator) {
+    this(PersistentSequence.empty(comparator));
+  }
+
+  public VersionedSequence(PersistentSequence<T, C> initial) {
+    checkNotNull(initial);
+    this.latest = new AtomicReference<>(initial);
+  }
+
+  /**
+   * Returns the latest version in O(1).
+   */
+  public PersistentSequence<T, C> snapshot() {
+    return latest.get();
+  }
+
+  @Override
+  public SequenceLink<T> insert(T key) {
+    checkNotNull(key, "can't added nulls");
+
+    while (true) {
+      PersistentSequence<T, C> version = latest.get();
+      PersistentSequence<T, C> newVersion = version.insert(key);
+      if (latest.compareAndSet(version, newVersion)) {
+        return newVersion.get(key);
+      }
+    }
+  }
+
+  @Override
+  public void delete(T key) {
+    checkNotNull(key);
+
+    while (true) {
+      PersistentSequence<T, C> version = latest.get();
+      PersistentSequence<T, C> newVersion = version.delete(key);
+      if (newVersion == version || latest.compareAndSet(version, newVersion)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Inserts all the keys as a single version, so readers see either none or all of them. Nothing
+   * is inserted if any of the keys is null, duplicated or already part of the sequence.
+   */
+  @Override
+  public void insertAll(Collection<? extends T> keys) {
+    checkNotNull(keys);
+
+    while (true) {
+      PersistentSequence<T, C> version = latest.get();
+      PersistentSequence<T, C> newVersion = version;
+      for (T key : keys) {
+        newVersion = newVersion.insert(key);
+      }
+      if (latest.compareAndSet(version, newVersion)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Deletes all the keys as a single version, skipping the ones that aren't part of the sequence.
+   */
+  @Override
+  public void deleteAll(Collection<? extends T> keys) {
+    checkNotNull(keys);
+
+    while (true) {
+      PersistentSequence<T, C> version = latest.get();
+      PersistentSequence<T, C> newVersion = version;
+      for (T key : keys) {
+        newVersion = newVersion.delete(key);
+      }
+      if (newVersion == version || latest.compareAndSet(version, newVersion)) {
+        return;
+      }
+    }
+  }
+
+  @Override
+  public SequenceLink<T> get(T key) {
+    return latest.get().get(key);
+  }
+
+  @Override
+  public T greaterThan(C comparable) {
+    return latest.get().greaterThan(comparable);
+  }
+
+  @Override
+  public T lessThan(C comparable) {
+    return latest.get().lessThan(comparable);
+  }
+
+  @Override
+  public T equalTo(C comparable) {
+    return latest.get().equalTo(comparable);
+  }
+
+  @Override
+  public int size() {
+    return latest.get().size();
+  }
+
+  /**
+   * Returns a spliterator over the keys of the latest version, which stays consistent while the
+   * sequence is changed.
+   */
+  @Override
+  public Spliterator<T> spliterator() {
+    return latest.get().spliterator();
+  }
+}
@@ -1,329 +1,214 @@
 package org.openstructures.sequence.avltree;
 
-import lombok.RequiredArgsConstructor;
+import com.google.common.collect.Lists;
 
+import java.util.Collection;
 import java.util.Comparator;
-import java.util.Map;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.Predicate;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
-import static com.google.common.collect.Maps.newHashMap;
-import static java.lang.Math.max;
 
 
-@RequiredArgsConstructor
-public class AVLTree<T> {
+public class AVLTree<T> extends AbstractAVLTree<T, T, AVLTree.InternalAVLNode<T>> {
 
-    private final Comparator<? super T> comparator;
-    private final Map<T, InternalAVLNode<T>> nodesMap = newHashMap();
+    private final NodePool<T, InternalAVLNode<T>> pool; // null unless nodes are recycled
 
-    private InternalAVLNode<T> root;
+    public AVLTree(Comparator<? super T> comparator) {
+        super(comparator);
+        this.pool = null;
+    }
 
-    public static <T> AVLTree<T> join(AVLTree<T> left, AVLTree<T> right) {
-        checkNotNull(left);
-        checkNotNull(right);
-        checkArgument(left.comparator.equals(right.comparator), "trees have different comparators and therefore can't be joined into single search tree");
+    /**
+     * Creates a tree that maintains the aggregate of every subtree, see {@link #aggregate(Aggregate, Object, Object)}.
+     */
+    public AVLTree(Comparator<? super T> comparator, Aggregate<? super T, ?> aggregate) {
+        super(comparator, aggregate);
+        this.pool = null;
+    }
 
-        if (left.isEmpty()) {
-            return right;
-        } else if (right.isEmpty()) {
-            return left;
-        } else {
-            Comparator<? super T> comparator = left.comparator;
-            AVLNode<T> leftRightmost = TreeUtils.getRightmost(left.root);
-            AVLNode<T> rightLeftmost = TreeUtils.getLeftmost(right.root);
-            checkArgument(comparator.compare(leftRightmost.getValue(), rightLeftmost.getValue()) <= 0, "Values of left and right trees either overlap or trees are in the wrong order. Left has to be less than or equal to right");
-            left.delete(leftRightmost.getValue());
-            return join(left, leftRightmost.getValue(), right);
-        }
+    private AVLTree(Comparator<? super T> comparator, NodePool<T, InternalAVLNode<T>> pool) {
+        super(comparator);
+        this.pool = pool;
     }
 
-    public AVLNode<T> insert(T value) {
-        checkNotNull(value);
-        checkArgument(!nodesMap.containsKey(value), "Tree already has value %s. Addition of duplicated (equal) values is not allowed", value);
+    /**
+     * Creates a tree that recycles the nodes of deleted values for new values and allocates nodes in slabs, see
+     * {@link NodePool}, so inserts and deletes at a steady size allocate nothing. At most {@code maxIdle} deleted
+     * nodes are kept for reuse. Nodes returned by {@link #insert(Object)} must not be used once their value is
+     * deleted, since they are handed out again for other values.
+     */
+    public static <T> AVLTree<T> pooled(Comparator<? super T> comparator, int maxIdle) {
+        return new AVLTree<>(comparator, new NodePool<>(InternalAVLNode::new, maxIdle));
+    }
 
-        InternalAVLNode<T> newNode = new InternalAVLNode<>(value);
-        if (root == null) {
-            root = newNode;
+    /**
+     * Builds a perfectly balanced tree from values sorted in ascending order without duplicates in O(n).
+     */
+    public static <T> AVLTree<T> fromSorted(Iterable<? extends T> values, Comparator<? super T> comparator) {
+        checkNotNull(values);
+
+        if (values instanceof Collection) {
+            AVLTree<T> tree = new AVLTree<>(comparator);
+            tree.buildFromSorted(values.iterator(), ((Collection<? extends T>) values).size(), node -> {
+            });
+            return tree;
         } else {
-            insert(root, newNode);
+            return fromSorted(values.iterator(), comparator);
         }
-        nodesMap.put(value, newNode);
+    }
 
-        return newNode;
+    /**
+     * Same as {@link #fromSorted(Iterable, Comparator)}. The values are buffered first, since the shape of the tree
+     * depends on their number.
+     */
+    public static <T> AVLTree<T> fromSorted(Iterator<? extends T> values, Comparator<? super T> comparator) {
+        checkNotNull(values);
+
+        return fromSorted(Lists.newArrayList(values), comparator);
     }
 
-    public AVLNode<T> getRoot() {
-        return root;
+    /**
+     * Joins two trees in O(log n). Nodes of both trees are reused, so neither of them should be used after the join.
+     */
+    public static <T> AVLTree<T> join(AVLTree<T> left, AVLTree<T> right) {
+        checkNotNull(left);
+        checkNotNull(right);
+
+        left.joinWith(right);
+        return left;
     }
 
-    public boolean isEmpty() {
-        return getRoot() == null;
+    /**
+     * Splits the tree in O(log n) into the tree of values less than the pivot and the tree of values greater than
+     * or equal to the pivot. Nodes of this tree are reused and it becomes the left part of the split.
+     */
+    public Split<T> split(T pivot) {
+        checkNotNull(pivot);
+
+        return split(value -> comparator.compare(value, pivot) < 0);
     }
 
-    public void delete(T key) {
-        checkNotNull(key);
-        checkArgument(nodesMap.containsKey(key), "key %s does not belong to this tree", key);
-
-        final InternalAVLNode<T> nodeToDelete = nodesMap.get(key);
-        final InternalAVLNode<T> parent = nodeToDelete.parent;
-        if (TreeUtils.isLeaf(nodeToDelete)) { // then just deleted it
-            if (parent != null) {
-                if (TreeUtils.isLeftChild(nodeToDelete)) {
-                    parent.left = null;
-                } else {
-                    parent.right = null;
-                }
-                reBalance(parent);
-            } else { // means the tree consists of a single node
-                this.root = null;
-            }
+    /**
+     * Same as {@link #split(Object)}, but the pivot is defined by a predicate. The predicate has to be monotonic:
+     * true for every value up to some point and false for every value after it.
+     */
+    public Split<T> split(Predicate<? super T> belongsToLeft) {
+        checkNotNull(belongsToLeft);
 
+        AVLTree<T> right;
+        if (pool != null) {
+            right = new AVLTree<>(comparator, pool.emptyCopy());
         } else {
-            if (nodeToDelete.getLeft() == null || nodeToDelete.getRight() == null) { // if node has only one child then we replace the node with the child
-                if (parent != null) {
-                    if (nodeToDelete.getLeft() != null) {
-                        if (TreeUtils.isLeftChild(nodeToDelete)) {
-                            parent.left = nodeToDelete.left;
-                        } else {
-                            parent.right = nodeToDelete.left;
-                        }
-                        nodeToDelete.left.parent = parent;
-                    } else {
-                        if (TreeUtils.isLeftChild(nodeToDelete)) {
-                            parent.left = nodeToDelete.right;
-                        } else {
-                            parent.right = nodeToDelete.right;
-                        }
-                        nodeToDelete.right.parent = parent;
-                    }
-                    reBalance(parent);
-                } else {
-                    if (nodeToDelete.getLeft() != null) {
-                        root = nodeToDelete.left;
-                    } else {
-                        root = nodeToDelete.right;
-                    }
-                    root.parent = null;
-                    reBalance(root);
-                }
-            } else { // node has both children
-                InternalAVLNode<T> leftmost = nodesMap.get(TreeUtils.getLeftmost(nodeToDelete.right).getValue());
-                InternalAVLNode<T> nodeToReBalance = leftmost;
-                InternalAVLNode<T> parentOfLeftmost = leftmost.parent;
-                if (!parentOfLeftmost.equals(nodeToDelete)) {
-                    parentOfLeftmost.left = null;
-                    nodeToReBalance = parentOfLeftmost;
-                    leftmost.right = nodeToDelete.right;
-                }
-                leftmost.left = nodeToDelete.left;
-                leftmost.left.parent = leftmost;
-                if (parent != null) {
-                    if (TreeUtils.isLeftChild(nodeToDelete)) {
-                        parent.left = leftmost;
-                    } else {
-                        parent.right = leftmost;
-                    }
-                    leftmost.parent = parent;
-                } else {
-                    root = leftmost;
-                    leftmost.parent = null;
-                }
-                reBalance(nodeToReBalance);
-            }
+            right = aggregate != null ? new AVLTree<>(comparator, aggregate) : new AVLTree<>(comparator);
         }
-        nodesMap.remove(key);
+        splitInto(belongsToLeft, right);
+        return new Split<>(this, right);
     }
 
-    private static <T> AVLTree<T> join(AVLTree<T> left, T inBetweenValue, AVLTree<T> right) {
-        if (height(left) > height(right) + 1) {
-            return joinRightAVL(left, inBetweenValue, right);
-        } else if (height(right) > height(left) + 1) {
-            return joinLeftAVL(left, inBetweenValue, right);
-        } else {
-            AVLTree<T> joinedTree = new AVLTree<>(left.comparator);
-            joinedTree.root = newNode(left.root, inBetweenValue, right.root);
-            joinedTree.nodesMap.putAll(left.nodesMap);
-            joinedTree.nodesMap.putAll(right.nodesMap);
-            joinedTree.nodesMap.put(inBetweenValue, joinedTree.root);
-            joinedTree.reBalance(joinedTree.root);
-            return joinedTree;
-        }
+    @Override
+    public void setListener(TreeListener listener) {
+        super.setListener(listener);
     }
 
-    private static <T> InternalAVLNode<T> newNode(InternalAVLNode<T> left, T inBetweenValue, InternalAVLNode<T> right) {
-        InternalAVLNode<T> newRoot = new InternalAVLNode<>(inBetweenValue);
-        if (left != null) {
-            newRoot.left = left;
-            left.parent = newRoot;
-        }
-        if (right != null) {
-            newRoot.right = right;
-            right.parent = newRoot;
-        }
-        return newRoot;
+    public AVLNode<T> insert(T value) {
+        return insertNode(value);
     }
 
-    // right is greater
-    private static <T> AVLTree<T> joinLeftAVL(AVLTree<T> left, T inBetweenValue, AVLTree<T> right) {
-        AVLTree<T> newTree;
-        if (height(right) > height(left) + 1) { // out of balance
-            AVLTree<T> rightLeft = new AVLTree<>(right.comparator);
-            rightLeft.root = right.root.left;
-            if (rightLeft.root != null) rightLeft.root.parent = null;
-            AVLTree<T> leftJoin = joinLeftAVL(left, inBetweenValue, rightLeft);
-            right.root.left = leftJoin.root;
-            leftJoin.root.parent = right.root;
-            right.nodesMap.putAll(leftJoin.nodesMap);
-            newTree = right;
-        } else {
-            newTree = newAVLTree(right.comparator, left, inBetweenValue, right);
-        }
-        newTree.reBalance(newTree.root);
+    /**
+     * Returns the node holding the value or null if the tree doesn't have it.
+     */
+    public AVLNode<T> find(T value) {
+        checkNotNull(value);
 
-        return newTree;
+        return findNode(value);
     }
 
-    // left is greater
-    private static <T> AVLTree<T> joinRightAVL(AVLTree<T> left, T inBetweenValue, AVLTree<T> right) {
-        AVLTree<T> newTree;
-        if (height(left) > height(right) + 1) { // out of balance
-            AVLTree<T> leftRight = new AVLTree<>(left.comparator);
-            leftRight.root = left.root.right;
-            if (leftRight.root != null) leftRight.root.parent = null;
-            AVLTree<T> rightJoin = joinRightAVL(leftRight, inBetweenValue, right);
-            left.root.right = rightJoin.root;
-            rightJoin.root.parent = left.root;
-            left.nodesMap.putAll(rightJoin.nodesMap);
-            newTree = left;
-        } else {
-            newTree = newAVLTree(right.comparator, left, inBetweenValue, right);
-        }
-        newTree.reBalance(newTree.root);
-        return newTree;
-    }
+    /**
+     * Returns the number of values less than the given one in O(log n).
+     */
+    public int rank(T value) {
+        checkNotNull(value);
 
-    private static <T> AVLTree<T> newAVLTree(Comparator<? super T> comparator, AVLTree<T> left, T inBetweenValue, AVLTree<T> right) {
-        AVLTree<T> newTree = new AVLTree<>(comparator);
-        newTree.root = newNode(left.root, inBetweenValue, right.root);
-        newTree.nodesMap.put(inBetweenValue, newTree.root);
-        newTree.nodesMap.putAll(left.nodesMap);
-        newTree.nodesMap.putAll(right.nodesMap);
+        return rank(value, false);
+    }
 
-        return newTree;
+    /**
+     * Returns the aggregate of the values from {@code from} inclusive to {@code to} exclusive in O(log n). The
+     * aggregate has to be the one the tree was created with.
+     */
+    @Override
+    public <A> A aggregate(Aggregate<? super T, A> aggregate, T from, T to) {
+        return super.aggregate(aggregate, from, to);
     }
 
-    private static <T> int height(AVLTree<T> tree) {
-        return tree.root != null ? tree.root.height : -1;
+    /**
+     * Returns the value at the index in ascending order in O(log n).
+     */
+    public T select(int index) {
+        return selectNode(index).getValue();
     }
 
-    private void insert(InternalAVLNode<T> subtree, InternalAVLNode<T> node) {
-        if (comparator.compare(subtree.getValue(), node.getValue()) < 0) {
-            if (subtree.getRight() == null) {
-                subtree.setRight(node);
-                reBalance(node);
-            } else {
-                insert(subtree.right, node);
-            }
-        } else {
-            if (subtree.getLeft() == null) {
-                subtree.setLeft(node);
-                reBalance(node);
-            } else {
-                insert(subtree.left, node);
-            }
-        }
+    /**
+     * Returns a spliterator over the values in ascending order that splits at the roots of subtrees.
+     */
+    public Spliterator<T> spliterator() {
+        return spliterator(0, size());
     }
 
-    private void reBalance(InternalAVLNode<T> subtreeRoot) {
-        setHeightAndBalance(subtreeRoot);
-        if (subtreeRoot.balanceFactor < -1) { // out of balance and left heavy
-            if (subtreeRoot.left.balanceFactor > 0) { // left child is right heavy
-                rotateLeft(subtreeRoot.left);
-            }
-            subtreeRoot = rotateRight(subtreeRoot);
-        } else if (subtreeRoot.balanceFactor > 1) { // out of balance and right heavy
-            if (subtreeRoot.right.balanceFactor < 0) { // right child is left heavy
-                rotateRight(subtreeRoot.right);
-            }
-            subtreeRoot = rotateLeft(subtreeRoot);
-        }
-        if (subtreeRoot.getParent() != null) {
-            reBalance(subtreeRoot.parent);
-        }
+    public AVLNode<T> getRoot() {
+        return root;
     }
 
-    // means it becomes left child or its right child
-    private InternalAVLNode<T> rotateLeft(InternalAVLNode<T> node) {
-        InternalAVLNode<T> rightChild = node.right;
-        InternalAVLNode<T> parent = node.parent;
-        InternalAVLNode<T> rightLeft = rightChild.left;
-        rightChild.setLeft(node);
-        node.setRight(rightLeft);
-        setHeightAndBalance(node);
-        setHeightAndBalance(rightChild);
-        if (parent != null) {
-            boolean parentRight = node.equals(parent.getRight());
-            if (parentRight) {
-                parent.setRight(rightChild);
-            } else {
-                parent.setLeft(rightChild);
-            }
-            setHeightAndBalance(parent);
-        } else {
-            this.root = rightChild;
-            rightChild.setParent(null);
+    public void delete(T key) {
+        checkNotNull(key);
+        InternalAVLNode<T> nodeToDelete = findNode(key);
+        checkArgument(nodeToDelete != null, "key %s does not belong to this tree", key);
+
+        deleteNode(nodeToDelete);
+        if (pool != null) {
+            pool.give(nodeToDelete);
         }
+    }
 
-        return rightChild;
+    @Override
+    protected InternalAVLNode<T> newNode(T value) {
+        return pool != null ? pool.take(value) : new InternalAVLNode<>(value);
     }
 
-    // means it becomes right child of its left child
-    private InternalAVLNode<T> rotateRight(InternalAVLNode<T> node) {
-        InternalAVLNode<T> leftChild = node.left;
-        InternalAVLNode<T> parent = node.parent;
-        InternalAVLNode<T> leftRight = leftChild.right;
-        leftChild.setRight(node);
-        node.setLeft(leftRight);
-        setHeightAndBalance(node);
-        setHeightAndBalance(leftChild);
-        if (parent != null) {
-            boolean parentLeft = node.equals(parent.getLeft());
-            if (parentLeft) {
-                parent.setLeft(leftChild);
-            } else {
-                parent.setRight(leftChild);
-            }
-            setHeightAndBalance(parent);
-        } else {
-            this.root = leftChild;
-            leftChild.setParent(null);
+    public static class Split<T> {
+        private final AVLTree<T> left;
+        private final AVLTree<T> right;
+
+        private Split(AVLTree<T> left, AVLTree<T> right) {
+            this.left = left;
+            this.right = right;
         }
-        return leftChild;
-    }
 
-    private static <T> void setHeightAndBalance(InternalAVLNode<T> subtreeRoot) {
-        int leftChildHeight = subtreeRoot.getLeft() != null ? subtreeRoot.left.height : -1;
-        int rightChildHeight = subtreeRoot.getRight() != null ? subtreeRoot.right.height : -1;
-        subtreeRoot.setHeight(max(leftChildHeight, rightChildHeight) + 1);
-        subtreeRoot.balanceFactor = rightChildHeight - leftChildHeight;
-    }
+        /**
+         * Returns the tree of values less than the pivot.
+         */
+        public AVLTree<T> getLeft() {
+            return left;
+        }
 
-    public void clear() {
-        nodesMap.clear();
-        root = null;
+        /**
+         * Returns the tree of values greater than or equal to the pivot.
+         */
+        public AVLTree<T> getRight() {
+            return right;
+        }
     }
 
-    private static class InternalAVLNode<T> implements AVLNode<T> {
-        private final T value;
-        private InternalAVLNode<T> parent;
-        private InternalAVLNode<T> left, right;
-        private int height = 0;
-        private int balanceFactor = 0;
+    static class InternalAVLNode<T> extends AbstractAVLNode<T, InternalAVLNode<T>> implements AVLNode<T> {
 
         private InternalAVLNode(T value) {
-            checkNotNull(value);
-            this.value = value;
+            super(value);
+        }
+
+        private InternalAVLNode() {
         }
 
         @Override
@@ -340,29 +225,6 @@ public class AVLTree<T> {
         public AVLNode<T> getParent() {
             return parent;
         }
-
-        @Override
-        public T getValue() {
-            return value;
-        }
-
-        void setHeight(int height) {
-            this.height = height;
-        }
-
-        void setLeft(InternalAVLNode<T> leftChild) {
-            this.left = leftChild;
-            if (left != null) this.left.parent = this;
-        }
-
-        void setRight(InternalAVLNode<T> rightChild) {
-            this.right = rightChild;
-            if (right != null) this.right.parent = this;
-        }
-
-        void setParent(InternalAVLNode<T> parent) {
-            this.parent = parent;
-        }
     }
 
 }
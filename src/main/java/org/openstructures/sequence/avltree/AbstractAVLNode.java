@@ -0,0 +1,66 @@
+package org.openstructures.sequence.avltree;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Node of {@link AbstractAVLTree}. Besides the tree structure every node is linked to the nodes with the closest
+ * smaller and greater values, so the neighbours of a node are reachable in O(1).
+ *
+ * @param <T> type of the value
+ * @param <N> type of the node itself
+ */
+public abstract class AbstractAVLNode<T, N extends AbstractAVLNode<T, N>> {
+    T value; // null while the node is idle in a NodePool
+    N parent;
+    N left, right;
+    N previous, next;
+    // bytes hold any height of a tree of int size, and leave room for the aggregate within the same object size
+    byte height = 0;
+    byte balanceFactor = 0;
+    int size = 1; // number of nodes in the subtree
+    Object aggregate; // of the subtree, if the tree maintains an aggregate
+
+    protected AbstractAVLNode(T value) {
+        checkNotNull(value);
+        this.value = value;
+    }
+
+    /**
+     * Creates a spare node for a {@link NodePool}, which gets its value once it is taken from the pool.
+     */
+    protected AbstractAVLNode() {
+    }
+
+    // turns a detached node into a new node of the value
+    void reuse(T value) {
+        this.value = value;
+        this.height = 0;
+        this.balanceFactor = 0;
+        this.size = 1;
+        this.aggregate = null;
+    }
+
+    // drops the value and the aggregate of a detached node, so an idle node doesn't keep them reachable
+    void release() {
+        this.value = null;
+        this.aggregate = null;
+    }
+
+    public T getValue() {
+        return value;
+    }
+
+    /**
+     * Returns the node with the closest smaller value.
+     */
+    protected N previous() {
+        return previous;
+    }
+
+    /**
+     * Returns the node with the closest greater value.
+     */
+    protected N next() {
+        return next;
+    }
+}
@@ -0,0 +1,1099 @@
+package org.openstructures.sequence.avltree;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import static java.lang.Math.max;
+
+/**
+ * AVL tree over nodes of type {@code N}. Subclasses decide what the nodes are, so a node can be more than just a
+ * tree node (e.g. a link of a sequence) without allocating a second object per value.
+ * <p>
+ * Values are compared with a comparator of {@code C}, which lets the tree be searched by anything comparable with
+ * its values, not only by the values themselves. Searches descend the tree in a loop and compare the key with every
+ * node on the way exactly once, so comparators that are expensive to call are called O(log n) times per search.
+ *
+ * @param <T> type of the values
+ * @param <C> type the values are compared as
+ * @param <N> type of the nodes
+ */
+public abstract class AbstractAVLTree<T extends C, C, N extends AbstractAVLNode<T, N>> {
+
+    // batches of at least 1 / REBUILD_RATIO of the tree are applied by rebuilding the tree
+    private static final int REBUILD_RATIO = 4;
+
+    protected final Comparator<? super C> comparator;
+
+    /**
+     * Aggregate kept for every subtree, or null if the tree maintains none.
+     */
+    protected final Aggregate<? super T, ?> aggregate;
+
+    N root;
+
+    private TreeListener listener = TreeListener.NONE;
+
+    protected AbstractAVLTree(Comparator<? super C> comparator) {
+        checkNotNull(comparator);
+        this.comparator = comparator;
+        this.aggregate = null;
+    }
+
+    /**
+     * Creates a tree that keeps the aggregate of every subtree up to date on every change, including rotations, joins
+     * and splits, so {@link #aggregate(Aggregate, Object, Object)} takes O(log n). It costs a few calls of the
+     * aggregate per node whose subtree changes.
+     */
+    protected AbstractAVLTree(Comparator<? super C> comparator, Aggregate<? super T, ?> aggregate) {
+        checkNotNull(comparator);
+        checkNotNull(aggregate);
+        this.comparator = comparator;
+        this.aggregate = aggregate;
+    }
+
+    protected abstract N newNode(T value);
+
+    /**
+     * Sets the listener told about rotations and re-balancing. Trees split off this one report to the same listener,
+     * and a join keeps the listener of the left tree.
+     */
+    protected void setListener(TreeListener listener) {
+        checkNotNull(listener);
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the height of the tree, which is -1 if it is empty and 0 if it holds a single node.
+     */
+    public int height() {
+        return height(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public void clear() {
+        root = null;
+    }
+
+    /**
+     * Returns the number of values in O(1), every node keeps the size of its subtree.
+     */
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Inserts the value without recursion and allocates nothing but the new node.
+     */
+    protected N insertNode(T value) {
+        checkNotNull(value);
+
+        if (root == null) {
+            root = newNode(value);
+            summarize(root);
+            return root;
+        }
+        return insertBelow(root, value);
+    }
+
+    /**
+     * Inserts the value, looking for its place from the hint, a node of the tree, rather than from the root. A value
+     * that goes right next to the hint takes two comparisons and is attached to the hint or its neighbour, whichever
+     * has a free child, so appending after the latest node takes O(1) comparisons. Otherwise the search climbs to the
+     * lowest ancestor of the hint whose subtree holds the place of the value, see
+     * {@link #findNodeNear(AbstractAVLNode, Object)}, and descends from there. Sizes are still updated up to the root.
+     */
+    protected N insertNodeNear(N hint, T value) {
+        checkNotNull(hint);
+        checkNotNull(value);
+
+        int comparison = comparator.compare(value, hint.value);
+        checkArgument(comparison != 0, "Tree already has value %s. Addition of duplicated (equal) values is not allowed", value);
+        if (comparison > 0) {
+            N next = hint.next;
+            if (next == null || comparator.compare(value, next.value) < 0) {
+                // the successor of a node with a right child is the leftmost node of that child
+                return hint.right == null ? attach(hint, false, value) : attach(next, true, value);
+            }
+        } else {
+            N previous = hint.previous;
+            if (previous == null || comparator.compare(value, previous.value) > 0) {
+                return hint.left == null ? attach(hint, true, value) : attach(previous, false, value);
+            }
+        }
+        return insertBelow(coveringAncestor(hint, value), value);
+    }
+
+    // inserts the value into the subtree, which has to hold its place
+    private N insertBelow(N subtreeRoot, T value) {
+        N parent = subtreeRoot;
+        int comparison;
+        while (true) {
+            comparison = comparator.compare(value, parent.value);
+            checkArgument(comparison != 0, "Tree already has value %s. Addition of duplicated (equal) values is not allowed", value);
+            N child = comparison < 0 ? parent.left : parent.right;
+            if (child == null) {
+                break;
+            }
+            parent = child;
+        }
+        return attach(parent, comparison < 0, value);
+    }
+
+    // attaches a node of the value as the missing child of the parent, links and re-balances it
+    private N attach(N parent, boolean asLeftChild, T value) {
+        N newNode = newNode(value);
+        summarize(newNode);
+        if (asLeftChild) {
+            setLeft(parent, newNode);
+            link(parent.previous, newNode);
+            link(newNode, parent);
+        } else {
+            setRight(parent, newNode);
+            link(newNode, parent.next);
+            link(parent, newNode);
+        }
+        reBalance(parent);
+
+        return newNode;
+    }
+
+    /**
+     * Builds a perfectly balanced tree from sorted values in O(n), without comparing anything but neighbouring
+     * values. Every node is passed to the consumer in ascending order as soon as it is created. The tree has to be
+     * empty and the values have to be sorted in ascending order without duplicates.
+     */
+    protected void buildFromSorted(Iterator<? extends T> values, int size, Consumer<? super N> nodeConsumer) {
+        checkNotNull(values);
+        checkNotNull(nodeConsumer);
+        checkArgument(isEmpty(), "the tree has to be empty");
+
+        N builtRoot = new ValuesBuilder(values, nodeConsumer).buildTree(size);
+        checkArgument(!values.hasNext(), "there are more than %s values", size);
+        root = builtRoot;
+    }
+
+    /**
+     * Inserts the values in one go. Every new node is passed to the consumer. The values have to be sorted in
+     * ascending order without duplicates and none of them can be part of the tree, which holds {@code size} nodes.
+     * <p>
+     * Once the values make up a large enough part of the tree, they are merged with the linked nodes of the tree and
+     * the tree is rebuilt perfectly balanced from the merged nodes in O(n + m), which reuses the nodes and takes no
+     * comparisons or rotations beyond the merge. Fewer values are inserted one by one in ascending order, so
+     * consecutive inserts descend along paths that are still in the cache.
+     * <p>
+     * Values are checked against the tree with the comparator before anything is changed, so nothing is inserted if
+     * any of them is equal to a value of the tree. The check walks the links along with the values when the tree is
+     * rebuilt, and searches the tree for every value otherwise.
+     */
+    protected void insertSorted(List<? extends T> sortedValues, int size, Consumer<? super N> nodeConsumer) {
+        checkNotNull(sortedValues);
+        checkNotNull(nodeConsumer);
+        for (int i = 1; i < sortedValues.size(); i++) {
+            checkArgument(comparator.compare(sortedValues.get(i - 1), sortedValues.get(i)) < 0, "Values have to be sorted in ascending order without duplicates, but %s is followed by %s", sortedValues.get(i - 1), sortedValues.get(i));
+        }
+
+        if (isWorthRebuilding(sortedValues.size(), size)) {
+            checkNoneLinked(sortedValues);
+            root = new MergingBuilder(firstNode(), sortedValues.iterator(), nodeConsumer).buildTree(size + sortedValues.size());
+        } else {
+            for (T value : sortedValues) {
+                checkArgument(findNode(value) == null, "Tree already has value %s. Addition of duplicated (equal) values is not allowed", value);
+            }
+            for (T value : sortedValues) {
+                nodeConsumer.accept(insertNode(value));
+            }
+        }
+    }
+
+    // checks that none of the sorted values is equal to a value of the tree, walking the links along with the values
+    private void checkNoneLinked(List<? extends T> sortedValues) {
+        N node = firstNode();
+        for (T value : sortedValues) {
+            int comparison = -1;
+            while (node != null && (comparison = comparator.compare(node.value, value)) < 0) {
+                node = node.next;
+            }
+            checkArgument(node == null || comparison != 0, "Tree already has value %s. Addition of duplicated (equal) values is not allowed", value);
+        }
+    }
+
+    /**
+     * Deletes the nodes in one go, choosing between a rebuild and separate deletes the way
+     * {@link #insertSorted(List, int, Consumer)} does. The nodes have to be sorted in ascending order, distinct and
+     * part of the tree, which holds {@code size} nodes.
+     */
+    protected void deleteSorted(List<N> sortedNodes, int size) {
+        checkNotNull(sortedNodes);
+
+        if (isWorthRebuilding(sortedNodes.size(), size)) {
+            root = new RemainingBuilder(firstNode(), sortedNodes.iterator()).buildTree(size - sortedNodes.size());
+            for (N node : sortedNodes) {
+                node.parent = null;
+                node.left = null;
+                node.right = null;
+                node.previous = null;
+                node.next = null;
+            }
+        } else {
+            for (N node : sortedNodes) {
+                deleteNode(node);
+            }
+        }
+    }
+
+    // a rebuild visits all n nodes, separate updates take O(log n) each but with a much larger constant
+    private static boolean isWorthRebuilding(int changed, int size) {
+        return changed >= size / REBUILD_RATIO;
+    }
+
+    protected void deleteNode(N nodeToDelete) {
+        N parent = nodeToDelete.parent;
+        N replacement;
+        N nodeToReBalance;
+        if (nodeToDelete.left == null || nodeToDelete.right == null) { // node is replaced by its only child, if any
+            replacement = nodeToDelete.left != null ? nodeToDelete.left : nodeToDelete.right;
+            nodeToReBalance = parent;
+        } else { // node is replaced by the leftmost node of its right subtree, which is the next one
+            replacement = nodeToDelete.next;
+            // it takes the place of the deleted node, so retracing can stop below it
+            replacement.height = nodeToDelete.height;
+            replacement.balanceFactor = nodeToDelete.balanceFactor;
+            if (replacement.parent != nodeToDelete) {
+                nodeToReBalance = replacement.parent;
+                setLeft(replacement.parent, replacement.right);
+                setRight(replacement, nodeToDelete.right);
+            } else {
+                nodeToReBalance = replacement;
+            }
+            setLeft(replacement, nodeToDelete.left);
+        }
+        replaceChild(parent, nodeToDelete, replacement);
+        if (parent == null) {
+            root = replacement;
+        }
+        if (nodeToReBalance != null) {
+            reBalance(nodeToReBalance);
+        }
+
+        link(nodeToDelete.previous, nodeToDelete.next);
+        nodeToDelete.parent = null;
+        nodeToDelete.left = null;
+        nodeToDelete.right = null;
+        nodeToDelete.previous = null;
+        nodeToDelete.next = null;
+    }
+
+    /**
+     * Returns the node whose value is equal to the key or null if there is none.
+     */
+    protected N findNode(C key) {
+        N node = root;
+        while (node != null) {
+            int comparison = comparator.compare(key, node.value);
+            if (comparison == 0) {
+                return node;
+            }
+            node = comparison < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the node with the smallest value greater than the key or null if there is none.
+     */
+    protected N higherNode(C key) {
+        N node = root;
+        N higher = null;
+        while (node != null) {
+            if (comparator.compare(node.value, key) > 0) {
+                higher = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return higher;
+    }
+
+    /**
+     * Returns the node with the greatest value less than the key or null if there is none.
+     */
+    protected N lowerNode(C key) {
+        N node = root;
+        N lower = null;
+        while (node != null) {
+            if (comparator.compare(node.value, key) < 0) {
+                lower = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return lower;
+    }
+
+    /**
+     * Same as {@link #findNode(Object)}, searching from the hint, a node of the tree, rather than from the root. The
+     * search climbs from the hint to the lowest ancestor whose subtree holds the place of the key, comparing the key
+     * only with the ancestors on its side of the hint, and descends from there. A key d nodes away from the hint is
+     * mostly found O(log d) levels up, though even a neighbour of the hint can be across the root.
+     */
+    protected N findNodeNear(N hint, C key) {
+        N node = coveringAncestor(hint, key);
+        while (node != null) {
+            int comparison = comparator.compare(key, node.value);
+            if (comparison == 0) {
+                return node;
+            }
+            node = comparison < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /**
+     * Same as {@link #higherNode(Object)}, searching from the hint like {@link #findNodeNear(AbstractAVLNode, Object)}.
+     * If the subtree the search ends up in has no greater value, the answer is the successor of its greatest value
+     * less than or equal to the key, which the links lead to.
+     */
+    protected N higherNodeNear(N hint, C key) {
+        N node = coveringAncestor(hint, key);
+        N higher = null;
+        N notHigher = null;
+        while (node != null) {
+            if (comparator.compare(node.value, key) > 0) {
+                higher = node;
+                node = node.left;
+            } else {
+                notHigher = node;
+                node = node.right;
+            }
+        }
+        return higher != null ? higher : notHigher.next;
+    }
+
+    /**
+     * Same as {@link #lowerNode(Object)}, searching from the hint like {@link #higherNodeNear(AbstractAVLNode, Object)}.
+     */
+    protected N lowerNodeNear(N hint, C key) {
+        N node = coveringAncestor(hint, key);
+        N lower = null;
+        N notLower = null;
+        while (node != null) {
+            if (comparator.compare(node.value, key) < 0) {
+                lower = node;
+                node = node.right;
+            } else {
+                notLower = node;
+                node = node.left;
+            }
+        }
+        return lower != null ? lower : notLower.previous;
+    }
+
+    // climbs from the node to the lowest ancestor whose subtree holds the place of the key. Only ancestors reached
+    // from the side of the key are compared, an ancestor reached from the other side is between the node and the key
+    private N coveringAncestor(N node, C key) {
+        checkNotNull(node);
+        checkNotNull(key);
+
+        int direction = comparator.compare(key, node.value);
+        if (direction == 0) {
+            return node;
+        }
+        N subtree = node;
+        while (subtree.parent != null) {
+            N parent = subtree.parent;
+            if ((parent.left == subtree) == (direction > 0)) {
+                int comparison = comparator.compare(key, parent.value);
+                if (comparison == 0) {
+                    return parent;
+                } else if ((comparison < 0) == (direction > 0)) {
+                    return subtree;
+                }
+            }
+            subtree = parent;
+        }
+        return subtree;
+    }
+
+    /**
+     * Returns the number of values less than the key, or less than or equal to it if inclusive, in O(log n).
+     */
+    protected int rank(C key, boolean inclusive) {
+        int rank = 0;
+        N node = root;
+        while (node != null) {
+            int comparison = comparator.compare(node.value, key);
+            if (comparison < 0 || inclusive && comparison == 0) {
+                rank += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Returns the aggregate of the values greater than or equal to {@code from} and less than {@code to} in O(log n),
+     * combined from the aggregates of the subtrees hanging off the search paths of both keys. The aggregate has to be
+     * the one the tree maintains, which gives the type of the result.
+     */
+    @SuppressWarnings("unchecked")
+    protected <A> A aggregate(Aggregate<? super T, A> aggregate, C from, C to) {
+        checkNotNull(aggregate);
+        checkNotNull(from);
+        checkNotNull(to);
+        checkArgument(aggregate.equals(this.aggregate), "the tree doesn't maintain the aggregate");
+
+        // descends to the highest node inside the range, the search paths of both keys go through it
+        N node = root;
+        while (node != null) {
+            if (comparator.compare(node.value, from) < 0) {
+                node = node.right;
+            } else if (comparator.compare(node.value, to) >= 0) {
+                node = node.left;
+            } else {
+                break;
+            }
+        }
+        if (node == null) {
+            return aggregate.identity();
+        }
+
+        A result = aggregate.of(node.value);
+        // values of the left subtree not less than from, their subtrees come in descending order
+        N left = node.left;
+        while (left != null) {
+            if (comparator.compare(left.value, from) >= 0) {
+                A inRange = aggregate.of(left.value);
+                if (left.right != null) {
+                    inRange = aggregate.combine(inRange, (A) left.right.aggregate);
+                }
+                result = aggregate.combine(inRange, result);
+                left = left.left;
+            } else {
+                left = left.right;
+            }
+        }
+        // values of the right subtree less than to, their subtrees come in ascending order
+        N right = node.right;
+        while (right != null) {
+            if (comparator.compare(right.value, to) < 0) {
+                A inRange = aggregate.of(right.value);
+                if (right.left != null) {
+                    inRange = aggregate.combine((A) right.left.aggregate, inRange);
+                }
+                result = aggregate.combine(result, inRange);
+                right = right.right;
+            } else {
+                right = right.left;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Passes the nodes whose values come before the end and whose own aggregates match to the consumer in ascending
+     * order. Subtrees whose aggregates don't match are skipped as a whole, and so are the nodes after the end, so the
+     * predicate has to match the aggregate of a subtree whenever it matches the aggregate of any of its values, and
+     * the end has to be monotonic: true for every value up to some point and false for every value after it. That
+     * is how an interval tree finds overlapping intervals, by the greatest end point of every subtree, and it visits
+     * O(log n) nodes per node passed at worst. The aggregate has to be the one the tree maintains.
+     */
+    protected <A> void forEachMatchingNode(Aggregate<? super T, A> aggregate, Predicate<? super A> matches,
+                                           Predicate<? super T> beforeEnd, Consumer<? super N> consumer) {
+        checkNotNull(aggregate);
+        checkNotNull(matches);
+        checkNotNull(beforeEnd);
+        checkNotNull(consumer);
+        checkArgument(aggregate.equals(this.aggregate), "the tree doesn't maintain the aggregate");
+
+        forEachMatchingNode(root, aggregate, matches, beforeEnd, consumer);
+    }
+
+    // returns false once a node after the end is reached, the right subtrees are walked in a loop, so the recursion
+    // only goes as deep as the tree
+    @SuppressWarnings("unchecked")
+    private <A> boolean forEachMatchingNode(N subtreeRoot, Aggregate<? super T, A> aggregate,
+                                            Predicate<? super A> matches, Predicate<? super T> beforeEnd,
+                                            Consumer<? super N> consumer) {
+        N node = subtreeRoot;
+        while (node != null && matches.test((A) node.aggregate)) {
+            if (!forEachMatchingNode(node.left, aggregate, matches, beforeEnd, consumer)
+                    || !beforeEnd.test(node.value)) {
+                return false;
+            }
+            if (matches.test(aggregate.of(node.value))) {
+                consumer.accept(node);
+            }
+            node = node.right;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the node with the value at the index in ascending order in O(log n).
+     */
+    protected N selectNode(int index) {
+        checkElementIndex(index, size());
+
+        N node = root;
+        int remaining = index;
+        while (true) {
+            int leftSize = size(node.left);
+            if (remaining < leftSize) {
+                node = node.left;
+            } else if (remaining > leftSize) {
+                remaining -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+    }
+
+    /**
+     * Returns the node with the smallest value greater than or equal to the key or null if there is none.
+     */
+    protected N ceilingNode(C key) {
+        N node = root;
+        N ceiling = null;
+        while (node != null) {
+            int comparison = comparator.compare(node.value, key);
+            if (comparison == 0) {
+                return node;
+            } else if (comparison > 0) {
+                ceiling = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return ceiling;
+    }
+
+    /**
+     * Returns the node with the greatest value less than or equal to the key or null if there is none.
+     */
+    protected N floorNode(C key) {
+        N node = root;
+        N floor = null;
+        while (node != null) {
+            int comparison = comparator.compare(node.value, key);
+            if (comparison == 0) {
+                return node;
+            } else if (comparison < 0) {
+                floor = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return floor;
+    }
+
+    protected N firstNode() {
+        return root != null ? leftmost(root) : null;
+    }
+
+    protected N lastNode() {
+        return root != null ? rightmost(root) : null;
+    }
+
+    /**
+     * Appends all nodes of the right tree to this one in O(log n). Values of the right tree have to be greater than
+     * values of this tree. The right tree is left empty.
+     */
+    protected void joinWith(AbstractAVLTree<T, C, N> right) {
+        checkNotNull(right);
+        checkArgument(comparator.equals(right.comparator), "trees have different comparators and therefore can't be joined into single search tree");
+        checkArgument(Objects.equals(aggregate, right.aggregate), "trees maintain different aggregates and therefore can't be joined");
+
+        if (right.root == null) {
+            return;
+        } else if (root == null) {
+            root = right.root;
+        } else {
+            N leftRightmost = rightmost(root);
+            N rightLeftmost = leftmost(right.root);
+            checkArgument(comparator.compare(leftRightmost.value, rightLeftmost.value) <= 0, "Values of left and right trees either overlap or trees are in the wrong order. Left has to be less than or equal to right");
+            N previous = leftRightmost.previous;
+            deleteNode(leftRightmost);
+            root = join(root, leftRightmost, right.root);
+            link(previous, leftRightmost);
+            link(leftRightmost, rightLeftmost);
+        }
+        right.root = null;
+    }
+
+    /**
+     * Moves the nodes whose values don't belong to the left part into the right tree in O(log n). The predicate
+     * has to be monotonic: true for every value up to some point and false for every value after it. The right tree
+     * has to be empty.
+     */
+    protected void splitInto(Predicate<? super T> belongsToLeft, AbstractAVLTree<T, C, N> right) {
+        checkNotNull(belongsToLeft);
+        checkNotNull(right);
+        checkArgument(right.isEmpty(), "the right tree has to be empty");
+        checkArgument(Objects.equals(aggregate, right.aggregate), "the right tree has to maintain the same aggregate");
+
+        N node = root;
+        N last = null;
+        boolean lastBelongsToLeft = false;
+        while (node != null) {
+            last = node;
+            lastBelongsToLeft = belongsToLeft.test(node.value);
+            node = lastBelongsToLeft ? node.right : node.left;
+        }
+
+        // joins the subtrees hanging off the search path bottom up, which sums up to O(log n)
+        N leftRoot = null;
+        N rightRoot = null;
+        N leftRightmost = null;
+        node = last;
+        boolean nodeBelongsToLeft = lastBelongsToLeft;
+        while (node != null) {
+            N parent = node.parent;
+            boolean parentBelongsToLeft = parent != null && parent.right == node;
+            if (nodeBelongsToLeft) {
+                if (leftRightmost == null) {
+                    leftRightmost = node;
+                }
+                leftRoot = join(detach(node.left), node, leftRoot);
+            } else {
+                rightRoot = join(rightRoot, node, detach(node.right));
+            }
+            node = parent;
+            nodeBelongsToLeft = parentBelongsToLeft;
+        }
+
+        if (leftRightmost != null && leftRightmost.next != null) {
+            leftRightmost.next.previous = null;
+            leftRightmost.next = null;
+        }
+        root = leftRoot;
+        right.root = rightRoot;
+        right.listener = listener;
+    }
+
+    /**
+     * Returns a spliterator over the values at the indexes from {@code fromIndex} inclusive to {@code toIndex}
+     * exclusive in ascending order. It splits at the root of the smallest subtree that holds values of both halves,
+     * found by a descent of O(log n) that is guided by the sizes of the subtrees, so every split is exact and the
+     * halves are as balanced as the tree is. Values are traversed by following the links.
+     * <p>
+     * The spliterator isn't fail-fast, the tree must not be modified while it is in use.
+     */
+    protected Spliterator<T> spliterator(int fromIndex, int toIndex) {
+        checkPositionIndexes(fromIndex, toIndex, size());
+
+        N first = fromIndex < toIndex ? selectNode(fromIndex) : null;
+        return new SubtreeSpliterator(first, fromIndex, toIndex);
+    }
+
+    private class SubtreeSpliterator implements Spliterator<T> {
+
+        private N next;
+        private int index;
+        private final int fence;
+
+        private SubtreeSpliterator(N next, int index, int fence) {
+            this.next = next;
+            this.index = index;
+            this.fence = fence;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            if (fence - index < 2) {
+                return null;
+            }
+            // looks for the highest node strictly inside the range, both halves are then not empty
+            N node = root;
+            int offset = 0;
+            int rank = offset + size(node.left);
+            while (rank <= index || rank >= fence) {
+                if (rank <= index) {
+                    offset = rank + 1;
+                    node = node.right;
+                } else {
+                    node = node.left;
+                }
+                rank = offset + size(node.left);
+            }
+            SubtreeSpliterator prefix = new SubtreeSpliterator(next, index, rank);
+            next = node;
+            index = rank;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            checkNotNull(action);
+            if (index >= fence) {
+                return false;
+            }
+            T value = next.value;
+            next = next.next;
+            index++;
+            action.accept(value);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            checkNotNull(action);
+            N node = next;
+            for (int i = index; i < fence; i++) {
+                action.accept(node.value);
+                node = node.next;
+            }
+            next = node;
+            index = fence;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | DISTINCT | SIZED | SUBSIZED | NONNULL;
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+            return comparator;
+        }
+    }
+
+    private abstract class SortedBuilder {
+        private N previous;
+
+        // the next node in ascending order
+        abstract N nextNode();
+
+        // builds a tree of the next size nodes, cutting them off whatever they were part of before
+        N buildTree(int size) {
+            N builtRoot = build(size);
+            if (builtRoot != null) {
+                builtRoot.parent = null;
+                leftmost(builtRoot).previous = null;
+                previous.next = null;
+            }
+            return builtRoot;
+        }
+
+        // builds the subtree of the next size nodes, their order is the order of the in-order traversal
+        private N build(int size) {
+            if (size == 0) {
+                return null;
+            }
+            int leftSize = size / 2;
+            N left = build(leftSize);
+
+            N node = nextNode();
+            link(previous, node);
+            previous = node;
+
+            N right = build(size - leftSize - 1);
+            setLeft(node, left);
+            setRight(node, right);
+            setHeightAndBalance(node);
+            return node;
+        }
+    }
+
+    // creates the nodes of sorted values
+    private class ValuesBuilder extends SortedBuilder {
+        private final Iterator<? extends T> values;
+        private final Consumer<? super N> nodeConsumer;
+        private T previousValue;
+
+        private ValuesBuilder(Iterator<? extends T> values, Consumer<? super N> nodeConsumer) {
+            this.values = values;
+            this.nodeConsumer = nodeConsumer;
+        }
+
+        @Override
+        N nextNode() {
+            checkArgument(values.hasNext(), "there are fewer values than expected");
+            T value = values.next();
+            checkNotNull(value);
+            checkArgument(previousValue == null || comparator.compare(previousValue, value) < 0, "Values have to be sorted in ascending order without duplicates, but %s is followed by %s", previousValue, value);
+            previousValue = value;
+            N node = newNode(value);
+            nodeConsumer.accept(node);
+            return node;
+        }
+    }
+
+    // merges the linked nodes of the tree with the nodes of sorted values
+    private class MergingBuilder extends SortedBuilder {
+        private final Iterator<? extends T> values;
+        private final Consumer<? super N> nodeConsumer;
+        private N nextExisting;
+        private T nextValue;
+
+        private MergingBuilder(N first, Iterator<? extends T> values, Consumer<? super N> nodeConsumer) {
+            this.values = values;
+            this.nodeConsumer = nodeConsumer;
+            this.nextExisting = first;
+            this.nextValue = values.hasNext() ? values.next() : null;
+        }
+
+        @Override
+        N nextNode() {
+            int comparison = nextValue == null ? 1 : nextExisting == null ? -1 : comparator.compare(nextValue, nextExisting.value);
+            // values equal to a node are rejected before the merge starts, taking both would break the tree
+            checkArgument(comparison != 0, "Tree already has value %s. Addition of duplicated (equal) values is not allowed", nextValue);
+            if (comparison < 0) {
+                N node = newNode(nextValue);
+                nodeConsumer.accept(node);
+                nextValue = values.hasNext() ? values.next() : null;
+                return node;
+            }
+            // the link is followed before the builder re-links the node
+            N node = nextExisting;
+            nextExisting = node.next;
+            return node;
+        }
+    }
+
+    // skips the sorted nodes to delete while walking the linked nodes of the tree
+    private class RemainingBuilder extends SortedBuilder {
+        private final Iterator<N> deletedNodes;
+        private N nextExisting;
+        private N nextDeleted;
+
+        private RemainingBuilder(N first, Iterator<N> deletedNodes) {
+            this.deletedNodes = deletedNodes;
+            this.nextExisting = first;
+            this.nextDeleted = deletedNodes.hasNext() ? deletedNodes.next() : null;
+        }
+
+        @Override
+        N nextNode() {
+            while (nextExisting == nextDeleted) {
+                nextExisting = nextExisting.next;
+                nextDeleted = deletedNodes.hasNext() ? deletedNodes.next() : null;
+            }
+            N node = nextExisting;
+            nextExisting = node.next;
+            return node;
+        }
+    }
+
+    private void reBalance(N subtreeRoot) {
+        root = retrace(subtreeRoot);
+    }
+
+    /**
+     * Re-balances subtrees on the way up while their heights keep changing. Ancestors of a subtree whose height is
+     * the same as before can't go out of balance, so re-balancing stops there and only their sizes are updated.
+     * Returns the root of the whole tree.
+     */
+    private N retrace(N subtreeRoot) {
+        N node = subtreeRoot;
+        int depth = 1;
+        while (true) {
+            int previousHeight = node.height;
+            N balanced = balance(node);
+            if (balanced.parent == null) {
+                listener.retraced(depth);
+                return balanced;
+            } else if (balanced.height == previousHeight) {
+                listener.retraced(depth);
+                return updateSizes(balanced.parent);
+            }
+            node = balanced.parent;
+            depth++;
+        }
+    }
+
+    // updates sizes and aggregates of the subtree root and all its ancestors, returns the root of the whole tree
+    private N updateSizes(N subtreeRoot) {
+        N node = subtreeRoot;
+        while (true) {
+            node.size = size(node.left) + size(node.right) + 1;
+            summarize(node);
+            if (node.parent == null) {
+                return node;
+            }
+            node = node.parent;
+        }
+    }
+
+    // returns the root of the subtree after re-balancing
+    private N balance(N subtreeRoot) {
+        setHeightAndBalance(subtreeRoot);
+        if (subtreeRoot.balanceFactor < -1) { // out of balance and left heavy
+            if (subtreeRoot.left.balanceFactor > 0) { // left child is right heavy
+                rotateLeft(subtreeRoot.left);
+            }
+            return rotateRight(subtreeRoot);
+        } else if (subtreeRoot.balanceFactor > 1) { // out of balance and right heavy
+            if (subtreeRoot.right.balanceFactor < 0) { // right child is left heavy
+                rotateRight(subtreeRoot.right);
+            }
+            return rotateLeft(subtreeRoot);
+        }
+        return subtreeRoot;
+    }
+
+    // joins subtrees of any height through the in between node and returns the root of the result
+    private N join(N left, N inBetween, N right) {
+        if (height(left) > height(right) + 1) { // left is greater
+            N parent = left;
+            while (height(parent.right) > height(right) + 1) {
+                parent = parent.right;
+            }
+            setRight(parent, attach(parent.right, inBetween, right));
+            return retrace(parent);
+        } else if (height(right) > height(left) + 1) { // right is greater
+            N parent = right;
+            while (height(parent.left) > height(left) + 1) {
+                parent = parent.left;
+            }
+            setLeft(parent, attach(left, inBetween, parent.left));
+            return retrace(parent);
+        } else {
+            attach(left, inBetween, right);
+            setHeightAndBalance(inBetween);
+            return inBetween;
+        }
+    }
+
+    // reuses the detached in between node as the root of the two subtrees
+    private N attach(N left, N inBetween, N right) {
+        inBetween.parent = null;
+        setLeft(inBetween, left);
+        setRight(inBetween, right);
+        setHeightAndBalance(inBetween);
+        return inBetween;
+    }
+
+    private static <T, N extends AbstractAVLNode<T, N>> N detach(N subtreeRoot) {
+        if (subtreeRoot != null) {
+            subtreeRoot.parent = null;
+        }
+        return subtreeRoot;
+    }
+
+    // means it becomes left child of its right child
+    private N rotateLeft(N node) {
+        N rightChild = node.right;
+        N parent = node.parent;
+        setRight(node, rightChild.left);
+        setLeft(rightChild, node);
+        setHeightAndBalance(node);
+        setHeightAndBalance(rightChild);
+        replaceChild(parent, node, rightChild);
+        listener.rotated();
+        return rightChild;
+    }
+
+    // means it becomes right child of its left child
+    private N rotateRight(N node) {
+        N leftChild = node.left;
+        N parent = node.parent;
+        setLeft(node, leftChild.right);
+        setRight(leftChild, node);
+        setHeightAndBalance(node);
+        setHeightAndBalance(leftChild);
+        replaceChild(parent, node, leftChild);
+        listener.rotated();
+        return leftChild;
+    }
+
+    private static <T, N extends AbstractAVLNode<T, N>> void replaceChild(N parent, N child, N replacement) {
+        if (parent != null) {
+            if (parent.left == child) {
+                parent.left = replacement;
+            } else {
+                parent.right = replacement;
+            }
+        }
+        if (replacement != null) {
+            replacement.parent = parent;
+        }
+    }
+
+    private static <T, N extends AbstractAVLNode<T, N>> void setLeft(N node, N leftChild) {
+        node.left = leftChild;
+        if (leftChild != null) leftChild.parent = node;
+    }
+
+    private static <T, N extends AbstractAVLNode<T, N>> void setRight(N node, N rightChild) {
+        node.right = rightChild;
+        if (rightChild != null) rightChild.parent = node;
+    }
+
+    private static <T, N extends AbstractAVLNode<T, N>> void link(N previous, N next) {
+        if (previous != null) previous.next = next;
+        if (next != null) next.previous = previous;
+    }
+
+    private void setHeightAndBalance(N subtreeRoot) {
+        int leftChildHeight = height(subtreeRoot.left);
+        int rightChildHeight = height(subtreeRoot.right);
+        subtreeRoot.height = (byte) (max(leftChildHeight, rightChildHeight) + 1);
+        subtreeRoot.balanceFactor = (byte) (rightChildHeight - leftChildHeight);
+        subtreeRoot.size = size(subtreeRoot.left) + size(subtreeRoot.right) + 1;
+        summarize(subtreeRoot);
+    }
+
+    // recomputes the aggregate of the subtree from the aggregates of the children, if the tree maintains one
+    @SuppressWarnings("unchecked")
+    private void summarize(N subtreeRoot) {
+        if (aggregate != null) {
+            Aggregate<? super T, Object> summary = (Aggregate<? super T, Object>) aggregate;
+            Object result = summary.of(subtreeRoot.value);
+            if (subtreeRoot.left != null) {
+                result = summary.combine(subtreeRoot.left.aggregate, result);
+            }
+            if (subtreeRoot.right != null) {
+                result = summary.combine(result, subtreeRoot.right.aggregate);
+            }
+            subtreeRoot.aggregate = result;
+        }
+    }
+
+    private static <T, N extends AbstractAVLNode<T, N>> int height(N subtreeRoot) {
+        return subtreeRoot != null ? subtreeRoot.height : -1;
+    }
+
+    private static <T, N extends AbstractAVLNode<T, N>> int size(N subtreeRoot) {
+        return subtreeRoot != null ? subtreeRoot.size : 0;
+    }
+
+    private static <T, N extends AbstractAVLNode<T, N>> N leftmost(N subtreeRoot) {
+        N node = subtreeRoot;
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node;
+    }
+
+    private static <T, N extends AbstractAVLNode<T, N>> N rightmost(N subtreeRoot) {
+        N node = subtreeRoot;
+        while (node.right != null) {
+            node = node.right;
+        }
+        return node;
+    }
+}
@@ -0,0 +1,91 @@
+package org.openstructures.sequence.avltree;
+
+import java.util.Comparator;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Summary of values that a tree keeps for every subtree, so the summary of any range of values is combined from
+ * O(log n) subtrees rather than computed from the values. It has to form a monoid: {@link #combine(Object, Object)}
+ * has to be associative and {@link #identity()} has to leave any summary unchanged when combined with it. It doesn't
+ * have to be commutative, summaries are always combined in the order of the values.
+ * <p>
+ * Summaries should be immutable, since the same summary can be kept by a node and returned to a caller.
+ *
+ * @param <T> type of the values
+ * @param <A> type of the summaries
+ */
+public interface Aggregate<T, A> {
+
+    /**
+     * Returns the summary of no values.
+     */
+    A identity();
+
+    /**
+     * Returns the summary of a single value.
+     */
+    A of(T value);
+
+    /**
+     * Returns the summary of the values of the left summary followed by the values of the right one.
+     */
+    A combine(A left, A right);
+
+    static <T, A> Aggregate<T, A> of(Supplier<? extends A> identity, Function<? super T, ? extends A> single,
+                                     BinaryOperator<A> combiner) {
+        checkNotNull(identity);
+        checkNotNull(single);
+        checkNotNull(combiner);
+
+        return new Aggregate<T, A>() {
+            @Override
+            public A identity() {
+                return identity.get();
+            }
+
+            @Override
+            public A of(T value) {
+                return single.apply(value);
+            }
+
+            @Override
+            public A combine(A left, A right) {
+                return combiner.apply(left, right);
+            }
+        };
+    }
+
+    /**
+     * Returns the sum of a {@code long} property of the values, which overflows silently.
+     */
+    static <T> Aggregate<T, Long> summingLong(ToLongFunction<? super T> property) {
+        checkNotNull(property);
+
+        return of(() -> 0L, value -> property.applyAsLong(value), Long::sum);
+    }
+
+    /**
+     * Returns the least of the values in the given order, or null for no values.
+     */
+    static <T> Aggregate<T, T> minimum(Comparator<? super T> comparator) {
+        checkNotNull(comparator);
+
+        return of(() -> null, value -> value,
+                (left, right) -> left == null ? right : right == null || comparator.compare(left, right) <= 0 ? left : right);
+    }
+
+    /**
+     * Returns the greatest of the values in the given order, or null for no values.
+     */
+    static <T> Aggregate<T, T> maximum(Comparator<? super T> comparator) {
+        checkNotNull(comparator);
+
+        return of(() -> null, value -> value,
+                (left, right) -> left == null ? right : right == null || comparator.compare(left, right) >= 0 ? left : right);
+    }
+}
@@ -0,0 +1,121 @@
+package org.openstructures.sequence.avltree;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * {@link IndexedAVLTree} whose nodes are slots of parallel primitive arrays rather than objects, so a node costs a
+ * few array elements and no object header or reference.
+ * <p>
+ * The tree only keeps the structure: every node is linked to its parent, children and the nodes with the closest
+ * smaller and greater keys. Subclasses keep the keys in arrays of their own, which are resized together with the
+ * structure, and do the searching.
+ */
+public abstract class ArrayAVLTree extends IndexedAVLTree {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] parent;
+    private int[] left;
+    private int[] right;
+    private int[] previous;
+    private int[] next; // also chains the free list
+    private byte[] height;
+
+    protected ArrayAVLTree() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    protected ArrayAVLTree(int initialCapacity) {
+        checkArgument(initialCapacity > 0, "capacity has to be positive, but it is %s", initialCapacity);
+        parent = new int[initialCapacity];
+        left = new int[initialCapacity];
+        right = new int[initialCapacity];
+        previous = new int[initialCapacity];
+        next = new int[initialCapacity];
+        height = new byte[initialCapacity];
+    }
+
+    /**
+     * Called whenever the node arrays grow, so the subclass can grow its key arrays to the same capacity.
+     */
+    protected abstract void resize(int capacity);
+
+    @Override
+    protected final int capacity() {
+        return parent.length;
+    }
+
+    @Override
+    public final int left(int node) {
+        return left[node];
+    }
+
+    @Override
+    public final int right(int node) {
+        return right[node];
+    }
+
+    @Override
+    public final int previous(int node) {
+        return previous[node];
+    }
+
+    @Override
+    public final int next(int node) {
+        return next[node];
+    }
+
+    @Override
+    final int parent(int node) {
+        return parent[node];
+    }
+
+    @Override
+    final int height(int node) {
+        return height[node];
+    }
+
+    @Override
+    final void putParent(int node, int parent) {
+        this.parent[node] = parent;
+    }
+
+    @Override
+    final void putLeft(int node, int left) {
+        this.left[node] = left;
+    }
+
+    @Override
+    final void putRight(int node, int right) {
+        this.right[node] = right;
+    }
+
+    @Override
+    final void putPrevious(int node, int previous) {
+        this.previous[node] = previous;
+    }
+
+    @Override
+    final void putNext(int node, int next) {
+        this.next[node] = next;
+    }
+
+    @Override
+    final void putHeight(int node, int height) {
+        this.height[node] = (byte) height;
+    }
+
+    @Override
+    final void grow() {
+        int capacity = parent.length + (parent.length >> 1) + 1;
+        parent = Arrays.copyOf(parent, capacity);
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        previous = Arrays.copyOf(previous, capacity);
+        next = Arrays.copyOf(next, capacity);
+        height = Arrays.copyOf(height, capacity);
+        resize(capacity);
+    }
+}
@@ -0,0 +1,324 @@
+package org.openstructures.sequence.avltree;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.max;
+
+/**
+ * AVL tree whose nodes are slots of a storage rather than objects. Nodes are referred to by their index,
+ * {@link #NIL} stands for no node. Deleted nodes go to a free list and their slots are reused by later inserts.
+ * <p>
+ * This class re-balances the tree and links the nodes, subclasses decide where the fields of a node are kept:
+ * {@link ArrayAVLTree} keeps them in parallel arrays on the heap, {@link OffHeapAVLTree} in direct buffers. Keys are
+ * kept and searched by the subclasses of those, so keys of a primitive type are never boxed. The tree can be walked
+ * by anyone, so searches can be written once for every storage, but only subclasses insert and delete nodes.
+ */
+public abstract class IndexedAVLTree {
+
+    public static final int NIL = -1;
+
+    static final byte FREE = -2; // height of a node that isn't part of the tree
+
+    private int root = NIL;
+    private int size;
+    private int allocated; // slots below are either part of the tree or on the free list
+    private int free = NIL;
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all nodes, keeping the allocated storage.
+     */
+    public void clear() {
+        root = NIL;
+        size = 0;
+        allocated = 0;
+        free = NIL;
+    }
+
+    public int root() {
+        return root;
+    }
+
+    // the state of the tree besides its nodes, for storages that persist the tree
+    int allocated() {
+        return allocated;
+    }
+
+    int free() {
+        return free;
+    }
+
+    void restore(int root, int size, int allocated, int free) {
+        this.root = root;
+        this.size = size;
+        this.allocated = allocated;
+        this.free = free;
+    }
+
+    public abstract int left(int node);
+
+    public abstract int right(int node);
+
+    /**
+     * Returns the node with the closest smaller key.
+     */
+    public abstract int previous(int node);
+
+    /**
+     * Returns the node with the closest greater key.
+     */
+    public abstract int next(int node);
+
+    /**
+     * Returns the number of nodes the storage holds without growing.
+     */
+    protected abstract int capacity();
+
+    // the storage of the node fields, a height of FREE marks a slot on the free list
+    abstract int parent(int node);
+
+    abstract int height(int node);
+
+    abstract void putParent(int node, int parent);
+
+    abstract void putLeft(int node, int left);
+
+    abstract void putRight(int node, int right);
+
+    abstract void putPrevious(int node, int previous);
+
+    abstract void putNext(int node, int next);
+
+    abstract void putHeight(int node, int height);
+
+    // makes room for more nodes than the capacity, keeping the fields of all nodes
+    abstract void grow();
+
+    /**
+     * Tells whether the node is part of the tree, rather than deleted or never allocated.
+     */
+    public boolean isInTree(int node) {
+        return node >= 0 && node < allocated && height(node) != FREE;
+    }
+
+    public int firstNode() {
+        if (root == NIL) {
+            return NIL;
+        }
+        int node = root;
+        while (left(node) != NIL) {
+            node = left(node);
+        }
+        return node;
+    }
+
+    public int lastNode() {
+        if (root == NIL) {
+            return NIL;
+        }
+        int node = root;
+        while (right(node) != NIL) {
+            node = right(node);
+        }
+        return node;
+    }
+
+    /**
+     * Adds a new node as the left or right child of the parent found by a search, which has no such child yet, or as
+     * the root if the parent is {@link #NIL}. The node is linked to its neighbours and the tree is re-balanced. The
+     * key of the returned node has to be set by the caller, re-balancing doesn't look at keys.
+     */
+    protected int insertNode(int parentNode, boolean asLeftChild) {
+        int node = allocate();
+        if (parentNode == NIL) {
+            checkArgument(root == NIL, "only an empty tree has no parent for a new node");
+            root = node;
+        } else if (asLeftChild) {
+            checkArgument(left(parentNode) == NIL, "%s already has a left child", parentNode);
+            setLeft(parentNode, node);
+            link(previous(parentNode), node);
+            link(node, parentNode);
+            reBalance(parentNode);
+        } else {
+            checkArgument(right(parentNode) == NIL, "%s already has a right child", parentNode);
+            setRight(parentNode, node);
+            link(node, next(parentNode));
+            link(parentNode, node);
+            reBalance(parentNode);
+        }
+        size++;
+        return node;
+    }
+
+    /**
+     * Deletes the node and puts its slot on the free list.
+     */
+    protected void deleteNode(int nodeToDelete) {
+        checkArgument(isInTree(nodeToDelete), "%s is not part of the tree", nodeToDelete);
+
+        int parentNode = parent(nodeToDelete);
+        int replacement;
+        int nodeToReBalance;
+        if (left(nodeToDelete) == NIL || right(nodeToDelete) == NIL) { // node is replaced by its only child, if any
+            replacement = left(nodeToDelete) != NIL ? left(nodeToDelete) : right(nodeToDelete);
+            nodeToReBalance = parentNode;
+        } else { // node is replaced by the leftmost node of its right subtree, which is the next one
+            replacement = next(nodeToDelete);
+            // it takes the place of the deleted node, so retracing can stop below it
+            putHeight(replacement, height(nodeToDelete));
+            if (parent(replacement) != nodeToDelete) {
+                nodeToReBalance = parent(replacement);
+                setLeft(parent(replacement), right(replacement));
+                setRight(replacement, right(nodeToDelete));
+            } else {
+                nodeToReBalance = replacement;
+            }
+            setLeft(replacement, left(nodeToDelete));
+        }
+        replaceChild(parentNode, nodeToDelete, replacement);
+        if (parentNode == NIL) {
+            root = replacement;
+        }
+        if (nodeToReBalance != NIL) {
+            reBalance(nodeToReBalance);
+        }
+
+        link(previous(nodeToDelete), next(nodeToDelete));
+        release(nodeToDelete);
+        size--;
+    }
+
+    private int allocate() {
+        int node;
+        if (free != NIL) {
+            node = free;
+            free = next(node);
+        } else {
+            if (allocated == capacity()) {
+                grow();
+            }
+            node = allocated++;
+        }
+        putParent(node, NIL);
+        putLeft(node, NIL);
+        putRight(node, NIL);
+        putPrevious(node, NIL);
+        putNext(node, NIL);
+        putHeight(node, 0);
+        return node;
+    }
+
+    private void release(int node) {
+        putParent(node, NIL);
+        putLeft(node, NIL);
+        putRight(node, NIL);
+        putPrevious(node, NIL);
+        putHeight(node, FREE);
+        putNext(node, free);
+        free = node;
+    }
+
+    private void reBalance(int subtreeRoot) {
+        int node = subtreeRoot;
+        while (true) {
+            int previousHeight = height(node);
+            int balanced = balance(node);
+            if (parent(balanced) == NIL) {
+                root = balanced;
+                return;
+            }
+            if (height(balanced) == previousHeight) {
+                return;
+            }
+            node = parent(balanced);
+        }
+    }
+
+    // returns the root of the subtree after re-balancing
+    private int balance(int subtreeRoot) {
+        setHeight(subtreeRoot);
+        int balanceFactor = balanceFactor(subtreeRoot);
+        if (balanceFactor < -1) { // out of balance and left heavy
+            if (balanceFactor(left(subtreeRoot)) > 0) { // left child is right heavy
+                rotateLeft(left(subtreeRoot));
+            }
+            return rotateRight(subtreeRoot);
+        } else if (balanceFactor > 1) { // out of balance and right heavy
+            if (balanceFactor(right(subtreeRoot)) < 0) { // right child is left heavy
+                rotateRight(right(subtreeRoot));
+            }
+            return rotateLeft(subtreeRoot);
+        }
+        return subtreeRoot;
+    }
+
+    // means it becomes left child of its right child
+    private int rotateLeft(int node) {
+        int rightChild = right(node);
+        int parentNode = parent(node);
+        setRight(node, left(rightChild));
+        setLeft(rightChild, node);
+        setHeight(node);
+        setHeight(rightChild);
+        replaceChild(parentNode, node, rightChild);
+        return rightChild;
+    }
+
+    // means it becomes right child of its left child
+    private int rotateRight(int node) {
+        int leftChild = left(node);
+        int parentNode = parent(node);
+        setLeft(node, right(leftChild));
+        setRight(leftChild, node);
+        setHeight(node);
+        setHeight(leftChild);
+        replaceChild(parentNode, node, leftChild);
+        return leftChild;
+    }
+
+    private void replaceChild(int parentNode, int child, int replacement) {
+        if (parentNode != NIL) {
+            if (left(parentNode) == child) {
+                putLeft(parentNode, replacement);
+            } else {
+                putRight(parentNode, replacement);
+            }
+        }
+        if (replacement != NIL) {
+            putParent(replacement, parentNode);
+        }
+    }
+
+    private void setLeft(int node, int leftChild) {
+        putLeft(node, leftChild);
+        if (leftChild != NIL) putParent(leftChild, node);
+    }
+
+    private void setRight(int node, int rightChild) {
+        putRight(node, rightChild);
+        if (rightChild != NIL) putParent(rightChild, node);
+    }
+
+    private void link(int previousNode, int nextNode) {
+        if (previousNode != NIL) putNext(previousNode, nextNode);
+        if (nextNode != NIL) putPrevious(nextNode, previousNode);
+    }
+
+    private void setHeight(int node) {
+        putHeight(node, max(heightOf(left(node)), heightOf(right(node))) + 1);
+    }
+
+    private int balanceFactor(int node) {
+        return heightOf(right(node)) - heightOf(left(node));
+    }
+
+    private int heightOf(int node) {
+        return node != NIL ? height(node) : -1;
+    }
+}
@@ -0,0 +1,329 @@
+package org.openstructures.sequence.avltree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.zip.CRC32;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * {@link OffHeapAVLTree} whose segments are mapped from a file, so the tree outlives the process and is reopened
+ * without being rebuilt: opening maps the segments and reads a header, whatever the number of nodes.
+ * <p>
+ * Changes are made durable by a redo log next to the file. Segments are mapped privately, so the nodes changed in
+ * memory are never written to the file by the operating system, which could happen in the middle of a change.
+ * Instead, {@link #commit()} appends the changed records and the state of the tree to the log as one transaction
+ * with a checksum. Once the log grows large, and on {@link #close()}, a checkpoint writes the changed segments to
+ * the file and empties the log. Opening the file replays the complete transactions of the log, so after a crash the
+ * tree is in the state of the last commit, never in the middle of a re-balancing.
+ * <p>
+ * A commit forces the log to the disk if the tree is opened with {@code syncOnCommit}, which survives a power loss.
+ * Otherwise committed changes survive a crash of the process, but not of the operating system. Changes are expected
+ * to be committed after every operation of the subclass; keys written to a node right after it is inserted are part
+ * of the same transaction. The tree isn't thread-safe.
+ */
+public abstract class MappedAVLTree extends OffHeapAVLTree implements Closeable {
+
+    private static final long MAGIC = 0x4f53_5345_514d_4150L;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4096; // keeps the segments aligned to pages
+    private static final int STATE = 16; // offset of the state in the header
+    private static final int STATE_SIZE = 5 * Integer.BYTES; // root, size, allocated, free and segments
+    private static final int TRANSACTION = 0x5458_4e31;
+    private static final long CHECKPOINT_SIZE = 16L << 20;
+
+    private final FileChannel data;
+    private final FileChannel log;
+    private final boolean syncOnCommit;
+    private final BitSet dirtySegments = new BitSet();
+    private long logSize;
+    private int[] written = new int[64];
+    private int writtenCount;
+    private ByteBuffer transaction = ByteBuffer.allocate(1024);
+    private boolean open;
+    // the segments found on opening are sliced from a single mapping, segments added later are mapped one by one
+    private ByteBuffer openedSegments;
+    private int openedSegmentCount;
+
+    /**
+     * Opens the tree kept in the file, or creates an empty one if the file doesn't exist, after recovering the
+     * committed transactions of the log. The key width has to be the same every time the file is opened.
+     */
+    protected MappedAVLTree(Path file, int keyWidth, boolean syncOnCommit) throws IOException {
+        super(keyWidth);
+        checkNotNull(file);
+
+        this.syncOnCommit = syncOnCommit;
+        this.data = FileChannel.open(file, CREATE, READ, WRITE);
+        try {
+            this.log = FileChannel.open(file.resolveSibling(file.getFileName() + ".log"), CREATE, READ, WRITE);
+            try {
+                open();
+            } catch (IOException | RuntimeException e) {
+                log.close();
+                throw e;
+            }
+        } catch (IOException | RuntimeException e) {
+            data.close();
+            throw e;
+        }
+        this.open = true;
+    }
+
+    /**
+     * Appends the records written since the last commit, together with the state of the tree, to the log as one
+     * transaction.
+     */
+    protected void commit() {
+        checkState(open, "the tree is closed");
+
+        int count = distinctWritten();
+        int length = 2 * Integer.BYTES + STATE_SIZE + count * (Integer.BYTES + recordSize()) + Long.BYTES;
+        if (transaction.capacity() < length) {
+            transaction = ByteBuffer.allocate(Math.max(length, 2 * transaction.capacity()));
+        }
+        transaction.clear();
+        transaction.putInt(TRANSACTION).putInt(count);
+        putState(transaction);
+        for (int i = 0; i < count; i++) {
+            int node = written[i];
+            transaction.putInt(node);
+            segment(node).get(offset(node), transaction.array(), transaction.position(), recordSize());
+            transaction.position(transaction.position() + recordSize());
+            dirtySegments.set(node / SEGMENT_SIZE);
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(transaction.array(), 0, transaction.position());
+        transaction.putLong(checksum.getValue());
+        transaction.flip();
+        writtenCount = 0;
+
+        try {
+            while (transaction.hasRemaining()) {
+                logSize += log.write(transaction, logSize);
+            }
+            if (syncOnCommit) {
+                log.force(false);
+            }
+            if (logSize >= CHECKPOINT_SIZE) {
+                checkpoint();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Commits the pending changes, writes the segments changed since the last checkpoint to the file, forces it to
+     * the disk and empties the log.
+     */
+    public void checkpoint() throws IOException {
+        checkState(open, "the tree is closed");
+        if (writtenCount > 0) {
+            commit();
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(STATE_SIZE);
+        putState(header);
+        header.flip();
+        writeFully(header, STATE);
+        for (int index = dirtySegments.nextSetBit(0); index >= 0; index = dirtySegments.nextSetBit(index + 1)) {
+            ByteBuffer segment = segment(index * SEGMENT_SIZE).duplicate();
+            segment.clear();
+            writeFully(segment, position(index * SEGMENT_SIZE));
+        }
+        data.force(true);
+        dirtySegments.clear();
+        emptyLog();
+    }
+
+    /**
+     * Commits the pending changes, checkpoints and closes the files.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        try {
+            checkpoint();
+        } finally {
+            open = false;
+            try {
+                log.close();
+            } finally {
+                data.close();
+            }
+        }
+    }
+
+    @Override
+    ByteBuffer newSegment(int index, int bytes) {
+        if (index < openedSegmentCount) {
+            return openedSegments.slice(index * bytes, bytes);
+        }
+        long position = HEADER_SIZE + (long) index * bytes;
+        try {
+            if (data.size() < position + bytes) {
+                // extends the file, so the whole segment can be mapped
+                writeFully(ByteBuffer.allocate(1), position + bytes - 1);
+            }
+            return data.map(MapMode.PRIVATE, position, bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    void written(int node) {
+        if (writtenCount == written.length) {
+            written = Arrays.copyOf(written, 2 * written.length);
+        }
+        written[writtenCount++] = node;
+    }
+
+    private void open() throws IOException {
+        if (data.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putLong(MAGIC).putInt(VERSION).putInt(recordSize());
+            putState(header);
+            header.clear();
+            writeFully(header, 0);
+            data.force(true);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(STATE + STATE_SIZE);
+        readFully(data, header, 0);
+        header.flip();
+        if (header.remaining() < STATE + STATE_SIZE || header.getLong() != MAGIC) {
+            throw new IOException("the file doesn't hold a tree");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("the file holds a tree of version " + version + " rather than " + VERSION);
+        }
+        int fileRecordSize = header.getInt();
+        if (fileRecordSize != recordSize()) {
+            throw new IOException("the file holds records of " + fileRecordSize + " bytes rather than "
+                    + recordSize());
+        }
+
+        if (log.size() > 0) {
+            replayLog();
+            data.force(true);
+            emptyLog();
+            header.clear();
+            readFully(data, header, 0);
+            header.flip();
+        }
+
+        header.position(STATE);
+        int root = header.getInt();
+        int size = header.getInt();
+        int allocated = header.getInt();
+        int free = header.getInt();
+        int segments = header.getInt();
+        // mappings are only released once their buffers are collected, and a process can hold a limited number of
+        // them, so a file opened again and again shouldn't take a mapping per segment
+        int segmentBytes = SEGMENT_SIZE * recordSize();
+        openedSegmentCount = Math.min(segments, Integer.MAX_VALUE / segmentBytes);
+        if (openedSegmentCount > 0) {
+            openedSegments = data.map(MapMode.PRIVATE, HEADER_SIZE, (long) openedSegmentCount * segmentBytes);
+        }
+        for (int i = 0; i < segments; i++) {
+            grow();
+        }
+        restore(root, size, allocated, free);
+    }
+
+    // writes the records and states of the complete transactions of the log into the file, in the order of the log
+    private void replayLog() throws IOException {
+        long position = 0;
+        ByteBuffer head = ByteBuffer.allocate(2 * Integer.BYTES);
+        while (true) {
+            head.clear();
+            if (readFully(log, head, position) < head.capacity() || head.getInt(0) != TRANSACTION) {
+                return;
+            }
+            int count = head.getInt(Integer.BYTES);
+            long length = 2L * Integer.BYTES + STATE_SIZE + count * (long) (Integer.BYTES + recordSize())
+                    + Long.BYTES;
+            if (count < 0 || position + length > log.size()) {
+                return; // the last transaction wasn't written completely
+            }
+            ByteBuffer entry = ByteBuffer.allocate((int) length);
+            readFully(log, entry, position);
+            CRC32 checksum = new CRC32();
+            checksum.update(entry.array(), 0, entry.capacity() - Long.BYTES);
+            if (checksum.getValue() != entry.getLong(entry.capacity() - Long.BYTES)) {
+                return;
+            }
+
+            entry.position(2 * Integer.BYTES).limit(2 * Integer.BYTES + STATE_SIZE);
+            writeFully(entry, STATE);
+            for (int i = 0; i < count; i++) {
+                int start = 2 * Integer.BYTES + STATE_SIZE + i * (Integer.BYTES + recordSize());
+                entry.limit(start + Integer.BYTES + recordSize()).position(start);
+                int node = entry.getInt();
+                writeFully(entry, position(node));
+            }
+            position += length;
+        }
+    }
+
+    private void emptyLog() throws IOException {
+        log.truncate(0);
+        log.force(true);
+        logSize = 0;
+    }
+
+    // sorts the nodes written since the last commit and drops the repeated ones, returns their number
+    private int distinctWritten() {
+        Arrays.sort(written, 0, writtenCount);
+        int count = 0;
+        for (int i = 0; i < writtenCount; i++) {
+            if (count == 0 || written[count - 1] != written[i]) {
+                written[count++] = written[i];
+            }
+        }
+        return count;
+    }
+
+    private void putState(ByteBuffer buffer) {
+        buffer.putInt(root()).putInt(size()).putInt(allocated()).putInt(free()).putInt(segmentCount());
+    }
+
+    private long position(int node) {
+        return HEADER_SIZE + (long) node * recordSize();
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        long at = position;
+        while (buffer.hasRemaining()) {
+            at += data.write(buffer, at);
+        }
+    }
+
+    private static int readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int read = 0;
+        while (buffer.hasRemaining()) {
+            int bytes = channel.read(buffer, position + read);
+            if (bytes < 0) {
+                break;
+            }
+            read += bytes;
+        }
+        return read;
+    }
+}
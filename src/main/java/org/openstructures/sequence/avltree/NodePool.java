@@ -0,0 +1,99 @@
+package org.openstructures.sequence.avltree;
+
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Free list of detached nodes, which a tree takes its new nodes from and gives its deleted nodes back to, so
+ * inserting and deleting keys at a steady size allocates no nodes at all. Idle nodes are chained through their links
+ * to the next node, so the pool costs no object per node. Once the pool runs out of nodes, it allocates a whole slab
+ * of spare nodes at once, which end up next to each other in memory. At most {@code maxIdle} nodes are kept idle,
+ * further nodes given back are left to the garbage collector, so a tree that shrinks doesn't hold on to its peak
+ * number of nodes.
+ * <p>
+ * A node taken from the pool may be a node deleted earlier, so references to deleted nodes must not be kept: they
+ * may hold another value later on. The pool isn't thread-safe, every tree should have a pool of its own.
+ *
+ * @param <T> type of the values
+ * @param <N> type of the nodes
+ */
+public final class NodePool<T, N extends AbstractAVLNode<T, N>> {
+
+    private static final int MAX_SLAB_SIZE = 256;
+
+    private final Supplier<? extends N> spares;
+    private final int maxIdle;
+    private final int slabSize;
+    private N idle;
+    private int idleCount;
+
+    /**
+     * Creates a pool that allocates spare nodes, created with {@link AbstractAVLNode#AbstractAVLNode()}, from the
+     * supplier and keeps at most {@code maxIdle} of them idle.
+     */
+    public NodePool(Supplier<? extends N> spares, int maxIdle) {
+        checkNotNull(spares);
+        checkArgument(maxIdle > 0, "at least one node has to be kept idle, but maxIdle is %s", maxIdle);
+
+        this.spares = spares;
+        this.maxIdle = maxIdle;
+        this.slabSize = Math.min(maxIdle, MAX_SLAB_SIZE);
+    }
+
+    /**
+     * Returns an empty pool of the same spare nodes and the same limit of idle nodes.
+     */
+    public NodePool<T, N> emptyCopy() {
+        return new NodePool<>(spares, maxIdle);
+    }
+
+    /**
+     * Returns an idle node holding the value, allocating a slab of spare nodes first if there is none.
+     */
+    public N take(T value) {
+        checkNotNull(value);
+
+        if (idle == null) {
+            allocateSlab();
+        }
+        N node = idle;
+        idle = node.next;
+        idleCount--;
+        node.next = null;
+        node.reuse(value);
+        return node;
+    }
+
+    /**
+     * Gives back a node deleted from its tree, which must no longer be used by the caller.
+     */
+    public void give(N node) {
+        checkArgument(node.parent == null && node.left == null && node.right == null && node.previous == null
+                && node.next == null, "%s is still part of a tree", node.value);
+
+        if (idleCount < maxIdle) {
+            node.release();
+            node.next = idle;
+            idle = node;
+            idleCount++;
+        }
+    }
+
+    /**
+     * Returns the number of idle nodes.
+     */
+    public int idle() {
+        return idleCount;
+    }
+
+    private void allocateSlab() {
+        for (int i = 0; i < slabSize; i++) {
+            N node = spares.get();
+            node.next = idle;
+            idle = node;
+        }
+        idleCount += slabSize;
+    }
+}
@@ -0,0 +1,171 @@
+package org.openstructures.sequence.avltree;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * {@link IndexedAVLTree} whose nodes are fixed-width records in direct buffers, outside of the heap. A node is a
+ * record of its parent, children, neighbours and height followed by a key of {@code keyWidth} bytes, so however many
+ * nodes there are, the garbage collector only sees a few buffers.
+ * <p>
+ * Records are kept in segments of {@link #SEGMENT_SIZE} nodes. The tree grows by adding a segment, which neither
+ * copies the nodes nor moves them, and a node is found by its index with a shift and a mask. Subclasses read and
+ * write the keys at {@link #keyOffset(int)} of {@link #segment(int)}, and do the searching.
+ * <p>
+ * Segments are allocated on demand and never given back while the tree is in use, {@link #clear()} keeps them for
+ * later inserts. Their memory is released when the tree is garbage collected.
+ */
+public abstract class OffHeapAVLTree extends IndexedAVLTree {
+
+    public static final int SEGMENT_SIZE = 1 << 14;
+
+    private static final int SEGMENT_SHIFT = 14;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    // offsets of the fields within a record
+    private static final int PARENT = 0;
+    private static final int LEFT = 4;
+    private static final int RIGHT = 8;
+    private static final int PREVIOUS = 12;
+    private static final int NEXT = 16; // also chains the free list
+    private static final int HEIGHT = 20;
+    private static final int KEY = 24;
+
+    private final int recordSize;
+    private ByteBuffer[] segments = new ByteBuffer[0];
+
+    /**
+     * Creates a tree whose nodes hold keys of the given number of bytes. Records are padded to 8 bytes, so keys of
+     * up to 8 bytes are aligned.
+     */
+    protected OffHeapAVLTree(int keyWidth) {
+        checkArgument(keyWidth > 0, "key width has to be positive, but it is %s", keyWidth);
+        checkArgument(keyWidth <= Integer.MAX_VALUE / SEGMENT_SIZE - KEY - 7, "key width %s is too large", keyWidth);
+        this.recordSize = (KEY + keyWidth + 7) & ~7;
+    }
+
+    /**
+     * Returns the segment that holds the record of the node.
+     */
+    protected final ByteBuffer segment(int node) {
+        return segments[node >>> SEGMENT_SHIFT];
+    }
+
+    /**
+     * Returns the offset of the key of the node within its segment.
+     */
+    protected final int keyOffset(int node) {
+        return offset(node) + KEY;
+    }
+
+    /**
+     * Returns the number of bytes of off-heap memory taken by the segments.
+     */
+    public long reservedBytes() {
+        return (long) segments.length * SEGMENT_SIZE * recordSize;
+    }
+
+    @Override
+    protected final int capacity() {
+        return segments.length * SEGMENT_SIZE;
+    }
+
+    @Override
+    public final int left(int node) {
+        return segment(node).getInt(offset(node) + LEFT);
+    }
+
+    @Override
+    public final int right(int node) {
+        return segment(node).getInt(offset(node) + RIGHT);
+    }
+
+    @Override
+    public final int previous(int node) {
+        return segment(node).getInt(offset(node) + PREVIOUS);
+    }
+
+    @Override
+    public final int next(int node) {
+        return segment(node).getInt(offset(node) + NEXT);
+    }
+
+    @Override
+    final int parent(int node) {
+        return segment(node).getInt(offset(node) + PARENT);
+    }
+
+    @Override
+    final int height(int node) {
+        return segment(node).get(offset(node) + HEIGHT);
+    }
+
+    @Override
+    final void putParent(int node, int parent) {
+        segment(node).putInt(offset(node) + PARENT, parent);
+        written(node);
+    }
+
+    @Override
+    final void putLeft(int node, int left) {
+        segment(node).putInt(offset(node) + LEFT, left);
+        written(node);
+    }
+
+    @Override
+    final void putRight(int node, int right) {
+        segment(node).putInt(offset(node) + RIGHT, right);
+        written(node);
+    }
+
+    @Override
+    final void putPrevious(int node, int previous) {
+        segment(node).putInt(offset(node) + PREVIOUS, previous);
+        written(node);
+    }
+
+    @Override
+    final void putNext(int node, int next) {
+        segment(node).putInt(offset(node) + NEXT, next);
+        written(node);
+    }
+
+    @Override
+    final void putHeight(int node, int height) {
+        segment(node).put(offset(node) + HEIGHT, (byte) height);
+        written(node);
+    }
+
+    @Override
+    final void grow() {
+        checkState(segments.length < (Integer.MAX_VALUE >>> SEGMENT_SHIFT), "the tree can't hold more nodes");
+        ByteBuffer segment = newSegment(segments.length, SEGMENT_SIZE * recordSize);
+        segments = Arrays.copyOf(segments, segments.length + 1);
+        segments[segments.length - 1] = segment.order(ByteOrder.nativeOrder());
+    }
+
+    // allocates the memory of the segment at the index
+    ByteBuffer newSegment(int index, int bytes) {
+        return ByteBuffer.allocateDirect(bytes);
+    }
+
+    // called after a field of the node has been written, keys are written by subclasses and don't count
+    void written(int node) {
+    }
+
+    int segmentCount() {
+        return segments.length;
+    }
+
+    int recordSize() {
+        return recordSize;
+    }
+
+    int offset(int node) {
+        return (node & SEGMENT_MASK) * recordSize;
+    }
+}
@@ -0,0 +1,477 @@
+package org.openstructures.sequence.avltree;
+
+import com.google.common.collect.Lists;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Immutable AVL tree. Inserts and deletes return a new tree and leave this one as it is: only the nodes on the path
+ * to the changed one are copied, O(log n) of them, and the new tree shares all the other nodes with the old one.
+ * Holding on to a tree is therefore a snapshot that costs nothing to take and stays valid whatever happens to the
+ * trees derived from it, and a tree can be read from any number of threads without locking.
+ * <p>
+ * Nodes have no parent pointers or links to their neighbours, which would have to be copied along with every node
+ * that points to them, so neighbours are found by a descent from the root. Every node keeps the size of its subtree
+ * for {@link #rank(Object, boolean)}, {@link #select(int)} and exact splits.
+ */
+public final class PersistentAVLTree<T extends C, C> implements Iterable<T> {
+
+    private final Comparator<? super C> comparator;
+    private final Node<T> root;
+
+    private PersistentAVLTree(Comparator<? super C> comparator, Node<T> root) {
+        this.comparator = comparator;
+        this.root = root;
+    }
+
+    public static <T extends C, C> PersistentAVLTree<T, C> empty(Comparator<? super C> comparator) {
+        checkNotNull(comparator);
+        return new PersistentAVLTree<>(comparator, null);
+    }
+
+    /**
+     * Builds a perfectly balanced tree from values sorted in ascending order without duplicates in O(n).
+     */
+    public static <T extends C, C> PersistentAVLTree<T, C> fromSorted(Iterable<? extends T> values,
+                                                                     Comparator<? super C> comparator) {
+        checkNotNull(values);
+        checkNotNull(comparator);
+
+        Collection<? extends T> collection = values instanceof Collection
+                ? (Collection<? extends T>) values : Lists.newArrayList(values);
+        Iterator<? extends T> iterator = collection.iterator();
+        Node<T> root = build(iterator, collection.size());
+        checkArgument(!iterator.hasNext(), "there are more than %s values", collection.size());
+        PersistentAVLTree<T, C> tree = new PersistentAVLTree<>(comparator, root);
+        tree.checkSorted();
+        return tree;
+    }
+
+    /**
+     * Returns a tree with the value inserted, copying O(log n) nodes. Throws {@link IllegalArgumentException} if an
+     * equal value is part of the tree.
+     */
+    public PersistentAVLTree<T, C> insert(T value) {
+        checkNotNull(value);
+        return new PersistentAVLTree<>(comparator, insert(root, value));
+    }
+
+    /**
+     * Returns a tree without the value equal to the key, copying O(log n) nodes, or this tree if there is none.
+     */
+    public PersistentAVLTree<T, C> delete(C key) {
+        checkNotNull(key);
+        Node<T> newRoot = delete(root, key);
+        return newRoot != root ? new PersistentAVLTree<>(comparator, newRoot) : this;
+    }
+
+    public Comparator<? super C> comparator() {
+        return comparator;
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Returns the value equal to the key or null if there is none.
+     */
+    public T find(C key) {
+        Node<T> node = root;
+        while (node != null) {
+            int comparison = comparator.compare(key, node.value);
+            if (comparison == 0) {
+                return node.value;
+            }
+            node = comparison < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the smallest value greater than the key or null if there is none.
+     */
+    public T higher(C key) {
+        Node<T> node = root;
+        T higher = null;
+        while (node != null) {
+            if (comparator.compare(node.value, key) > 0) {
+                higher = node.value;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return higher;
+    }
+
+    /**
+     * Returns the greatest value less than the key or null if there is none.
+     */
+    public T lower(C key) {
+        Node<T> node = root;
+        T lower = null;
+        while (node != null) {
+            if (comparator.compare(node.value, key) < 0) {
+                lower = node.value;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return lower;
+    }
+
+    /**
+     * Returns the smallest value greater than or equal to the key or null if there is none.
+     */
+    public T ceiling(C key) {
+        Node<T> node = root;
+        T ceiling = null;
+        while (node != null) {
+            int comparison = comparator.compare(node.value, key);
+            if (comparison == 0) {
+                return node.value;
+            } else if (comparison > 0) {
+                ceiling = node.value;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return ceiling;
+    }
+
+    /**
+     * Returns the greatest value less than or equal to the key or null if there is none.
+     */
+    public T floor(C key) {
+        Node<T> node = root;
+        T floor = null;
+        while (node != null) {
+            int comparison = comparator.compare(node.value, key);
+            if (comparison == 0) {
+                return node.value;
+            } else if (comparison < 0) {
+                floor = node.value;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return floor;
+    }
+
+    /**
+     * Returns the smallest value or null if the tree is empty.
+     */
+    public T first() {
+        return root != null ? leftmost(root).value : null;
+    }
+
+    /**
+     * Returns the greatest value or null if the tree is empty.
+     */
+    public T last() {
+        Node<T> node = root;
+        if (node == null) {
+            return null;
+        }
+        while (node.right != null) {
+            node = node.right;
+        }
+        return node.value;
+    }
+
+    /**
+     * Returns the number of values less than the key, or less than or equal to it if inclusive, in O(log n).
+     */
+    public int rank(C key, boolean inclusive) {
+        int rank = 0;
+        Node<T> node = root;
+        while (node != null) {
+            int comparison = comparator.compare(node.value, key);
+            if (comparison < 0 || inclusive && comparison == 0) {
+                rank += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Returns the value at the index in ascending order in O(log n).
+     */
+    public T select(int index) {
+        checkElementIndex(index, size());
+
+        Node<T> node = root;
+        int remaining = index;
+        while (true) {
+            int leftSize = size(node.left);
+            if (remaining < leftSize) {
+                node = node.left;
+            } else if (remaining > leftSize) {
+                remaining -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node.value;
+            }
+        }
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return Spliterators.iterator(spliterator());
+    }
+
+    /**
+     * Returns a spliterator over the values in ascending order. It splits its range of indexes in halves, with exact
+     * sizes taken from the tree. The tree never changes, so the spliterator can be used while new versions of the
+     * tree are derived from it.
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        return new IndexSpliterator(0, size());
+    }
+
+    int height() {
+        return height(root);
+    }
+
+    private Node<T> insert(Node<T> node, T value) {
+        if (node == null) {
+            return new Node<>(value, null, null);
+        }
+        int comparison = comparator.compare(value, node.value);
+        checkArgument(comparison != 0, "%s is already part of the tree", value);
+        return comparison < 0
+                ? balance(node.value, insert(node.left, value), node.right)
+                : balance(node.value, node.left, insert(node.right, value));
+    }
+
+    // returns the same node if the key isn't part of its subtree, so nothing is copied for absent keys
+    private Node<T> delete(Node<T> node, C key) {
+        if (node == null) {
+            return null;
+        }
+        int comparison = comparator.compare(key, node.value);
+        if (comparison < 0) {
+            Node<T> left = delete(node.left, key);
+            return left != node.left ? balance(node.value, left, node.right) : node;
+        } else if (comparison > 0) {
+            Node<T> right = delete(node.right, key);
+            return right != node.right ? balance(node.value, node.left, right) : node;
+        } else if (node.left == null) {
+            return node.right;
+        } else if (node.right == null) {
+            return node.left;
+        } else {
+            return balance(leftmost(node.right).value, node.left, deleteLeftmost(node.right));
+        }
+    }
+
+    private static <T> Node<T> deleteLeftmost(Node<T> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.value, deleteLeftmost(node.left), node.right);
+    }
+
+    // creates a node of the value and the subtrees, whose heights differ by 2 at most, rotating them into balance
+    private static <T> Node<T> balance(T value, Node<T> left, Node<T> right) {
+        int leftHeight = height(left);
+        int rightHeight = height(right);
+        if (leftHeight > rightHeight + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node<>(left.value, left.left, new Node<>(value, left.right, right));
+            }
+            Node<T> pivot = left.right;
+            return new Node<>(pivot.value, new Node<>(left.value, left.left, pivot.left),
+                    new Node<>(value, pivot.right, right));
+        } else if (rightHeight > leftHeight + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node<>(right.value, new Node<>(value, left, right.left), right.right);
+            }
+            Node<T> pivot = right.left;
+            return new Node<>(pivot.value, new Node<>(value, left, pivot.left),
+                    new Node<>(right.value, pivot.right, right.right));
+        }
+        return new Node<>(value, left, right);
+    }
+
+    private static <T> Node<T> build(Iterator<? extends T> values, int size) {
+        if (size == 0) {
+            return null;
+        }
+        int leftSize = (size - 1) / 2;
+        Node<T> left = build(values, leftSize);
+        checkArgument(values.hasNext(), "there are fewer values than expected");
+        T value = checkNotNull(values.next());
+        return new Node<>(value, left, build(values, size - 1 - leftSize));
+    }
+
+    private void checkSorted() {
+        T previous = null;
+        for (T value : this) {
+            checkArgument(previous == null || comparator.compare(previous, value) < 0,
+                    "Values have to be sorted in ascending order without duplicates, but %s is followed by %s",
+                    previous, value);
+            previous = value;
+        }
+    }
+
+    private static <T> Node<T> leftmost(Node<T> node) {
+        Node<T> leftmost = node;
+        while (leftmost.left != null) {
+            leftmost = leftmost.left;
+        }
+        return leftmost;
+    }
+
+    private static int height(Node<?> node) {
+        return node != null ? node.height : 0;
+    }
+
+    private static int size(Node<?> node) {
+        return node != null ? node.size : 0;
+    }
+
+    private static final class Node<T> {
+
+        private final T value;
+        private final Node<T> left;
+        private final Node<T> right;
+        private final int height;
+        private final int size;
+
+        private Node(T value, Node<T> left, Node<T> right) {
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = Math.max(height(left), height(right)) + 1;
+            this.size = size(left) + size(right) + 1;
+        }
+    }
+
+    /**
+     * Spliterator over the values at the indexes from {@code index} to {@code fence}. The path to the first value is
+     * only descended once the spliterator is advanced, so splitting takes O(1), and from then on a stack of the
+     * ancestors whose values are still to come leads from one value to the next.
+     */
+    private class IndexSpliterator implements Spliterator<T> {
+
+        private int index;
+        private final int fence;
+        private Object[] stack;
+        private int depth;
+
+        private IndexSpliterator(int index, int fence) {
+            this.index = index;
+            this.fence = fence;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            if (fence - index < 2) {
+                return null;
+            }
+            int middle = (index + fence) >>> 1;
+            IndexSpliterator prefix = new IndexSpliterator(index, middle);
+            index = middle;
+            stack = null;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            checkNotNull(action);
+            if (index >= fence) {
+                return false;
+            }
+            T value = nextValue();
+            index++;
+            action.accept(value);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            checkNotNull(action);
+            while (index < fence) {
+                T value = nextValue();
+                index++;
+                action.accept(value);
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | DISTINCT | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+            return comparator;
+        }
+
+        @SuppressWarnings("unchecked")
+        private T nextValue() {
+            if (stack == null) {
+                descendTo(index);
+            }
+            checkState(depth > 0);
+            Node<T> node = (Node<T>) stack[--depth];
+            for (Node<T> child = node.right; child != null; child = child.left) {
+                stack[depth++] = child;
+            }
+            return node.value;
+        }
+
+        // pushes the ancestors of the node at the index whose values come after it, and the node itself
+        private void descendTo(int target) {
+            stack = new Object[height(root)];
+            depth = 0;
+            Node<T> node = root;
+            int remaining = target;
+            while (true) {
+                if (node == null) {
+                    throw new NoSuchElementException();
+                }
+                int leftSize = size(node.left);
+                if (remaining < leftSize) {
+                    stack[depth++] = node;
+                    node = node.left;
+                } else if (remaining > leftSize) {
+                    remaining -= leftSize + 1;
+                    node = node.right;
+                } else {
+                    stack[depth++] = node;
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package org.openstructures.sequence.avltree;
+
+/**
+ * Listener of the re-balancing of {@link AbstractAVLTree}, called on the thread that changes the tree while it is
+ * being changed, so it should be quick and must not touch the tree. Methods do nothing by default, and a tree
+ * without a listener calls {@link #NONE}, whose calls are inlined away.
+ */
+public interface TreeListener {
+
+    TreeListener NONE = new TreeListener() {
+    };
+
+    /**
+     * Called for every single rotation, a double rotation counts as two.
+     */
+    default void rotated() {
+    }
+
+    /**
+     * Called once re-balancing stops after an insert, a delete or a join, with the number of subtrees re-balanced on
+     * the way up. The sizes of the subtrees above them are updated without re-balancing.
+     */
+    default void retraced(int depth) {
+    }
+}
@@ -11,13 +11,21 @@ public class TreeUtils {
     public static <T> AVLNode<T> getRightmost(AVLNode<T> node) {
         checkNotNull(node);
 
-        return node.getRight() != null ? getRightmost(node.getRight()) : node;
+        AVLNode<T> rightmost = node;
+        while (rightmost.getRight() != null) {
+            rightmost = rightmost.getRight();
+        }
+        return rightmost;
     }
 
     public static <T> AVLNode<T> getLeftmost(AVLNode<T> node) {
         checkNotNull(node);
 
-        return node.getLeft() != null ? getLeftmost(node.getLeft()) : node;
+        AVLNode<T> leftmost = node;
+        while (leftmost.getLeft() != null) {
+            leftmost = leftmost.getLeft();
+        }
+        return leftmost;
     }
 
     public static <T> boolean isLeftChild(AVLNode<T> node) {
@@ -0,0 +1,601 @@
+package org.openstructures.sequence.btree;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * B+-tree with wide nodes of up to {@code nodeCapacity} keys or children in arrays. A lookup takes a binary search
+ * over a contiguous array per level, and there are log<sub>B</sub> n levels rather than the log<sub>2</sub> n levels
+ * of a binary tree, so far fewer nodes are visited and far fewer cache lines are missed.
+ * <p>
+ * All values are kept in the leaves, which are linked to their siblings, so the neighbours of a value are next to it
+ * in the same leaf or at the end of a sibling, and scans go leaf by leaf without touching the inner nodes. Inner
+ * nodes hold separators: the separator between two children is less than or equal to every value of the right one
+ * and greater than every value of the left one. Deletes don't update separators unless nodes are rebalanced, a
+ * separator may be a value that isn't part of the tree any more.
+ * <p>
+ * Nodes other than the root are kept at least half full. A node that overflows is split in halves, and a node that
+ * underflows borrows from a sibling or is merged with it.
+ */
+public class BPlusTree<T extends C, C> implements Iterable<T> {
+
+    public static final int DEFAULT_NODE_CAPACITY = 64;
+
+    private final Comparator<? super C> comparator;
+    private final int capacity;
+    private final int minLeafSize;
+    private final int minChildren;
+    private Object root;
+    private int size;
+    private int height;
+
+    // the inner nodes descended through by the latest insert or delete, and the indexes of the children taken
+    private Inner[] path = new Inner[4];
+    private int[] childIndexes = new int[4];
+
+    public BPlusTree(Comparator<? super C> comparator) {
+        this(comparator, DEFAULT_NODE_CAPACITY);
+    }
+
+    public BPlusTree(Comparator<? super C> comparator, int nodeCapacity) {
+        checkNotNull(comparator);
+        checkArgument(nodeCapacity >= 4, "node capacity has to be at least 4, but it is %s", nodeCapacity);
+
+        this.comparator = comparator;
+        this.capacity = nodeCapacity;
+        this.minLeafSize = nodeCapacity / 2;
+        this.minChildren = (nodeCapacity + 1) / 2;
+        this.root = new Leaf<T>(nodeCapacity);
+        this.height = 1;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Comparator<? super C> comparator() {
+        return comparator;
+    }
+
+    /**
+     * Inserts the value. Throws {@link IllegalArgumentException} if an equal value is part of the tree.
+     */
+    public void insert(T value) {
+        checkNotNull(value);
+
+        int depth = 0;
+        Object node = root;
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            int child = count(inner.keys, inner.size - 1, value, true);
+            push(depth++, inner, child);
+            node = inner.children[child];
+        }
+        Leaf<T> leaf = leaf(node);
+        int index = count(leaf.keys, leaf.size, value, false);
+        checkArgument(index == leaf.size || comparator.compare(leaf.key(index), value) != 0,
+                "%s is already part of the tree", value);
+        size++;
+
+        if (leaf.size < capacity) {
+            insertAt(leaf.keys, leaf.size, index, value);
+            leaf.size++;
+            return;
+        }
+        Leaf<T> right = splitLeaf(leaf, index, value);
+        Object separator = right.keys[0];
+        Object child = right;
+        for (int level = depth - 1; level >= 0; level--) {
+            Inner parent = path[level];
+            int at = childIndexes[level];
+            if (parent.size < capacity) {
+                insertAt(parent.keys, parent.size - 1, at, separator);
+                insertAt(parent.children, parent.size, at + 1, child);
+                parent.size++;
+                return;
+            }
+            Inner rightInner = splitInner(parent, at, separator, child);
+            separator = rightInner.separator;
+            rightInner.separator = null;
+            child = rightInner;
+        }
+        Inner newRoot = new Inner(capacity);
+        newRoot.keys[0] = separator;
+        newRoot.children[0] = root;
+        newRoot.children[1] = child;
+        newRoot.size = 2;
+        root = newRoot;
+        height++;
+    }
+
+    /**
+     * Deletes the value equal to the key, returns whether there was one.
+     */
+    public boolean delete(C key) {
+        checkNotNull(key);
+
+        int depth = 0;
+        Object node = root;
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            int child = count(inner.keys, inner.size - 1, key, true);
+            push(depth++, inner, child);
+            node = inner.children[child];
+        }
+        Leaf<T> leaf = leaf(node);
+        int index = indexOf(leaf, key);
+        if (index < 0) {
+            return false;
+        }
+        removeAt(leaf.keys, leaf.size, index);
+        leaf.size--;
+        size--;
+
+        Object underflowing = leaf;
+        for (int level = depth - 1; level >= 0 && isUnderflowing(underflowing); level--) {
+            Inner parent = path[level];
+            if (underflowing instanceof Leaf) {
+                rebalanceLeaf(parent, childIndexes[level]);
+            } else {
+                rebalanceInner(parent, childIndexes[level]);
+            }
+            underflowing = parent;
+        }
+        if (root instanceof Inner && ((Inner) root).size == 1) {
+            root = ((Inner) root).children[0];
+            height--;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the value equal to the key or null if there is none.
+     */
+    public T find(C key) {
+        Leaf<T> leaf = leafOf(key);
+        int index = indexOf(leaf, key);
+        return index >= 0 ? leaf.key(index) : null;
+    }
+
+    /**
+     * Returns the smallest value greater than the key or null if there is none.
+     */
+    public T higher(C key) {
+        Leaf<T> leaf = leafOf(key);
+        return firstFrom(leaf, count(leaf.keys, leaf.size, key, true));
+    }
+
+    /**
+     * Returns the smallest value greater than or equal to the key or null if there is none.
+     */
+    public T ceiling(C key) {
+        Leaf<T> leaf = leafOf(key);
+        return firstFrom(leaf, count(leaf.keys, leaf.size, key, false));
+    }
+
+    /**
+     * Returns the greatest value less than the key or null if there is none.
+     */
+    public T lower(C key) {
+        checkNotNull(key);
+        Leaf<T> leaf = descend(key, false);
+        return lastBefore(leaf, count(leaf.keys, leaf.size, key, false));
+    }
+
+    /**
+     * Returns the greatest value less than or equal to the key or null if there is none.
+     */
+    public T floor(C key) {
+        Leaf<T> leaf = leafOf(key);
+        return lastBefore(leaf, count(leaf.keys, leaf.size, key, true));
+    }
+
+    /**
+     * Returns the leaf that holds the value equal to the key if it is part of the tree.
+     */
+    public Leaf<T> leafOf(C key) {
+        checkNotNull(key);
+        return descend(key, true);
+    }
+
+    /**
+     * Returns the index of the value equal to the key in the leaf or -1 if there is none.
+     */
+    public int indexOf(Leaf<T> leaf, C key) {
+        int index = count(leaf.keys, leaf.size, key, false);
+        return index < leaf.size && comparator.compare(leaf.key(index), key) == 0 ? index : -1;
+    }
+
+    public Leaf<T> firstLeaf() {
+        Object node = root;
+        while (node instanceof Inner) {
+            node = ((Inner) node).children[0];
+        }
+        return leaf(node);
+    }
+
+    /**
+     * Returns the values between from and to in ascending order. The start is found by a descent, from then on the
+     * values are read leaf by leaf. The tree shouldn't be modified while the iterator is in use.
+     */
+    public Iterator<T> range(C from, boolean fromInclusive, C to, boolean toInclusive) {
+        checkNotNull(from);
+        checkNotNull(to);
+
+        Leaf<T> leaf = leafOf(from);
+        int index = count(leaf.keys, leaf.size, from, !fromInclusive);
+        if (index == leaf.size) {
+            leaf = leaf.next;
+            index = 0;
+        }
+        if (leaf == null) {
+            return Collections.emptyIterator();
+        }
+        return new LeafIterator(leaf, index, to, toInclusive);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        Leaf<T> first = firstLeaf();
+        return first.size > 0 ? new LeafIterator(first, 0, null, true) : Collections.emptyIterator();
+    }
+
+    /**
+     * Returns a spliterator over the values in ascending order, which reads them leaf by leaf and splits off batches
+     * of them. The tree shouldn't be modified while it is in use.
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        return new LeafSpliterator(iterator(), size);
+    }
+
+    // the number of levels, leaves included
+    int height() {
+        return height;
+    }
+
+    private Leaf<T> descend(C key, boolean inclusive) {
+        Object node = root;
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            node = inner.children[count(inner.keys, inner.size - 1, key, inclusive)];
+        }
+        return leaf(node);
+    }
+
+    // the number of the first keys less than the key, or less than or equal to it if inclusive
+    private int count(Object[] keys, int length, C key, boolean inclusive) {
+        int low = 0;
+        int high = length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int comparison = comparator.compare(this.<T>cast(keys[middle]), key);
+            if (comparison < 0 || inclusive && comparison == 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private T firstFrom(Leaf<T> leaf, int index) {
+        if (index < leaf.size) {
+            return leaf.key(index);
+        }
+        return leaf.next != null ? leaf.next.key(0) : null;
+    }
+
+    private T lastBefore(Leaf<T> leaf, int index) {
+        if (index > 0) {
+            return leaf.key(index - 1);
+        }
+        return leaf.previous != null ? leaf.previous.key(leaf.previous.size - 1) : null;
+    }
+
+    private void push(int depth, Inner inner, int child) {
+        if (depth == path.length) {
+            path = Arrays.copyOf(path, 2 * depth);
+            childIndexes = Arrays.copyOf(childIndexes, 2 * depth);
+        }
+        path[depth] = inner;
+        childIndexes[depth] = child;
+    }
+
+    // splits the full leaf in halves with the value inserted at the index, returns the right half
+    private Leaf<T> splitLeaf(Leaf<T> leaf, int index, T value) {
+        Leaf<T> right = new Leaf<>(capacity);
+        int leftSize = (capacity + 1) / 2;
+        if (index < leftSize) {
+            right.size = capacity - leftSize + 1;
+            System.arraycopy(leaf.keys, leftSize - 1, right.keys, 0, right.size);
+            Arrays.fill(leaf.keys, leftSize - 1, capacity, null);
+            insertAt(leaf.keys, leftSize - 1, index, value);
+        } else {
+            System.arraycopy(leaf.keys, leftSize, right.keys, 0, capacity - leftSize);
+            Arrays.fill(leaf.keys, leftSize, capacity, null);
+            insertAt(right.keys, capacity - leftSize, index - leftSize, value);
+            right.size = capacity - leftSize + 1;
+        }
+        leaf.size = leftSize;
+
+        right.next = leaf.next;
+        if (right.next != null) {
+            right.next.previous = right;
+        }
+        right.previous = leaf;
+        leaf.next = right;
+        return right;
+    }
+
+    // splits the full inner node with the child inserted after the one at the index, returns the right half, whose
+    // separator moves up to the parent
+    private Inner splitInner(Inner inner, int index, Object separator, Object child) {
+        Object[] keys = Arrays.copyOf(inner.keys, capacity);
+        Object[] children = Arrays.copyOf(inner.children, capacity + 1);
+        insertAt(keys, capacity - 1, index, separator);
+        insertAt(children, capacity, index + 1, child);
+
+        int leftChildren = (capacity + 1) / 2;
+        Inner right = new Inner(capacity);
+        right.size = capacity + 1 - leftChildren;
+        System.arraycopy(children, leftChildren, right.children, 0, right.size);
+        System.arraycopy(keys, leftChildren, right.keys, 0, right.size - 1);
+        right.separator = keys[leftChildren - 1];
+
+        Arrays.fill(inner.keys, null);
+        Arrays.fill(inner.children, null);
+        System.arraycopy(children, 0, inner.children, 0, leftChildren);
+        System.arraycopy(keys, 0, inner.keys, 0, leftChildren - 1);
+        inner.size = leftChildren;
+        return right;
+    }
+
+    private boolean isUnderflowing(Object node) {
+        return node instanceof Leaf ? ((Leaf<?>) node).size < minLeafSize : ((Inner) node).size < minChildren;
+    }
+
+    // the leaf at the index of the parent holds too few values, borrows one from a sibling or is merged with it
+    private void rebalanceLeaf(Inner parent, int index) {
+        Leaf<T> leaf = leaf(parent.children[index]);
+        if (index > 0) {
+            Leaf<T> left = leaf(parent.children[index - 1]);
+            if (left.size > minLeafSize) {
+                insertAt(leaf.keys, leaf.size++, 0, left.keys[--left.size]);
+                left.keys[left.size] = null;
+                parent.keys[index - 1] = leaf.keys[0];
+            } else {
+                mergeLeaves(left, leaf);
+                removeChild(parent, index);
+            }
+        } else {
+            Leaf<T> right = leaf(parent.children[1]);
+            if (right.size > minLeafSize) {
+                leaf.keys[leaf.size++] = right.keys[0];
+                removeAt(right.keys, right.size--, 0);
+                parent.keys[0] = right.keys[0];
+            } else {
+                mergeLeaves(leaf, right);
+                removeChild(parent, 1);
+            }
+        }
+    }
+
+    // the inner node at the index of the parent has too few children, borrows one from a sibling through the
+    // separator of the parent or is merged with it
+    private void rebalanceInner(Inner parent, int index) {
+        Inner inner = (Inner) parent.children[index];
+        if (index > 0) {
+            Inner left = (Inner) parent.children[index - 1];
+            if (left.size > minChildren) {
+                insertAt(inner.keys, inner.size - 1, 0, parent.keys[index - 1]);
+                insertAt(inner.children, inner.size, 0, left.children[left.size - 1]);
+                inner.size++;
+                parent.keys[index - 1] = left.keys[left.size - 2];
+                left.keys[left.size - 2] = null;
+                left.children[left.size - 1] = null;
+                left.size--;
+            } else {
+                mergeInners(left, parent.keys[index - 1], inner);
+                removeChild(parent, index);
+            }
+        } else {
+            Inner right = (Inner) parent.children[1];
+            if (right.size > minChildren) {
+                inner.keys[inner.size - 1] = parent.keys[0];
+                inner.children[inner.size] = right.children[0];
+                inner.size++;
+                parent.keys[0] = right.keys[0];
+                removeAt(right.keys, right.size - 1, 0);
+                removeAt(right.children, right.size, 0);
+                right.size--;
+            } else {
+                mergeInners(inner, parent.keys[0], right);
+                removeChild(parent, 1);
+            }
+        }
+    }
+
+    // moves the values of the right leaf to the left one and unlinks the right one, which is left empty
+    private void mergeLeaves(Leaf<T> left, Leaf<T> right) {
+        System.arraycopy(right.keys, 0, left.keys, left.size, right.size);
+        left.size += right.size;
+        left.next = right.next;
+        if (left.next != null) {
+            left.next.previous = left;
+        }
+        Arrays.fill(right.keys, 0, right.size, null);
+        right.size = 0;
+        right.previous = null;
+        right.next = null;
+    }
+
+    private static void mergeInners(Inner left, Object separator, Inner right) {
+        left.keys[left.size - 1] = separator;
+        System.arraycopy(right.keys, 0, left.keys, left.size, right.size - 1);
+        System.arraycopy(right.children, 0, left.children, left.size, right.size);
+        left.size += right.size;
+    }
+
+    // removes the child at the index and the separator before it
+    private static void removeChild(Inner parent, int index) {
+        removeAt(parent.keys, parent.size - 1, index - 1);
+        removeAt(parent.children, parent.size, index);
+        parent.size--;
+    }
+
+    private static void insertAt(Object[] array, int length, int index, Object value) {
+        System.arraycopy(array, index, array, index + 1, length - index);
+        array[index] = value;
+    }
+
+    private static void removeAt(Object[] array, int length, int index) {
+        System.arraycopy(array, index + 1, array, index, length - index - 1);
+        array[length - 1] = null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Leaf<T> leaf(Object node) {
+        return (Leaf<T>) node;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <V> V cast(Object key) {
+        return (V) key;
+    }
+
+    /**
+     * Leaf of the tree, holding values in ascending order and linked to the leaves with the values right before and
+     * after its own. A leaf that has been merged into its sibling is left empty and unlinked.
+     */
+    public static final class Leaf<T> {
+
+        private final Object[] keys;
+        private int size;
+        private Leaf<T> previous;
+        private Leaf<T> next;
+
+        private Leaf(int capacity) {
+            this.keys = new Object[capacity];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        @SuppressWarnings("unchecked")
+        public T key(int index) {
+            return (T) keys[index];
+        }
+
+        public Leaf<T> previous() {
+            return previous;
+        }
+
+        public Leaf<T> next() {
+            return next;
+        }
+    }
+
+    private static final class Inner {
+
+        private final Object[] keys;
+        private final Object[] children;
+        private int size; // the number of children, there is one separator less
+        private Object separator; // set on the right half of a split until it is moved up to the parent
+
+        private Inner(int capacity) {
+            this.keys = new Object[capacity - 1];
+            this.children = new Object[capacity];
+        }
+    }
+
+    private class LeafIterator implements Iterator<T> {
+
+        private final C to;
+        private final boolean toInclusive;
+        private Leaf<T> leaf;
+        private int index;
+        private T next;
+
+        private LeafIterator(Leaf<T> leaf, int index, C to, boolean toInclusive) {
+            this.leaf = leaf;
+            this.index = index;
+            this.to = to;
+            this.toInclusive = toInclusive;
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            T value = next;
+            advance();
+            return value;
+        }
+
+        private void advance() {
+            if (leaf != null && index == leaf.size) {
+                leaf = leaf.next;
+                index = 0;
+            }
+            if (leaf == null) {
+                next = null;
+                return;
+            }
+            next = leaf.key(index++);
+            if (to != null) {
+                int comparison = comparator.compare(next, to);
+                if (comparison > 0 || !toInclusive && comparison == 0) {
+                    next = null;
+                    leaf = null;
+                }
+            }
+        }
+    }
+
+    private class LeafSpliterator extends Spliterators.AbstractSpliterator<T> {
+
+        private final Iterator<T> values;
+
+        private LeafSpliterator(Iterator<T> values, int size) {
+            super(size, ORDERED | SORTED | DISTINCT | SIZED | NONNULL);
+            this.values = values;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            checkNotNull(action);
+            if (!values.hasNext()) {
+                return false;
+            }
+            action.accept(values.next());
+            return true;
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+            return comparator;
+        }
+    }
+}
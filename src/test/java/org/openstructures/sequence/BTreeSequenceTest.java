@@ -0,0 +1,86 @@
+package org.openstructures.sequence;
+
+import org.junit.Test;
+
+import java.util.Comparator;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BTreeSequenceTest {
+
+    private final Comparator<Integer> comparator = Integer::compareTo;
+
+    @Test
+    public void shouldLinkNeighboursAcrossLeaves() {
+        // given
+        BTreeSequence<Integer, Integer> sequence = new BTreeSequence<>(comparator, 4);
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(5);
+        for (int i = 0; i < 2000; i++) {
+            int key = random.nextInt(10_000);
+            if (expected.add(key)) {
+                sequence.insert(key);
+            }
+        }
+
+        // when
+        SequenceLink<Integer> link = sequence.get(expected.first());
+
+        // then
+        for (Integer key : expected) {
+            assertThat(link.getValue()).isEqualTo(key);
+            assertThat(link.getLeft() == null ? null : link.getLeft().getValue()).isEqualTo(expected.lower(key));
+            link = link.getRight();
+        }
+        assertThat(link).isNull();
+        assertThat(sequence.stream().collect(Collectors.toList())).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    public void shouldFollowKeysMovedBetweenLeaves() {
+        // given
+        BTreeSequence<Integer, Integer> sequence = new BTreeSequence<>(comparator, 4);
+        for (int i = 0; i < 100; i++) {
+            sequence.insert(i * 10);
+        }
+        SequenceLink<Integer> link = sequence.get(500);
+        SequenceLink<Integer> inserted = sequence.insert(505);
+
+        // when
+        for (int i = 0; i < 50; i++) {
+            sequence.delete(i * 10);
+        }
+        for (int i = 1; i < 5; i++) {
+            sequence.insert(500 + i);
+        }
+
+        // then
+        assertThat(link.getLeft()).isNull();
+        assertThat(link.getRight().getValue()).isEqualTo(501);
+        assertThat(inserted.getLeft().getValue()).isEqualTo(504);
+        assertThat(inserted.getRight().getValue()).isEqualTo(510);
+        assertThat(link.getRight().getLeft()).isEqualTo(link);
+    }
+
+    @Test
+    public void shouldCutLinksOfDeletedKeys() {
+        // given
+        BTreeSequence<Integer, Integer> sequence = new BTreeSequence<>(comparator);
+        sequence.insert(1);
+        SequenceLink<Integer> link = sequence.insert(2);
+        sequence.insert(3);
+
+        // when
+        sequence.delete(2);
+
+        // then
+        assertThat(link.getLeft()).isNull();
+        assertThat(link.getRight()).isNull();
+        assertThat(sequence.get(2)).isNull();
+        assertThat(sequence.greaterThan(1)).isEqualTo(3);
+        assertThat(sequence.lessThan(3)).isEqualTo(1);
+    }
+}
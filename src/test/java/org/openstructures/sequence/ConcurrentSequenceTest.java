@@ -0,0 +1,144 @@
+package org.openstructures.sequence;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConcurrentSequenceTest {
+
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int KEYS_PER_WRITER = 500;
+    private static final int OPERATIONS_PER_WRITER = 50_000;
+
+    private ConcurrentSequence<Integer, Integer> sequence;
+
+    private final Comparator<Integer> integerComparable = Integer::compareTo;
+
+    @Before
+    public void setUp() {
+        sequence = new ConcurrentSequence<>(integerComparable);
+    }
+
+    @Test
+    public void shouldInsertAndGet() {
+        // when
+        sequence.insert(1);
+        sequence.insert(10);
+        sequence.insert(7);
+
+        // then
+        assertThat(sequence.get(7).getValue()).isEqualTo(7);
+        assertThat(sequence.get(7).getLeft()).isEqualTo(sequence.get(1));
+        assertThat(sequence.get(7).getRight()).isEqualTo(sequence.get(10));
+        assertThat(sequence.get(1).getLeft()).isNull();
+        assertThat(sequence.get(10).getRight()).isNull();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfInsertingDuplicatedElement() {
+        // when
+        sequence.insert(1);
+        sequence.insert(1);
+
+        // then expect exception
+    }
+
+    @Test
+    public void shouldDelete() {
+        // given
+        sequence.insert(1);
+        sequence.insert(3);
+        sequence.insert(5);
+
+        // when
+        sequence.delete(3);
+
+        // then
+        assertThat(sequence.get(3)).isNull();
+        assertThat(sequence.get(1).getRight().getValue()).isEqualTo(5);
+        assertThat(sequence.get(5).getLeft().getValue()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldCountKeys() {
+        // given
+        sequence.insert(1);
+        sequence.insert(3);
+        sequence.insert(5);
+
+        // when
+        sequence.delete(3);
+        sequence.delete(4);
+
+        // then
+        assertThat(sequence.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldFindNeighbours() {
+        // given
+        sequence.insert(1);
+        sequence.insert(3);
+        sequence.insert(5);
+
+        // when and then
+        assertThat(sequence.greaterThan(1)).isEqualTo(3);
+        assertThat(sequence.greaterThan(5)).isNull();
+        assertThat(sequence.lessThan(3)).isEqualTo(1);
+        assertThat(sequence.lessThan(1)).isNull();
+        assertThat(sequence.equalTo(5)).isEqualTo(5);
+        assertThat(sequence.equalTo(4)).isNull();
+    }
+
+    @Test
+    public void shouldStayOrderedUnderConcurrentWritesAndReads() throws Exception {
+        // given
+        ConcurrentLinkedQueue<String> violations = new ConcurrentLinkedQueue<>();
+
+        // when
+        TreeSet<Integer> expected = ConcurrentWorkload.run(sequence, WRITERS, READERS, KEYS_PER_WRITER,
+                OPERATIONS_PER_WRITER, violations);
+
+        // then
+        assertThat(violations).isEmpty();
+        List<Integer> actual = new ArrayList<>();
+        if (!expected.isEmpty()) {
+            for (SequenceLink<Integer> link = sequence.get(expected.first()); link != null; link = link.getRight()) {
+                actual.add(link.getValue());
+            }
+        }
+        assertThat(actual).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    public void shouldStreamKeysInOrder() {
+        // given
+        ConcurrentSequence<Integer, Integer> sequence = new ConcurrentSequence<>(Integer::compareTo);
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            expected.add(i);
+        }
+        List<Integer> shuffled = new ArrayList<>(expected);
+        Collections.shuffle(shuffled, new Random(5));
+        shuffled.forEach(sequence::insert);
+
+        // when
+        List<Integer> collected = sequence.parallelStream().collect(Collectors.toList());
+
+        // then
+        assertThat(collected).isEqualTo(expected);
+        assertThat(sequence.spliterator().hasCharacteristics(Spliterator.SORTED | Spliterator.DISTINCT)).isTrue();
+    }
+}
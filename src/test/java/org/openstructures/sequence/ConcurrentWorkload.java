@@ -0,0 +1,92 @@
+package org.openstructures.sequence;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Writers that insert and delete keys of their own into a sequence while readers walk it from random keys and report
+ * every link that isn't followed by a greater key. The writers own disjoint keys, so the keys left in the sequence are
+ * known once they are done.
+ */
+final class ConcurrentWorkload {
+
+    private ConcurrentWorkload() {
+    }
+
+    /**
+     * Runs the writers and the readers, adds the order violations the readers have seen to {@code violations} and
+     * returns the keys the writers left in the sequence.
+     */
+    static TreeSet<Integer> run(Sequence<Integer, Integer> sequence, int writerCount, int readerCount,
+            int keysPerWriter, int operationsPerWriter, Collection<String> violations) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(writerCount + readerCount);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Future<TreeSet<Integer>>> writers = new ArrayList<>();
+        List<Future<?>> readers = new ArrayList<>();
+
+        for (int writer = 0; writer < writerCount; writer++) {
+            int offset = writer;
+            writers.add(executor.submit(() -> {
+                Random random = new Random(offset);
+                TreeSet<Integer> written = new TreeSet<>();
+                start.await();
+                for (int i = 0; i < operationsPerWriter; i++) {
+                    int key = random.nextInt(keysPerWriter) * writerCount + offset;
+                    if (written.add(key)) {
+                        sequence.insert(key);
+                    } else {
+                        written.remove(key);
+                        sequence.delete(key);
+                    }
+                }
+                return written;
+            }));
+        }
+        for (int reader = 0; reader < readerCount; reader++) {
+            int seed = reader;
+            readers.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                start.await();
+                while (writing.get()) {
+                    Integer first = sequence.greaterThan(random.nextInt(keysPerWriter * writerCount));
+                    if (first == null) {
+                        continue;
+                    }
+                    SequenceLink<Integer> link = sequence.get(first);
+                    for (int step = 0; link != null && step < 100; step++) {
+                        SequenceLink<Integer> right = link.getRight();
+                        if (right != null && right.getValue() <= link.getValue()) {
+                            violations.add(link.getValue() + " is followed by " + right.getValue());
+                        }
+                        link = right;
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        TreeSet<Integer> expected = new TreeSet<>();
+        try {
+            for (Future<TreeSet<Integer>> writer : writers) {
+                expected.addAll(writer.get(1, TimeUnit.MINUTES));
+            }
+        } finally {
+            writing.set(false);
+        }
+        for (Future<?> reader : readers) {
+            reader.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+        return expected;
+    }
+}
@@ -2,10 +2,24 @@ package org.openstructures.sequence;
 
 import org.junit.Before;
 import org.junit.Test;
-
+import org.openstructures.sequence.avltree.Aggregate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
 
 public class InMemorySequenceTest {
 
@@ -297,6 +311,26 @@ public class InMemorySequenceTest {
         assertSequence(sequence, 10, 9, null);
     }
 
+    @Test
+    public void shouldJoinSmallSequenceToLargeOne() {
+        // given
+        InMemorySequence<Integer, Integer> large = new InMemorySequence<>(integerComparable);
+        for (int i = 1; i <= 100; i++) {
+            large.insert(i);
+        }
+
+        // when
+        InMemorySequence<Integer, Integer> result = InMemorySequence.join(large, newSequenceWith(101));
+        result = InMemorySequence.join(newSequenceWith(0), result);
+
+        // then
+        assertSequence(result, 0, null, 1);
+        assertSequence(result, 1, 0, 2);
+        assertSequence(result, 50, 49, 51);
+        assertSequence(result, 100, 99, 101);
+        assertSequence(result, 101, 100, null);
+    }
+
     /**
      * Bugfix. Deleting elements from the result of join didn't work
      */
@@ -324,6 +358,383 @@ public class InMemorySequenceTest {
         assertThat(joined.get(7).getRight()).isNull();
     }
 
+    @Test
+    public void shouldLookUpKeysOfJoinedSequenceBeforeAndAfterIndexingThem() {
+        // given
+        InMemorySequence<Integer, Integer> left = new InMemorySequence<>(integerComparable);
+        InMemorySequence<Integer, Integer> right = new InMemorySequence<>(integerComparable);
+        for (int i = 1; i <= 100; i++) {
+            (i <= 50 ? left : right).insert(i);
+        }
+        InMemorySequence<Integer, Integer> joined = InMemorySequence.join(left, right);
+
+        // when
+        joined.deleteAll(Arrays.asList(10, 10, 60, 1000));
+        joined.insert(1000);
+        SequenceLink<Integer> near = joined.insertNear(joined.get(1000), 999);
+        Integer afterNear = near.getRight().getValue();
+        List<Integer> found = new ArrayList<>();
+        for (int i = 0; i <= 1000; i++) {
+            if (joined.get(i) != null) {
+                found.add(joined.get(i).getValue());
+            }
+        }
+        joined.delete(999);
+
+        // then
+        assertThat(afterNear).isEqualTo(1000);
+        assertThat(found).hasSize(100).doesNotContain(10, 60).contains(1, 50, 51, 100, 999, 1000);
+        assertThat(joined.size()).isEqualTo(99);
+        assertThat(joined.get(999)).isNull();
+        assertSequence(joined, 1000, 100, null);
+        assertSequence(joined, 11, 9, 12);
+    }
+
+    @Test
+    public void shouldSplit() {
+        // given
+        for (int i = 1; i <= 10; i++) {
+            sequence.insert(i);
+        }
+
+        // when
+        InMemorySequence.Split<Integer, Integer> split = sequence.split(4);
+
+        // then
+        InMemorySequence<Integer, Integer> left = split.getLeft();
+        InMemorySequence<Integer, Integer> right = split.getRight();
+        assertSequence(left, 1, null, 2);
+        assertSequence(left, 3, 2, null);
+        assertThat(left.get(4)).isNull();
+        assertSequence(right, 4, null, 5);
+        assertSequence(right, 10, 9, null);
+        assertThat(right.get(3)).isNull();
+        assertThat(left.greaterThan(2)).isEqualTo(3);
+        assertThat(left.greaterThan(3)).isNull();
+        assertThat(right.lessThan(5)).isEqualTo(4);
+        assertThat(right.lessThan(4)).isNull();
+    }
+
+    @Test
+    public void shouldSplitWithLargerLeftPart() {
+        // given
+        for (int i = 1; i <= 10; i++) {
+            sequence.insert(i);
+        }
+
+        // when
+        InMemorySequence.Split<Integer, Integer> split = sequence.split(9);
+
+        // then
+        assertSequence(split.getLeft(), 1, null, 2);
+        assertSequence(split.getLeft(), 8, 7, null);
+        assertThat(split.getLeft().get(9)).isNull();
+        assertSequence(split.getRight(), 9, null, 10);
+        assertSequence(split.getRight(), 10, 9, null);
+        assertThat(split.getRight().get(8)).isNull();
+    }
+
+    @Test
+    public void shouldSplitBeforeFirstElement() {
+        // given
+        sequence.insert(1);
+        sequence.insert(2);
+
+        // when
+        InMemorySequence.Split<Integer, Integer> split = sequence.split(0);
+
+        // then
+        assertThat(split.getLeft().isEmpty()).isTrue();
+        assertSequence(split.getRight(), 1, null, 2);
+        assertSequence(split.getRight(), 2, 1, null);
+    }
+
+    @Test
+    public void shouldSplitAndJoinBack() {
+        // given
+        for (int i = 1; i <= 10; i++) {
+            sequence.insert(i);
+        }
+        InMemorySequence.Split<Integer, Integer> split = sequence.split(6);
+
+        // when
+        InMemorySequence<Integer, Integer> joined = InMemorySequence.join(split.getLeft(), split.getRight());
+        joined.delete(6);
+
+        // then
+        assertSequence(joined, 5, 4, 7);
+        assertSequence(joined, 7, 5, 8);
+    }
+
+    @Test
+    public void shouldCreateFromSorted() {
+        // when
+        InMemorySequence<Integer, Integer> sequence = InMemorySequence.fromSorted(Arrays.asList(1, 3, 5, 7, 9),
+                integerComparable);
+
+        // then
+        assertSequence(sequence, 1, null, 3);
+        assertSequence(sequence, 5, 3, 7);
+        assertSequence(sequence, 9, 7, null);
+        assertThat(sequence.greaterThan(5)).isEqualTo(7);
+
+        // and when
+        sequence.insert(4);
+        sequence.delete(7);
+
+        // then
+        assertSequence(sequence, 4, 3, 5);
+        assertSequence(sequence, 5, 4, 9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfCreatingFromDuplicatedKeys() {
+        // when
+        InMemorySequence.fromSorted(Arrays.asList(1, 2, 2).iterator(), integerComparable);
+
+        // then expect exception
+    }
+
+    @Test
+    public void shouldInsertAll() {
+        // given
+        sequence.insert(10);
+        sequence.insert(20);
+        sequence.insert(30);
+
+        // when
+        sequence.insertAll(Arrays.asList(25, 5, 15, 35, 11));
+
+        // then
+        assertSequence(sequence, 5, null, 10);
+        assertSequence(sequence, 10, 5, 11);
+        assertSequence(sequence, 11, 10, 15);
+        assertSequence(sequence, 15, 11, 20);
+        assertSequence(sequence, 20, 15, 25);
+        assertSequence(sequence, 25, 20, 30);
+        assertSequence(sequence, 30, 25, 35);
+        assertSequence(sequence, 35, 30, null);
+        assertThat(sequence.greaterThan(11)).isEqualTo(15);
+    }
+
+    @Test
+    public void shouldNotInsertAnyIfOneIsAlreadyPartOfSequence() {
+        // given
+        sequence.insert(10);
+
+        // when
+        Throwable thrown = catchThrowable(() -> sequence.insertAll(Arrays.asList(5, 10, 15)));
+
+        // then
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+        assertThat(sequence.get(5)).isNull();
+        assertThat(sequence.get(15)).isNull();
+        assertSequence(sequence, 10, null, null);
+    }
+
+    @Test
+    public void shouldDeleteAll() {
+        // given
+        for (int i = 1; i <= 10; i++) {
+            sequence.insert(i);
+        }
+
+        // when
+        sequence.deleteAll(Arrays.asList(10, 2, 3, 7, 42));
+
+        // then
+        assertThat(sequence.get(2)).isNull();
+        assertThat(sequence.get(10)).isNull();
+        assertSequence(sequence, 1, null, 4);
+        assertSequence(sequence, 4, 1, 5);
+        assertSequence(sequence, 6, 5, 8);
+        assertSequence(sequence, 9, 8, null);
+        assertThat(sequence.lessThan(10)).isEqualTo(9);
+    }
+
+    @Test
+    public void shouldDeleteNothingWhenBatchHoldsNull() {
+        // given
+        for (int i = 1; i <= 5; i++) {
+            sequence.insert(i);
+        }
+
+        // when
+        Throwable thrown = catchThrowable(() -> sequence.deleteAll(Arrays.asList(2, null, 4)));
+
+        // then
+        assertThat(thrown).isInstanceOf(NullPointerException.class);
+        assertThat(sequence.size()).isEqualTo(5);
+        assertSequence(sequence, 2, 1, 3);
+        assertSequence(sequence, 4, 3, 5);
+        assertThat(sequence.equalTo(2)).isEqualTo(2);
+        sequence.delete(2);
+        assertThat(sequence.get(2)).isNull();
+        assertThat(sequence.size()).isEqualTo(4);
+    }
+
+    @Test
+    public void shouldRankAndSelect() {
+        // given
+        sequence.insertAll(Arrays.asList(10, 20, 30, 40, 50));
+        sequence.delete(30);
+
+        // when and then
+        assertThat(sequence.size()).isEqualTo(4);
+        assertThat(sequence.rank(5)).isEqualTo(0);
+        assertThat(sequence.rank(20)).isEqualTo(1);
+        assertThat(sequence.rank(35)).isEqualTo(2);
+        assertThat(sequence.rank(60)).isEqualTo(4);
+        assertThat(sequence.select(0)).isEqualTo(10);
+        assertThat(sequence.select(2)).isEqualTo(40);
+        assertThat(sequence.select(3)).isEqualTo(50);
+        assertThat(catchThrowable(() -> sequence.select(4))).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThat(catchThrowable(() -> sequence.select(-1))).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    public void shouldRankAndSelectInSplitParts() {
+        // given
+        for (int i = 0; i < 100; i++) {
+            sequence.insert(i);
+        }
+
+        // when
+        InMemorySequence.Split<Integer, Integer> split = sequence.split(40);
+
+        // then
+        assertThat(split.getLeft().size()).isEqualTo(40);
+        assertThat(split.getRight().size()).isEqualTo(60);
+        assertThat(split.getLeft().select(39)).isEqualTo(39);
+        assertThat(split.getRight().select(0)).isEqualTo(40);
+        assertThat(split.getRight().rank(70)).isEqualTo(30);
+    }
+
+    @Test
+    public void shouldIterateAndCountRange() {
+        // given
+        sequence.insertAll(Arrays.asList(10, 20, 30, 40, 50));
+
+        // when and then
+        assertThat(sequence.range(20, true, 40, false)).toIterable().containsExactly(20, 30);
+        assertThat(sequence.range(20, false, 40, true)).toIterable().containsExactly(30, 40);
+        assertThat(sequence.range(15, true, 45, true)).toIterable().containsExactly(20, 30, 40);
+        assertThat(sequence.range(30, false, 30, true)).toIterable().isEmpty();
+        assertThat(sequence.range(40, true, 20, true)).toIterable().isEmpty();
+        assertThat(sequence.countRange(20, true, 40, false)).isEqualTo(2);
+        assertThat(sequence.countRange(0, true, 100, true)).isEqualTo(5);
+        assertThat(sequence.countRange(40, true, 20, true)).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldMatchSubSetForRandomRanges() {
+        // given
+        Random random = new Random(17);
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 500; i++) {
+            int key = random.nextInt(2000);
+            if (expected.add(key)) {
+                sequence.insert(key);
+            }
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            // when
+            int from = random.nextInt(2100) - 50;
+            int to = from + random.nextInt(300);
+            boolean fromInclusive = random.nextBoolean();
+            boolean toInclusive = random.nextBoolean();
+            List<Integer> range = new ArrayList<>();
+            sequence.range(from, fromInclusive, to, toInclusive).forEachRemaining(range::add);
+
+            // then
+            List<Integer> subSet = new ArrayList<>(expected.subSet(from, fromInclusive, to, toInclusive));
+            assertThat(range).isEqualTo(subSet);
+            assertThat(sequence.countRange(from, fromInclusive, to, toInclusive)).isEqualTo(subSet.size());
+        }
+    }
+
+    @Test
+    public void shouldCompareOncePerLevelOfTheTree() {
+        // given
+        int[] comparisons = new int[1];
+        InMemorySequence<Integer, Integer> counted = new InMemorySequence<>((left, right) -> {
+            comparisons[0]++;
+            return Integer.compare(left, right);
+        });
+        Random random = new Random(19);
+        for (int i = 0; i < 1000; i++) {
+            int key = 2 * random.nextInt(100_000);
+            if (counted.get(key) == null) {
+                counted.insert(key);
+            }
+        }
+        // an AVL tree of 1000 nodes is at most 14 levels high
+        int maxComparisons = 15;
+
+        for (int i = 0; i < 1000; i++) {
+            int key = 2 * random.nextInt(100_000) + 1;
+
+            // when
+            comparisons[0] = 0;
+            counted.equalTo(key);
+            int equalTo = comparisons[0];
+            comparisons[0] = 0;
+            counted.floor(key);
+            int floor = comparisons[0];
+            comparisons[0] = 0;
+            counted.greaterThan(key);
+            int greaterThan = comparisons[0];
+
+            // then
+            assertThat(equalTo).isLessThanOrEqualTo(maxComparisons);
+            assertThat(floor).isLessThanOrEqualTo(maxComparisons);
+            assertThat(greaterThan).isLessThanOrEqualTo(maxComparisons);
+        }
+    }
+
+    @Test
+    public void shouldFindFloorAndCeiling() {
+        // given
+        sequence.insertAll(Arrays.asList(10, 20, 30));
+
+        // when and then
+        assertThat(sequence.floor(20)).isEqualTo(20);
+        assertThat(sequence.floor(25)).isEqualTo(20);
+        assertThat(sequence.floor(5)).isNull();
+        assertThat(sequence.ceiling(20)).isEqualTo(20);
+        assertThat(sequence.ceiling(25)).isEqualTo(30);
+        assertThat(sequence.ceiling(35)).isNull();
+    }
+
+    @Test
+    public void shouldInsertAndDeleteRandomBatches() {
+        // given
+        Random random = new Random(3);
+        TreeSet<Integer> expected = new TreeSet<>();
+
+        // when
+        for (int round = 0; round < 50; round++) {
+            TreeSet<Integer> batch = new TreeSet<>();
+            for (int i = random.nextInt(100); i > 0; i--) {
+                batch.add(random.nextInt(2000));
+            }
+            if (round % 3 == 2) {
+                expected.removeAll(batch);
+                sequence.deleteAll(batch);
+            } else {
+                batch.removeAll(expected);
+                expected.addAll(batch);
+                sequence.insertAll(batch);
+            }
+        }
+
+        // then
+        for (Integer key : expected) {
+            assertSequence(sequence, key, expected.lower(key), expected.higher(key));
+        }
+    }
+
     @Test
     public void shouldReturnElementThatIsGreaterThan() {
         // given
@@ -383,6 +794,496 @@ public class InMemorySequenceTest {
         assertSequence(sequence, 6, 5, 7);
     }
 
+    @Test
+    public void shouldKeepLinksInOrderAfterRandomInsertsAndDeletes() {
+        // given
+        Random random = new Random(42);
+        TreeSet<Integer> expected = new TreeSet<>();
+
+        // when
+        for (int i = 0; i < 2000; i++) {
+            int key = random.nextInt(500);
+            if (expected.add(key)) {
+                sequence.insert(key);
+            } else {
+                expected.remove(key);
+                sequence.delete(key);
+            }
+        }
+
+        // then
+        for (Integer key : expected) {
+            assertSequence(sequence, key, expected.lower(key), expected.higher(key));
+        }
+    }
+
+    @Test
+    public void shouldViewSequenceAsNavigableSet() {
+        // given
+        Random random = new Random(13);
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 1000; i++) {
+            int key = random.nextInt(2000);
+            if (expected.add(key)) {
+                sequence.insert(key);
+            }
+        }
+
+        // when
+        NavigableSet<Integer> set = sequence.asNavigableSet();
+
+        // then
+        assertThat(set).containsExactlyElementsOf(expected);
+        assertThat(set.descendingSet()).containsExactlyElementsOf(expected.descendingSet());
+        for (int i = 0; i < 200; i++) {
+            int from = random.nextInt(2000);
+            int to = from + random.nextInt(2000 - from);
+            boolean fromInclusive = random.nextBoolean();
+            boolean toInclusive = random.nextBoolean();
+            NavigableSet<Integer> subSet = set.subSet(from, fromInclusive, to, toInclusive);
+            NavigableSet<Integer> expectedSubSet = expected.subSet(from, fromInclusive, to, toInclusive);
+            assertThat(subSet).hasSize(expectedSubSet.size()).containsExactlyElementsOf(expectedSubSet);
+            assertThat(subSet.descendingSet()).containsExactlyElementsOf(expectedSubSet.descendingSet());
+            assertThat(set.headSet(to, toInclusive)).hasSize(expected.headSet(to, toInclusive).size());
+            assertThat(set.tailSet(from, fromInclusive)).hasSize(expected.tailSet(from, fromInclusive).size());
+            int key = random.nextInt(2000);
+            assertThat(subSet.ceiling(key)).isEqualTo(expectedSubSet.ceiling(key));
+            assertThat(subSet.higher(key)).isEqualTo(expectedSubSet.higher(key));
+            assertThat(subSet.floor(key)).isEqualTo(expectedSubSet.floor(key));
+            assertThat(subSet.lower(key)).isEqualTo(expectedSubSet.lower(key));
+            assertThat(subSet.descendingSet().ceiling(key)).isEqualTo(expectedSubSet.descendingSet().ceiling(key));
+            assertThat(subSet.contains(key)).isEqualTo(expectedSubSet.contains(key));
+        }
+    }
+
+    @Test
+    public void shouldRemoveThroughNavigableSetView() {
+        // given
+        for (int i = 0; i < 10; i++) {
+            sequence.insert(i);
+        }
+        NavigableSet<Integer> subSet = sequence.asNavigableSet().subSet(2, true, 7, false);
+
+        // when
+        subSet.removeIf(key -> key % 2 == 0);
+        Integer polled = subSet.pollLast();
+
+        // then
+        assertThat(polled).isEqualTo(5);
+        assertThat(subSet).containsExactly(3);
+        assertThat(sequence.asNavigableSet()).containsExactly(0, 1, 3, 7, 8, 9);
+        assertThat(sequence.size()).isEqualTo(6);
+        assertThat(sequence.get(4)).isNull();
+        assertSequence(sequence, 3, 1, 7);
+    }
+
+    @Test
+    public void shouldRejectViewBoundsOutOfRange() {
+        // given
+        NavigableSet<Integer> headSet = sequence.asNavigableSet().headSet(5, false);
+
+        // when
+        Throwable outOfRange = catchThrowable(() -> headSet.tailSet(6, true));
+        Throwable unsupported = catchThrowable(() -> headSet.add(1));
+
+        // then
+        assertThat(outOfRange).isInstanceOf(IllegalArgumentException.class);
+        assertThat(unsupported).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    public void shouldStreamKeysInParallel() {
+        // given
+        List<Integer> keys = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            keys.add(i * 2);
+        }
+        sequence = InMemorySequence.fromSorted(keys, integerComparable);
+
+        // when
+        long sum = sequence.parallelStream().mapToLong(Integer::longValue).sum();
+        List<Integer> collected = sequence.parallelStream().collect(Collectors.toList());
+
+        // then
+        assertThat(sum).isEqualTo(keys.stream().mapToLong(Integer::longValue).sum());
+        assertThat(collected).isEqualTo(keys);
+        assertThat(sequence.stream().skip(10).findFirst()).contains(20);
+        assertThat(sequence.spliterator().hasCharacteristics(
+                Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.SIZED)).isTrue();
+    }
+
+    @Test
+    public void shouldSplitSubSetViews() {
+        // given
+        for (int i = 0; i < 1000; i++) {
+            sequence.insert(i);
+        }
+        NavigableSet<Integer> subSet = sequence.asNavigableSet().subSet(100, false, 900, true);
+
+        // when
+        Spliterator<Integer> suffix = subSet.spliterator();
+        Spliterator<Integer> prefix = suffix.trySplit();
+
+        // then
+        assertThat(prefix).isNotNull();
+        assertThat(prefix.estimateSize() + suffix.estimateSize()).isEqualTo(800);
+        assertThat(subSet.parallelStream().collect(Collectors.toList())).containsExactlyElementsOf(subSet);
+        assertThat(subSet.descendingSet().stream().findFirst()).contains(900);
+    }
+
+    @Test
+    public void shouldRestoreSnapshot() throws IOException {
+        // given
+        Random random = new Random(7);
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            int key = random.nextInt();
+            if (expected.add(key)) {
+                sequence.insert(key);
+            }
+        }
+        sequence.insert(Integer.MIN_VALUE);
+        sequence.insert(Integer.MAX_VALUE);
+        expected.add(Integer.MIN_VALUE);
+        expected.add(Integer.MAX_VALUE);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // when
+        sequence.writeSnapshot(Channels.newChannel(out), KeySerializers.ints());
+        InMemorySequence<Integer, Integer> restored = InMemorySequence.readSnapshot(
+                Channels.newChannel(new ByteArrayInputStream(out.toByteArray())), KeySerializers.ints(),
+                integerComparable);
+
+        // then
+        assertThat(restored.size()).isEqualTo(expected.size());
+        assertThat(restored.stream().collect(Collectors.toList())).containsExactlyElementsOf(expected);
+        for (Integer key : expected) {
+            assertSequence(restored, key, expected.lower(key), expected.higher(key));
+        }
+        assertThat(restored.select(expected.size() / 2)).isEqualTo(sequence.select(expected.size() / 2));
+        restored.insert(0);
+        restored.delete(Integer.MAX_VALUE);
+        assertThat(restored.greaterThan(-1)).isEqualTo(0);
+        assertThat(restored.lessThan(Integer.MAX_VALUE)).isEqualTo(expected.lower(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void shouldWriteDenseKeysInAByteEach() throws IOException {
+        // given
+        List<Integer> keys = new ArrayList<>();
+        for (int i = 1_000_000; i < 1_100_000; i++) {
+            keys.add(i);
+        }
+        sequence = InMemorySequence.fromSorted(keys, integerComparable);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // when
+        sequence.writeSnapshot(out, KeySerializers.ints());
+
+        // then
+        assertThat(out.size()).isLessThan(keys.size() + 16);
+        assertThat(InMemorySequence.readSnapshot(new ByteArrayInputStream(out.toByteArray()),
+                KeySerializers.ints(), integerComparable).stream().collect(Collectors.toList()))
+                .isEqualTo(keys);
+    }
+
+    @Test
+    public void shouldRestoreEmptySnapshot() throws IOException {
+        // given
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        sequence.writeSnapshot(out, KeySerializers.ints());
+
+        // when
+        InMemorySequence<Integer, Integer> restored = InMemorySequence.readSnapshot(
+                new ByteArrayInputStream(out.toByteArray()), KeySerializers.ints(), integerComparable);
+
+        // then
+        assertThat(restored.isEmpty()).isTrue();
+        restored.insert(1);
+        assertSequence(restored, 1, null, null);
+    }
+
+    @Test
+    public void shouldRejectTruncatedSnapshot() throws IOException {
+        // given
+        for (int i = 0; i < 1000; i++) {
+            sequence.insert(i * 1000);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        sequence.writeSnapshot(out, KeySerializers.ints());
+        byte[] truncated = Arrays.copyOf(out.toByteArray(), out.size() - 10);
+
+        // when
+        Throwable thrown = catchThrowable(() -> InMemorySequence.readSnapshot(
+                new ByteArrayInputStream(truncated), KeySerializers.ints(), integerComparable));
+
+        // then
+        assertThat(thrown).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void shouldRejectSnapshotOfOtherOrder() throws IOException {
+        // given
+        for (int i = 0; i < 100; i++) {
+            sequence.insert(i);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        sequence.writeSnapshot(out, KeySerializers.ints());
+
+        // when
+        Throwable thrown = catchThrowable(() -> InMemorySequence.readSnapshot(
+                new ByteArrayInputStream(out.toByteArray()), KeySerializers.ints(),
+                integerComparable.reversed()));
+
+        // then
+        assertThat(thrown).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void shouldInsertNearHints() {
+        // given
+        Random random = new Random(13);
+        TreeSet<Integer> expected = new TreeSet<>();
+        List<SequenceLink<Integer>> links = new ArrayList<>();
+        links.add(sequence.insert(50_000));
+        expected.add(50_000);
+
+        // when
+        for (int i = 0; i < 20_000; i++) {
+            SequenceLink<Integer> hint = links.get(random.nextInt(links.size()));
+            int distance = random.nextBoolean() ? random.nextInt(8) - 4 : random.nextInt(200_000) - 100_000;
+            int key = hint.getValue() + distance;
+            if (expected.add(key)) {
+                links.add(sequence.insertNear(hint, key));
+            }
+        }
+
+        // then
+        assertThat(sequence.size()).isEqualTo(expected.size());
+        assertThat(sequence.stream().collect(Collectors.toList())).containsExactlyElementsOf(expected);
+        int index = 0;
+        for (Integer key : expected) {
+            assertSequence(sequence, key, expected.lower(key), expected.higher(key));
+            assertThat(sequence.rank(key)).isEqualTo(index);
+            assertThat(sequence.select(index++)).isEqualTo(key);
+        }
+    }
+
+    @Test
+    public void shouldAppendNearLatestKey() {
+        // given
+        SequenceLink<Integer> latest = sequence.insert(0);
+
+        // when
+        for (int i = 1; i < 10_000; i++) {
+            latest = sequence.insertNear(latest, i);
+        }
+
+        // then
+        assertThat(sequence.size()).isEqualTo(10_000);
+        assertThat(sequence.select(5_000)).isEqualTo(5_000);
+        assertSequence(sequence, 9_999, 9_998, null);
+    }
+
+    @Test
+    public void shouldLookUpNearHints() {
+        // given
+        for (int i = 0; i < 5_000; i++) {
+            sequence.insert(i * 4);
+        }
+        TreeSet<Integer> expected = new TreeSet<>();
+        sequence.stream().forEach(expected::add);
+        Random random = new Random(17);
+
+        for (int i = 0; i < 20_000; i++) {
+            // when
+            SequenceLink<Integer> hint = sequence.get(random.nextInt(5_000) * 4);
+            int key = random.nextBoolean() ? hint.getValue() + random.nextInt(41) - 20 : random.nextInt(20_010) - 5;
+
+            // then
+            assertThat(sequence.equalTo(hint, key)).isEqualTo(expected.contains(key) ? key : null);
+            assertThat(sequence.greaterThan(hint, key)).isEqualTo(expected.higher(key));
+            assertThat(sequence.lessThan(hint, key)).isEqualTo(expected.lower(key));
+        }
+    }
+
+    @Test
+    public void shouldRejectHintsOfOtherSequences() {
+        // given
+        sequence.insert(1);
+        SequenceLink<Integer> deleted = sequence.insert(2);
+        sequence.delete(2);
+        InMemorySequence<Integer, Integer> other = new InMemorySequence<>(integerComparable);
+        SequenceLink<Integer> foreign = other.insert(1);
+
+        // when
+        Throwable fromDeleted = catchThrowable(() -> sequence.insertNear(deleted, 3));
+        Throwable fromOther = catchThrowable(() -> sequence.greaterThan(foreign, 0));
+        Throwable duplicate = catchThrowable(() -> sequence.insertNear(sequence.get(1), 1));
+
+        // then
+        assertThat(fromDeleted).isInstanceOf(IllegalArgumentException.class);
+        assertThat(fromOther).isInstanceOf(IllegalArgumentException.class);
+        assertThat(duplicate).isInstanceOf(IllegalArgumentException.class);
+        assertThat(sequence.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldAggregateWindowsAfterRandomBatchesNearInsertsAndSplits() {
+        // given
+        Aggregate<Integer, Long> sum = Aggregate.summingLong(Integer::longValue);
+        Aggregate<Integer, Integer> maximum = Aggregate.maximum(Comparator.comparingInt(key -> key % 97));
+        sequence = new InMemorySequence<>(integerComparable, sum);
+        Random random = new Random(5);
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int round = 0; round < 50; round++) {
+            TreeSet<Integer> batch = new TreeSet<>();
+            for (int i = random.nextInt(300); i > 0; i--) {
+                batch.add(random.nextInt(2000));
+            }
+            if (round % 3 == 2) {
+                expected.removeAll(batch);
+                sequence.deleteAll(batch);
+            } else {
+                batch.removeAll(expected);
+                expected.addAll(batch);
+                sequence.insertAll(batch);
+            }
+        }
+        int appended = expected.last() + 1;
+        sequence.insertNear(sequence.get(expected.last()), appended);
+        expected.add(appended);
+
+        // when
+        InMemorySequence.Split<Integer, Integer> split = sequence.split(1000);
+        long leftSum = split.getLeft().aggregate(sum, 0, 1000);
+        sequence = InMemorySequence.join(split.getLeft(), split.getRight());
+
+        // then
+        assertThat(leftSum).isEqualTo(sum(expected.headSet(1000)));
+        for (int i = 0; i < 300; i++) {
+            int from = random.nextInt(2100) - 50;
+            int to = from + random.nextInt(500);
+            assertThat(sequence.aggregate(sum, from, to)).isEqualTo(sum(expected.subSet(from, to)));
+        }
+        InMemorySequence<Integer, Integer> withMaximum = new InMemorySequence<>(integerComparable, maximum);
+        withMaximum.insertAll(expected);
+        assertThat(withMaximum.aggregate(maximum, 0, 97)).isEqualTo(expected.subSet(0, 97).isEmpty() ? null
+                : expected.subSet(0, 97).last());
+        assertThat(withMaximum.aggregate(maximum, 3000, 4000)).isNull();
+    }
+
+    @Test
+    public void shouldRejectJoinOfSequencesWithDifferentAggregates() {
+        // given
+        InMemorySequence<Integer, Integer> left = new InMemorySequence<>(integerComparable,
+                Aggregate.summingLong(Integer::longValue));
+        left.insert(1);
+        sequence.insert(2);
+
+        // when
+        Throwable thrown = catchThrowable(() -> InMemorySequence.join(left, sequence));
+
+        // then
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void shouldInsertNothingWhenKeyOfSmallBatchIsEqualToPresentKey() {
+        // given
+        InMemorySequence<String, String> letters = new InMemorySequence<>(String.CASE_INSENSITIVE_ORDER);
+        for (char letter = 'a'; letter <= 'z'; letter++) {
+            letters.insert(String.valueOf(letter) + letter);
+        }
+
+        // when
+        Throwable thrown = catchThrowable(() -> letters.insertAll(Arrays.asList("b", "CC")));
+
+        // then
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+        assertThat(letters.size()).isEqualTo(26);
+        assertThat(letters.get("b")).isNull();
+        assertThat(letters.equalTo("b")).isNull();
+    }
+
+    @Test
+    public void shouldInsertNothingWhenKeyOfLargeBatchIsEqualToPresentKey() {
+        // given
+        InMemorySequence<String, String> letters = new InMemorySequence<>(String.CASE_INSENSITIVE_ORDER);
+        letters.insert("a");
+        letters.insert("b");
+
+        // when
+        Throwable thrown = catchThrowable(() -> letters.insertAll(Arrays.asList("A", "c")));
+
+        // then
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+        assertThat(letters.size()).isEqualTo(2);
+        assertThat(letters.asNavigableSet()).containsExactly("a", "b");
+        assertThat(letters.get("c")).isNull();
+        assertThat(letters.rank("c")).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldHandOutLinksOfDeletedKeysAgain() {
+        // given
+        InMemorySequence<Integer, Integer> pooled = InMemorySequence.pooled(integerComparable, 8);
+        pooled.insert(1);
+        SequenceLink<Integer> deleted = pooled.insert(2);
+        pooled.insert(3);
+        pooled.delete(2);
+
+        // when
+        SequenceLink<Integer> inserted = pooled.insert(4);
+
+        // then
+        assertThat(inserted).isSameAs(deleted);
+        assertSequence(pooled, 4, 3, null);
+        assertSequence(pooled, 3, 1, 4);
+        assertThat(pooled.get(2)).isNull();
+    }
+
+    @Test
+    public void shouldMatchTreeSetWhileRecyclingNodes() {
+        // given
+        InMemorySequence<Integer, Integer> pooled = InMemorySequence.pooled(integerComparable, 32);
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(17);
+
+        // when
+        for (int i = 0; i < 20_000; i++) {
+            int key = random.nextInt(1000);
+            if (i % 1000 == 0) {
+                List<Integer> batch = new ArrayList<>(expected.subSet(key, key + 300));
+                pooled.deleteAll(batch);
+                expected.removeAll(batch);
+            } else if (expected.add(key)) {
+                pooled.insert(key);
+            } else {
+                expected.remove(key);
+                pooled.delete(key);
+            }
+        }
+        InMemorySequence.Split<Integer, Integer> split = pooled.split(500);
+        split.getRight().insert(2000);
+
+        // then
+        assertThat(split.getLeft().asNavigableSet()).containsExactlyElementsOf(expected.headSet(500));
+        assertThat(split.getRight().size()).isEqualTo(expected.tailSet(500).size() + 1);
+        for (Integer key : expected.headSet(500)) {
+            Integer higher = expected.higher(key);
+            assertSequence(split.getLeft(), key, expected.lower(key), higher != null && higher < 500 ? higher : null);
+        }
+    }
+
+    private static long sum(Iterable<Integer> keys) {
+        long sum = 0;
+        for (Integer key : keys) {
+            sum += key;
+        }
+        return sum;
+    }
+
     private static void assertSequence(Sequence<Integer, Integer> sequence, Integer value,
                                        Integer left, Integer right) {
         assertThat(sequence).isNotNull();
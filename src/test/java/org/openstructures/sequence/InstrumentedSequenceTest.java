@@ -0,0 +1,124 @@
+package org.openstructures.sequence;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openstructures.sequence.SequenceMetrics.Operation;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class InstrumentedSequenceTest {
+
+    private final Comparator<Integer> integerComparable = Integer::compareTo;
+
+    private SequenceStatistics statistics;
+    private InMemorySequence<Integer, Integer> tree;
+    private InstrumentedSequence<Integer, Integer> sequence;
+
+    @Before
+    public void setUp() {
+        statistics = new SequenceStatistics();
+        tree = new InMemorySequence<>(integerComparable, statistics);
+        sequence = new InstrumentedSequence<>(tree, statistics);
+    }
+
+    @Test
+    public void shouldCountOperations() {
+        // when
+        sequence.insert(1);
+        sequence.insert(2);
+        sequence.insertAll(Arrays.asList(3, 4));
+        sequence.get(2);
+        sequence.greaterThan(2);
+        sequence.lessThan(2);
+        sequence.equalTo(5);
+        sequence.delete(1);
+        sequence.deleteAll(Arrays.asList(2, 3));
+
+        // then
+        assertThat(statistics.count(Operation.INSERT)).isEqualTo(2);
+        assertThat(statistics.count(Operation.INSERT_ALL)).isEqualTo(1);
+        assertThat(statistics.count(Operation.GET)).isEqualTo(1);
+        assertThat(statistics.count(Operation.GREATER_THAN)).isEqualTo(1);
+        assertThat(statistics.count(Operation.LESS_THAN)).isEqualTo(1);
+        assertThat(statistics.count(Operation.EQUAL_TO)).isEqualTo(1);
+        assertThat(statistics.count(Operation.DELETE)).isEqualTo(1);
+        assertThat(statistics.count(Operation.DELETE_ALL)).isEqualTo(1);
+        assertThat(statistics.latencyPercentile(Operation.INSERT, 50)).isPositive();
+        assertThat(statistics.latencyPercentile(Operation.INSERT, 100))
+                .isGreaterThanOrEqualTo(statistics.latencyPercentile(Operation.INSERT, 50));
+        assertThat(sequence.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldTimeOperationThatThrows() {
+        // given
+        sequence.insert(1);
+
+        // when
+        Throwable thrown = catchThrowable(() -> sequence.insert(1));
+
+        // then
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+        assertThat(statistics.count(Operation.INSERT)).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldReportComparisonsAndReBalancing() {
+        // when
+        for (int i = 0; i < 1000; i++) {
+            sequence.insert(i);
+        }
+
+        // then
+        assertThat(statistics.rotations()).isGreaterThan(900);
+        assertThat(statistics.comparisons()).isGreaterThan(1000L * 8);
+        assertThat(Arrays.stream(statistics.retraceDepthHistogram()).sum()).isEqualTo(999);
+        assertThat(tree.height()).isBetween(9, 14);
+        assertThat(new InMemorySequence<>(integerComparable).height()).isEqualTo(-1);
+    }
+
+    @Test
+    public void shouldReportForSplitPartsAndJoinSequencesOfSameMetrics() {
+        // given
+        for (int i = 0; i < 100; i++) {
+            tree.insert(i);
+        }
+        InMemorySequence.Split<Integer, Integer> split = tree.split(50);
+        long rotations = statistics.rotations();
+
+        // when
+        for (int i = 100; i < 200; i++) {
+            split.getRight().insert(i);
+        }
+        InMemorySequence<Integer, Integer> joined = InMemorySequence.join(split.getLeft(), split.getRight());
+
+        // then
+        assertThat(statistics.rotations()).isGreaterThan(rotations);
+        assertThat(joined.size()).isEqualTo(200);
+    }
+
+    @Test
+    public void shouldCallListenerOnThreadOfTheOperation() {
+        // given
+        AtomicInteger comparisons = new AtomicInteger();
+        InMemorySequence<Integer, Integer> counted = new InMemorySequence<>(integerComparable, new SequenceMetrics() {
+            @Override
+            public void compared() {
+                comparisons.incrementAndGet();
+            }
+        });
+
+        // when
+        counted.insert(1);
+        counted.insert(2);
+        counted.greaterThan(1);
+
+        // then
+        assertThat(comparisons.get()).isEqualTo(1 + 2);
+    }
+}
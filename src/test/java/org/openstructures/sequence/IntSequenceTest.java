@@ -0,0 +1,89 @@
+package org.openstructures.sequence;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IntSequenceTest {
+
+    private IntSequence sequence;
+
+    @Before
+    public void setUp() {
+        sequence = new IntSequence();
+    }
+
+    @Test
+    public void shouldInsertAndLinkNeighbours() {
+        // when
+        IntSequenceLink first = sequence.insert(1);
+        IntSequenceLink third = sequence.insert(3);
+        IntSequenceLink second = sequence.insert(2);
+
+        // then
+        assertThat(first.getLeft()).isNull();
+        assertThat(first.getRight()).isEqualTo(second);
+        assertThat(second.getLeft()).isEqualTo(first);
+        assertThat(second.getRight()).isEqualTo(third);
+        assertThat(third.getRight()).isNull();
+        assertThat(sequence.greaterThan(Integer.MAX_VALUE)).isEqualTo(Integer.MIN_VALUE);
+    }
+
+    @Test
+    public void shouldWalkNeighboursWithCursor() {
+        // given
+        sequence.insert(1);
+        sequence.insert(3);
+        sequence.insert(2);
+        IntSequenceCursor cursor = sequence.cursor();
+
+        // when
+        cursor.moveTo(3);
+        sequence.delete(3);
+        boolean movedFromDeleted = cursor.moveLeft();
+        cursor.moveTo(2);
+        boolean movedLeft = cursor.moveLeft();
+
+        // then
+        assertThat(movedFromDeleted).isFalse();
+        assertThat(movedLeft).isTrue();
+        assertThat(cursor.getValue()).isEqualTo(1);
+        assertThat(cursor.moveLeft()).isFalse();
+        assertThat(cursor.getValue()).isEqualTo(Integer.MIN_VALUE);
+    }
+
+    @Test
+    public void shouldBehaveAsTreeSetForRandomOperations() {
+        // given
+        Random random = new Random(11);
+        TreeSet<Integer> expected = new TreeSet<>();
+
+        for (int i = 0; i < 20000; i++) {
+            // when
+            int key = random.nextInt(1000);
+            if (expected.add(key)) {
+                sequence.insert(key);
+            } else {
+                expected.remove(key);
+                sequence.delete(key);
+            }
+
+            // then
+            int probe = random.nextInt(1100) - 50;
+            Integer higher = expected.higher(probe);
+            Integer lower = expected.lower(probe);
+            assertThat(sequence.greaterThan(probe)).isEqualTo(higher != null ? higher : Integer.MIN_VALUE);
+            assertThat(sequence.lessThan(probe)).isEqualTo(lower != null ? lower : Integer.MIN_VALUE);
+        }
+        assertThat(sequence.size()).isEqualTo(expected.size());
+        for (int key : expected) {
+            IntSequenceLink link = sequence.get(key);
+            assertThat(link.getLeft() == null ? null : link.getLeft().getValue()).isEqualTo(expected.lower(key));
+            assertThat(link.getRight() == null ? null : link.getRight().getValue()).isEqualTo(expected.higher(key));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.openstructures.sequence;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class IntervalSequenceTest {
+
+    private IntervalSequence<Map.Entry<Integer, Integer>, Integer> sequence;
+
+    @Before
+    public void setUp() {
+        sequence = new IntervalSequence<>(Map.Entry::getKey, Map.Entry::getValue, Integer::compare);
+    }
+
+    @Test
+    public void shouldFindIntervalsOverlappingPoint() {
+        // given
+        sequence.insert(Map.entry(1, 5));
+        sequence.insert(Map.entry(2, 3));
+        sequence.insert(Map.entry(4, 9));
+        sequence.insert(Map.entry(6, 6));
+        sequence.insert(Map.entry(7, 8));
+
+        // when
+        List<Map.Entry<Integer, Integer>> atFour = sequence.overlapping(4);
+        List<Map.Entry<Integer, Integer>> atSix = sequence.overlapping(6);
+        List<Map.Entry<Integer, Integer>> atTen = sequence.overlapping(10);
+
+        // then
+        assertThat(atFour).containsExactly(Map.entry(1, 5), Map.entry(4, 9));
+        assertThat(atSix).containsExactly(Map.entry(4, 9), Map.entry(6, 6));
+        assertThat(atTen).isEmpty();
+    }
+
+    @Test
+    public void shouldFindIntervalsOverlappingRange() {
+        // given
+        sequence.insert(Map.entry(1, 2));
+        sequence.insert(Map.entry(1, 4));
+        sequence.insert(Map.entry(5, 7));
+        sequence.insert(Map.entry(8, 12));
+
+        // when
+        List<Map.Entry<Integer, Integer>> overlapping = sequence.overlapping(3, 8);
+
+        // then
+        assertThat(overlapping).containsExactly(Map.entry(1, 4), Map.entry(5, 7), Map.entry(8, 12));
+        assertThat(sequence.get(Map.entry(1, 2)).getRight().getValue()).isEqualTo(Map.entry(1, 4));
+    }
+
+    @Test
+    public void shouldMatchScanAfterRandomInsertsBatchesAndDeletes() {
+        // given
+        Random random = new Random(11);
+        TreeSet<Map.Entry<Integer, Integer>> expected = new TreeSet<>(
+                Map.Entry.<Integer, Integer>comparingByKey().thenComparing(Map.Entry.comparingByValue()));
+        for (int i = 0; i < 3000; i++) {
+            int start = random.nextInt(10_000);
+            Map.Entry<Integer, Integer> interval = Map.entry(start, start + random.nextInt(random.nextInt(500) + 1));
+            if (expected.add(interval)) {
+                sequence.insert(interval);
+            } else {
+                expected.remove(interval);
+                sequence.delete(interval);
+            }
+        }
+        List<Map.Entry<Integer, Integer>> batch = new ArrayList<>();
+        for (int start = 10_000; start < 12_000; start += 2) {
+            batch.add(Map.entry(start, start + 3));
+        }
+        sequence.insertAll(batch);
+        expected.addAll(batch);
+
+        // when
+        for (int i = 0; i < 500; i++) {
+            int from = random.nextInt(12_500);
+            int to = from + random.nextInt(100);
+
+            // then
+            assertThat(sequence.overlapping(from, to)).containsExactlyElementsOf(expected.stream()
+                    .filter(interval -> interval.getKey() <= to && interval.getValue() >= from)
+                    .collect(Collectors.toList()));
+        }
+        assertThat(sequence.size()).isEqualTo(expected.size());
+    }
+
+    @Test
+    public void shouldRejectIntervalThatStartsAfterItEnds() {
+        // when
+        Throwable thrown = catchThrowable(() -> sequence.insert(Map.entry(2, 1)));
+        Throwable thrownByRange = catchThrowable(() -> sequence.overlapping(2, 1));
+
+        // then
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+        assertThat(thrownByRange).isInstanceOf(IllegalArgumentException.class);
+        assertThat(sequence.isEmpty()).isTrue();
+    }
+}
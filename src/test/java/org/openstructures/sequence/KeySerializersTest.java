@@ -0,0 +1,165 @@
+package org.openstructures.sequence;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class KeySerializersTest {
+
+    @Test
+    public void shouldRoundTripLongs() throws IOException {
+        // given
+        List<Long> keys = Arrays.asList(Long.MIN_VALUE, -1_000_000_000_000L, -1L, 0L, 1L, 127L, 128L,
+                Long.MAX_VALUE - 1, Long.MAX_VALUE);
+
+        // when
+        List<Long> read = roundTrip(KeySerializers.longs(), keys);
+
+        // then
+        assertThat(read).isEqualTo(keys);
+    }
+
+    @Test
+    public void shouldRoundTripLongsOutOfOrder() throws IOException {
+        // given
+        List<Long> keys = Arrays.asList(Long.MAX_VALUE, Long.MIN_VALUE, 5L, -5L, 0L);
+
+        // when
+        List<Long> read = roundTrip(KeySerializers.longs(), keys);
+
+        // then
+        assertThat(read).isEqualTo(keys);
+    }
+
+    @Test
+    public void shouldWriteSmallDifferencesInAByte() throws IOException {
+        // given
+        List<Long> keys = new ArrayList<>();
+        for (long key = 1L << 40; key < (1L << 40) + 64 * 1000; key += 64) {
+            keys.add(key);
+        }
+
+        // when
+        byte[] bytes = write(KeySerializers.longs(), keys);
+
+        // then
+        assertThat(bytes.length).isLessThan(keys.size() + 8);
+    }
+
+    @Test
+    public void shouldRoundTripInts() throws IOException {
+        // given
+        List<Integer> keys = Arrays.asList(Integer.MIN_VALUE, -1, 0, 1, 300, Integer.MAX_VALUE);
+
+        // when
+        List<Integer> read = roundTrip(KeySerializers.ints(), keys);
+
+        // then
+        assertThat(read).isEqualTo(keys);
+    }
+
+    @Test
+    public void shouldRoundTripStringsSharingPrefixes() throws IOException {
+        // given
+        List<String> keys = Arrays.asList("", "a", "apple", "applesauce", "apply", "b", "zebra", "zebra\uD83D\uDE00",
+                "zebra\uD83D\uDE01", "\u00e9t\u00e9");
+
+        // when
+        List<String> read = roundTrip(KeySerializers.strings(), keys);
+
+        // then
+        assertThat(read).isEqualTo(keys);
+    }
+
+    @Test
+    public void shouldWriteOnlySuffixesOfStrings() throws IOException {
+        // given
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            keys.add(String.format("customer/orders/%06d", i));
+        }
+
+        // when
+        byte[] bytes = write(KeySerializers.strings(), keys);
+
+        // then
+        assertThat(bytes.length).isLessThan(keys.size() * 4 + 32);
+    }
+
+    @Test
+    public void shouldRoundTripStringsLongerThanAChunk() throws IOException {
+        // given
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < 30_000; i++) {
+            key.append((char) ('a' + i % 26));
+        }
+        List<String> keys = Arrays.asList("", key.toString(), key + "\u00e9");
+
+        // when
+        List<String> read = roundTrip(KeySerializers.strings(), keys);
+
+        // then
+        assertThat(read).isEqualTo(keys);
+    }
+
+    @Test
+    public void shouldFailOnTruncatedStringOfHugeLength() {
+        // given
+        byte[] bytes = {0, (byte) 0xFE, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 'a', 'b'};
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+
+        // when
+        Throwable thrown = catchThrowable(() -> KeySerializers.strings().read(null, in));
+
+        // then
+        assertThat(thrown).isInstanceOf(EOFException.class);
+    }
+
+    @Test
+    public void shouldRejectStringLengthBeyondArraySize() {
+        // given
+        byte[] bytes = {0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F, 'a'};
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+
+        // when
+        Throwable thrown = catchThrowable(() -> KeySerializers.strings().read(null, in));
+
+        // then
+        assertThat(thrown).isInstanceOf(IOException.class).hasMessage("malformed key");
+    }
+
+    private static <T> List<T> roundTrip(KeySerializer<T> serializer, List<T> keys) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(write(serializer, keys)));
+        List<T> read = new ArrayList<>();
+        T previous = null;
+        for (int i = 0; i < keys.size(); i++) {
+            previous = serializer.read(previous, in);
+            read.add(previous);
+        }
+        assertThat(in.read()).isEqualTo(-1);
+        return read;
+    }
+
+    private static <T> byte[] write(KeySerializer<T> serializer, List<T> keys) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        T previous = null;
+        for (T key : keys) {
+            serializer.write(previous, key, out);
+            previous = key;
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+}
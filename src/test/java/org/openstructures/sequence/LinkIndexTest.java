@@ -0,0 +1,98 @@
+package org.openstructures.sequence;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LinkIndexTest {
+
+    private final LinkIndex<Long, Link> index = new LinkIndex<>();
+
+    @Test
+    public void shouldFindPutLinks() {
+        // given
+        Link one = new Link(1L);
+        Link two = new Link(2L);
+
+        // when
+        index.put(one);
+        index.put(two);
+
+        // then
+        assertThat(index.get(1L)).isSameAs(one);
+        assertThat(index.get(2L)).isSameAs(two);
+        assertThat(index.get(3L)).isNull();
+        assertThat(index.get(null)).isNull();
+        assertThat(index.containsKey(2L)).isTrue();
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldReplaceLinkOfEqualKey() {
+        // given
+        index.put(new Link(1L));
+        Link replacement = new Link(1L);
+
+        // when
+        index.put(replacement);
+
+        // then
+        assertThat(index.get(1L)).isSameAs(replacement);
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldMatchHashMapUnderChurnOfCollidingKeys() {
+        // given
+        Map<Long, Link> expected = new HashMap<>();
+        Random random = new Random(3);
+
+        // when
+        for (int i = 0; i < 100_000; i++) {
+            // multiples of a large power of two share the low bits of their hash codes
+            long key = (long) random.nextInt(2000) << 20;
+            if (expected.containsKey(key)) {
+                assertThat(index.remove(key)).isSameAs(expected.remove(key));
+            } else {
+                Link link = new Link(key);
+                expected.put(key, link);
+                index.put(link);
+            }
+        }
+
+        // then
+        assertThat(index.size()).isEqualTo(expected.size());
+        for (long key = 0; key < 2000; key++) {
+            assertThat(index.get(key << 20)).isSameAs(expected.get(key << 20));
+        }
+        assertThat(index.remove(-1L)).isNull();
+    }
+
+    private static class Link implements SequenceLink<Long> {
+
+        private final Long key;
+
+        private Link(Long key) {
+            this.key = key;
+        }
+
+        @Override
+        public Long getValue() {
+            return key;
+        }
+
+        @Override
+        public SequenceLink<Long> getLeft() {
+            return null;
+        }
+
+        @Override
+        public SequenceLink<Long> getRight() {
+            return null;
+        }
+    }
+}
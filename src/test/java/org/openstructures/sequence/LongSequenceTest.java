@@ -0,0 +1,165 @@
+package org.openstructures.sequence;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class LongSequenceTest {
+
+    private LongSequence sequence;
+
+    @Before
+    public void setUp() {
+        sequence = newSequence(Long.MIN_VALUE);
+    }
+
+    protected LongSequence newSequence(long noKey) {
+        return new LongSequence(noKey);
+    }
+
+    @Test
+    public void shouldInsertAndLinkNeighbours() {
+        // when
+        LongSequenceLink first = sequence.insert(1L);
+        LongSequenceLink third = sequence.insert(3L);
+        LongSequenceLink second = sequence.insert(2L);
+
+        // then
+        assertThat(first.getValue()).isEqualTo(1L);
+        assertThat(first.getLeft()).isNull();
+        assertThat(first.getRight()).isEqualTo(second);
+        assertThat(second.getLeft()).isEqualTo(first);
+        assertThat(second.getRight()).isEqualTo(third);
+        assertThat(third.getLeft().getValue()).isEqualTo(2L);
+        assertThat(third.getRight()).isNull();
+        assertThat(sequence.get(2L)).isEqualTo(second);
+        assertThat(sequence.size()).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldNotInsertDuplicatesNorNoKey() {
+        // given
+        sequence.insert(5L);
+
+        // when
+        Throwable duplicate = catchThrowable(() -> sequence.insert(5L));
+        Throwable noKey = catchThrowable(() -> sequence.insert(Long.MIN_VALUE));
+
+        // then
+        assertThat(duplicate).isInstanceOf(IllegalArgumentException.class);
+        assertThat(noKey).isInstanceOf(IllegalArgumentException.class);
+        assertThat(sequence.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldReturnNoKeyWhenThereIsNone() {
+        // given
+        sequence = newSequence(-1L);
+        sequence.insert(10L);
+
+        // when and then
+        assertThat(sequence.greaterThan(10L)).isEqualTo(-1L);
+        assertThat(sequence.lessThan(10L)).isEqualTo(-1L);
+        assertThat(sequence.equalTo(11L)).isEqualTo(-1L);
+        assertThat(sequence.equalTo(10L)).isEqualTo(10L);
+        assertThat(sequence.get(11L)).isNull();
+        assertThat(sequence.noKey()).isEqualTo(-1L);
+    }
+
+    @Test
+    public void shouldUnlinkDeletedKeyEvenIfItsNodeIsReused() {
+        // given
+        sequence.insert(1L);
+        LongSequenceLink deleted = sequence.insert(2L);
+        sequence.insert(3L);
+
+        // when
+        sequence.delete(2L);
+        LongSequenceLink reusing = sequence.insert(4L);
+
+        // then
+        assertThat(deleted.getLeft()).isNull();
+        assertThat(deleted.getRight()).isNull();
+        assertThat(deleted).isNotEqualTo(reusing);
+        assertThat(sequence.get(1L).getRight().getValue()).isEqualTo(3L);
+        assertThat(reusing.getLeft().getValue()).isEqualTo(3L);
+    }
+
+    @Test
+    public void shouldWalkNeighboursWithCursor() {
+        // given
+        sequence.insert(1L);
+        sequence.insert(3L);
+        sequence.insert(2L);
+        LongSequenceCursor cursor = sequence.cursor();
+
+        // when and then
+        assertThat(cursor.getValue()).isEqualTo(Long.MIN_VALUE);
+        assertThat(cursor.moveTo(4L)).isFalse();
+        assertThat(cursor.moveTo(2L)).isTrue();
+        assertThat(cursor.getValue()).isEqualTo(2L);
+        assertThat(cursor.moveRight()).isTrue();
+        assertThat(cursor.getValue()).isEqualTo(3L);
+        assertThat(cursor.moveRight()).isFalse();
+        assertThat(cursor.getValue()).isEqualTo(Long.MIN_VALUE);
+        assertThat(cursor.moveLeft()).isFalse();
+    }
+
+    @Test
+    public void shouldPutCursorOffSequenceWhenItsKeyIsDeleted() {
+        // given
+        sequence.insert(1L);
+        sequence.insert(2L);
+        sequence.insert(3L);
+        LongSequenceCursor cursor = sequence.cursor();
+        cursor.moveTo(2L);
+
+        // when
+        sequence.delete(2L);
+        sequence.insert(4L);
+
+        // then
+        assertThat(cursor.getValue()).isEqualTo(Long.MIN_VALUE);
+        assertThat(cursor.moveLeft()).isFalse();
+        assertThat(cursor.moveRight()).isFalse();
+    }
+
+    @Test
+    public void shouldBehaveAsTreeSetForRandomOperations() {
+        // given
+        Random random = new Random(9);
+        TreeSet<Long> expected = new TreeSet<>();
+
+        for (int i = 0; i < 20000; i++) {
+            // when
+            long key = random.nextInt(1000) - 500;
+            if (expected.add(key)) {
+                sequence.insert(key);
+            } else {
+                expected.remove(key);
+                sequence.delete(key);
+            }
+
+            // then
+            long probe = random.nextInt(1100) - 550;
+            assertThat(sequence.greaterThan(probe)).isEqualTo(orNoKey(expected.higher(probe)));
+            assertThat(sequence.lessThan(probe)).isEqualTo(orNoKey(expected.lower(probe)));
+            assertThat(sequence.equalTo(probe)).isEqualTo(expected.contains(probe) ? probe : Long.MIN_VALUE);
+        }
+        assertThat(sequence.size()).isEqualTo(expected.size());
+        for (long key : expected) {
+            LongSequenceLink link = sequence.get(key);
+            assertThat(link.getLeft() == null ? null : link.getLeft().getValue()).isEqualTo(expected.lower(key));
+            assertThat(link.getRight() == null ? null : link.getRight().getValue()).isEqualTo(expected.higher(key));
+        }
+    }
+
+    private static long orNoKey(Long key) {
+        return key != null ? key : Long.MIN_VALUE;
+    }
+}
@@ -0,0 +1,229 @@
+package org.openstructures.sequence;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class MappedSequenceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldReopenWithKeysAndLinks() throws IOException {
+        // given
+        Path file = folder.getRoot().toPath().resolve("sequence");
+        TreeSet<Long> expected = new TreeSet<>();
+        try (MappedSequence sequence = MappedSequence.open(file, false)) {
+            applyRandomOperations(sequence, expected, new Random(1), 40_000);
+        }
+
+        // when
+        try (MappedSequence sequence = MappedSequence.open(file)) {
+
+            // then
+            assertContains(sequence, expected);
+        }
+    }
+
+    @Test
+    public void shouldGrowReopenedFileBeyondItsSegments() throws IOException {
+        // given
+        Path file = folder.getRoot().toPath().resolve("sequence");
+        TreeSet<Long> expected = new TreeSet<>();
+        try (MappedSequence sequence = MappedSequence.open(file, false)) {
+            applyRandomOperations(sequence, expected, new Random(4), 40_000);
+        }
+
+        // when
+        try (MappedSequence sequence = MappedSequence.open(file, false)) {
+            for (long key = 1_000_000; key < 1_050_000; key++) {
+                sequence.insert(key);
+                expected.add(key);
+            }
+        }
+
+        // then
+        try (MappedSequence sequence = MappedSequence.open(file)) {
+            assertContains(sequence, expected);
+        }
+    }
+
+    @Test
+    public void shouldRecoverCommittedChangesWithoutCheckpoint() throws IOException {
+        // given
+        Path file = folder.getRoot().toPath().resolve("sequence");
+        TreeSet<Long> expected = new TreeSet<>();
+        MappedSequence crashed = MappedSequence.open(file, false);
+        applyRandomOperations(crashed, expected, new Random(2), 5_000);
+        crashed.checkpoint();
+        applyRandomOperations(crashed, expected, new Random(3), 5_000);
+
+        // when
+        try (MappedSequence sequence = MappedSequence.open(file)) {
+
+            // then
+            assertContains(sequence, expected);
+        }
+    }
+
+    @Test
+    public void shouldIgnoreTornTransaction() throws IOException {
+        // given
+        Path file = folder.getRoot().toPath().resolve("sequence");
+        MappedSequence crashed = MappedSequence.open(file, false);
+        crashed.insert(1L);
+        crashed.insert(2L);
+        try (FileChannel log = FileChannel.open(file.resolveSibling("sequence.log"), StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            log.write(ByteBuffer.wrap(new byte[]{0x54, 0x58, 0x4e, 0x31, 0, 0, 0, 3, 1, 2, 3}));
+        }
+
+        // when
+        try (MappedSequence sequence = MappedSequence.open(file)) {
+
+            // then
+            assertContains(sequence, new TreeSet<>(List.of(1L, 2L)));
+
+            // and when
+            sequence.insert(3L);
+        }
+
+        // then
+        try (MappedSequence sequence = MappedSequence.open(file)) {
+            assertContains(sequence, new TreeSet<>(List.of(1L, 2L, 3L)));
+        }
+    }
+
+    @Test
+    public void shouldRejectFileOfOtherContent() throws IOException {
+        // given
+        Path file = folder.newFile("other").toPath();
+        Files.write(file, "not a sequence".getBytes(StandardCharsets.UTF_8));
+
+        // when
+        Throwable thrown = catchThrowable(() -> MappedSequence.open(file));
+
+        // then
+        assertThat(thrown).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void shouldRecoverAfterProcessIsKilledWhileWriting() throws Exception {
+        // given
+        Path file = folder.getRoot().toPath().resolve("sequence");
+        Process writer = new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"), Writer.class.getName(), file.toString())
+                .redirectErrorStream(true)
+                .start();
+        int acknowledged = 0;
+        try (BufferedReader output = new BufferedReader(new InputStreamReader(writer.getInputStream(),
+                StandardCharsets.UTF_8))) {
+            // when
+            String line;
+            while (acknowledged < 20_000 && (line = output.readLine()) != null) {
+                acknowledged = Integer.parseInt(line);
+            }
+            writer.destroyForcibly();
+            assertThat(writer.waitFor(30, TimeUnit.SECONDS)).isTrue();
+        }
+
+        // then
+        assertThat(acknowledged).isGreaterThanOrEqualTo(20_000);
+        try (MappedSequence sequence = MappedSequence.open(file)) {
+            long sum = sequence.stream().mapToLong(Long::longValue).sum();
+            TreeSet<Long> expected = new TreeSet<>();
+            long expectedSum = 0;
+            int operations = 0;
+            while (operations < acknowledged || expected.size() != sequence.size() || expectedSum != sum) {
+                long key = Writer.key(operations);
+                if (Writer.deletes(operations)) {
+                    long deleted = Writer.key(operations - 2);
+                    expected.remove(deleted);
+                    expectedSum -= deleted;
+                } else {
+                    expected.add(key);
+                    expectedSum += key;
+                }
+                operations++;
+                assertThat(operations).isLessThan(Writer.OPERATIONS);
+            }
+            assertContains(sequence, expected);
+        }
+    }
+
+    /**
+     * Applies operations to a sequence until it is killed, printing the number of operations done every now and then.
+     */
+    public static class Writer {
+
+        static final int OPERATIONS = 10_000_000;
+
+        public static void main(String[] args) throws IOException {
+            try (MappedSequence sequence = MappedSequence.open(Paths.get(args[0]), false)) {
+                for (int i = 0; i < OPERATIONS; i++) {
+                    if (deletes(i)) {
+                        sequence.delete(key(i - 2));
+                    } else {
+                        sequence.insert(key(i));
+                    }
+                    if (i % 100 == 0) {
+                        System.out.println(i);
+                    }
+                }
+            }
+        }
+
+        static boolean deletes(int operation) {
+            return operation % 4 == 3;
+        }
+
+        static long key(int operation) {
+            return operation * 0x9E37_79B9_7F4A_7C15L;
+        }
+    }
+
+    private static void applyRandomOperations(MappedSequence sequence, TreeSet<Long> expected, Random random,
+                                              int operations) {
+        for (int i = 0; i < operations; i++) {
+            long key = random.nextInt(operations);
+            if (expected.add(key)) {
+                sequence.insert(key);
+            } else {
+                expected.remove(key);
+                sequence.delete(key);
+            }
+        }
+    }
+
+    private static void assertContains(MappedSequence sequence, TreeSet<Long> expected) {
+        assertThat(sequence.size()).isEqualTo(expected.size());
+        assertThat(sequence.stream().collect(Collectors.toList())).containsExactlyElementsOf(expected);
+        for (Long key : expected) {
+            SequenceLink<Long> link = sequence.get(key);
+            assertThat(link).isNotNull();
+            assertThat(link.getLeft() == null ? null : link.getLeft().getValue()).isEqualTo(expected.lower(key));
+            assertThat(link.getRight() == null ? null : link.getRight().getValue()).isEqualTo(expected.higher(key));
+            assertThat(sequence.greaterThan(key)).isEqualTo(expected.higher(key));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.openstructures.sequence;
+
+import org.junit.Test;
+import org.openstructures.sequence.avltree.OffHeapAVLTree;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OffHeapLongSequenceTest extends LongSequenceTest {
+
+    @Override
+    protected OffHeapLongSequence newSequence(long noKey) {
+        return new OffHeapLongSequence(noKey);
+    }
+
+    @Test
+    public void shouldSpreadNodesOverSegments() {
+        // given
+        OffHeapLongSequence sequence = newSequence(Long.MIN_VALUE);
+        Random random = new Random(11);
+        TreeSet<Long> expected = new TreeSet<>();
+        int keys = 3 * OffHeapAVLTree.SEGMENT_SIZE;
+
+        // when
+        for (int i = 0; i < keys; i++) {
+            long key = random.nextLong();
+            if (key != Long.MIN_VALUE && expected.add(key)) {
+                sequence.insert(key);
+            }
+        }
+        for (Long key : new ArrayList<>(expected.headSet(0L))) {
+            expected.remove(key);
+            sequence.delete(key);
+        }
+
+        // then
+        assertThat(sequence.size()).isEqualTo(expected.size());
+        assertThat(sequence.reservedBytes()).isGreaterThanOrEqualTo(3L * OffHeapAVLTree.SEGMENT_SIZE * 32);
+        LongSequenceLink link = sequence.get(expected.first());
+        for (long key : expected) {
+            assertThat(link.getValue()).isEqualTo(key);
+            link = link.getRight();
+        }
+        assertThat(link).isNull();
+        LongSequenceCursor cursor = sequence.cursor();
+        assertThat(cursor.moveTo(expected.last())).isTrue();
+        for (long key : expected.descendingSet()) {
+            assertThat(cursor.getValue()).isEqualTo(key);
+            cursor.moveLeft();
+        }
+        assertThat(cursor.getValue()).isEqualTo(Long.MIN_VALUE);
+    }
+}
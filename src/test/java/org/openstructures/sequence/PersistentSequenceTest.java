@@ -0,0 +1,67 @@
+package org.openstructures.sequence;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PersistentSequenceTest {
+
+    private final Comparator<Integer> comparator = Integer::compareTo;
+
+    @Test
+    public void shouldReturnNewVersionOnInsert() {
+        // given
+        PersistentSequence<Integer, Integer> version = PersistentSequence.fromSorted(Arrays.asList(1, 5, 9),
+                comparator);
+
+        // when
+        PersistentSequence<Integer, Integer> inserted = version.insert(3);
+
+        // then
+        assertThat(version.stream().collect(Collectors.toList())).containsExactly(1, 5, 9);
+        assertThat(inserted.stream().collect(Collectors.toList())).containsExactly(1, 3, 5, 9);
+        assertThat(version.greaterThan(1)).isEqualTo(5);
+        assertThat(inserted.greaterThan(1)).isEqualTo(3);
+        assertThat(inserted.rank(5)).isEqualTo(2);
+        assertThat(inserted.select(1)).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldKeepLinksOfTheirVersion() {
+        // given
+        PersistentSequence<Integer, Integer> version = PersistentSequence.fromSorted(Arrays.asList(1, 5, 9),
+                comparator);
+        SequenceLink<Integer> link = version.get(5);
+
+        // when
+        PersistentSequence<Integer, Integer> changed = version.delete(1).insert(7);
+
+        // then
+        assertThat(link.getLeft().getValue()).isEqualTo(1);
+        assertThat(link.getRight().getValue()).isEqualTo(9);
+        assertThat(link.getRight().getLeft()).isEqualTo(link);
+        SequenceLink<Integer> changedLink = changed.get(5);
+        assertThat(changedLink.getLeft()).isNull();
+        assertThat(changedLink.getRight().getValue()).isEqualTo(7);
+        assertThat(changedLink).isNotEqualTo(link);
+    }
+
+    @Test
+    public void shouldReturnSameVersionWhenDeletingAbsentKey() {
+        // given
+        PersistentSequence<Integer, Integer> version = PersistentSequence.<Integer, Integer>empty(comparator)
+                .insert(2);
+
+        // when
+        PersistentSequence<Integer, Integer> deleted = version.delete(3);
+
+        // then
+        assertThat(deleted).isSameAs(version);
+        assertThat(version.get(3)).isNull();
+        assertThat(version.equalTo(2)).isEqualTo(2);
+    }
+}
@@ -0,0 +1,114 @@
+package org.openstructures.sequence;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class SequenceMapTest {
+
+    private SequenceMap<Integer, Integer, String> map;
+
+    @Before
+    public void setUp() {
+        map = new SequenceMap<>(Integer::compareTo);
+    }
+
+    @Test
+    public void shouldPutGetAndRemove() {
+        // when
+        String absent = map.put(2, "two");
+        map.put(1, "one");
+        String replaced = map.put(2, "TWO");
+
+        // then
+        assertThat(absent).isNull();
+        assertThat(replaced).isEqualTo("two");
+        assertThat(map).hasSize(2).containsEntry(1, "one").containsEntry(2, "TWO");
+        assertThat(map.getLink(1).getRight().getValue()).isEqualTo(2);
+
+        // and when
+        String removed = map.remove(1);
+
+        // then
+        assertThat(removed).isEqualTo("one");
+        assertThat(map.get(1)).isNull();
+        assertThat(map.getLink(2).getLeft()).isNull();
+        assertThat(map.firstKey()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldBehaveLikeTreeMap() {
+        // given
+        Random random = new Random(21);
+        TreeMap<Integer, String> expected = new TreeMap<>();
+
+        // when
+        for (int i = 0; i < 5000; i++) {
+            int key = random.nextInt(1000);
+            if (random.nextInt(3) == 0) {
+                assertThat(map.remove(key)).isEqualTo(expected.remove(key));
+            } else {
+                assertThat(map.put(key, "v" + i)).isEqualTo(expected.put(key, "v" + i));
+            }
+        }
+
+        // then
+        assertThat(map).isEqualTo(expected);
+        assertThat(map.entrySet()).containsExactlyElementsOf(expected.entrySet());
+        assertThat(map.descendingMap().entrySet()).containsExactlyElementsOf(expected.descendingMap().entrySet());
+        for (int i = 0; i < 200; i++) {
+            int from = random.nextInt(1000);
+            int to = from + random.nextInt(1000 - from);
+            boolean fromInclusive = random.nextBoolean();
+            boolean toInclusive = random.nextBoolean();
+            NavigableMap<Integer, String> subMap = map.subMap(from, fromInclusive, to, toInclusive);
+            NavigableMap<Integer, String> expectedSubMap = expected.subMap(from, fromInclusive, to, toInclusive);
+            assertThat(subMap).isEqualTo(expectedSubMap);
+            assertThat(subMap.keySet()).containsExactlyElementsOf(expectedSubMap.keySet());
+            int key = random.nextInt(1000);
+            assertThat(subMap.ceilingEntry(key)).isEqualTo(expectedSubMap.ceilingEntry(key));
+            assertThat(subMap.higherKey(key)).isEqualTo(expectedSubMap.higherKey(key));
+            assertThat(subMap.floorEntry(key)).isEqualTo(expectedSubMap.floorEntry(key));
+            assertThat(subMap.lowerKey(key)).isEqualTo(expectedSubMap.lowerKey(key));
+            assertThat(map.headMap(key, true)).hasSize(expected.headMap(key, true).size());
+            assertThat(map.tailMap(key, false).descendingMap().firstEntry())
+                    .isEqualTo(expected.tailMap(key, false).descendingMap().firstEntry());
+        }
+    }
+
+    @Test
+    public void shouldWriteThroughViews() {
+        // given
+        for (int i = 0; i < 10; i++) {
+            map.put(i, "v" + i);
+        }
+        NavigableMap<Integer, String> tailMap = map.tailMap(5, true);
+
+        // when
+        tailMap.entrySet().iterator().next().setValue("five");
+        tailMap.put(9, "nine");
+        tailMap.entrySet().removeIf(entry -> entry.getKey() % 2 == 0);
+        Map.Entry<Integer, String> polled = map.descendingMap().pollFirstEntry();
+        Throwable outOfRange = catchThrowable(() -> tailMap.put(4, "four"));
+
+        // then
+        assertThat(polled).isEqualTo(Map.entry(9, "nine"));
+        assertThat(tailMap).containsExactly(Map.entry(5, "five"), Map.entry(7, "v7"));
+        assertThat(map).hasSize(7);
+        assertThat(outOfRange).isInstanceOf(IllegalArgumentException.class);
+
+        // and when
+        tailMap.clear();
+
+        // then
+        assertThat(map.keySet()).containsExactly(0, 1, 2, 3, 4);
+        assertThat(map.getLink(4).getRight()).isNull();
+    }
+}
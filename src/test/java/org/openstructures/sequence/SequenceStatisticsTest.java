@@ -0,0 +1,57 @@
+package org.openstructures.sequence;
+
+import org.junit.Test;
+import org.openstructures.sequence.SequenceMetrics.Operation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SequenceStatisticsTest {
+
+    private final SequenceStatistics statistics = new SequenceStatistics();
+
+    @Test
+    public void shouldBucketLatenciesByPowersOfTwo() {
+        // when
+        statistics.operation(Operation.GET, 0);
+        statistics.operation(Operation.GET, 1);
+        statistics.operation(Operation.GET, 100);
+        statistics.operation(Operation.GET, 127);
+        statistics.operation(Operation.GET, 128);
+
+        // then
+        long[] histogram = statistics.latencyHistogram(Operation.GET);
+        assertThat(histogram[0]).isEqualTo(1);
+        assertThat(histogram[1]).isEqualTo(1);
+        assertThat(histogram[7]).isEqualTo(2);
+        assertThat(histogram[8]).isEqualTo(1);
+        assertThat(statistics.count(Operation.GET)).isEqualTo(5);
+        assertThat(statistics.count(Operation.INSERT)).isZero();
+    }
+
+    @Test
+    public void shouldFindPercentiles() {
+        // given
+        for (int i = 0; i < 99; i++) {
+            statistics.operation(Operation.INSERT, 50);
+        }
+        statistics.operation(Operation.INSERT, 5000);
+
+        // when and then
+        assertThat(statistics.latencyPercentile(Operation.INSERT, 50)).isEqualTo(64);
+        assertThat(statistics.latencyPercentile(Operation.INSERT, 99)).isEqualTo(64);
+        assertThat(statistics.latencyPercentile(Operation.INSERT, 100)).isEqualTo(8192);
+        assertThat(statistics.latencyPercentile(Operation.DELETE, 99)).isZero();
+    }
+
+    @Test
+    public void shouldCapRetraceDepths() {
+        // when
+        statistics.retraced(1);
+        statistics.retraced(100);
+
+        // then
+        long[] depths = statistics.retraceDepthHistogram();
+        assertThat(depths[1]).isEqualTo(1);
+        assertThat(depths[depths.length - 1]).isEqualTo(1);
+    }
+}
@@ -0,0 +1,171 @@
+package org.openstructures.sequence;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class ShardedSequenceTest {
+
+    private static final int MAX_SHARD_SIZE = 64;
+    private static final int WRITERS = 4;
+    private static final int READERS = 2;
+    private static final int KEYS_PER_WRITER = 2_000;
+    private static final int OPERATIONS_PER_WRITER = 50_000;
+
+    private ShardedSequence<Integer, Integer> sequence;
+
+    private final Comparator<Integer> integerComparable = Integer::compareTo;
+
+    @Before
+    public void setUp() {
+        sequence = new ShardedSequence<>(integerComparable, MAX_SHARD_SIZE);
+    }
+
+    @Test
+    public void shouldInsertAndGet() {
+        // when
+        sequence.insert(1);
+        sequence.insert(10);
+        sequence.insert(7);
+
+        // then
+        assertThat(sequence.get(7).getValue()).isEqualTo(7);
+        assertThat(sequence.get(7).getLeft()).isEqualTo(sequence.get(1));
+        assertThat(sequence.get(7).getRight()).isEqualTo(sequence.get(10));
+        assertThat(sequence.get(1).getLeft()).isNull();
+        assertThat(sequence.get(10).getRight()).isNull();
+        assertThat(sequence.get(5)).isNull();
+    }
+
+    @Test
+    public void shouldInsertNothingIntoShardHoldingKeyEqualToBatchKey() {
+        // given
+        ShardedSequence<String, String> letters = new ShardedSequence<>(String.CASE_INSENSITIVE_ORDER);
+        letters.insert("a");
+        letters.insert("b");
+
+        // when
+        Throwable thrown = catchThrowable(() -> letters.insertAll(List.of("A", "c")));
+
+        // then
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+        assertThat(letters.size()).isEqualTo(2);
+        assertThat(letters.equalTo("c")).isNull();
+        assertThat(letters.greaterThan("b")).isNull();
+    }
+
+    @Test
+    public void shouldThrowExceptionIfInsertingDuplicatedElement() {
+        // given
+        sequence.insert(1);
+
+        // when
+        Throwable thrown = catchThrowable(() -> sequence.insert(1));
+
+        // then
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+        assertThat(sequence.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldSplitOversizedShardsAndLinkAcrossThem() {
+        // given
+        TreeSet<Integer> keys = IntStream.range(0, 1000).map(i -> 2 * i).boxed()
+                .collect(Collectors.toCollection(TreeSet::new));
+
+        // when
+        keys.forEach(sequence::insert);
+
+        // then
+        assertThat(sequence.shardCount()).isGreaterThan(1000 / MAX_SHARD_SIZE);
+        assertThat(sequence.size()).isEqualTo(1000);
+        for (int key = -1; key <= 2000; key++) {
+            assertThat(sequence.greaterThan(key)).isEqualTo(keys.higher(key));
+            assertThat(sequence.lessThan(key)).isEqualTo(keys.lower(key));
+        }
+        List<Integer> linked = new ArrayList<>();
+        for (SequenceLink<Integer> link = sequence.get(0); link != null; link = link.getRight()) {
+            linked.add(link.getValue());
+        }
+        assertThat(linked).containsExactlyElementsOf(keys);
+    }
+
+    @Test
+    public void shouldMergeShardsEmptiedByDeletes() {
+        // given
+        List<Integer> keys = IntStream.range(0, 1000).boxed().collect(Collectors.toList());
+        sequence.insertAll(keys);
+        int shards = sequence.shardCount();
+
+        // when
+        sequence.deleteAll(keys.subList(0, 997));
+
+        // then
+        assertThat(shards).isGreaterThan(1000 / MAX_SHARD_SIZE);
+        assertThat(sequence.shardCount()).isEqualTo(1);
+        assertThat(sequence.stream().collect(Collectors.toList())).containsExactly(997, 998, 999);
+        assertThat(sequence.lessThan(999)).isEqualTo(998);
+        assertThat(sequence.lessThan(997)).isNull();
+    }
+
+    @Test
+    public void shouldMatchTreeSetAfterRandomOperations() {
+        // given
+        Random random = new Random(3);
+        TreeSet<Integer> expected = new TreeSet<>();
+
+        // when
+        for (int i = 0; i < 20_000; i++) {
+            int key = random.nextInt(3000);
+            if (random.nextInt(50) == 0) {
+                List<Integer> batch = IntStream.range(key, key + 100).boxed()
+                        .filter(candidate -> !expected.contains(candidate)).collect(Collectors.toList());
+                expected.addAll(batch);
+                sequence.insertAll(batch);
+            } else if (expected.add(key)) {
+                sequence.insert(key);
+            } else {
+                expected.remove(key);
+                sequence.delete(key);
+            }
+        }
+
+        // then
+        assertThat(sequence.size()).isEqualTo(expected.size());
+        assertThat(sequence.stream().collect(Collectors.toList())).containsExactlyElementsOf(expected);
+        for (int key = -1; key < 3200; key += 7) {
+            assertThat(sequence.greaterThan(key)).isEqualTo(expected.higher(key));
+            assertThat(sequence.lessThan(key)).isEqualTo(expected.lower(key));
+            assertThat(sequence.equalTo(key)).isEqualTo(expected.contains(key) ? key : null);
+        }
+        assertThat(sequence.spliterator().hasCharacteristics(Spliterator.SORTED | Spliterator.DISTINCT)).isTrue();
+        assertThat(sequence.spliterator().getComparator()).isSameAs(integerComparable);
+    }
+
+    @Test
+    public void shouldStayOrderedUnderConcurrentWritesAndReads() throws Exception {
+        // given
+        ConcurrentLinkedQueue<String> violations = new ConcurrentLinkedQueue<>();
+
+        // when
+        TreeSet<Integer> expected = ConcurrentWorkload.run(sequence, WRITERS, READERS, KEYS_PER_WRITER,
+                OPERATIONS_PER_WRITER, violations);
+
+        // then
+        assertThat(violations).isEmpty();
+        assertThat(sequence.size()).isEqualTo(expected.size());
+        assertThat(sequence.stream().collect(Collectors.toList())).containsExactlyElementsOf(expected);
+    }
+}
@@ -0,0 +1,95 @@
+package org.openstructures.sequence;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class VersionedSequenceTest {
+
+    @Test
+    public void shouldKeepSnapshotWhileSequenceChanges() {
+        // given
+        VersionedSequence<Integer, Integer> sequence = new VersionedSequence<>(Integer::compareTo);
+        sequence.insertAll(Arrays.asList(4, 2, 6));
+        PersistentSequence<Integer, Integer> snapshot = sequence.snapshot();
+
+        // when
+        sequence.insert(3);
+        sequence.delete(4);
+
+        // then
+        assertThat(snapshot.stream().collect(Collectors.toList())).containsExactly(2, 4, 6);
+        assertThat(sequence.stream().collect(Collectors.toList())).containsExactly(2, 3, 6);
+        assertThat(sequence.get(3).getRight().getValue()).isEqualTo(6);
+        assertThat(sequence.lessThan(6)).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldInsertNothingWhenBatchHasDuplicate() {
+        // given
+        VersionedSequence<Integer, Integer> sequence = new VersionedSequence<>(Integer::compareTo);
+        sequence.insert(5);
+
+        // when
+        Throwable thrown = catchThrowable(() -> sequence.insertAll(Arrays.asList(1, 2, 5)));
+
+        // then
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+        assertThat(sequence.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldGiveReadersConsistentSnapshotsWhileWritersChangeSequence() throws Exception {
+        // given
+        int writers = 4;
+        int pairsPerWriter = 5_000;
+        VersionedSequence<Integer, Integer> sequence = new VersionedSequence<>(Integer::compareTo);
+        ExecutorService executor = Executors.newFixedThreadPool(writers + 1);
+
+        // when
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int writer = 0; writer < writers; writer++) {
+                int first = writer * pairsPerWriter;
+                futures.add(executor.submit(() -> {
+                    for (int i = first; i < first + pairsPerWriter; i++) {
+                        // keys are inserted in pairs, so every version holds an even number of them
+                        sequence.insertAll(Arrays.asList(2 * i, 2 * i + 1));
+                    }
+                }));
+            }
+            Future<Integer> reader = executor.submit(() -> {
+                int snapshots = 0;
+                while (sequence.size() < writers * pairsPerWriter * 2) {
+                    PersistentSequence<Integer, Integer> snapshot = sequence.snapshot();
+                    long count = snapshot.stream().count();
+                    assertThat(count).isEqualTo(snapshot.size());
+                    assertThat(count % 2).isZero();
+                    snapshots++;
+                }
+                return snapshots;
+            });
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            reader.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // then
+        assertThat(sequence.size()).isEqualTo(writers * pairsPerWriter * 2);
+        assertThat(sequence.stream().collect(Collectors.toList()))
+                .isEqualTo(sequence.snapshot().stream().sorted().collect(Collectors.toList()));
+        assertThat(sequence.snapshot().select(123)).isEqualTo(123);
+    }
+}
@@ -3,7 +3,13 @@ package org.openstructures.sequence.avltree;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.TreeSet;
 
 import static org.openstructures.sequence.avltree.AVLTree.join;
 import static java.lang.Math.max;
@@ -381,6 +387,315 @@ public class AVLTreeTest {
         assertThat(joined.getRoot().getRight().getRight().getValue()).isEqualTo(6);
     }
 
+    @Test
+    public void shouldDeleteFromJoinedTree() {
+        // given
+        AVLTree<Integer> left = new AVLTree<>(comparator);
+        left.insert(1);
+        left.insert(2);
+        AVLTree<Integer> right = new AVLTree<>(comparator);
+        right.insert(3);
+        right.insert(4);
+        right.insert(5);
+        AVLTree<Integer> joined = join(left, right);
+
+        // when
+        joined.delete(2);
+        joined.delete(5);
+
+        // then
+        assertThat(joined.find(1)).isNotNull();
+        assertThat(joined.find(2)).isNull();
+        assertThat(joined.find(3)).isNotNull();
+        assertThat(joined.find(4)).isNotNull();
+        assertThat(joined.find(5)).isNull();
+    }
+
+    @Test
+    public void shouldFind() {
+        // given
+        tree.insert(5);
+        tree.insert(3);
+        tree.insert(8);
+
+        // when and then
+        assertThat(tree.find(3).getValue()).isEqualTo(3);
+        assertThat(tree.find(8).getValue()).isEqualTo(8);
+        assertThat(tree.find(4)).isNull();
+    }
+
+    @Test
+    public void shouldSplit() {
+        // given
+        for (int i = 1; i <= 20; i++) {
+            tree.insert(i);
+        }
+
+        // when
+        AVLTree.Split<Integer> split = tree.split(8);
+
+        // then
+        assertThat(values(split.getLeft())).containsExactly(1, 2, 3, 4, 5, 6, 7);
+        assertThat(values(split.getRight())).containsExactly(8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20);
+        assertBalanced(split.getLeft().getRoot());
+        assertBalanced(split.getRight().getRoot());
+    }
+
+    @Test
+    public void shouldSplitByAbsentPivot() {
+        // given
+        tree.insert(10);
+        tree.insert(20);
+        tree.insert(30);
+
+        // when
+        AVLTree.Split<Integer> split = tree.split(25);
+
+        // then
+        assertThat(values(split.getLeft())).containsExactly(10, 20);
+        assertThat(values(split.getRight())).containsExactly(30);
+    }
+
+    @Test
+    public void shouldSplitOutsideOfValues() {
+        // given
+        tree.insert(10);
+        tree.insert(20);
+
+        // when
+        AVLTree.Split<Integer> split = tree.split(5);
+
+        // then
+        assertThat(split.getLeft().isEmpty()).isTrue();
+        assertThat(values(split.getRight())).containsExactly(10, 20);
+    }
+
+    @Test
+    public void shouldJoinSplitTrees() {
+        // given
+        for (int i = 1; i <= 50; i++) {
+            tree.insert(i);
+        }
+        AVLTree.Split<Integer> split = tree.split(33);
+
+        // when
+        AVLTree<Integer> joined = join(split.getLeft(), split.getRight());
+
+        // then
+        assertThat(values(joined)).hasSize(50);
+        assertBalanced(joined.getRoot());
+        joined.delete(33);
+        assertThat(joined.find(33)).isNull();
+    }
+
+    @Test
+    public void shouldStayBalancedAfterRandomInsertsAndDeletes() {
+        // given
+        Random random = new Random(7);
+        TreeSet<Integer> expected = new TreeSet<>();
+
+        // when
+        for (int i = 0; i < 5000; i++) {
+            int value = random.nextInt(1000);
+            if (expected.add(value)) {
+                tree.insert(value);
+            } else {
+                expected.remove(value);
+                tree.delete(value);
+            }
+        }
+
+        // then
+        assertThat(values(tree)).containsExactlyElementsOf(expected);
+        assertBalanced(tree.getRoot());
+    }
+
+    @Test
+    public void shouldRankAndSelectAfterRandomInsertsDeletesSplitsAndJoins() {
+        // given
+        Random random = new Random(13);
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 3000; i++) {
+            int value = random.nextInt(1000);
+            if (expected.add(value)) {
+                tree.insert(value);
+            } else {
+                expected.remove(value);
+                tree.delete(value);
+            }
+        }
+
+        // when
+        AVLTree.Split<Integer> split = tree.split(500);
+        AVLTree<Integer> left = split.getLeft();
+        AVLTree<Integer> right = split.getRight();
+        int leftSize = left.size();
+        tree = join(left, right);
+
+        // then
+        assertThat(leftSize).isEqualTo(expected.headSet(500).size());
+        assertThat(tree.size()).isEqualTo(expected.size());
+        List<Integer> values = new ArrayList<>(expected);
+        for (int i = 0; i < values.size(); i++) {
+            assertThat(tree.select(i)).isEqualTo(values.get(i));
+            assertThat(tree.rank(values.get(i))).isEqualTo(i);
+            assertThat(tree.rank(values.get(i) + 1)).isEqualTo(expected.headSet(values.get(i) + 1).size());
+        }
+    }
+
+    @Test
+    public void shouldAggregateRangesAfterRandomInsertsDeletesSplitsAndJoins() {
+        // given
+        // concatenation isn't commutative, so it also checks that subtrees are combined in order
+        Aggregate<Integer, String> concatenation = Aggregate.of(() -> "", value -> value + ",", String::concat);
+        tree = new AVLTree<>(comparator, concatenation);
+        Random random = new Random(17);
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 3000; i++) {
+            int value = random.nextInt(1000);
+            if (expected.add(value)) {
+                tree.insert(value);
+            } else {
+                expected.remove(value);
+                tree.delete(value);
+            }
+        }
+
+        // when
+        AVLTree.Split<Integer> split = tree.split(500);
+        String leftAggregate = split.getLeft().aggregate(concatenation, 0, 1000);
+        split.getRight().insert(1000);
+        split.getRight().delete(1000);
+        tree = join(split.getLeft(), split.getRight());
+
+        // then
+        assertThat(leftAggregate).isEqualTo(concatenate(expected.headSet(500)));
+        for (int i = 0; i < 500; i++) {
+            int from = random.nextInt(1100) - 50;
+            int to = from + random.nextInt(300);
+            assertThat(tree.aggregate(concatenation, from, to)).isEqualTo(concatenate(expected.subSet(from, to)));
+        }
+        assertThat(tree.aggregate(concatenation, 600, 400)).isEmpty();
+        assertThat(tree.aggregate(concatenation, -1, 1000)).isEqualTo(concatenate(expected));
+    }
+
+    @Test
+    public void shouldAggregateSumOfJoinedTrees() {
+        // given
+        Aggregate<Integer, Long> sum = Aggregate.summingLong(Integer::longValue);
+        tree = new AVLTree<>(comparator, sum);
+        for (int i = 0; i < 100; i++) {
+            tree.insert(2 * i);
+        }
+
+        // when
+        AVLTree<Integer> right = new AVLTree<>(comparator, sum);
+        for (int i = 200; i < 300; i++) {
+            right.insert(i);
+        }
+        tree = join(tree, right);
+
+        // then
+        assertThat(tree.aggregate(sum, 0, 200)).isEqualTo(9900L);
+        assertThat(tree.aggregate(sum, 10, 21)).isEqualTo(10L + 12 + 14 + 16 + 18 + 20);
+        assertThat(tree.aggregate(sum, 250, 1000)).isEqualTo((250L + 299) * 50 / 2);
+        assertThat(tree.aggregate(sum, 199, 200)).isZero();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfJoiningTreesOfDifferentAggregates() {
+        // given
+        tree = new AVLTree<>(comparator, Aggregate.summingLong(Integer::longValue));
+        tree.insert(1);
+        AVLTree<Integer> right = new AVLTree<>(comparator, Aggregate.summingLong(Integer::longValue));
+        right.insert(2);
+
+        // when
+        join(tree, right);
+
+        // then throw exception
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfAggregateIsNotMaintained() {
+        // given
+        tree.insert(1);
+
+        // when
+        tree.aggregate(Aggregate.summingLong(Integer::longValue), 0, 2);
+
+        // then throw exception
+    }
+
+    @Test
+    public void shouldTellListenerAboutRotationsAndRetracing() {
+        // given
+        List<Integer> depths = new ArrayList<>();
+        int[] rotations = new int[1];
+        tree.setListener(new TreeListener() {
+            @Override
+            public void rotated() {
+                rotations[0]++;
+            }
+
+            @Override
+            public void retraced(int depth) {
+                depths.add(depth);
+            }
+        });
+
+        // when
+        tree.insert(1);
+        tree.insert(2);
+        tree.insert(3);
+        tree.insert(0);
+
+        // then
+        assertThat(rotations[0]).isEqualTo(1);
+        assertThat(depths).containsExactly(1, 2, 2);
+        assertThat(tree.height()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldBuildFromSorted() {
+        // given
+        List<Integer> sorted = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            sorted.add(i);
+        }
+
+        // when
+        AVLTree<Integer> built = AVLTree.fromSorted(sorted, comparator);
+
+        // then
+        assertThat(values(built)).containsExactlyElementsOf(sorted);
+        assertBalanced(built.getRoot());
+        assertThat(height(built.getRoot())).isEqualTo(7);
+        built.insert(101);
+        built.delete(50);
+        assertThat(built.find(101)).isNotNull();
+        assertThat(built.find(50)).isNull();
+        assertBalanced(built.getRoot());
+    }
+
+    @Test
+    public void shouldBuildFromSortedIterator() {
+        // when
+        AVLTree<Integer> built = AVLTree.fromSorted(Arrays.asList(1, 2, 3).iterator(), comparator);
+
+        // then
+        assertThat(built.getRoot().getValue()).isEqualTo(2);
+        assertThat(values(built)).containsExactly(1, 2, 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionIfBuildingFromUnsortedValues() {
+        // when
+        AVLTree.fromSorted(Arrays.asList(1, 3, 2), comparator);
+
+        // then throw exception
+    }
+
     // integration test from https://www.youtube.com/watch?v=FNeL18KsWPc&t=2162s
     @Test
     public void shouldBalanceTheTree() {
@@ -414,6 +729,232 @@ public class AVLTreeTest {
         assertThat(tree.isEmpty()).isTrue();
     }
 
+    @Test
+    public void shouldKeepHeightsBalanceFactorsAndSizesAfterMixedInsertsAndDeletes() {
+        // given
+        AVLTree<Integer> summing = new AVLTree<>(comparator, Aggregate.summingLong(Integer::longValue));
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(13);
+
+        for (int i = 0; i < 20_000; i++) {
+            // a narrow range of values makes deletes of nodes with two children frequent
+            int value = random.nextInt(i < 10_000 ? 2000 : 200);
+
+            // when
+            if (expected.add(value)) {
+                tree.insert(value);
+                summing.insert(value);
+            } else {
+                expected.remove(value);
+                tree.delete(value);
+                summing.delete(value);
+            }
+
+            // then
+            if (i % 97 == 0) {
+                assertInvariants(tree, expected);
+                assertInvariants(summing, expected);
+            }
+        }
+        assertInvariants(tree, expected);
+        assertInvariants(summing, expected);
+    }
+
+    @Test
+    public void shouldRecycleNodesOfDeletedValues() {
+        // given
+        AVLTree<Integer> pooled = AVLTree.pooled(comparator, 4);
+        pooled.insert(1);
+        AVLNode<Integer> deleted = pooled.insert(2);
+        pooled.insert(3);
+        pooled.delete(2);
+
+        // when
+        AVLNode<Integer> inserted = pooled.insert(4);
+
+        // then
+        assertThat(inserted).isSameAs(deleted);
+        assertThat(inserted.getValue()).isEqualTo(4);
+        assertThat(values(pooled)).containsExactly(1, 3, 4);
+    }
+
+    @Test
+    public void shouldStayBalancedWhileRecyclingNodes() {
+        // given
+        AVLTree<Integer> pooled = AVLTree.pooled(comparator, 16);
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(5);
+
+        // when
+        for (int i = 0; i < 20_000; i++) {
+            int value = random.nextInt(500);
+            if (expected.add(value)) {
+                pooled.insert(value);
+            } else {
+                expected.remove(value);
+                pooled.delete(value);
+            }
+        }
+        AVLTree.Split<Integer> split = pooled.split(250);
+        split.getRight().insert(1000);
+
+        // then
+        assertThat(values(split.getLeft())).containsExactlyElementsOf(expected.headSet(250));
+        assertThat(split.getLeft().size()).isEqualTo(expected.headSet(250).size());
+        assertBalanced(split.getLeft().getRoot());
+        assertThat(split.getRight().select(split.getRight().size() - 1)).isEqualTo(1000);
+    }
+
+    private static String concatenate(Iterable<Integer> values) {
+        StringBuilder concatenation = new StringBuilder();
+        for (Integer value : values) {
+            concatenation.append(value).append(',');
+        }
+        return concatenation.toString();
+    }
+
+    private static List<Integer> values(AVLTree<Integer> tree) {
+        List<Integer> values = new ArrayList<>();
+        if (!tree.isEmpty()) {
+            collect(tree.getRoot(), values);
+        }
+        return values;
+    }
+
+    @Test
+    public void shouldSplitAtTheRootOfTheTree() {
+        // given
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            values.add(i);
+        }
+        AVLTree<Integer> tree = AVLTree.fromSorted(values, Integer::compareTo);
+        Spliterator<Integer> suffix = tree.spliterator();
+
+        // when
+        Spliterator<Integer> prefix = suffix.trySplit();
+
+        // then
+        int rootRank = tree.rank(tree.getRoot().getValue());
+        assertThat(prefix.estimateSize()).isEqualTo(rootRank);
+        assertThat(suffix.estimateSize()).isEqualTo(1000 - rootRank);
+        assertThat(suffix.hasCharacteristics(Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.SUBSIZED))
+                .isTrue();
+        List<Integer> traversed = new ArrayList<>();
+        prefix.forEachRemaining(traversed::add);
+        suffix.tryAdvance(value -> assertThat(value).isEqualTo(tree.getRoot().getValue()));
+        traversed.add(tree.getRoot().getValue());
+        suffix.forEachRemaining(traversed::add);
+        assertThat(traversed).isEqualTo(values);
+    }
+
+    @Test
+    public void shouldSplitDownToSingleValues() {
+        // given
+        Random random = new Random(7);
+        TreeSet<Integer> expected = new TreeSet<>();
+        AVLTree<Integer> tree = new AVLTree<>(Integer::compareTo);
+        for (int i = 0; i < 3000; i++) {
+            int value = random.nextInt(10000);
+            if (expected.add(value)) {
+                tree.insert(value);
+            }
+        }
+
+        // when
+        List<Integer> traversed = new ArrayList<>();
+        splitAndTraverse(tree.spliterator(), traversed);
+
+        // then
+        assertThat(traversed).containsExactlyElementsOf(expected);
+    }
+
+    private static void splitAndTraverse(Spliterator<Integer> spliterator, List<Integer> traversed) {
+        long size = spliterator.estimateSize();
+        Spliterator<Integer> prefix = spliterator.trySplit();
+        if (prefix == null) {
+            assertThat(size).isLessThan(2);
+            spliterator.forEachRemaining(traversed::add);
+            return;
+        }
+        assertThat(prefix.estimateSize()).isPositive();
+        assertThat(spliterator.estimateSize()).isPositive();
+        assertThat(prefix.estimateSize() + spliterator.estimateSize()).isEqualTo(size);
+        splitAndTraverse(prefix, traversed);
+        splitAndTraverse(spliterator, traversed);
+    }
+
+    private static void collect(AVLNode<Integer> node, List<Integer> values) {
+        if (node.getLeft() != null) {
+            assertThat(node.getLeft().getParent()).isSameAs(node);
+            collect(node.getLeft(), values);
+        }
+        values.add(node.getValue());
+        if (node.getRight() != null) {
+            assertThat(node.getRight().getParent()).isSameAs(node);
+            collect(node.getRight(), values);
+        }
+    }
+
+    // checks the stored height, balance factor, size and aggregate of every node against its children, the parent
+    // pointers and the links between neighbours, and that the tree holds exactly the expected values
+    private static void assertInvariants(AVLTree<Integer> tree, TreeSet<Integer> expected) {
+        AVLTree.InternalAVLNode<Integer> root = tree.root;
+        if (root != null) {
+            assertThat(root.parent).isNull();
+            assertInvariants(tree, root);
+        }
+        assertThat(values(tree)).containsExactlyElementsOf(expected);
+        assertThat(tree.size()).isEqualTo(expected.size());
+
+        List<Integer> linked = new ArrayList<>();
+        AVLTree.InternalAVLNode<Integer> previous = null;
+        for (AVLTree.InternalAVLNode<Integer> node = tree.firstNode(); node != null; node = node.next) {
+            assertThat(node.previous).isSameAs(previous);
+            linked.add(node.getValue());
+            previous = node;
+        }
+        assertThat(linked).containsExactlyElementsOf(expected);
+    }
+
+    // returns the height of the subtree
+    private static int assertInvariants(AVLTree<Integer> tree, AVLTree.InternalAVLNode<Integer> node) {
+        if (node == null) {
+            return -1;
+        }
+        int leftHeight = assertInvariants(tree, node.left);
+        int rightHeight = assertInvariants(tree, node.right);
+        int leftSize = node.left != null ? node.left.size : 0;
+        int rightSize = node.right != null ? node.right.size : 0;
+        if (node.left != null) {
+            assertThat(node.left.parent).isSameAs(node);
+        }
+        if (node.right != null) {
+            assertThat(node.right.parent).isSameAs(node);
+        }
+
+        assertThat(node.height).as("height of %s", node.value).isEqualTo((byte) (max(leftHeight, rightHeight) + 1));
+        assertThat(node.balanceFactor).as("balance of %s", node.value).isEqualTo((byte) (rightHeight - leftHeight));
+        assertThat(Math.abs(rightHeight - leftHeight)).as("balance of %s", node.value).isLessThanOrEqualTo(1);
+        assertThat(node.size).as("size of %s", node.value).isEqualTo(leftSize + rightSize + 1);
+        if (tree.aggregate != null) {
+            long sum = node.value + (node.left != null ? (Long) node.left.aggregate : 0L)
+                    + (node.right != null ? (Long) node.right.aggregate : 0L);
+            assertThat(node.aggregate).as("aggregate of %s", node.value).isEqualTo(sum);
+        }
+        return max(leftHeight, rightHeight) + 1;
+    }
+
+    private static void assertBalanced(AVLNode<Integer> node) {
+        if (node != null) {
+            int leftHeight = node.getLeft() != null ? height(node.getLeft()) : 0;
+            int rightHeight = node.getRight() != null ? height(node.getRight()) : 0;
+            assertThat(Math.abs(leftHeight - rightHeight)).isLessThanOrEqualTo(1);
+            assertBalanced(node.getLeft());
+            assertBalanced(node.getRight());
+        }
+    }
+
     private static int height(AVLNode<Integer> node) {
         int leftChildHeight = node.getLeft() != null ? height(node.getLeft()) : 0;
         int rightChildHeight = node.getRight() != null ? height(node.getRight()) : 0;
@@ -0,0 +1,143 @@
+package org.openstructures.sequence.avltree;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class PersistentAVLTreeTest {
+
+    private final Comparator<Integer> comparator = Integer::compareTo;
+
+    @Test
+    public void shouldKeepOlderVersionsUnchanged() {
+        // given
+        Random random = new Random(11);
+        List<PersistentAVLTree<Integer, Integer>> versions = new ArrayList<>();
+        List<TreeSet<Integer>> expected = new ArrayList<>();
+        PersistentAVLTree<Integer, Integer> tree = PersistentAVLTree.empty(comparator);
+        TreeSet<Integer> values = new TreeSet<>();
+
+        // when
+        for (int i = 0; i < 3000; i++) {
+            int value = random.nextInt(1000);
+            if (values.add(value)) {
+                tree = tree.insert(value);
+            } else {
+                values.remove(value);
+                tree = tree.delete(value);
+            }
+            if (i % 100 == 0) {
+                versions.add(tree);
+                expected.add(new TreeSet<>(values));
+            }
+        }
+
+        // then
+        for (int i = 0; i < versions.size(); i++) {
+            assertTree(versions.get(i), expected.get(i));
+        }
+    }
+
+    @Test
+    public void shouldStayBalanced() {
+        // given
+        PersistentAVLTree<Integer, Integer> tree = PersistentAVLTree.empty(comparator);
+
+        // when
+        for (int i = 0; i < (1 << 16) - 1; i++) {
+            tree = tree.insert(i);
+        }
+
+        // then
+        assertThat(tree.size()).isEqualTo((1 << 16) - 1);
+        assertThat(tree.height()).isEqualTo(16);
+    }
+
+    @Test
+    public void shouldReturnSameTreeWhenDeletingAbsentValue() {
+        // given
+        PersistentAVLTree<Integer, Integer> tree = PersistentAVLTree.fromSorted(Arrays.asList(1, 3, 5), comparator);
+
+        // when
+        PersistentAVLTree<Integer, Integer> deleted = tree.delete(4);
+
+        // then
+        assertThat(deleted).isSameAs(tree);
+    }
+
+    @Test
+    public void shouldRejectDuplicates() {
+        // given
+        PersistentAVLTree<Integer, Integer> tree = PersistentAVLTree.fromSorted(Arrays.asList(1, 3, 5), comparator);
+
+        // when
+        Throwable thrown = catchThrowable(() -> tree.insert(3));
+
+        // then
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+        assertThat(tree.size()).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldRejectUnsortedValues() {
+        // when
+        Throwable thrown = catchThrowable(() -> PersistentAVLTree.fromSorted(Arrays.asList(1, 5, 3), comparator));
+
+        // then
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void shouldSplitExactly() {
+        // given
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            values.add(i * 3);
+        }
+        PersistentAVLTree<Integer, Integer> tree = PersistentAVLTree.fromSorted(values, comparator);
+
+        // when
+        Spliterator<Integer> suffix = tree.spliterator();
+        suffix.tryAdvance(value -> {
+        });
+        Spliterator<Integer> prefix = suffix.trySplit();
+
+        // then
+        assertThat(prefix.estimateSize() + suffix.estimateSize()).isEqualTo(9_999);
+        List<Integer> collected = new ArrayList<>();
+        prefix.forEachRemaining(collected::add);
+        suffix.forEachRemaining(collected::add);
+        assertThat(collected).isEqualTo(values.subList(1, values.size()));
+        assertThat(StreamSupport.stream(tree.spliterator(), true).collect(Collectors.toList())).isEqualTo(values);
+    }
+
+    private static void assertTree(PersistentAVLTree<Integer, Integer> tree, TreeSet<Integer> expected) {
+        assertThat(tree.size()).isEqualTo(expected.size());
+        assertThat(tree).containsExactlyElementsOf(expected);
+        assertThat(tree.first()).isEqualTo(expected.isEmpty() ? null : expected.first());
+        assertThat(tree.last()).isEqualTo(expected.isEmpty() ? null : expected.last());
+        for (int value = -1; value <= 1000; value++) {
+            assertThat(tree.find(value)).isEqualTo(expected.contains(value) ? value : null);
+            assertThat(tree.higher(value)).isEqualTo(expected.higher(value));
+            assertThat(tree.lower(value)).isEqualTo(expected.lower(value));
+            assertThat(tree.ceiling(value)).isEqualTo(expected.ceiling(value));
+            assertThat(tree.floor(value)).isEqualTo(expected.floor(value));
+            assertThat(tree.rank(value, false)).isEqualTo(expected.headSet(value, false).size());
+        }
+        int index = 0;
+        for (Integer value : expected) {
+            assertThat(tree.select(index++)).isEqualTo(value);
+        }
+    }
+}
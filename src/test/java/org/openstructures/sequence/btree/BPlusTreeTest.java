@@ -0,0 +1,155 @@
+package org.openstructures.sequence.btree;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class BPlusTreeTest {
+
+    private final Comparator<Integer> comparator = Integer::compareTo;
+
+    @Test
+    public void shouldMatchTreeSetUnderRandomInsertsAndDeletes() {
+        for (int capacity : new int[]{4, 5, 8, 64}) {
+            // given
+            BPlusTree<Integer, Integer> tree = new BPlusTree<>(comparator, capacity);
+            TreeSet<Integer> expected = new TreeSet<>();
+            Random random = new Random(capacity);
+
+            for (int round = 0; round < 20; round++) {
+                // when
+                for (int i = 0; i < 500; i++) {
+                    int value = random.nextInt(2000);
+                    if (random.nextInt(3) > 0 == (round < 10)) {
+                        if (expected.add(value)) {
+                            tree.insert(value);
+                        }
+                    } else {
+                        assertThat(tree.delete(value)).isEqualTo(expected.remove(value));
+                    }
+                }
+
+                // then
+                assertTree(tree, expected);
+            }
+        }
+    }
+
+    @Test
+    public void shouldKeepNodesWide() {
+        // given
+        BPlusTree<Integer, Integer> tree = new BPlusTree<>(comparator, 16);
+        Random random = new Random(3);
+
+        // when
+        for (int i = 0; i < 100_000; i++) {
+            int value = random.nextInt();
+            if (tree.find(value) == null) {
+                tree.insert(value);
+            }
+        }
+
+        // then nodes are at least half full, so the tree is no higher than log base 8 of the size
+        assertThat(tree.height()).isLessThanOrEqualTo(7);
+    }
+
+    @Test
+    public void shouldShrinkWhenEmptied() {
+        // given
+        BPlusTree<Integer, Integer> tree = new BPlusTree<>(comparator, 4);
+        for (int i = 0; i < 1000; i++) {
+            tree.insert(i);
+        }
+
+        // when
+        for (int i = 0; i < 1000; i++) {
+            tree.delete(i);
+        }
+
+        // then
+        assertThat(tree.isEmpty()).isTrue();
+        assertThat(tree.height()).isEqualTo(1);
+        assertThat(tree.iterator().hasNext()).isFalse();
+        assertThat(tree.higher(0)).isNull();
+        assertThat(tree.lower(0)).isNull();
+    }
+
+    @Test
+    public void shouldRejectDuplicates() {
+        // given
+        BPlusTree<Integer, Integer> tree = new BPlusTree<>(comparator, 4);
+        for (int i = 0; i < 100; i++) {
+            tree.insert(i);
+        }
+
+        // when
+        Throwable thrown = catchThrowable(() -> tree.insert(42));
+
+        // then
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+        assertThat(tree.size()).isEqualTo(100);
+    }
+
+    @Test
+    public void shouldIterateRange() {
+        // given
+        BPlusTree<Integer, Integer> tree = new BPlusTree<>(comparator, 4);
+        for (int i = 0; i < 100; i++) {
+            tree.insert(i * 2);
+        }
+
+        // when
+        List<Integer> inclusive = collect(tree.range(10, true, 20, true));
+        List<Integer> exclusive = collect(tree.range(10, false, 20, false));
+        List<Integer> between = collect(tree.range(11, true, 19, true));
+        List<Integer> beyond = collect(tree.range(198, false, 300, true));
+
+        // then
+        assertThat(inclusive).containsExactly(10, 12, 14, 16, 18, 20);
+        assertThat(exclusive).containsExactly(12, 14, 16, 18);
+        assertThat(between).containsExactly(12, 14, 16, 18);
+        assertThat(beyond).isEmpty();
+    }
+
+    private static void assertTree(BPlusTree<Integer, Integer> tree, TreeSet<Integer> expected) {
+        assertThat(tree.size()).isEqualTo(expected.size());
+        assertThat(tree).containsExactlyElementsOf(expected);
+        assertThat(StreamSupport.stream(tree.spliterator(), true).collect(Collectors.toList()))
+                .containsExactlyElementsOf(expected);
+        for (int value = -1; value <= 2001; value++) {
+            assertThat(tree.find(value)).isEqualTo(expected.contains(value) ? value : null);
+            assertThat(tree.higher(value)).isEqualTo(expected.higher(value));
+            assertThat(tree.lower(value)).isEqualTo(expected.lower(value));
+            assertThat(tree.ceiling(value)).isEqualTo(expected.ceiling(value));
+            assertThat(tree.floor(value)).isEqualTo(expected.floor(value));
+        }
+        List<Integer> backwards = new ArrayList<>();
+        BPlusTree.Leaf<Integer> last = tree.firstLeaf();
+        while (last.next() != null) {
+            assertThat(last.next().previous()).isSameAs(last);
+            last = last.next();
+        }
+        for (BPlusTree.Leaf<Integer> leaf = last; leaf != null; leaf = leaf.previous()) {
+            for (int i = leaf.size() - 1; i >= 0; i--) {
+                backwards.add(leaf.key(i));
+            }
+        }
+        assertThat(backwards).containsExactlyElementsOf(expected.descendingSet());
+    }
+
+    private static List<Integer> collect(Iterator<Integer> iterator) {
+        List<Integer> values = new ArrayList<>();
+        iterator.forEachRemaining(values::add);
+        return values;
+    }
+}